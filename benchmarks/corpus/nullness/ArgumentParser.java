@@ -0,0 +1,132 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/** Parses command-line arguments of the forms -flag, -key=value, and -key value. */
+public class ArgumentParser {
+
+    public static class ParseException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        public ParseException(String message) {
+            super(message);
+        }
+    }
+
+    public enum Kind { FLAG, STRING, INTEGER }
+
+    private final Map<String, Kind> declared = new LinkedHashMap<>();
+    private final Map<String, String> defaults = new LinkedHashMap<>();
+    private final Map<String, String> values = new LinkedHashMap<>();
+    private final List<String> positional = new ArrayList<>();
+
+    public ArgumentParser declare(String name, Kind kind, @Nullable String defaultValue) {
+        declared.put(name, kind);
+        if (defaultValue != null) {
+            defaults.put(name, defaultValue);
+        }
+        return this;
+    }
+
+    public void parse(String[] args) throws ParseException {
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (!arg.startsWith("-") || arg.length() == 1) {
+                positional.add(arg);
+                continue;
+            }
+            String name = arg.substring(1);
+            @Nullable String value = null;
+            int equals = name.indexOf('=');
+            if (equals >= 0) {
+                value = name.substring(equals + 1);
+                name = name.substring(0, equals);
+            }
+            Kind kind = declared.get(name);
+            if (kind == null) {
+                throw new ParseException("unknown option: " + name);
+            }
+            switch (kind) {
+                case FLAG:
+                    if (value != null) {
+                        throw new ParseException("flag " + name + " takes no value");
+                    }
+                    values.put(name, "true");
+                    break;
+                case STRING:
+                case INTEGER:
+                    if (value == null) {
+                        if (i + 1 >= args.length) {
+                            throw new ParseException("missing value for " + name);
+                        }
+                        value = args[++i];
+                    }
+                    if (kind == Kind.INTEGER) {
+                        checkInteger(name, value);
+                    }
+                    values.put(name, value);
+                    break;
+                default:
+                    throw new AssertionError(kind);
+            }
+        }
+    }
+
+    private static void checkInteger(String name, String value) throws ParseException {
+        try {
+            Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new ParseException(name + " is not an integer: " + value);
+        }
+    }
+
+    public boolean isSet(String name) {
+        return values.containsKey(name);
+    }
+
+    public @Nullable String get(String name) {
+        if (values.containsKey(name)) {
+            return values.get(name);
+        }
+        return defaults.get(name);
+    }
+
+    public String get(String name, String fallback) {
+        String value = get(name);
+        return value == null ? fallback : value;
+    }
+
+    public int getInt(String name, int fallback) {
+        String value = get(name);
+        if (value == null) {
+            return fallback;
+        }
+        return Integer.parseInt(value);
+    }
+
+    public List<String> getPositional() {
+        return Collections.unmodifiableList(positional);
+    }
+
+    public String usage() {
+        StringBuilder sb = new StringBuilder("Options:\n");
+        for (Map.Entry<String, Kind> entry : declared.entrySet()) {
+            String name = entry.getKey();
+            Kind kind = entry.getValue();
+            sb.append("  -").append(name);
+            if (kind != Kind.FLAG) {
+                sb.append(" <").append(kind.name().toLowerCase()).append('>');
+            }
+            String defaultValue = defaults.get(name);
+            if (defaultValue != null) {
+                sb.append(" (default: ").append(defaultValue).append(')');
+            }
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,162 @@
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/** A directed graph with searches and a topological sort. */
+public class Graph<N extends Comparable<N>> {
+
+    private final Map<N, List<N>> successors = new LinkedHashMap<>();
+
+    public void addNode(N node) {
+        if (!successors.containsKey(node)) {
+            successors.put(node, new ArrayList<N>());
+        }
+    }
+
+    public void addEdge(N from, N to) {
+        addNode(from);
+        addNode(to);
+        List<N> list = successors.get(from);
+        if (list != null && !list.contains(to)) {
+            list.add(to);
+        }
+    }
+
+    public List<N> getSuccessors(N node) {
+        List<N> list = successors.get(node);
+        return list == null ? Collections.<N>emptyList() : Collections.unmodifiableList(list);
+    }
+
+    public Set<N> getNodes() {
+        return Collections.unmodifiableSet(successors.keySet());
+    }
+
+    /** Returns a shortest path from {@code from} to {@code to}, or null. */
+    public @Nullable List<N> shortestPath(N from, N to) {
+        // The start node is its own parent.
+        Map<N, N> parents = new HashMap<>();
+        Deque<N> queue = new ArrayDeque<>();
+        parents.put(from, from);
+        queue.add(from);
+        while (!queue.isEmpty()) {
+            N node = queue.remove();
+            if (node.equals(to)) {
+                List<N> path = new ArrayList<>();
+                N current = node;
+                path.add(current);
+                while (!current.equals(from)) {
+                    N parent = parents.get(current);
+                    if (parent == null) {
+                        throw new IllegalStateException("no parent for " + current);
+                    }
+                    current = parent;
+                    path.add(current);
+                }
+                Collections.reverse(path);
+                return path;
+            }
+            for (N successor : getSuccessors(node)) {
+                if (!parents.containsKey(successor)) {
+                    parents.put(successor, node);
+                    queue.add(successor);
+                }
+            }
+        }
+        return null;
+    }
+
+    /** Returns the nodes in topological order, or null if there is a cycle. */
+    public @Nullable List<N> topologicalOrder() {
+        Map<N, Integer> inDegrees = new HashMap<>();
+        for (N node : getNodes()) {
+            inDegrees.put(node, 0);
+        }
+        for (List<N> list : successors.values()) {
+            for (N successor : list) {
+                Integer degree = inDegrees.get(successor);
+                inDegrees.put(successor, degree == null ? 1 : degree + 1);
+            }
+        }
+        List<N> ready = new ArrayList<>();
+        for (Map.Entry<N, Integer> entry : inDegrees.entrySet()) {
+            if (entry.getValue() == 0) {
+                ready.add(entry.getKey());
+            }
+        }
+        List<N> order = new ArrayList<>();
+        while (!ready.isEmpty()) {
+            Collections.sort(ready);
+            N node = ready.remove(0);
+            order.add(node);
+            for (N successor : getSuccessors(node)) {
+                Integer degree = inDegrees.get(successor);
+                int newDegree = (degree == null ? 0 : degree) - 1;
+                inDegrees.put(successor, newDegree);
+                if (newDegree == 0) {
+                    ready.add(successor);
+                }
+            }
+        }
+        return order.size() == successors.size() ? order : null;
+    }
+
+    /** Returns the strongly connected components, using Tarjan's algorithm. */
+    public List<Set<N>> components() {
+        final Map<N, Integer> index = new HashMap<>();
+        final Map<N, Integer> lowLink = new HashMap<>();
+        final Deque<N> stack = new ArrayDeque<>();
+        final Set<N> onStack = new HashSet<>();
+        final List<Set<N>> result = new ArrayList<>();
+        for (N node : getNodes()) {
+            if (!index.containsKey(node)) {
+                strongConnect(node, index, lowLink, stack, onStack, result);
+            }
+        }
+        return result;
+    }
+
+    private void strongConnect(N node, Map<N, Integer> index, Map<N, Integer> lowLink,
+            Deque<N> stack, Set<N> onStack, List<Set<N>> result) {
+        int number = index.size();
+        index.put(node, number);
+        lowLink.put(node, number);
+        stack.push(node);
+        onStack.add(node);
+        for (N successor : getSuccessors(node)) {
+            Integer successorIndex = index.get(successor);
+            if (successorIndex == null) {
+                strongConnect(successor, index, lowLink, stack, onStack, result);
+                lowLink.put(node, Math.min(get(lowLink, node), get(lowLink, successor)));
+            } else if (onStack.contains(successor)) {
+                lowLink.put(node, Math.min(get(lowLink, node), successorIndex));
+            }
+        }
+        if (get(lowLink, node) == get(index, node)) {
+            Set<N> component = new HashSet<>();
+            N member;
+            do {
+                member = stack.pop();
+                onStack.remove(member);
+                component.add(member);
+            } while (!member.equals(node));
+            result.add(component);
+        }
+    }
+
+    private static <K extends Object> int get(Map<K, Integer> map, K key) {
+        Integer value = map.get(key);
+        if (value == null) {
+            throw new IllegalStateException("no value for " + key);
+        }
+        return value;
+    }
+}
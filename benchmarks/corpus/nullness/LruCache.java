@@ -0,0 +1,162 @@
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/** A cache that evicts its least recently used entries. */
+public class LruCache<K extends Object, V extends Object> implements Iterable<K> {
+
+    private static class Node<K extends Object, V extends Object> {
+        final K key;
+        V value;
+        @Nullable Node<K, V> previous;
+        @Nullable Node<K, V> next;
+
+        Node(K key, V value) {
+            this.key = key;
+            this.value = value;
+        }
+    }
+
+    private final int capacity;
+    private final Map<K, Node<K, V>> nodes = new HashMap<>();
+    private @Nullable Node<K, V> head;
+    private @Nullable Node<K, V> tail;
+    private @MonotonicNonNull String description;
+    private int hits;
+    private int misses;
+
+    public LruCache(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity: " + capacity);
+        }
+        this.capacity = capacity;
+    }
+
+    public @Nullable V get(K key) {
+        Node<K, V> node = nodes.get(key);
+        if (node == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        moveToFront(node);
+        return node.value;
+    }
+
+    public V getOrDefault(K key, V defaultValue) {
+        V value = get(key);
+        return value != null ? value : defaultValue;
+    }
+
+    public void put(K key, V value) {
+        Node<K, V> node = nodes.get(key);
+        if (node != null) {
+            node.value = value;
+            moveToFront(node);
+            return;
+        }
+        node = new Node<>(key, value);
+        nodes.put(key, node);
+        addToFront(node);
+        if (nodes.size() > capacity) {
+            evict();
+        }
+    }
+
+    public @Nullable V remove(K key) {
+        Node<K, V> node = nodes.remove(key);
+        if (node == null) {
+            return null;
+        }
+        unlink(node);
+        return node.value;
+    }
+
+    private void evict() {
+        Node<K, V> last = tail;
+        if (last != null) {
+            unlink(last);
+            nodes.remove(last.key);
+        }
+    }
+
+    private void moveToFront(Node<K, V> node) {
+        if (head == node) {
+            return;
+        }
+        unlink(node);
+        addToFront(node);
+    }
+
+    private void addToFront(Node<K, V> node) {
+        node.next = head;
+        node.previous = null;
+        if (head != null) {
+            head.previous = node;
+        }
+        head = node;
+        if (tail == null) {
+            tail = node;
+        }
+    }
+
+    private void unlink(Node<K, V> node) {
+        Node<K, V> previous = node.previous;
+        Node<K, V> next = node.next;
+        if (previous != null) {
+            previous.next = next;
+        } else {
+            head = next;
+        }
+        if (next != null) {
+            next.previous = previous;
+        } else {
+            tail = previous;
+        }
+        node.previous = null;
+        node.next = null;
+    }
+
+    public double hitRate() {
+        int total = hits + misses;
+        return total == 0 ? 0.0 : (double) hits / total;
+    }
+
+    public String describe() {
+        if (description == null) {
+            description = "LruCache(capacity=" + capacity + ")";
+        }
+        return description + " with " + nodes.size() + " entries";
+    }
+
+    @Override
+    public Iterator<K> iterator() {
+        return new Iterator<K>() {
+            private @Nullable Node<K, V> current = head;
+
+            @Override
+            public boolean hasNext() {
+                return current != null;
+            }
+
+            @Override
+            public K next() {
+                Node<K, V> node = current;
+                if (node == null) {
+                    throw new NoSuchElementException();
+                }
+                current = node.next;
+                return node.key;
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+}
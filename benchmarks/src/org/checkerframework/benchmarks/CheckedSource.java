@@ -0,0 +1,171 @@
+package org.checkerframework.benchmarks;
+
+/*>>>
+import org.checkerframework.checker.nullness.qual.Nullable;
+*/
+
+import org.checkerframework.framework.source.SourceChecker;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+
+import com.sun.source.tree.ClassTree;
+import com.sun.source.tree.CompilationUnitTree;
+import com.sun.source.tree.MethodTree;
+import com.sun.source.tree.ReturnTree;
+import com.sun.source.util.JavacTask;
+import com.sun.source.util.TreeScanner;
+import com.sun.tools.javac.api.JavacTaskImpl;
+import com.sun.tools.javac.api.JavacTool;
+import com.sun.tools.javac.processing.JavacProcessingEnvironment;
+
+/**
+ * A source file that has been attributed by the compiler, and possibly
+ * type-checked by a checker, for benchmarks that need the trees of a
+ * program and the type factory of a checker.
+ *
+ * The compilation stops after type-checking, but stays alive, so that
+ * benchmarks can continue to use the trees, elements, and types of the
+ * compilation, and the checker with its type factory.  The type factory
+ * still holds the dataflow results of the last class that it checked.
+ */
+public class CheckedSource {
+
+    /** The options of all compilations, besides the classpath. */
+    private static final List<String> OPTIONS = Arrays.asList(
+            "-Anocheckjdk", "-AprintErrorStack", "-Xmaxerrs", "10000");
+
+    private final JavacTask task;
+    private final CompilationUnitTree root;
+    private final /*@Nullable*/ SourceChecker checker;
+
+    private CheckedSource(JavacTask task, CompilationUnitTree root, /*@Nullable*/ SourceChecker checker) {
+        this.task = task;
+        this.root = root;
+        this.checker = checker;
+    }
+
+    /**
+     * Attributes the given source code of the given top-level class.
+     *
+     * @throws Error if the compiler reports an error
+     */
+    public static CheckedSource attribute(String className, String source) {
+        return check(null, className, source);
+    }
+
+    /**
+     * Type-checks the given source code of the given top-level class
+     * with the given checker, or only attributes it if the checker is null.
+     *
+     * @throws Error if the compiler or the checker reports an error
+     */
+    public static CheckedSource check(/*@Nullable*/ SourceChecker checker, String className, String source) {
+        List<String> options = new ArrayList<>(OPTIONS);
+        options.add("-classpath");
+        options.add(System.getProperty("java.class.path"));
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        JavacTask task = JavacTool.create().getTask(null, null, diagnostics, options, null,
+                Collections.singleton(new StringSource(className, source)));
+        if (checker != null) {
+            task.setProcessors(Collections.singleton(checker));
+        }
+        CompilationUnitTree root;
+        try {
+            Iterator<? extends CompilationUnitTree> roots = task.parse().iterator();
+            root = roots.next();
+            task.analyze();
+        } catch (IOException e) {
+            throw new Error(e);
+        }
+        for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+            if (diagnostic.getKind() == Diagnostic.Kind.ERROR) {
+                throw new Error("Benchmark source " + className + " does not type-check: "
+                        + diagnostic);
+            }
+        }
+        return new CheckedSource(task, root, checker);
+    }
+
+    public JavacTask getTask() {
+        return task;
+    }
+
+    public CompilationUnitTree getCompilationUnit() {
+        return root;
+    }
+
+    public /*@Nullable*/ SourceChecker getChecker() {
+        return checker;
+    }
+
+    public ProcessingEnvironment getProcessingEnvironment() {
+        return JavacProcessingEnvironment.instance(((JavacTaskImpl) task).getContext());
+    }
+
+    /** Returns the first top-level class of the source. */
+    public ClassTree getClassTree() {
+        return (ClassTree) root.getTypeDecls().get(0);
+    }
+
+    /**
+     * Returns the method with the given name in the first top-level class.
+     *
+     * @throws Error if there is no such method
+     */
+    public MethodTree getMethod(String name) {
+        for (com.sun.source.tree.Tree member : getClassTree().getMembers()) {
+            if (member instanceof MethodTree
+                    && ((MethodTree) member).getName().contentEquals(name)) {
+                return (MethodTree) member;
+            }
+        }
+        throw new Error("No method " + name + " in " + getClassTree().getSimpleName());
+    }
+
+    /** Returns the return statements of the given method, in source order. */
+    public static List<ReturnTree> getReturns(MethodTree method) {
+        final List<ReturnTree> returns = new ArrayList<>();
+        method.getBody().accept(new TreeScanner<Void, Void>() {
+            @Override
+            public Void visitReturn(ReturnTree tree, Void p) {
+                returns.add(tree);
+                return super.visitReturn(tree, p);
+            }
+
+            @Override
+            public Void visitClass(ClassTree tree, Void p) {
+                // Skip the methods of local and anonymous classes.
+                return null;
+            }
+        }, null);
+        return returns;
+    }
+
+    /** A source file whose contents are a string. */
+    private static class StringSource extends SimpleJavaFileObject {
+        private final String source;
+
+        StringSource(String className, String source) {
+            super(URI.create("string:///" + className.replace('.', '/') + Kind.SOURCE.extension),
+                    Kind.SOURCE);
+            this.source = source;
+        }
+
+        @Override
+        public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+            return source;
+        }
+    }
+}
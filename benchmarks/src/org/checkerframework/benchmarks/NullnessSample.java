@@ -0,0 +1,88 @@
+package org.checkerframework.benchmarks;
+
+import org.checkerframework.checker.nullness.NullnessChecker;
+import org.checkerframework.common.basetype.BaseTypeChecker;
+import org.checkerframework.framework.type.AnnotatedTypeMirror;
+import org.checkerframework.framework.type.AnnotatedTypeMirror.AnnotatedExecutableType;
+import org.checkerframework.framework.type.GenericAnnotatedTypeFactory;
+import org.checkerframework.javacutil.TreeUtils;
+
+import com.sun.source.tree.MethodTree;
+
+/**
+ * A class type-checked by the Nullness Checker, whose declarations provide
+ * the annotations, types, and dataflow stores that the microbenchmarks of
+ * the framework operate on.
+ *
+ * The sample type-checks without the annotated JDK, so that the benchmarks
+ * do not depend on it: nullable type arguments only appear for the generic
+ * types that the sample declares itself.
+ */
+public class NullnessSample {
+
+    public static final String CLASS_NAME = "Sample";
+
+    public static final String SOURCE =
+        "import java.util.*;\n" +
+        "import org.checkerframework.checker.nullness.qual.*;\n" +
+        "import org.checkerframework.dataflow.qual.Pure;\n" +
+        "\n" +
+        "abstract class Sample<K extends Comparable<K>, V extends Object> {\n" +
+        "    interface Seq<E extends @Nullable Object> {}\n" +
+        "    static class ArraySeq<E extends @Nullable Object> implements Seq<E> {}\n" +
+        "    static class Box<T extends @Nullable Object> {}\n" +
+        "\n" +
+        "    final Map<String, Object> map = new HashMap<>();\n" +
+        "    @Nullable Object f0, f1, f2, f3, f4, f5, f6, f7;\n" +
+        "\n" +
+        "    abstract @KeyFor(\"map\") String key();\n" +
+        "    abstract @Nullable String nullableString();\n" +
+        "    abstract String nonNullString();\n" +
+        "    abstract ArraySeq<@Nullable String> arraySeq();\n" +
+        "    abstract Seq<? extends @Nullable CharSequence> wildcardSeq();\n" +
+        "    abstract Map<K, List<? super V>> nested();\n" +
+        "    abstract Map.Entry<String, Map<K, Box<@Nullable Seq<V>>>> deep();\n" +
+        "    abstract @Nullable String @Nullable [][] array();\n" +
+        "    abstract K typeVariable();\n" +
+        "    abstract <E extends Enum<E>> EnumSet<E> recursiveBound();\n" +
+        "    abstract @Pure @Nullable Object get(int i);\n" +
+        "\n" +
+        "    @Nullable Object branches(boolean b, @Nullable Object p0, @Nullable Object p1,\n" +
+        "            @Nullable Object p2, @Nullable Object p3, @Nullable Object p4,\n" +
+        "            @Nullable Object p5, @Nullable Object p6, @Nullable Object p7) {\n" +
+        "        if (b) {\n" +
+        "            if (p0 == null || p2 == null || p4 == null || p6 == null\n" +
+        "                    || f0 == null || f2 == null || f4 == null || f6 == null\n" +
+        "                    || get(0) == null || get(2) == null || !map.containsKey(\"a\")) {\n" +
+        "                return null;\n" +
+        "            }\n" +
+        "            return p0;\n" +
+        "        } else {\n" +
+        "            if (p1 == null || p3 == null || p5 == null || p7 == null\n" +
+        "                    || f1 == null || f3 == null || f5 == null || f7 == null\n" +
+        "                    || get(1) == null || get(3) == null || !map.containsKey(\"b\")) {\n" +
+        "                return null;\n" +
+        "            }\n" +
+        "            return p1;\n" +
+        "        }\n" +
+        "    }\n" +
+        "}\n";
+
+    /** Type-checks the sample with a new Nullness Checker. */
+    public static CheckedSource check() {
+        return CheckedSource.check(new NullnessChecker(), CLASS_NAME, SOURCE);
+    }
+
+    /** Returns the type factory of the Nullness Checker that checked the sample. */
+    public static GenericAnnotatedTypeFactory<?, ?, ?, ?> getTypeFactory(CheckedSource sample) {
+        return ((BaseTypeChecker) sample.getChecker()).getTypeFactory();
+    }
+
+    /** Returns the annotated return type of the given method of the sample. */
+    public static AnnotatedTypeMirror getReturnType(CheckedSource sample, String methodName) {
+        MethodTree method = sample.getMethod(methodName);
+        AnnotatedExecutableType type =
+                getTypeFactory(sample).getAnnotatedType(TreeUtils.elementFromDeclaration(method));
+        return type.getReturnType();
+    }
+}
@@ -0,0 +1,81 @@
+package org.checkerframework.checker.nullness;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.sun.tools.javac.api.JavacTool;
+
+/**
+ * Measures a complete run of the Nullness Checker, from parsing to the
+ * last diagnostic, on the fixed corpus in {@code corpus/nullness}.
+ *
+ * The corpus directory is given by the system property
+ * {@code checkerframework.benchmarks.corpus}, which the {@code run} target
+ * sets.  The files of the corpus type-check without errors, also without
+ * the annotated JDK; they must not change, so that results remain
+ * comparable.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+public class NullnessCorpusBenchmark {
+
+    private final JavacTool compiler = JavacTool.create();
+    private List<File> files;
+    private List<String> options;
+
+    @Setup
+    public void setup() {
+        File corpus = new File(System.getProperty("checkerframework.benchmarks.corpus", "corpus"), "nullness");
+        File[] sources = corpus.listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.endsWith(".java");
+            }
+        });
+        if (sources == null) {
+            throw new Error("Corpus not found: " + corpus.getAbsolutePath());
+        }
+        Arrays.sort(sources);
+        files = Arrays.asList(sources);
+        options = new ArrayList<>(Arrays.asList(
+                "-proc:only",
+                "-processor", NullnessChecker.class.getName(),
+                "-Anocheckjdk",
+                "-classpath", System.getProperty("java.class.path")));
+    }
+
+    /** Type-checks the corpus and returns the number of diagnostics. */
+    @Benchmark
+    public int checkCorpus() throws IOException {
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        try (StandardJavaFileManager fileManager = compiler.getStandardFileManager(diagnostics, null, null)) {
+            Iterable<? extends JavaFileObject> units = fileManager.getJavaFileObjectsFromFiles(files);
+            compiler.getTask(null, fileManager, diagnostics, options, null, units).call();
+        }
+        return diagnostics.getDiagnostics().size();
+    }
+}
@@ -0,0 +1,205 @@
+package org.checkerframework.dataflow.analysis;
+
+import org.checkerframework.dataflow.cfg.ControlFlowGraph;
+import org.checkerframework.dataflow.cfg.block.Block;
+import org.checkerframework.dataflow.cfg.block.Block.BlockType;
+import org.checkerframework.dataflow.cfg.block.ConditionalBlock;
+import org.checkerframework.dataflow.cfg.block.ConditionalBlockImpl;
+import org.checkerframework.dataflow.cfg.block.RegularBlockImpl;
+import org.checkerframework.dataflow.cfg.block.SingleSuccessorBlock;
+import org.checkerframework.dataflow.cfg.block.SpecialBlock.SpecialBlockType;
+import org.checkerframework.dataflow.cfg.block.SpecialBlockImpl;
+import org.checkerframework.dataflow.cfg.node.Node;
+import org.checkerframework.dataflow.cfg.node.ReturnNode;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.sun.source.tree.Tree;
+
+/**
+ * Compares the {@link Analysis.Worklist} with the previous worklist, a
+ * {@link PriorityQueue} with a linear-time {@code contains}, on the
+ * control flow graph of a large state machine: a loop around a chain of
+ * {@code states} tests, each of which branches off to the body of a state.
+ * All bodies come after all tests in depth-first order, so the worklist
+ * holds up to {@code states} blocks at a time.
+ *
+ * Both benchmarks run the fix-point iteration of {@link Analysis}, in
+ * which every block is processed a fixed number of times.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class WorklistBenchmark {
+
+    /** How often the iteration processes each block. */
+    private static final int VISITS = 3;
+
+    @Param({"100", "1000", "5000"})
+    public int states;
+
+    private ControlFlowGraph cfg;
+
+    /** The depth-first order used by {@link PriorityQueueWorklist}. */
+    private IdentityHashMap<Block, Integer> depthFirstOrder;
+
+    @Setup
+    public void setup() {
+        cfg = createStateMachine(states);
+        // Compute the block orders of both worklists outside of the measurement.
+        cfg.getNumberOfBlocks();
+        depthFirstOrder = new IdentityHashMap<>();
+        int count = 1;
+        for (Block b : cfg.getDepthFirstOrderedBlocks()) {
+            depthFirstOrder.put(b, count++);
+        }
+    }
+
+    @Benchmark
+    public int bitSetWorklist() {
+        final Analysis.Worklist worklist = new Analysis.Worklist(cfg);
+        return iterate(new WorklistOps() {
+            @Override
+            public void add(Block b) {
+                worklist.add(b);
+            }
+
+            @Override
+            public Block poll() {
+                return worklist.poll();
+            }
+        });
+    }
+
+    @Benchmark
+    public int priorityQueueWorklist() {
+        final PriorityQueueWorklist worklist = new PriorityQueueWorklist(depthFirstOrder);
+        return iterate(new WorklistOps() {
+            @Override
+            public void add(Block b) {
+                if (!worklist.contains(b)) {
+                    worklist.add(b);
+                }
+            }
+
+            @Override
+            public Block poll() {
+                return worklist.poll();
+            }
+        });
+    }
+
+    private interface WorklistOps {
+        void add(Block b);
+        Block poll();
+    }
+
+    /**
+     * Runs a fix-point iteration that processes every block
+     * {@link #VISITS} times, and returns the number of processed blocks.
+     */
+    private int iterate(WorklistOps worklist) {
+        IdentityHashMap<Block, Integer> visits = new IdentityHashMap<>();
+        int processed = 0;
+        worklist.add(cfg.getEntryBlock());
+        Block b;
+        while ((b = worklist.poll()) != null) {
+            processed++;
+            Integer count = visits.get(b);
+            int newCount = count == null ? 1 : count + 1;
+            visits.put(b, newCount);
+            if (newCount > VISITS) {
+                continue;
+            }
+            if (b.getType() == BlockType.CONDITIONAL_BLOCK) {
+                ConditionalBlock cb = (ConditionalBlock) b;
+                worklist.add(cb.getThenSuccessor());
+                worklist.add(cb.getElseSuccessor());
+            } else {
+                Block succ = ((SingleSuccessorBlock) b).getSuccessor();
+                if (succ != null) {
+                    worklist.add(succ);
+                }
+            }
+        }
+        return processed;
+    }
+
+    /**
+     * Creates the graph of a loop around {@code states} tests: the then
+     * successor of each test is the next test, the else successor is the
+     * body of a state, which jumps back to the loop header.
+     */
+    private static ControlFlowGraph createStateMachine(int states) {
+        SpecialBlockImpl entry = new SpecialBlockImpl(SpecialBlockType.ENTRY);
+        SpecialBlockImpl exit = new SpecialBlockImpl(SpecialBlockType.EXIT);
+        SpecialBlockImpl exceptionalExit = new SpecialBlockImpl(SpecialBlockType.EXCEPTIONAL_EXIT);
+
+        RegularBlockImpl header = new RegularBlockImpl();
+        entry.setSuccessor(header);
+
+        ConditionalBlockImpl loopCondition = new ConditionalBlockImpl();
+        header.setSuccessor(loopCondition);
+        loopCondition.setElseSuccessor(exit);
+
+        List<ConditionalBlockImpl> tests = new ArrayList<>();
+        for (int i = 0; i < states; i++) {
+            ConditionalBlockImpl test = new ConditionalBlockImpl();
+            RegularBlockImpl body = new RegularBlockImpl();
+            test.setElseSuccessor(body);
+            body.setSuccessor(header);
+            if (i == 0) {
+                loopCondition.setThenSuccessor(test);
+            } else {
+                tests.get(i - 1).setThenSuccessor(test);
+            }
+            tests.add(test);
+        }
+        tests.get(states - 1).setThenSuccessor(header);
+
+        return new ControlFlowGraph(entry, exit, exceptionalExit, null,
+                new IdentityHashMap<Tree, Node>(), new IdentityHashMap<Tree, Node>(),
+                new ArrayList<ReturnNode>());
+    }
+
+    /** The worklist that {@link Analysis} used before dense block ids. */
+    private static class PriorityQueueWorklist {
+
+        private final PriorityQueue<Block> queue;
+
+        PriorityQueueWorklist(final IdentityHashMap<Block, Integer> depthFirstOrder) {
+            queue = new PriorityQueue<Block>(11, new Comparator<Block>() {
+                @Override
+                public int compare(Block b1, Block b2) {
+                    return depthFirstOrder.get(b1) - depthFirstOrder.get(b2);
+                }
+            });
+        }
+
+        boolean contains(Block block) {
+            return queue.contains(block);
+        }
+
+        void add(Block block) {
+            queue.add(block);
+        }
+
+        Block poll() {
+            return queue.poll();
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package org.checkerframework.dataflow.cfg;
+
+import org.checkerframework.benchmarks.CheckedSource;
+import org.checkerframework.dataflow.cfg.UnderlyingAST.CFGMethod;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.processing.ProcessingEnvironment;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.sun.source.tree.CompilationUnitTree;
+
+/**
+ * Measures {@link CFGBuilder#run(CompilationUnitTree, ProcessingEnvironment, UnderlyingAST)}
+ * on a synthetic method that consists of {@code blocks} copies of a block
+ * of code with conditionals, loops, exception handling, a switch, string
+ * concatenation, and compound assignments.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CFGBuilderBenchmark {
+
+    @Param({"10", "100", "500"})
+    public int blocks;
+
+    private CompilationUnitTree root;
+    private ProcessingEnvironment env;
+    private UnderlyingAST ast;
+
+    @Setup
+    public void setup() {
+        CheckedSource source = CheckedSource.attribute("Synthetic", createSource(blocks));
+        root = source.getCompilationUnit();
+        env = source.getProcessingEnvironment();
+        ast = new CFGMethod(source.getMethod("method"), source.getClassTree());
+    }
+
+    @Benchmark
+    public ControlFlowGraph run() {
+        return new CFGBuilder(false, false).run(root, env, ast);
+    }
+
+    private static String createSource(int blocks) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("class Synthetic {\n");
+        sb.append("    int field;\n");
+        sb.append("    String text = \"\";\n");
+        sb.append("    int method(int[] values, java.util.List<String> names) {\n");
+        sb.append("        int sum = 0;\n");
+        for (int i = 0; i < blocks; i++) {
+            sb.append("        if (values[" + i + " % values.length] > " + i + ") {\n");
+            sb.append("            sum += values[0] * " + i + ";\n");
+            sb.append("        } else {\n");
+            sb.append("            sum -= " + i + ";\n");
+            sb.append("        }\n");
+            sb.append("        for (int j = 0; j < values.length; j++) {\n");
+            sb.append("            if (j == " + i + ") continue;\n");
+            sb.append("            sum ^= values[j];\n");
+            sb.append("        }\n");
+            sb.append("        try {\n");
+            sb.append("            text = text + names.get(" + i + ") + sum;\n");
+            sb.append("        } catch (IndexOutOfBoundsException e) {\n");
+            sb.append("            field++;\n");
+            sb.append("        } finally {\n");
+            sb.append("            sum++;\n");
+            sb.append("        }\n");
+            sb.append("        switch (sum & 3) {\n");
+            sb.append("            case 0: sum += 1; break;\n");
+            sb.append("            case 1: sum <<= 1; break;\n");
+            sb.append("            default: sum = -sum;\n");
+            sb.append("        }\n");
+            sb.append("        while (sum > 1000 && field < " + i + ") {\n");
+            sb.append("            sum /= 2;\n");
+            sb.append("            field++;\n");
+            sb.append("        }\n");
+            sb.append("        sum = sum > 0 ? sum : field;\n");
+        }
+        sb.append("        return sum;\n");
+        sb.append("    }\n");
+        sb.append("}\n");
+        return sb.toString();
+    }
+}
@@ -0,0 +1,57 @@
+package org.checkerframework.framework.flow;
+
+import org.checkerframework.benchmarks.CheckedSource;
+import org.checkerframework.benchmarks.NullnessSample;
+import org.checkerframework.checker.nullness.NullnessAnnotatedTypeFactory;
+import org.checkerframework.checker.nullness.NullnessStore;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.sun.source.tree.ReturnTree;
+
+/**
+ * Measures {@link CFAbstractStore#leastUpperBound} on the stores of the
+ * Nullness Checker before the two non-null returns of
+ * {@code NullnessSample.branches}, which refine different local variables,
+ * fields, and pure method calls, and on a store and its copy.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class CFAbstractStoreBenchmark {
+
+    private NullnessStore thenStore;
+    private NullnessStore elseStore;
+    private NullnessStore thenStoreCopy;
+
+    @Setup
+    public void setup() {
+        CheckedSource sample = NullnessSample.check();
+        NullnessAnnotatedTypeFactory factory =
+                (NullnessAnnotatedTypeFactory) NullnessSample.getTypeFactory(sample);
+        List<ReturnTree> returns = CheckedSource.getReturns(sample.getMethod("branches"));
+        // returns alternate between "return null" and the non-null returns.
+        thenStore = factory.getStoreBefore(returns.get(1));
+        elseStore = factory.getStoreBefore(returns.get(3));
+        thenStoreCopy = thenStore.copy();
+    }
+
+    @Benchmark
+    public NullnessStore differentStores() {
+        return thenStore.leastUpperBound(elseStore);
+    }
+
+    @Benchmark
+    public NullnessStore copiedStore() {
+        return thenStore.leastUpperBound(thenStoreCopy);
+    }
+}
@@ -0,0 +1,57 @@
+package org.checkerframework.framework.type;
+
+import org.checkerframework.benchmarks.CheckedSource;
+import org.checkerframework.benchmarks.NullnessSample;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures {@link AnnotatedTypeMirror#deepCopy()} on the return types of
+ * the methods of {@link NullnessSample}: a simple declared type, generic
+ * types with wildcards and nesting, an array, and type variables.
+ * Also measures the lazy copies that the caches of
+ * {@link AnnotatedTypeFactory} return, when they are used only at the
+ * top level and when all their components are accessed.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class AnnotatedTypeMirrorBenchmark {
+
+    /** The method of {@link NullnessSample} whose return type is copied. */
+    @Param({"nonNullString", "arraySeq", "nested", "deep", "array", "typeVariable", "recursiveBound"})
+    public String method;
+
+    private AnnotatedTypeMirror type;
+
+    @Setup
+    public void setup() {
+        CheckedSource sample = NullnessSample.check();
+        type = NullnessSample.getReturnType(sample, method);
+    }
+
+    @Benchmark
+    public AnnotatedTypeMirror deepCopy() {
+        return type.deepCopy();
+    }
+
+    @Benchmark
+    public AnnotatedTypeMirror lazyDeepCopy() {
+        return type.lazyDeepCopy();
+    }
+
+    /** Copies the type lazily and then copies all of its components, by hashing it. */
+    @Benchmark
+    public int lazyDeepCopyAndTraverse() {
+        return type.lazyDeepCopy().hashCode();
+    }
+}
@@ -0,0 +1,52 @@
+package org.checkerframework.framework.type;
+
+import org.checkerframework.benchmarks.CheckedSource;
+import org.checkerframework.benchmarks.NullnessSample;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures {@link DefaultTypeHierarchy#isSubtype(AnnotatedTypeMirror, AnnotatedTypeMirror)}
+ * on pairs of return types of the methods of {@link NullnessSample}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class DefaultTypeHierarchyBenchmark {
+
+    /**
+     * The methods of {@link NullnessSample} whose return types are
+     * compared, as "subtype:supertype".
+     */
+    @Param({"nonNullString:nullableString", "nullableString:nonNullString",
+            "key:nonNullString", "arraySeq:wildcardSeq", "nested:nested",
+            "deep:deep", "array:array", "recursiveBound:recursiveBound"})
+    public String pair;
+
+    private TypeHierarchy typeHierarchy;
+    private AnnotatedTypeMirror subtype;
+    private AnnotatedTypeMirror supertype;
+
+    @Setup
+    public void setup() {
+        CheckedSource sample = NullnessSample.check();
+        typeHierarchy = NullnessSample.getTypeFactory(sample).getTypeHierarchy();
+        String[] methods = pair.split(":");
+        subtype = NullnessSample.getReturnType(sample, methods[0]);
+        supertype = NullnessSample.getReturnType(sample, methods[1]);
+    }
+
+    @Benchmark
+    public boolean isSubtype() {
+        return typeHierarchy.isSubtype(subtype, supertype);
+    }
+}
@@ -0,0 +1,72 @@
+package org.checkerframework.framework.type;
+
+import org.checkerframework.benchmarks.CheckedSource;
+import org.checkerframework.benchmarks.NullnessSample;
+import org.checkerframework.javacutil.AnnotationUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.lang.model.element.AnnotationMirror;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures {@link QualifierHierarchy#isSubtype(AnnotationMirror, AnnotationMirror)}
+ * and {@link QualifierHierarchy#leastUpperBound(AnnotationMirror, AnnotationMirror)}
+ * on all pairs of qualifiers of the same hierarchy of the Nullness Checker,
+ * which has a nullness and an initialization hierarchy.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class QualifierHierarchyBenchmark {
+
+    private QualifierHierarchy qualifierHierarchy;
+
+    /** The first and second qualifiers of all pairs. */
+    private AnnotationMirror[] firsts;
+    private AnnotationMirror[] seconds;
+
+    @Setup
+    public void setup() {
+        CheckedSource sample = NullnessSample.check();
+        qualifierHierarchy = NullnessSample.getTypeFactory(sample).getQualifierHierarchy();
+        List<AnnotationMirror> qualifiers = new ArrayList<>(qualifierHierarchy.getTypeQualifiers());
+        List<AnnotationMirror> firstList = new ArrayList<>();
+        List<AnnotationMirror> secondList = new ArrayList<>();
+        for (AnnotationMirror first : qualifiers) {
+            for (AnnotationMirror second : qualifiers) {
+                if (AnnotationUtils.areSame(qualifierHierarchy.getTopAnnotation(first),
+                        qualifierHierarchy.getTopAnnotation(second))) {
+                    firstList.add(first);
+                    secondList.add(second);
+                }
+            }
+        }
+        firsts = firstList.toArray(new AnnotationMirror[firstList.size()]);
+        seconds = secondList.toArray(new AnnotationMirror[secondList.size()]);
+    }
+
+    @Benchmark
+    public void isSubtype(Blackhole blackhole) {
+        for (int i = 0; i < firsts.length; i++) {
+            blackhole.consume(qualifierHierarchy.isSubtype(firsts[i], seconds[i]));
+        }
+    }
+
+    @Benchmark
+    public void leastUpperBound(Blackhole blackhole) {
+        for (int i = 0; i < firsts.length; i++) {
+            blackhole.consume(qualifierHierarchy.leastUpperBound(firsts[i], seconds[i]));
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package org.checkerframework.javacutil;
+
+import org.checkerframework.benchmarks.CheckedSource;
+import org.checkerframework.benchmarks.NullnessSample;
+import org.checkerframework.checker.nullness.qual.KeyFor;
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.checkerframework.framework.util.AnnotationBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.AnnotationMirror;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures {@link AnnotationUtils#areSame(AnnotationMirror, AnnotationMirror)}
+ * on distinct but equal annotations, with and without element values, and
+ * on annotations that differ in their type or their values.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class AnnotationUtilsBenchmark {
+
+    private AnnotationMirror nonNull1;
+    private AnnotationMirror nonNull2;
+    private AnnotationMirror nullable;
+    private AnnotationMirror keyForMap1;
+    private AnnotationMirror keyForMap2;
+    private AnnotationMirror keyForOther;
+
+    @Setup
+    public void setup() {
+        CheckedSource sample = NullnessSample.check();
+        ProcessingEnvironment env = sample.getProcessingEnvironment();
+        nonNull1 = new AnnotationBuilder(env, NonNull.class).build();
+        nonNull2 = new AnnotationBuilder(env, NonNull.class).build();
+        nullable = new AnnotationBuilder(env, Nullable.class).build();
+        keyForMap1 = keyFor(env, "map");
+        keyForMap2 = keyFor(env, "map");
+        keyForOther = keyFor(env, "other");
+    }
+
+    private static AnnotationMirror keyFor(ProcessingEnvironment env, String map) {
+        AnnotationBuilder builder = new AnnotationBuilder(env, KeyFor.class);
+        builder.setValue("value", new String[] {map});
+        return builder.build();
+    }
+
+    @Benchmark
+    public boolean sameWithoutValues() {
+        return AnnotationUtils.areSame(nonNull1, nonNull2);
+    }
+
+    @Benchmark
+    public boolean differentTypes() {
+        return AnnotationUtils.areSame(nonNull1, nullable);
+    }
+
+    @Benchmark
+    public boolean sameWithValues() {
+        return AnnotationUtils.areSame(keyForMap1, keyForMap2);
+    }
+
+    @Benchmark
+    public boolean differentValues() {
+        return AnnotationUtils.areSame(keyForMap1, keyForOther);
+    }
+}
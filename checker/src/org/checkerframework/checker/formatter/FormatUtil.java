@@ -4,11 +4,12 @@ import org.checkerframework.checker.formatter.qual.ConversionCategory;
 import org.checkerframework.checker.formatter.qual.ReturnsFormat;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.IllegalFormatConversionException;
 import java.util.IllegalFormatException;
-import java.util.Map;
+import java.util.Iterator;
 import java.util.MissingFormatArgumentException;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -37,6 +38,66 @@ public class FormatUtil {
         }
     }
 
+    /**
+     * Collects the categories of the conversions of a format string, in
+     * the order in which they appear, by the argument that they refer to.
+     */
+    private static class CategoryCollector {
+        private ConversionCategory[] categories = new ConversionCategory[4];
+        private int last = -1;        // index of last argument referenced
+        private int lasto = -1;       // last ordinary index
+        private int maxindex = -1;
+
+        /**
+         * Adds a conversion with the given index: -1 for a relative index,
+         * 0 for an ordinary index, or the explicit index.
+         */
+        void add(int index, ConversionCategory category) {
+            switch (index) {
+            case -1:  // relative index
+                break;
+            case 0:  // ordinary index
+                lasto++;
+                last = lasto;
+                break;
+            default:  // explicit index
+                last = index - 1;
+                break;
+            }
+            if (last < 0) {
+                return;
+            }
+            maxindex = Math.max(maxindex, last);
+            if (last >= categories.length) {
+                categories = Arrays.copyOf(categories, Math.max(last + 1, 2 * categories.length));
+            }
+            categories[last] = ConversionCategory.intersect(
+                    categories[last] == null ? ConversionCategory.UNUSED : categories[last],
+                    category);
+        }
+
+        ConversionCategory[] result() {
+            ConversionCategory[] res = Arrays.copyOf(categories, maxindex + 1);
+            for (int i = 0; i <= maxindex; ++i) {
+                if (res[i] == null) {
+                    res[i] = ConversionCategory.UNUSED;
+                }
+            }
+            return res;
+        }
+    }
+
+    /** The maximal number of format strings in {@link #categoriesCache}. */
+    private static final int MAX_CACHED_FORMATS = 1000;
+
+    /**
+     * The conversion categories of valid format strings.  The cache is
+     * shared by all threads; when it is full, an arbitrary entry is evicted.
+     * The arrays must not be modified.
+     */
+    private static final ConcurrentHashMap<String, ConversionCategory[]> categoriesCache =
+            new ConcurrentHashMap<String, ConversionCategory[]>();
+
     /**
      * Returns if the format string is satisfiable, and if the
      * format's parameters match the passed {@link ConversionCategory}s.
@@ -46,7 +107,7 @@ public class FormatUtil {
      */
     @ReturnsFormat
     public static String asFormat(String format, ConversionCategory... cc) throws IllegalFormatException {
-        ConversionCategory[] fcc = formatParameterCategories(format);
+        ConversionCategory[] fcc = categories(format);
         if (fcc.length != cc.length) {
             throw new ExcessiveOrMissingFormatArgumentException(cc.length, fcc.length);
         }
@@ -74,39 +135,109 @@ public class FormatUtil {
      * Throws an exception if the format is not syntactically valid.
      */
     public static ConversionCategory[] formatParameterCategories(String format) throws IllegalFormatException {
-        tryFormatSatisfiability(format);
+        return categories(format).clone();
+    }
 
-        int last = -1;        // index of last argument referenced
-        int lasto = -1;       // last ordinary index
-        int maxindex = -1;
+    /**
+     * Like {@link #formatParameterCategories}, but the result may be
+     * shared and must not be modified.
+     */
+    private static ConversionCategory[] categories(String format) throws IllegalFormatException {
+        ConversionCategory[] res = categoriesCache.get(format);
+        if (res != null) {
+            return res;
+        }
+        res = parseSimple(format);
+        if (res == null) {
+            res = parseGeneral(format);
+        }
+        // Lookups do not lock; insertions do, so that the cache never
+        // exceeds its size.
+        synchronized (categoriesCache) {
+            if (!categoriesCache.containsKey(format)) {
+                Iterator<String> formats = categoriesCache.keySet().iterator();
+                while (categoriesCache.size() >= MAX_CACHED_FORMATS) {
+                    formats.next();
+                    formats.remove();
+                }
+                categoriesCache.put(format, res);
+            }
+        }
+        return res;
+    }
 
-        Conversion[] cs = parse(format);
-        Map<Integer,ConversionCategory> conv = new HashMap<Integer,ConversionCategory>();
+    /** Returns the number of format strings in the cache, for tests. */
+    static int cacheSize() {
+        return categoriesCache.size();
+    }
 
-        for (Conversion c : cs) {
-            int index = c.index();
-            switch (index) {
-            case -1:  // relative index
-                break;
-            case 0:  // ordinary index
-                lasto++;
-                last = lasto;
+    /**
+     * Returns the categories of a format string in which every format
+     * specifier is simple: an optional explicit index and a conversion
+     * without flags, width, precision or date/time prefix, such as "%s" or
+     * "%2$d".  Such a format string is always valid, so it is validated and
+     * categorized in a single pass, without calling {@link String#format}.
+     *
+     * @return the categories, or null if the format string has another
+     *         kind of format specifier or is invalid
+     */
+    static ConversionCategory /*@Nullable*/ [] parseSimple(String format) {
+        CategoryCollector collector = new CategoryCollector();
+        int length = format.length();
+        int i = format.indexOf('%');
+        while (i >= 0) {
+            i++;
+            int index = 0;
+            int digits = 0;
+            while (i < length && format.charAt(i) >= '0' && format.charAt(i) <= '9') {
+                index = 10 * index + (format.charAt(i) - '0');
+                digits++;
+                i++;
+            }
+            if (digits > 0) {
+                // Digits are a width unless they are an index, and a
+                // long index may overflow.
+                if (i == length || format.charAt(i) != '$' || digits > 9) {
+                    return null;
+                }
+                i++;
+            }
+            if (i == length) {
+                return null;
+            }
+            char c = format.charAt(i);
+            switch (c) {
+            case '%':
+            case 'n':
                 break;
-            default:  // explicit index
-                last = index - 1;
+            case 'b': case 'B': case 'h': case 'H': case 's': case 'S':
+            case 'c': case 'C':
+            case 'd': case 'o': case 'x': case 'X':
+            case 'e': case 'E': case 'f': case 'g': case 'G': case 'a': case 'A':
+                collector.add(index, ConversionCategory.fromConversionChar(c));
                 break;
+            default:
+                return null;
             }
-            maxindex = Math.max(maxindex, last);
-            conv.put(last, ConversionCategory.intersect(
-                    conv.containsKey(last) ? conv.get(last) : ConversionCategory.UNUSED,
-                    c.category()));
+            i = format.indexOf('%', i + 1);
         }
+        return collector.result();
+    }
 
-        ConversionCategory[] res = new ConversionCategory[maxindex+1];
-        for (int i = 0; i <= maxindex ;++i) {
-            res[i] = conv.containsKey(i)?conv.get(i):ConversionCategory.UNUSED;
+    /**
+     * Returns the categories of any format string: validates it with
+     * {@link String#format} and collects the format specifiers that
+     * {@link #fsPattern} finds.
+     *
+     * Throws an exception if the format is not syntactically valid.
+     */
+    static ConversionCategory[] parseGeneral(String format) throws IllegalFormatException {
+        tryFormatSatisfiability(format);
+        CategoryCollector collector = new CategoryCollector();
+        for (Conversion c : parse(format)) {
+            collector.add(c.index(), c.category());
         }
-        return res;
+        return collector.result();
     }
 
     // %[argument_index$][flags][width][.precision][t]conversion
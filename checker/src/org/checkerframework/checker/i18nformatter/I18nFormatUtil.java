@@ -8,9 +8,11 @@ import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.IllegalFormatException;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.checkerframework.checker.i18nformatter.qual.I18nChecksFormat;
 import org.checkerframework.checker.i18nformatter.qual.I18nConversionCategory;
@@ -26,6 +28,20 @@ import org.checkerframework.checker.i18nformatter.qual.I18nValidFormat;
  */
 public class I18nFormatUtil {
 
+    /** The maximal number of format strings in {@link #categoriesCache}. */
+    private static final int MAX_CACHED_FORMATS = 1000;
+
+    /**
+     * The conversion categories of valid format strings.  The cache is
+     * shared by all threads; when it is full, an arbitrary entry is evicted.
+     * The arrays must not be modified.
+     *
+     * The key does not include the locale: the locale only affects how
+     * subformats format their arguments, not which patterns are valid.
+     */
+    private static final ConcurrentHashMap<String, I18nConversionCategory[]> categoriesCache =
+            new ConcurrentHashMap<String, I18nConversionCategory[]>();
+
     /**
      * Throws an exception if the format is not syntactically valid.
      */
@@ -38,10 +54,51 @@ public class I18nFormatUtil {
      * the format string.
      *
      * Throws an exception if the format is not syntactically valid.
+     *
+     * This method can be called from several threads at the same time.
+     * The returned array is not shared.
      */
     public static I18nConversionCategory[] formatParameterCategories(String format) throws IllegalFormatException {
+        return categories(format).clone();
+    }
+
+    /**
+     * Like {@link #formatParameterCategories}, but the result may be
+     * shared and must not be modified.
+     */
+    private static I18nConversionCategory[] categories(String format) throws IllegalFormatException {
+        I18nConversionCategory[] res = categoriesCache.get(format);
+        if (res == null) {
+            res = parseCategories(format);
+            // Lookups do not lock; insertions do, so that the cache never
+            // exceeds its size.
+            synchronized (categoriesCache) {
+                if (!categoriesCache.containsKey(format)) {
+                    Iterator<String> formats = categoriesCache.keySet().iterator();
+                    while (categoriesCache.size() >= MAX_CACHED_FORMATS) {
+                        formats.next();
+                        formats.remove();
+                    }
+                    categoriesCache.put(format, res);
+                }
+            }
+        }
+        return res;
+    }
+
+    /** Returns the number of format strings in the cache, for tests. */
+    static int cacheSize() {
+        return categoriesCache.size();
+    }
+
+    /**
+     * Returns the categories of a format string, without the cache.
+     *
+     * Throws an exception if the format is not syntactically valid.
+     */
+    static I18nConversionCategory[] parseCategories(String format) throws IllegalFormatException {
         tryFormatSatisfiability(format);
-        I18nConversion[] cs = MessageFormatParser.parse(format);
+        I18nConversion[] cs = new MessageFormatParser(Locale.getDefault(Locale.Category.FORMAT)).parse(format);
 
         int max_index = -1;
         Map<Integer, I18nConversionCategory> conv = new HashMap<Integer, I18nConversionCategory>();
@@ -68,7 +125,7 @@ public class I18nFormatUtil {
     // TODO introduce more such functions, see RegexUtil for examples
     @I18nChecksFormat
     public static boolean hasFormat(String format, I18nConversionCategory... cc) {
-        I18nConversionCategory[] fcc = formatParameterCategories(format);
+        I18nConversionCategory[] fcc = categories(format);
         if (fcc.length != cc.length) {
             return false;
         }
@@ -84,7 +141,7 @@ public class I18nFormatUtil {
     @I18nValidFormat
     public static boolean isFormat(String format) {
         try {
-            formatParameterCategories(format);
+            categories(format);
         } catch (Exception e) {
             return false;
         }
@@ -92,8 +149,8 @@ public class I18nFormatUtil {
     }
 
     private static class I18nConversion {
-        public int index;
-        public I18nConversionCategory category;
+        public final int index;
+        public final I18nConversionCategory category;
 
         public I18nConversion(int index, I18nConversionCategory category) {
             this.index = index;
@@ -106,21 +163,26 @@ public class I18nFormatUtil {
         }
     }
 
+    /**
+     * A parser for the format strings of {@link MessageFormat}, adapted from
+     * its applyPattern method.  A parser keeps the state of a single parse,
+     * so each parse uses a new parser.
+     */
     private static class MessageFormatParser {
 
-        public static int maxOffset;
+        private int maxOffset;
 
         /**
          * The locale to use for formatting numbers and dates.
          *
          */
-        private static Locale locale;
+        private final Locale locale;
 
         /**
          * An array of formatters, which are used to format the arguments.
          *
          */
-        private static List<I18nConversionCategory> categories;
+        private final List<I18nConversionCategory> categories = new ArrayList<I18nConversionCategory>();
 
         /**
          * The argument numbers corresponding to each formatter. (The formatters
@@ -128,12 +190,16 @@ public class I18nFormatUtil {
          * in which the arguments are specified.)
          *
          */
-        private static List<Integer> argumentIndices;
+        private final List<Integer> argumentIndices = new ArrayList<Integer>();
 
         /**
          * The number of subformats
          */
-        private static int numFormat;
+        private int numFormat;
+
+        MessageFormatParser(Locale locale) {
+            this.locale = locale;
+        }
 
         // Indices for segments
         private static final int SEG_RAW = 0;
@@ -161,27 +227,24 @@ public class I18nFormatUtil {
 
         private static final String[] DATE_TIME_MODIFIER_KEYWORDS = { "", "short", "medium", "long", "full" };
 
-        public static I18nConversion[] parse(String pattern) {
-            MessageFormatParser.categories = new ArrayList<I18nConversionCategory>();
-            MessageFormatParser.argumentIndices = new ArrayList<Integer>();
-            MessageFormatParser.locale = Locale.getDefault(Locale.Category.FORMAT);
+        I18nConversion[] parse(String pattern) {
             applyPattern(pattern);
 
-            I18nConversion[] ret = new I18nConversion[MessageFormatParser.numFormat];
-            for (int i = 0; i < MessageFormatParser.numFormat; i++) {
+            I18nConversion[] ret = new I18nConversion[numFormat];
+            for (int i = 0; i < numFormat; i++) {
                 ret[i] = new I18nConversion(argumentIndices.get(i), categories.get(i));
             }
             return ret;
         }
 
-        private static void applyPattern(String pattern) {
+        private void applyPattern(String pattern) {
             StringBuilder[] segments = new StringBuilder[4];
             // Allocate only segments[SEG_RAW] here. The rest are
             // allocated on demand.
             segments[SEG_RAW] = new StringBuilder();
 
             int part = SEG_RAW;
-            MessageFormatParser.numFormat = 0;
+            numFormat = 0;
             boolean inQuote = false;
             int braceStack = 0;
             maxOffset = -1;
@@ -261,7 +324,7 @@ public class I18nFormatUtil {
             }
         }
 
-        private static void makeFormat(int position, int offsetNumber, StringBuilder[] textSegments) {
+        private void makeFormat(int position, int offsetNumber, StringBuilder[] textSegments) {
             String[] segments = new String[textSegments.length];
             for (int i = 0; i < textSegments.length; i++) {
                 StringBuilder oneseg = textSegments[i];
@@ -4,6 +4,8 @@ import org.checkerframework.checker.regex.qual.Regex;
 import org.checkerframework.framework.qual.EnsuresQualifierIf;
 import org.checkerframework.framework.qual.EnsuresQualifiersIf;
 
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
 
@@ -140,10 +142,107 @@ public class RegexUtil {
     }
   }
 
+  /**
+   * The result of compiling a string: either its pattern and group count,
+   * or the exception that shows it is not a regex.
+   */
+  private static final class CompiledRegex {
+    final /*@Nullable*/ Pattern pattern;
+    final int groups;
+    final /*@Nullable*/ PatternSyntaxException error;
+
+    /*>>>
+    @SuppressWarnings("regex")    // RegexUtil
+    */
+    CompiledRegex(String s) {
+      Pattern p = null;
+      PatternSyntaxException e = null;
+      try {
+        p = Pattern.compile(s);
+      } catch (PatternSyntaxException pse) {
+        e = pse;
+      }
+      this.pattern = p;
+      this.groups = (p == null) ? -1 : getGroupCount(p);
+      this.error = e;
+    }
+  }
+
+  /**
+   * The compiled strings, if the cache is enabled; see
+   * {@link #setCacheSize}.
+   */
+  private static final ConcurrentHashMap<String, CompiledRegex> cache =
+      new ConcurrentHashMap<String, CompiledRegex>();
+
+  /** The maximal number of entries of {@link #cache}; 0 disables it. */
+  private static volatile int maxCacheSize = 0;
+
   private RegexUtil() {
     throw new AssertionError("Class RegexUtil shouldn't be instantiated");
   }
 
+  /**
+   * Sets the maximal number of strings whose compiled patterns are cached,
+   * and clears the cache.  The cache is disabled by default, and by a size
+   * of 0.
+   * <p>
+   *
+   * With the cache, the methods of this class compile each string only
+   * once, as long as it is in the cache.  This helps programs that
+   * validate the same strings over and over, for example regular
+   * expressions supplied in requests.  When the cache is full, an
+   * arbitrary entry is evicted.  The cache can be used by several threads
+   * at the same time.
+   * @param size the maximal number of cached strings, at least 0
+   */
+  public static void setCacheSize(int size) {
+    if (size < 0) {
+      throw new IllegalArgumentException("Negative cache size: " + size);
+    }
+    synchronized (cache) {
+      maxCacheSize = size;
+      cache.clear();
+    }
+  }
+
+  /**
+   * Returns the number of strings in the cache, for tests.
+   * @return the number of cached strings
+   */
+  static int cacheSize() {
+    return cache.size();
+  }
+
+  /**
+   * Compiles s, or returns the cached result of compiling it.
+   * @param s string to compile
+   * @return the pattern of s, or the reason why s is not a regex
+   */
+  private static CompiledRegex compile(String s) {
+    if (maxCacheSize == 0) {
+      return new CompiledRegex(s);
+    }
+    CompiledRegex result = cache.get(s);
+    if (result == null) {
+      result = new CompiledRegex(s);
+      // Lookups do not lock; insertions do, so that the cache never
+      // exceeds its size.
+      synchronized (cache) {
+        int max = maxCacheSize;
+        if (max != 0 && !cache.containsKey(s)) {
+          Iterator<String> keys = cache.keySet().iterator();
+          while (cache.size() >= max) {
+            keys.next();
+            keys.remove();
+          }
+          cache.put(s, result);
+        }
+      }
+    }
+    return result;
+  }
+
   /**
    * Returns true if the argument is a syntactically valid regular
    * expression.
@@ -171,13 +270,8 @@ public class RegexUtil {
   // No @EnsuresQualifierIf annotation because this method is special-cased
   // in RegexTransfer.
   public static boolean isRegex(String s, int groups) {
-    Pattern p;
-    try {
-      p = Pattern.compile(s);
-    } catch (PatternSyntaxException e) {
-      return false;
-    }
-    return getGroupCount(p) >= groups;
+    CompiledRegex regex = compile(s);
+    return regex.pattern != null && regex.groups >= groups;
   }
 
   /**
@@ -224,14 +318,12 @@ public class RegexUtil {
   */
   /*@SideEffectFree*/
   public static /*@Nullable*/ String regexError(String s, int groups) {
-    try {
-      Pattern p = Pattern.compile(s);
-      int actualGroups = getGroupCount(p);
-      if (actualGroups < groups) {
-        return regexErrorMessage(s, groups, actualGroups);
-      }
-    } catch (PatternSyntaxException e) {
-      return e.getMessage();
+    CompiledRegex regex = compile(s);
+    if (regex.error != null) {
+      return regex.error.getMessage();
+    }
+    if (regex.groups < groups) {
+      return regexErrorMessage(s, groups, regex.groups);
     }
     return null;
   }
@@ -264,14 +356,14 @@ public class RegexUtil {
   */
   /*@SideEffectFree*/
   public static /*@Nullable*/ PatternSyntaxException regexException(String s, int groups) {
-    try {
-      Pattern p = Pattern.compile(s);
-      int actualGroups = getGroupCount(p);
-      if (actualGroups < groups) {
-        return new PatternSyntaxException(regexErrorMessage(s, groups, actualGroups), s, -1);
-      }
-    } catch (PatternSyntaxException pse) {
-      return pse;
+    CompiledRegex regex = compile(s);
+    if (regex.error != null) {
+      // A new exception, as the cached one may be shared between threads.
+      PatternSyntaxException pse = regex.error;
+      return new PatternSyntaxException(pse.getDescription(), pse.getPattern(), pse.getIndex());
+    }
+    if (regex.groups < groups) {
+      return new PatternSyntaxException(regexErrorMessage(s, groups, regex.groups), s, -1);
     }
     return null;
   }
@@ -310,16 +402,56 @@ public class RegexUtil {
   // RegexAnnotatedTypeFactory.
   public static /*@Regex*/
   String asRegex(String s, int groups) {
-    try {
-      Pattern p = Pattern.compile(s);
-      int actualGroups = getGroupCount(p);
-      if (actualGroups < groups) {
-        throw new Error(regexErrorMessage(s, groups, actualGroups));
-      }
-      return s;
-    } catch (PatternSyntaxException e) {
-      throw new Error(e);
+    checkRegex(s, groups);
+    return s;
+  }
+
+  /**
+   * Returns the compiled pattern of the argument if it is a regex,
+   * otherwise throws an error.  If the cache is enabled (see
+   * {@link #setCacheSize}), the pattern compiled by an earlier call of a
+   * method of this class is returned, so that a string is not compiled
+   * again after it has been validated.
+   * @param s string to compile
+   * @return the compiled pattern of s
+   * @throws Error if argument is not a regex
+   */
+  /*@SideEffectFree*/
+  public static Pattern asPattern(String s) {
+    return asPattern(s, 0);
+  }
+
+  /**
+   * Returns the compiled pattern of the argument if it is a regex with at
+   * least the given number of groups, otherwise throws an error.
+   * @param s string to compile
+   * @param groups number of groups expected
+   * @return the compiled pattern of s
+   * @throws Error if argument is not a regex
+   * @see #asPattern(String)
+   */
+  /*@SideEffectFree*/
+  public static Pattern asPattern(String s, int groups) {
+    return checkRegex(s, groups);
+  }
+
+  /**
+   * Returns the compiled pattern of s if s is a regex with at least the
+   * given number of groups, otherwise throws an error.
+   * @param s string to compile
+   * @param groups number of groups expected
+   * @return the compiled pattern of s
+   * @throws Error if argument is not a regex
+   */
+  private static Pattern checkRegex(String s, int groups) {
+    CompiledRegex regex = compile(s);
+    if (regex.pattern == null) {
+      throw new Error(regex.error);
+    }
+    if (regex.groups < groups) {
+      throw new Error(regexErrorMessage(s, groups, regex.groups));
     }
+    return regex.pattern;
   }
 
   /**
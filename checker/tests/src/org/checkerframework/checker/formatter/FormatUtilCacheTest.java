@@ -0,0 +1,147 @@
+package org.checkerframework.checker.formatter;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.IllegalFormatException;
+
+import org.checkerframework.checker.formatter.qual.ConversionCategory;
+import org.junit.Test;
+
+import tests.util.Concurrently;
+
+/**
+ * Checks that the results of {@link FormatUtil} do not depend on whether
+ * the categories of a format string are cached, and that the one-pass
+ * parser for simple format strings agrees with {@link String#format} and
+ * the general parser.
+ */
+public class FormatUtilCacheTest {
+
+    private static final String[] FORMATS = {
+        "", "%s", "%d %s", "%2$s %1$d", "%<s", "%s %<d", "%n%%", "%-5d", "%.2f %tY",
+        "%", "%q", "%2$", "%-d", "%.2d", "%#s %<s", "100%", "%s%", "%5", "%tY",
+        "%S %C %B %H %X %E %G %A", "%o %x %e %g %a %h %b %c", "%1$s %1$d", "%1$d %1$f", "%2$s",
+        // An index of 0 is an ordinary index, for String.format, too.
+        "%0$s", "%s %0$d", "%0$s %1$d",
+        "%10$s", "%1$s %10$d", "%1000$s",
+        // Indexes of up to 9 digits are parsed in one pass; longer
+        // ones, which may overflow, by the general parser.
+        "%000000001$s", "%00000000001$s", "%2147483648$s", "%99999999999$s"
+    };
+
+    @Test
+    public void simpleParserAgreesWithGeneralParser() {
+        for (String format : FORMATS) {
+            ConversionCategory[] simple = FormatUtil.parseSimple(format);
+            String general = describeGeneral(format);
+            if (simple != null) {
+                assertEquals(format, general, describe(simple));
+            }
+            // Cached or not, the result is that of the general parser.
+            assertEquals(format, general, describe(format));
+            assertEquals(format, general, describe(format));
+        }
+    }
+
+    @Test
+    public void simpleParserHandlesIndexes() {
+        assertNotNull(FormatUtil.parseSimple("%0$s"));
+        assertNotNull(FormatUtil.parseSimple("%10$s"));
+        assertNotNull(FormatUtil.parseSimple("%000000001$s"));
+        assertNull(FormatUtil.parseSimple("%00000000001$s"));
+        assertNull(FormatUtil.parseSimple("%2147483648$s"));
+        // Width and flags are left to the general parser.
+        assertNull(FormatUtil.parseSimple("%5s"));
+        assertNull(FormatUtil.parseSimple("%-s"));
+        assertArrayEquals(new ConversionCategory[] {ConversionCategory.UNUSED, ConversionCategory.INT},
+                FormatUtil.parseSimple("%2$d"));
+    }
+
+    @Test
+    public void cachedResultIsNotShared() {
+        ConversionCategory[] first = FormatUtil.formatParameterCategories("%s %d");
+        first[0] = ConversionCategory.UNUSED;
+        assertArrayEquals(new ConversionCategory[] {ConversionCategory.GENERAL, ConversionCategory.INT},
+                FormatUtil.formatParameterCategories("%s %d"));
+    }
+
+    @Test
+    public void invalidFormatIsNotCached() {
+        int size = FormatUtil.cacheSize();
+        for (int i = 0; i < 2; i++) {
+            try {
+                FormatUtil.asFormat("%q");
+                fail("asFormat accepted an invalid format string");
+            } catch (IllegalFormatException e) {
+                // expected
+            }
+        }
+        assertEquals(size, FormatUtil.cacheSize());
+    }
+
+    @Test
+    public void cachedCategoriesAreChecked() {
+        FormatUtil.asFormat("%s %d", ConversionCategory.GENERAL, ConversionCategory.INT);
+        try {
+            FormatUtil.asFormat("%s %d", ConversionCategory.GENERAL, ConversionCategory.FLOAT);
+            fail("asFormat accepted the wrong categories");
+        } catch (FormatUtil.IllegalFormatConversionCategoryException e) {
+            // expected
+        }
+        try {
+            FormatUtil.asFormat("%s %d", ConversionCategory.GENERAL);
+            fail("asFormat accepted too few categories");
+        } catch (FormatUtil.ExcessiveOrMissingFormatArgumentException e) {
+            assertEquals(2, e.getFound());
+        }
+    }
+
+    @Test
+    public void concurrentCallsKeepTheCacheSize() throws Exception {
+        // The threads share the format strings, so that they insert and
+        // evict the same entries; every second one is not simple.
+        Concurrently.run(8, new Concurrently.Task() {
+            @Override
+            public void run(int thread) {
+                for (int i = 0; i < 4000; i++) {
+                    int n = (i + 7 * thread) % 3000;
+                    String format = (n % 2 == 0) ? "%s %d" + n : "%5s %d" + n;
+                    assertArrayEquals(format,
+                            new ConversionCategory[] {ConversionCategory.GENERAL, ConversionCategory.INT},
+                            FormatUtil.formatParameterCategories(format));
+                    assertTrue(FormatUtil.cacheSize() <= 1000);
+                }
+            }
+        });
+        assertEquals(1000, FormatUtil.cacheSize());
+    }
+
+    private static String describe(String format) {
+        try {
+            return describe(FormatUtil.formatParameterCategories(format));
+        } catch (RuntimeException e) {
+            return e.getClass().getName() + ": " + e.getMessage();
+        }
+    }
+
+    private static String describeGeneral(String format) {
+        try {
+            return describe(FormatUtil.parseGeneral(format));
+        } catch (RuntimeException e) {
+            return e.getClass().getName() + ": " + e.getMessage();
+        }
+    }
+
+    private static String describe(ConversionCategory[] categories) {
+        StringBuilder sb = new StringBuilder();
+        for (ConversionCategory category : categories) {
+            sb.append(category.name()).append(' ');
+        }
+        return sb.toString();
+    }
+}
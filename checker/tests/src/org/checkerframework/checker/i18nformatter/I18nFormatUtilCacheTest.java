@@ -0,0 +1,138 @@
+package org.checkerframework.checker.i18nformatter;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Locale;
+
+import org.checkerframework.checker.i18nformatter.qual.I18nConversionCategory;
+import org.junit.Test;
+
+import tests.util.Concurrently;
+
+/**
+ * Checks that the results of {@link I18nFormatUtil} do not depend on
+ * whether the categories of a format string are cached, nor on the locale
+ * in which they were cached.
+ */
+public class I18nFormatUtilCacheTest {
+
+    private static final String[] FORMATS = {
+        "", "{0}", "{0} {1}", "{1} {0,number}", "{0,date} {0,number}", "{0,time,short}",
+        "{0,choice,0#none|1#one}", "'{0}'", "{2}", "{", "{0,foo}", "{a}", "{0,number,#.#.#}",
+        "{0,number,#,##0.00}", "{0,date,yyyy-MM-dd}", "{0,number,integer} {0,number,percent}"
+    };
+
+    private static final Locale[] LOCALES = {
+        Locale.ROOT, Locale.GERMANY, Locale.JAPAN, Locale.forLanguageTag("ar-EG"),
+        Locale.forLanguageTag("th-TH-u-nu-thai")
+    };
+
+    @Test
+    public void cachedResultsEqualUncachedResults() {
+        for (String format : FORMATS) {
+            String uncached = describeUncached(format);
+            assertEquals(format, uncached, describe(format));
+            assertEquals(format, uncached, describe(format));
+        }
+    }
+
+    @Test
+    public void cachedResultsDoNotDependOnTheLocale() {
+        Locale locale = Locale.getDefault(Locale.Category.FORMAT);
+        try {
+            for (String format : FORMATS) {
+                Locale.setDefault(Locale.Category.FORMAT, Locale.ROOT);
+                String expected = describeUncached(format);
+                for (Locale other : LOCALES) {
+                    Locale.setDefault(Locale.Category.FORMAT, other);
+                    assertEquals(format + " in " + other, expected, describeUncached(format));
+                    assertEquals(format + " in " + other, expected, describe(format));
+                }
+            }
+        } finally {
+            Locale.setDefault(Locale.Category.FORMAT, locale);
+        }
+    }
+
+    @Test
+    public void cachedResultIsNotShared() {
+        I18nConversionCategory[] first = I18nFormatUtil.formatParameterCategories("{0} {1,number}");
+        first[0] = I18nConversionCategory.UNUSED;
+        assertArrayEquals(new I18nConversionCategory[] {I18nConversionCategory.GENERAL, I18nConversionCategory.NUMBER},
+                I18nFormatUtil.formatParameterCategories("{0} {1,number}"));
+    }
+
+    @Test
+    public void cachedCategoriesAreChecked() {
+        for (int i = 0; i < 2; i++) {
+            // A number is a valid argument for a date subformat, but not
+            // the other way round.
+            assertTrue(I18nFormatUtil.hasFormat("{0,date}", I18nConversionCategory.NUMBER));
+            assertFalse(I18nFormatUtil.hasFormat("{0,number}", I18nConversionCategory.DATE));
+            assertFalse(I18nFormatUtil.hasFormat("{1,number}", I18nConversionCategory.NUMBER));
+            assertTrue(I18nFormatUtil.hasFormat("{1,number}",
+                    I18nConversionCategory.UNUSED, I18nConversionCategory.NUMBER));
+        }
+    }
+
+    @Test
+    public void invalidFormatIsNotCached() {
+        int size = I18nFormatUtil.cacheSize();
+        for (int i = 0; i < 2; i++) {
+            assertFalse(I18nFormatUtil.isFormat("{0,foo}"));
+            try {
+                I18nFormatUtil.hasFormat("{0,foo}", I18nConversionCategory.GENERAL);
+                fail("hasFormat accepted an invalid format string");
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+        assertEquals(size, I18nFormatUtil.cacheSize());
+    }
+
+    @Test
+    public void concurrentCallsKeepTheCacheSize() throws Exception {
+        // The threads share the format strings, so that they insert and
+        // evict the same entries; every second one is not valid.
+        Concurrently.run(8, new Concurrently.Task() {
+            @Override
+            public void run(int thread) {
+                for (int i = 0; i < 4000; i++) {
+                    int n = (i + 7 * thread) % 3000;
+                    String format = (n % 2 == 0) ? "{0,number} " + n : "{0,number " + n;
+                    assertEquals(format, n % 2 == 0, I18nFormatUtil.isFormat(format));
+                    assertTrue(I18nFormatUtil.cacheSize() <= 1000);
+                }
+            }
+        });
+        assertEquals(1000, I18nFormatUtil.cacheSize());
+    }
+
+    private static String describe(String format) {
+        try {
+            return describe(I18nFormatUtil.formatParameterCategories(format));
+        } catch (IllegalArgumentException e) {
+            return e.getClass().getName() + ": " + e.getMessage();
+        }
+    }
+
+    private static String describeUncached(String format) {
+        try {
+            return describe(I18nFormatUtil.parseCategories(format));
+        } catch (IllegalArgumentException e) {
+            return e.getClass().getName() + ": " + e.getMessage();
+        }
+    }
+
+    private static String describe(I18nConversionCategory[] categories) {
+        StringBuilder sb = new StringBuilder();
+        for (I18nConversionCategory category : categories) {
+            sb.append(category.name()).append(' ');
+        }
+        return sb.toString();
+    }
+}
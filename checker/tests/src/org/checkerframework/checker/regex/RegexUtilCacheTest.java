@@ -0,0 +1,159 @@
+package org.checkerframework.checker.regex;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import org.junit.After;
+import org.junit.Test;
+
+import tests.util.Concurrently;
+
+/**
+ * Checks that the results of {@link RegexUtil} do not depend on whether
+ * its cache of compiled patterns is enabled, and that the cache keeps to
+ * the size set by {@link RegexUtil#setCacheSize}.
+ */
+public class RegexUtilCacheTest {
+
+    private static final String[] STRINGS = {
+        "", "a", "(a)", "(a)(b)", "(?:a)(b)", "\\(a\\)", "[a-z]+", "(", ")", "[", "a{", "*", "\\"
+    };
+
+    @After
+    public void disableCache() {
+        RegexUtil.setCacheSize(0);
+    }
+
+    @Test
+    public void cachedResultsEqualUncachedResults() {
+        for (String s : STRINGS) {
+            RegexUtil.setCacheSize(0);
+            String uncached = describe(s);
+            RegexUtil.setCacheSize(100);
+            assertEquals(s, uncached, describe(s));
+            // The second call uses the cache.
+            assertEquals(s, uncached, describe(s));
+        }
+    }
+
+    @Test
+    public void disabledCacheIsEmpty() {
+        RegexUtil.setCacheSize(0);
+        assertTrue(RegexUtil.isRegex("(a)"));
+        assertFalse(RegexUtil.isRegex("("));
+        assertEquals(0, RegexUtil.cacheSize());
+        assertNotSame(RegexUtil.asPattern("(a)"), RegexUtil.asPattern("(a)"));
+    }
+
+    @Test
+    public void setCacheSizeClearsTheCache() {
+        RegexUtil.setCacheSize(100);
+        RegexUtil.isRegex("a");
+        RegexUtil.isRegex("(");
+        assertEquals(2, RegexUtil.cacheSize());
+        RegexUtil.setCacheSize(100);
+        assertEquals(0, RegexUtil.cacheSize());
+    }
+
+    @Test
+    public void negativeCacheSizeIsRejected() {
+        RegexUtil.setCacheSize(100);
+        RegexUtil.isRegex("a");
+        try {
+            RegexUtil.setCacheSize(-1);
+            fail("setCacheSize accepted a negative size");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        // The cache is unchanged.
+        assertEquals(1, RegexUtil.cacheSize());
+    }
+
+    @Test
+    public void cachedGroupCountIsChecked() {
+        RegexUtil.setCacheSize(100);
+        assertTrue(RegexUtil.isRegex("(a)(?:b)(c)", 2));
+        assertFalse(RegexUtil.isRegex("(a)(?:b)(c)", 3));
+        assertNotNull(RegexUtil.regexError("(a)(?:b)(c)", 3));
+        assertEquals(1, RegexUtil.cacheSize());
+    }
+
+    @Test
+    public void cachedInvalidRegexThrowsAgain() {
+        RegexUtil.setCacheSize(100);
+        for (int i = 0; i < 2; i++) {
+            try {
+                RegexUtil.asRegex("(");
+                fail("asRegex accepted an invalid regex");
+            } catch (Error e) {
+                // expected
+            }
+            try {
+                RegexUtil.asPattern("(");
+                fail("asPattern accepted an invalid regex");
+            } catch (Error e) {
+                // expected
+            }
+        }
+        // Callers get their own copy of the cached exception.
+        PatternSyntaxException e1 = RegexUtil.regexException("(");
+        PatternSyntaxException e2 = RegexUtil.regexException("(");
+        assertNotNull(e1);
+        assertNotSame(e1, e2);
+        assertEquals(e1.getMessage(), e2.getMessage());
+        assertEquals(e1.getIndex(), e2.getIndex());
+    }
+
+    @Test
+    public void cachedPatternIsReused() {
+        RegexUtil.setCacheSize(100);
+        assertTrue(RegexUtil.isRegex("(a)b", 1));
+        Pattern p = RegexUtil.asPattern("(a)b", 1);
+        assertSame(p, RegexUtil.asPattern("(a)b"));
+        assertEquals("(a)b", p.pattern());
+    }
+
+    @Test
+    public void concurrentCallsKeepTheCacheSize() throws Exception {
+        final int size = 10;
+        RegexUtil.setCacheSize(size);
+        // The threads share the strings, so that they insert and evict the
+        // same entries; every second string is not a regex.
+        Concurrently.run(8, new Concurrently.Task() {
+            @Override
+            public void run(int thread) {
+                for (int i = 0; i < 2000; i++) {
+                    int n = (i + thread) % (3 * size);
+                    String s = (n % 2 == 0) ? "(a)" + n : "(" + n;
+                    assertEquals(s, n % 2 == 0, RegexUtil.isRegex(s, 1));
+                    assertTrue(RegexUtil.cacheSize() <= size);
+                }
+            }
+        });
+        assertEquals(size, RegexUtil.cacheSize());
+    }
+
+    private static String describe(String s) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(RegexUtil.isRegex(s)).append(' ');
+        sb.append(RegexUtil.isRegex(s, 1)).append(' ');
+        sb.append(RegexUtil.regexError(s)).append(' ');
+        sb.append(RegexUtil.regexError(s, 2)).append(' ');
+        PatternSyntaxException e = RegexUtil.regexException(s, 1);
+        sb.append(e == null ? null : e.getMessage()).append(' ');
+        try {
+            sb.append(RegexUtil.asPattern(s, 1).pattern());
+        } catch (Error err) {
+            sb.append(err.getMessage());
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,27 @@
+package tests;
+
+import java.io.File;
+
+import org.checkerframework.framework.test.CheckerFrameworkTest;
+import org.junit.runners.Parameterized.Parameters;
+
+/**
+ * JUnit tests for the I18n Checker with -AnoSharedCFGs.  The checkers of
+ * this aggregate checker share their control-flow graphs by default, so
+ * these tests must report the same diagnostics as {@link I18nTest}.
+ */
+public class I18nNoSharedCFGsTest extends CheckerFrameworkTest {
+
+    public I18nNoSharedCFGsTest(File testFile) {
+        super(testFile,
+                org.checkerframework.checker.i18n.I18nChecker.class,
+                "i18n",
+                "-Anomsgtext",
+                "-AnoSharedCFGs");
+    }
+
+    @Parameters
+    public static String[] getTestDirs() {
+        return new String[]{"i18n", "all-systems"};
+    }
+}
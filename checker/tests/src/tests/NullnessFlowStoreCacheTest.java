@@ -0,0 +1,32 @@
+package tests;
+
+import org.checkerframework.checker.nullness.AbstractNullnessChecker;
+import org.checkerframework.framework.test.CheckerFrameworkTest;
+
+import java.io.File;
+
+import org.junit.runners.Parameterized.Parameters;
+
+/**
+ * JUnit tests for the Nullness checker with -AflowStoreCache.  The cache
+ * is small, so that blocks are evicted and their stores recomputed.
+ */
+public class NullnessFlowStoreCacheTest extends CheckerFrameworkTest {
+
+    public NullnessFlowStoreCacheTest(File testFile) {
+        super(testFile,
+                org.checkerframework.checker.nullness.NullnessChecker.class,
+                "nullness",
+                "-AcheckPurityAnnotations",
+                "-Anomsgtext", "-Xlint:deprecation",
+                "-Alint=forbidnonnullarraycomponents,"
+                        + AbstractNullnessChecker.LINT_REDUNDANTNULLCOMPARISON,
+                "-AflowStoreCache=20");
+    }
+
+    @Parameters
+    public static String[] getTestDirs() {
+        return new String[]{"nullness"};
+    }
+
+}
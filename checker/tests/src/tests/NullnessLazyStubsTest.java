@@ -0,0 +1,32 @@
+package tests;
+
+import org.checkerframework.checker.nullness.AbstractNullnessChecker;
+import org.checkerframework.framework.test.CheckerFrameworkTest;
+
+import java.io.File;
+
+import org.junit.runners.Parameterized.Parameters;
+
+/**
+ * JUnit tests for the Nullness checker with -AlazyStubs, which resolves the
+ * declarations in stub files only when they are first used.
+ */
+public class NullnessLazyStubsTest extends CheckerFrameworkTest {
+
+    public NullnessLazyStubsTest(File testFile) {
+        super(testFile,
+                org.checkerframework.checker.nullness.NullnessChecker.class,
+                "nullness",
+                "-AcheckPurityAnnotations",
+                "-Anomsgtext", "-Xlint:deprecation",
+                "-Alint=forbidnonnullarraycomponents,"
+                        + AbstractNullnessChecker.LINT_REDUNDANTNULLCOMPARISON,
+                "-AlazyStubs");
+    }
+
+    @Parameters
+    public static String[] getTestDirs() {
+        return new String[]{"nullness"};
+    }
+
+}
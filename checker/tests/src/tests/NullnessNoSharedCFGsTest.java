@@ -0,0 +1,35 @@
+package tests;
+
+import org.checkerframework.checker.nullness.AbstractNullnessChecker;
+import org.checkerframework.framework.test.CheckerFrameworkTest;
+
+import java.io.File;
+
+import org.junit.runners.Parameterized.Parameters;
+
+/**
+ * JUnit tests for the Nullness checker with -AnoSharedCFGs.  The Nullness
+ * checker and its KeyFor subchecker share their control-flow graphs by
+ * default, so these tests must report the same diagnostics as
+ * {@link NullnessFbcTest}.  Tests such as Asserts.java check that a graph
+ * is not shared if the checkers assume different assertions.
+ */
+public class NullnessNoSharedCFGsTest extends CheckerFrameworkTest {
+
+    public NullnessNoSharedCFGsTest(File testFile) {
+        super(testFile,
+                org.checkerframework.checker.nullness.NullnessChecker.class,
+                "nullness",
+                "-AcheckPurityAnnotations",
+                "-Anomsgtext", "-Xlint:deprecation",
+                "-Alint=forbidnonnullarraycomponents,"
+                        + AbstractNullnessChecker.LINT_REDUNDANTNULLCOMPARISON,
+                "-AnoSharedCFGs");
+    }
+
+    @Parameters
+    public static String[] getTestDirs() {
+        return new String[]{"nullness"};
+    }
+
+}
@@ -0,0 +1,33 @@
+package tests;
+
+import org.checkerframework.checker.nullness.AbstractNullnessChecker;
+import org.checkerframework.framework.test.CheckerFrameworkTest;
+
+import java.io.File;
+
+import org.junit.runners.Parameterized.Parameters;
+
+/**
+ * JUnit tests for the Nullness checker with -AnoSubtypeCache.  The
+ * results of subtype checks are cached by default, so these tests must
+ * report the same diagnostics as {@link NullnessFbcTest}.
+ */
+public class NullnessNoSubtypeCacheTest extends CheckerFrameworkTest {
+
+    public NullnessNoSubtypeCacheTest(File testFile) {
+        super(testFile,
+                org.checkerframework.checker.nullness.NullnessChecker.class,
+                "nullness",
+                "-AcheckPurityAnnotations",
+                "-Anomsgtext", "-Xlint:deprecation",
+                "-Alint=forbidnonnullarraycomponents,"
+                        + AbstractNullnessChecker.LINT_REDUNDANTNULLCOMPARISON,
+                "-AnoSubtypeCache");
+    }
+
+    @Parameters
+    public static String[] getTestDirs() {
+        return new String[]{"nullness"};
+    }
+
+}
@@ -0,0 +1,32 @@
+package tests;
+
+import org.checkerframework.checker.nullness.AbstractNullnessChecker;
+import org.checkerframework.framework.test.CheckerFrameworkTest;
+
+import java.io.File;
+
+import org.junit.runners.Parameterized.Parameters;
+
+/**
+ * JUnit tests for the Nullness checker with -AstreamFlowResults, which
+ * discards the flow results of each method once it has been checked.
+ */
+public class NullnessStreamFlowResultsTest extends CheckerFrameworkTest {
+
+    public NullnessStreamFlowResultsTest(File testFile) {
+        super(testFile,
+                org.checkerframework.checker.nullness.NullnessChecker.class,
+                "nullness",
+                "-AcheckPurityAnnotations",
+                "-Anomsgtext", "-Xlint:deprecation",
+                "-Alint=forbidnonnullarraycomponents,"
+                        + AbstractNullnessChecker.LINT_REDUNDANTNULLCOMPARISON,
+                "-AstreamFlowResults");
+    }
+
+    @Parameters
+    public static String[] getTestDirs() {
+        return new String[]{"nullness"};
+    }
+
+}
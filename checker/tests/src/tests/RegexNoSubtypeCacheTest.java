@@ -0,0 +1,29 @@
+package tests;
+
+import org.checkerframework.framework.test.CheckerFrameworkTest;
+import org.junit.runners.Parameterized.Parameters;
+
+import java.io.File;
+
+/**
+ * JUnit tests for the Regex Checker with -AnoSubtypeCache.  The results
+ * of subtype checks are cached by default, so these tests must report the
+ * same diagnostics as {@link RegexTest}.  The Regex Checker uses the
+ * qualifier framework, whose types must not be cached.
+ */
+public class RegexNoSubtypeCacheTest extends CheckerFrameworkTest {
+
+    public RegexNoSubtypeCacheTest(File testFile) {
+        super(testFile,
+                org.checkerframework.checker.regex.RegexChecker.class,
+                "regex",
+                "-Anomsgtext",
+                "-AnoSubtypeCache");
+    }
+
+    @Parameters
+    public static String[] getTestDirs() {
+        return new String[]{"regex", "regex_poly", "regex_qual_poly", "all-systems"};
+    }
+
+}
@@ -0,0 +1,67 @@
+package tests.util;
+
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Runs a task in several threads at the same time.  The tests of the
+ * caches that utility classes such as RegexUtil share between the threads
+ * of a program use it to call the cached methods concurrently.
+ */
+public final class Concurrently {
+
+    /** A task that each thread runs. */
+    public interface Task {
+        /**
+         * Runs the task.
+         *
+         * @param thread the number of the thread, from 0 to the number of
+         *            threads minus 1
+         */
+        void run(int thread) throws Exception;
+    }
+
+    private Concurrently() {
+        throw new AssertionError("Class Concurrently shouldn't be instantiated");
+    }
+
+    /**
+     * Runs the task in the given number of threads, which all start at the
+     * same time, and waits for them to finish.
+     *
+     * @throws AssertionError if the task failed in any of the threads; its
+     *             cause is the first failure
+     */
+    public static void run(int threadCount, final Task task) throws InterruptedException {
+        final CountDownLatch start = new CountDownLatch(1);
+        final Throwable[] failure = new Throwable[1];
+        Thread[] threads = new Thread[threadCount];
+        for (int t = 0; t < threads.length; t++) {
+            final int thread = t;
+            threads[t] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        task.run(thread);
+                    } catch (Throwable e) {
+                        synchronized (failure) {
+                            if (failure[0] == null) {
+                                failure[0] = e;
+                            }
+                        }
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        synchronized (failure) {
+            if (failure[0] != null) {
+                throw new AssertionError("failed in a thread", failure[0]);
+            }
+        }
+    }
+}
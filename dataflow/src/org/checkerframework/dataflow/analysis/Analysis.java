@@ -24,14 +24,12 @@ import org.checkerframework.javacutil.ElementUtils;
 import org.checkerframework.javacutil.Pair;
 
 import java.util.ArrayList;
-import java.util.Comparator;
+import java.util.BitSet;
 import java.util.HashMap;
-import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Objects;
-import java.util.PriorityQueue;
 import java.util.Set;
 
 import javax.annotation.processing.ProcessingEnvironment;
@@ -79,30 +77,30 @@ public class Analysis<A extends AbstractValue<A>, S extends Store<S>, T extends
      * Then stores before every basic block (assumed to be 'no information' if
      * not present).
      */
-    protected IdentityHashMap<Block, S> thenStores;
+    protected Map<Block, S> thenStores;
 
     /**
      * Else stores before every basic block (assumed to be 'no information' if
      * not present).
      */
-    protected IdentityHashMap<Block, S> elseStores;
+    protected Map<Block, S> elseStores;
 
     /**
      * The transfer inputs before every basic block (assumed to be 'no information' if
      * not present).
      */
-    protected IdentityHashMap<Block, TransferInput<A, S>> inputs;
+    protected Map<Block, TransferInput<A, S>> inputs;
 
     /**
      * The stores after every return statement.
      */
-    protected IdentityHashMap<ReturnNode, TransferResult<A, S>> storesAtReturnStatements;
+    protected Map<ReturnNode, TransferResult<A, S>> storesAtReturnStatements;
 
     /** The worklist used for the fix-point iteration. */
     protected Worklist worklist;
 
     /** Abstract values of nodes. */
-    protected IdentityHashMap<Node, A> nodeValues;
+    protected Map<Node, A> nodeValues;
 
     /** Map from (effectively final) local variable elements to their abstract value. */
     public HashMap<Element, A> finalLocalValues;
@@ -117,6 +115,12 @@ public class Analysis<A extends AbstractValue<A>, S extends Store<S>, T extends
      */
     protected Node currentNode;
 
+    /**
+     * The basic block that is currently handled in the analysis (if it is
+     * running).
+     */
+    protected Block currentBlock;
+
     /**
      * The tree that is currently being looked at. The transfer function can set
      * this tree to make sure that calls to {@code getValue} will not return
@@ -184,6 +188,7 @@ public class Analysis<A extends AbstractValue<A>, S extends Store<S>, T extends
 
         while (!worklist.isEmpty()) {
             Block b = worklist.poll();
+            currentBlock = b;
 
             switch (b.getType()) {
             case REGULAR_BLOCK: {
@@ -284,6 +289,7 @@ public class Analysis<A extends AbstractValue<A>, S extends Store<S>, T extends
             }
         }
 
+        currentBlock = null;
         assert isRunning == true;
         isRunning = false;
     }
@@ -385,12 +391,12 @@ public class Analysis<A extends AbstractValue<A>, S extends Store<S>, T extends
     /** Initialize the analysis with a new control flow graph. */
     protected void init(ControlFlowGraph cfg) {
         this.cfg = cfg;
-        thenStores = new IdentityHashMap<>();
-        elseStores = new IdentityHashMap<>();
-        inputs = new IdentityHashMap<>();
-        storesAtReturnStatements = new IdentityHashMap<>();
+        thenStores = cfg.createBlockMap();
+        elseStores = cfg.createBlockMap();
+        inputs = cfg.createBlockMap();
+        storesAtReturnStatements = cfg.createNodeMap();
         worklist = new Worklist(cfg);
-        nodeValues = new IdentityHashMap<>();
+        nodeValues = cfg.createNodeMap();
         finalLocalValues = new HashMap<>();
         worklist.add(cfg.getEntryBlock());
 
@@ -430,10 +436,7 @@ public class Analysis<A extends AbstractValue<A>, S extends Store<S>, T extends
      * the method does nothing.
      */
     protected void addToWorklist(Block b) {
-        // TODO: use a more efficient way to check if b is already present
-        if (!worklist.contains(b)) {
-            worklist.add(b);
-        }
+        worklist.add(b);
     }
 
     /**
@@ -444,12 +447,12 @@ public class Analysis<A extends AbstractValue<A>, S extends Store<S>, T extends
             boolean addBlockToWorklist) {
         S thenStore = getStoreBefore(b, Store.Kind.THEN);
         S elseStore = getStoreBefore(b, Store.Kind.ELSE);
+        boolean isBackEdge = isBackEdge(b);
 
         switch (kind) {
         case THEN: {
             // Update the then store
-            S newThenStore = (thenStore != null) ?
-                thenStore.leastUpperBound(s) : s;
+            S newThenStore = mergeStores(thenStore, s, isBackEdge);
             if (!newThenStore.equals(thenStore)) {
                 thenStores.put(b, newThenStore);
                 if (elseStore != null) {
@@ -461,8 +464,7 @@ public class Analysis<A extends AbstractValue<A>, S extends Store<S>, T extends
         }
         case ELSE: {
             // Update the else store
-            S newElseStore = (elseStore != null) ?
-                elseStore.leastUpperBound(s) : s;
+            S newElseStore = mergeStores(elseStore, s, isBackEdge);
             if (!newElseStore.equals(elseStore)) {
                 elseStores.put(b, newElseStore);
                 if (thenStore != null) {
@@ -475,8 +477,7 @@ public class Analysis<A extends AbstractValue<A>, S extends Store<S>, T extends
         case BOTH:
             if (thenStore == elseStore) {
                 // Currently there is only one regular store
-                S newStore = (thenStore != null) ?
-                    thenStore.leastUpperBound(s) : s;
+                S newStore = mergeStores(thenStore, s, isBackEdge);
                 if (!newStore.equals(thenStore)) {
                     thenStores.put(b, newStore);
                     elseStores.put(b, newStore);
@@ -486,15 +487,13 @@ public class Analysis<A extends AbstractValue<A>, S extends Store<S>, T extends
             } else {
                 boolean storeChanged = false;
 
-                S newThenStore = (thenStore != null) ?
-                    thenStore.leastUpperBound(s) : s;
+                S newThenStore = mergeStores(thenStore, s, isBackEdge);
                 if (!newThenStore.equals(thenStore)) {
                     thenStores.put(b, newThenStore);
                     storeChanged = true;
                 }
 
-                S newElseStore = (elseStore != null) ?
-                    elseStore.leastUpperBound(s) : s;
+                S newElseStore = mergeStores(elseStore, s, isBackEdge);
                 if (!newElseStore.equals(elseStore)) {
                     elseStores.put(b, newElseStore);
                     storeChanged = true;
@@ -512,57 +511,141 @@ public class Analysis<A extends AbstractValue<A>, S extends Store<S>, T extends
         }
     }
 
+    /**
+     * Returns true if the edge from the current block to <code>succ</code>
+     * is a back edge, that is, if <code>succ</code> does not come after the
+     * current block in depth-first order.  Every cycle of the control flow
+     * graph contains a back edge.
+     */
+    protected boolean isBackEdge(Block succ) {
+        return currentBlock != null
+            && cfg.getDepthFirstId(succ) <= cfg.getDepthFirstId(currentBlock);
+    }
+
+    /**
+     * Merge the store <code>s</code> into the store <code>previous</code>
+     * that exists before a basic block, if any.  Stores that implement
+     * {@link WideningStore} are widened at back edges; otherwise, the
+     * stores are joined by their least upper bound.
+     */
+    protected S mergeStores(/*@Nullable*/ S previous, S s, boolean isBackEdge) {
+        if (previous == null) {
+            return s;
+        }
+        if (isBackEdge && previous instanceof WideningStore) {
+            @SuppressWarnings("unchecked")
+            WideningStore<S> widening = (WideningStore<S>) previous;
+            return widening.widenedUpperBound(s);
+        }
+        return previous.leastUpperBound(s);
+    }
+
     /**
      * A worklist is a priority queue of blocks in which the order is given
      * by depth-first ordering to place non-loop predecessors ahead of successors.
+     * Blocks are represented by their dense depth-first ids, so that testing
+     * membership takes constant time and the queue is a heap of ints.
      */
     protected static class Worklist {
 
-        /** Map all blocks in the CFG to their depth-first order. */
-        protected IdentityHashMap<Block, Integer> depthFirstOrder;
+        /** The control flow graph whose blocks are in the worklist. */
+        protected final ControlFlowGraph cfg;
 
-        /** Comparator to allow priority queue to order blocks by their depth-first
-            order. */
-        public class DFOComparator implements Comparator<Block> {
-            @Override
-            public int compare(Block b1, Block b2) {
-                return depthFirstOrder.get(b1) - depthFirstOrder.get(b2);
-            }
-        }
+        /**
+         * The depth-first ids (see {@link ControlFlowGraph#getDepthFirstId})
+         * of the blocks in the worklist.
+         */
+        protected final BitSet members;
 
-        /** The backing priority queue. */
-        protected PriorityQueue<Block> queue;
+        /**
+         * A binary min-heap of the depth-first ids of the blocks in the
+         * worklist, in elements 0 to <code>size</code> - 1.
+         */
+        protected int[] heap;
 
+        /** The number of blocks in the worklist. */
+        protected int size;
 
         public Worklist(ControlFlowGraph cfg) {
-            depthFirstOrder = new IdentityHashMap<>();
-            int count = 1;
-            for (Block b : cfg.getDepthFirstOrderedBlocks()) {
-                depthFirstOrder.put(b, count++);
-            }
-
-            queue = new PriorityQueue<Block>(11, new DFOComparator());
+            this.cfg = cfg;
+            int blocks = cfg.getNumberOfBlocks();
+            members = new BitSet(blocks);
+            heap = new int[Math.max(blocks, 1)];
+            size = 0;
         }
 
         public boolean isEmpty() {
-            return queue.isEmpty();
+            return size == 0;
         }
 
         public boolean contains(Block block) {
-            return queue.contains(block);
+            int id = cfg.getDepthFirstId(block);
+            return id >= 0 && members.get(id);
         }
 
+        /**
+         * Add a block to the worklist; does nothing if the block is
+         * already in the worklist.
+         */
         public void add(Block block) {
-            queue.add(block);
+            int id = cfg.getDepthFirstId(block);
+            assert id >= 0 : "block is not reachable from the entry block: " + block;
+            if (members.get(id)) {
+                return;
+            }
+            members.set(id);
+
+            // Sift up.
+            int i = size++;
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (heap[parent] <= id) {
+                    break;
+                }
+                heap[i] = heap[parent];
+                i = parent;
+            }
+            heap[i] = id;
         }
 
-        public Block poll() {
-            return queue.poll();
+        /**
+         * Remove and return the block that comes first in depth-first order,
+         * or return null if the worklist is empty.
+         */
+        public /*@Nullable*/ Block poll() {
+            if (size == 0) {
+                return null;
+            }
+            int result = heap[0];
+            members.clear(result);
+
+            // Sift the last element down from the root.
+            int last = heap[--size];
+            int i = 0;
+            int half = size >>> 1;
+            while (i < half) {
+                int child = 2 * i + 1;
+                if (child + 1 < size && heap[child + 1] < heap[child]) {
+                    child++;
+                }
+                if (last <= heap[child]) {
+                    break;
+                }
+                heap[i] = heap[child];
+                i = child;
+            }
+            heap[i] = last;
+
+            return cfg.getBlockWithDepthFirstId(result);
         }
 
         @Override
         public String toString() {
-            return "Worklist(" + queue + ")";
+            List<Block> blocks = new ArrayList<>();
+            for (int id = members.nextSetBit(0); id >= 0; id = members.nextSetBit(id + 1)) {
+                blocks.add(cfg.getBlockWithDepthFirstId(id));
+            }
+            return "Worklist(" + blocks + ")";
         }
     }
 
@@ -691,7 +774,7 @@ public class Analysis<A extends AbstractValue<A>, S extends Store<S>, T extends
 
     public AnalysisResult<A, S> getResult() {
         assert !isRunning;
-        IdentityHashMap<Tree, Node> treeLookup = cfg.getTreeLookup();
+        Map<Tree, Node> treeLookup = cfg.getTreeLookupView();
         return new AnalysisResult<>(nodeValues, inputs, treeLookup, finalLocalValues);
     }
 
@@ -5,12 +5,16 @@ import org.checkerframework.checker.nullness.qual.Nullable;
 */
 
 import org.checkerframework.dataflow.cfg.block.Block;
+import org.checkerframework.dataflow.cfg.block.Block.BlockType;
 import org.checkerframework.dataflow.cfg.block.ExceptionBlock;
 import org.checkerframework.dataflow.cfg.block.RegularBlock;
 import org.checkerframework.dataflow.cfg.node.Node;
 
+import java.lang.ref.SoftReference;
 import java.util.HashMap;
 import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Map.Entry;
 
@@ -31,10 +35,10 @@ import com.sun.source.tree.Tree;
 public class AnalysisResult<A extends AbstractValue<A>, S extends Store<S>> {
 
     /** Abstract values of nodes. */
-    protected final IdentityHashMap<Node, A> nodeValues;
+    protected final Map<Node, A> nodeValues;
 
     /** Map from AST {@link Tree}s to {@link Node}s. */
-    protected final IdentityHashMap<Tree, Node> treeLookup;
+    protected final Map<Tree, Node> treeLookup;
 
     /** Map from (effectively final) local variable elements to their abstract value. */
     protected final HashMap<Element, A> finalLocalValues;
@@ -42,16 +46,32 @@ public class AnalysisResult<A extends AbstractValue<A>, S extends Store<S>> {
     /**
      * The stores before every method call.
      */
-    protected final IdentityHashMap<Block, TransferInput<A, S>> stores;
+    protected final Map<Block, TransferInput<A, S>> stores;
 
     /**
-     * Initialize with a given node-value mapping.
+     * The stores before and after the nodes of recently queried regular
+     * blocks, in access order, or null if the stores are not cached.
+     * See {@link #enableStoreCache}.
+     */
+    protected /*@Nullable*/ LinkedHashMap<Block, CachedBlock<S>> storeCache;
+
+    /** The maximal number of stores in {@link #storeCache}. */
+    protected int maxCachedStores;
+
+    /** The number of stores in {@link #storeCache}. */
+    protected int cachedStores;
+
+    /**
+     * Initialize with a given node-value mapping.  The maps are not copied,
+     * so that the result of an {@link Analysis} keeps its maps backed by
+     * arrays; the result must not be modified with {@link #combine} or
+     * {@link #remove}.
      */
     public AnalysisResult(Map<Node, A> nodeValues,
-            IdentityHashMap<Block, TransferInput<A, S>> stores,
-            IdentityHashMap<Tree, Node> treeLookup, HashMap<Element, A> finalLocalValues) {
-        this.nodeValues = new IdentityHashMap<>(nodeValues);
-        this.treeLookup = new IdentityHashMap<>(treeLookup);
+            Map<Block, TransferInput<A, S>> stores,
+            Map<Tree, Node> treeLookup, HashMap<Element, A> finalLocalValues) {
+        this.nodeValues = nodeValues;
+        this.treeLookup = treeLookup;
         this.stores = stores;
         this.finalLocalValues = finalLocalValues;
     }
@@ -78,12 +98,57 @@ public class AnalysisResult<A extends AbstractValue<A>, S extends Store<S>> {
         }
         for (Entry<Block, TransferInput<A, S>> e : other.stores.entrySet()) {
             stores.put(e.getKey(), e.getValue());
+            if (storeCache != null) {
+                removeCachedBlock(e.getKey());
+            }
         }
         for (Entry<Element, A> e : other.finalLocalValues.entrySet()) {
             finalLocalValues.put(e.getKey(), e.getValue());
         }
     }
 
+    /**
+     * Removes the values, nodes and stores of another analysis result that
+     * was previously combined with this one.  The values of effectively
+     * final local variables are kept, as local and anonymous classes may
+     * still refer to them.
+     */
+    public void remove(AnalysisResult<A, S> other) {
+        for (Node n : other.nodeValues.keySet()) {
+            nodeValues.remove(n);
+        }
+        for (Tree t : other.treeLookup.keySet()) {
+            treeLookup.remove(t);
+        }
+        for (Block b : other.stores.keySet()) {
+            stores.remove(b);
+            if (storeCache != null) {
+                removeCachedBlock(b);
+            }
+        }
+    }
+
+    /**
+     * Caches the stores within regular blocks, so that
+     * {@link #getStoreBefore} and {@link #getStoreAfter} do not run the
+     * transfer function over the preceding nodes of a block for every
+     * query.  The first query for a node of a block computes the stores
+     * before and after all nodes of the block at once.
+     *
+     * The cache holds at most {@code maxStores} stores, of the most
+     * recently queried blocks.  The garbage collector may also clear the
+     * cache when memory is tight.  Queries that miss the cache, and queries
+     * for blocks with more than {@code maxStores} stores, run the transfer
+     * function as without caching.
+     */
+    public void enableStoreCache(int maxStores) {
+        if (storeCache == null) {
+            storeCache = new LinkedHashMap<>(16, 0.75f, true);
+        }
+        this.maxCachedStores = maxStores;
+        evictCachedBlocks();
+    }
+
     /**
      * @return The value of effectively final local variables.
      */
@@ -153,9 +218,119 @@ public class AnalysisResult<A extends AbstractValue<A>, S extends Store<S>> {
         if (transferInput == null) {
             return null;
         }
+        if (storeCache != null && block.getType() == BlockType.REGULAR_BLOCK
+                && !transferInput.analysis.isRunning) {
+            BlockStores<S> cached = getBlockStores((RegularBlock) block, transferInput);
+            if (cached != null) {
+                S store = (before ? cached.before : cached.after).get(node);
+                assert store != null : "node not in its block: " + node;
+                // Callers may modify the store that they get.
+                return store.copy();
+            }
+        }
         return runAnalysisFor(node, before, transferInput);
     }
 
+    /**
+     * Returns the stores of the given block, from {@link #storeCache} or by
+     * running the transfer function over the block; null if the block has
+     * too many stores to be cached.
+     */
+    protected /*@Nullable*/ BlockStores<S> getBlockStores(RegularBlock block,
+            TransferInput<A, S> transferInput) {
+        assert storeCache != null;
+        CachedBlock<S> cached = storeCache.get(block);
+        if (cached != null) {
+            BlockStores<S> blockStores = cached.get();
+            if (blockStores != null) {
+                return blockStores;
+            }
+            // Cleared by the garbage collector.
+            removeCachedBlock(block);
+        }
+
+        int size = 2 * block.getContents().size();
+        if (size > maxCachedStores) {
+            return null;
+        }
+        BlockStores<S> blockStores = runAnalysisForBlock(block, transferInput);
+        storeCache.put(block, new CachedBlock<>(blockStores, size));
+        cachedStores += size;
+        evictCachedBlocks();
+        return blockStores;
+    }
+
+    private void removeCachedBlock(Block block) {
+        CachedBlock<S> removed = storeCache.remove(block);
+        if (removed != null) {
+            cachedStores -= removed.size;
+        }
+    }
+
+    /** Evicts the least recently used blocks until the cache is small enough. */
+    private void evictCachedBlocks() {
+        Iterator<CachedBlock<S>> iter = storeCache.values().iterator();
+        while (cachedStores > maxCachedStores && iter.hasNext()) {
+            cachedStores -= iter.next().size;
+            iter.remove();
+        }
+    }
+
+    /**
+     * Runs the analysis again over all nodes of {@code block} and returns
+     * the stores before and after each of them.
+     */
+    private static <A extends AbstractValue<A>, S extends Store<S>> BlockStores<S> runAnalysisForBlock(
+            RegularBlock block, TransferInput<A, S> transferInput) {
+        Analysis<A, S, ?> analysis = transferInput.analysis;
+        Node oldCurrentNode = analysis.currentNode;
+        IdentityHashMap<Node, S> before = new IdentityHashMap<>();
+        IdentityHashMap<Node, S> after = new IdentityHashMap<>();
+
+        analysis.isRunning = true;
+        try {
+            TransferInput<A, S> store = transferInput.copy();
+            for (Node n : block.getContents()) {
+                analysis.currentNode = n;
+                // The transfer function may modify its input, and the next
+                // node's input is this node's result: keep copies.
+                before.put(n, store.getRegularStore().copy());
+                TransferResult<A, S> transferResult = analysis.callTransferFunction(n, store);
+                after.put(n, transferResult.getRegularStore().copy());
+                store = new TransferInput<>(n, analysis, transferResult);
+            }
+        } finally {
+            analysis.currentNode = oldCurrentNode;
+            analysis.isRunning = false;
+        }
+        return new BlockStores<>(before, after);
+    }
+
+    /** The stores before and after the nodes of a block. */
+    protected static class BlockStores<S> {
+        protected final IdentityHashMap<Node, S> before;
+        protected final IdentityHashMap<Node, S> after;
+
+        protected BlockStores(IdentityHashMap<Node, S> before, IdentityHashMap<Node, S> after) {
+            this.before = before;
+            this.after = after;
+        }
+    }
+
+    /**
+     * An entry of {@link #storeCache}.  The stores are only softly
+     * reachable, so that the garbage collector can reclaim them.
+     */
+    protected static class CachedBlock<S> extends SoftReference<BlockStores<S>> {
+        /** The number of stores. */
+        protected final int size;
+
+        protected CachedBlock(BlockStores<S> stores, int size) {
+            super(stores);
+            this.size = size;
+        }
+    }
+
     /**
      * Runs the analysis again within the block of {@code node} and returns the
      * store at the location of {@code node}. If {@code before} is true, then
@@ -0,0 +1,30 @@
+package org.checkerframework.dataflow.analysis;
+
+/**
+ * A store whose abstract values can have long ascending chains, so that
+ * the analysis of a loop could take many iterations to reach a fixed point.
+ * Such a store is widened where the control flow returns to the head of a
+ * loop, instead of being merged by its least upper bound.
+ *
+ * Implementing this interface is optional: {@link Analysis} uses
+ * {@link Store#leastUpperBound} for all other stores.
+ *
+ * @param <S>
+ *            The type of the store, as in {@link Store}.
+ */
+public interface WideningStore<S extends Store<S>> extends Store<S> {
+
+    /**
+     * Compute an upper bound of two stores at a loop back edge: {@code this}
+     * is the store before the loop head from the previous iterations and
+     * {@code other} is the store that flows along the back edge.
+     *
+     * <p>
+     *
+     * The result must be an upper bound of both stores, and it may be
+     * larger than their least upper bound so that the analysis of a loop
+     * terminates quickly.  The same contract as for
+     * {@link Store#leastUpperBound} applies, except commutativity.
+     */
+    S widenedUpperBound(S other);
+}
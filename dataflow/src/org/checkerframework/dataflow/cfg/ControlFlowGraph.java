@@ -9,20 +9,24 @@ import com.sun.source.tree.MethodTree;
 import com.sun.source.tree.Tree;
 import org.checkerframework.dataflow.cfg.block.Block;
 import org.checkerframework.dataflow.cfg.block.Block.BlockType;
+import org.checkerframework.dataflow.cfg.block.BlockImpl;
 import org.checkerframework.dataflow.cfg.block.ConditionalBlock;
 import org.checkerframework.dataflow.cfg.block.ExceptionBlock;
+import org.checkerframework.dataflow.cfg.block.RegularBlock;
 import org.checkerframework.dataflow.cfg.block.SingleSuccessorBlock;
 import org.checkerframework.dataflow.cfg.block.SpecialBlock;
 import org.checkerframework.dataflow.cfg.block.SpecialBlockImpl;
 import org.checkerframework.dataflow.cfg.node.Node;
 import org.checkerframework.dataflow.cfg.node.ReturnNode;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Deque;
 import java.util.HashSet;
 import java.util.IdentityHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Queue;
 import java.util.Set;
 
@@ -65,6 +69,20 @@ public class ControlFlowGraph {
      */
     protected final List<ReturnNode> returnNodes;
 
+    /**
+     * The blocks of this control flow graph, indexed by their depth-first
+     * id; computed on demand, see {@link #getDepthFirstId}.  Each block
+     * also stores its own id.
+     */
+    protected Block[] depthFirstBlocks;
+
+    /**
+     * The nodes of the blocks of this control flow graph, indexed by their
+     * dense id; computed together with {@link #depthFirstBlocks}, see
+     * {@link #getNodeId}.  Each node also stores its own id.
+     */
+    protected Node[] nodes;
+
     public ControlFlowGraph(SpecialBlock entryBlock, SpecialBlockImpl regularExitBlock, SpecialBlockImpl exceptionalExitBlock, UnderlyingAST underlyingAST,
             IdentityHashMap<Tree, Node> treeLookup,
             IdentityHashMap<Tree, Node> convertedTreeLookup,
@@ -188,6 +206,127 @@ public class ControlFlowGraph {
         return dfsOrderResult;
     }
 
+    /**
+     * @return The number of basic blocks in this control flow graph that
+     *         are reachable from the entry block.
+     */
+    public int getNumberOfBlocks() {
+        computeDepthFirstIds();
+        return depthFirstBlocks.length;
+    }
+
+    /**
+     * Returns the depth-first id of a basic block.  The reachable blocks
+     * are numbered densely from 0 to {@link #getNumberOfBlocks()} - 1, in
+     * the order of their last occurrence in
+     * {@link #getDepthFirstOrderedBlocks()}.
+     *
+     * @return The depth-first id of <code>b</code>, or -1 if <code>b</code>
+     *         is not reachable from the entry block
+     */
+    public int getDepthFirstId(Block b) {
+        computeDepthFirstIds();
+        int id = ((BlockImpl) b).getDepthFirstId();
+        return (id >= 0 && id < depthFirstBlocks.length && depthFirstBlocks[id] == b) ? id : -1;
+    }
+
+    /**
+     * @return The basic block with depth-first id <code>id</code>.
+     * @see #getDepthFirstId(Block)
+     */
+    public Block getBlockWithDepthFirstId(int id) {
+        computeDepthFirstIds();
+        return depthFirstBlocks[id];
+    }
+
+    /**
+     * @return The number of nodes in the basic blocks of this control flow
+     *         graph that are reachable from the entry block.
+     */
+    public int getNumberOfNodes() {
+        computeDepthFirstIds();
+        return nodes.length;
+    }
+
+    /**
+     * Returns the dense id of a node.  The nodes of the reachable blocks
+     * are numbered from 0 to {@link #getNumberOfNodes()} - 1, block by
+     * block in the order of the depth-first ids of the blocks.
+     *
+     * @return The id of <code>n</code>, or -1 if <code>n</code> is not
+     *         in a reachable block of this control flow graph
+     */
+    public int getNodeId(Node n) {
+        computeDepthFirstIds();
+        int id = n.getId();
+        return (id >= 0 && id < nodes.length && nodes[id] == n) ? id : -1;
+    }
+
+    /**
+     * @return A new, empty map from the blocks of this control flow graph
+     *         to values, backed by an array indexed by depth-first ids.
+     */
+    public <V> Map<Block, V> createBlockMap() {
+        computeDepthFirstIds();
+        return new DenseMap<Block, V>(depthFirstBlocks) {
+            @Override
+            protected int denseId(Object key) {
+                return (key instanceof BlockImpl) ? ((BlockImpl) key).getDepthFirstId() : -1;
+            }
+        };
+    }
+
+    /**
+     * @return A new, empty map from the nodes of this control flow graph
+     *         to values, backed by an array indexed by node ids.
+     */
+    public <K extends Node, V> Map<K, V> createNodeMap() {
+        computeDepthFirstIds();
+        return new DenseMap<K, V>(nodes) {
+            @Override
+            protected int denseId(Object key) {
+                return (key instanceof Node) ? ((Node) key).getId() : -1;
+            }
+        };
+    }
+
+    private void computeDepthFirstIds() {
+        if (depthFirstBlocks != null) {
+            return;
+        }
+        List<Block> dfsOrder = getDepthFirstOrderedBlocks();
+        IdentityHashMap<Block, Integer> lastOccurrence = new IdentityHashMap<>();
+        int index = 0;
+        for (Block b : dfsOrder) {
+            lastOccurrence.put(b, index++);
+        }
+
+        Block[] blocks = new Block[lastOccurrence.size()];
+        List<Node> blockNodes = new ArrayList<>();
+        int id = 0;
+        index = 0;
+        for (Block b : dfsOrder) {
+            if (lastOccurrence.get(b) == index) {
+                blocks[id] = b;
+                ((BlockImpl) b).setDepthFirstId(id);
+                id++;
+
+                if (b.getType() == BlockType.REGULAR_BLOCK) {
+                    blockNodes.addAll(((RegularBlock) b).getContents());
+                } else if (b.getType() == BlockType.EXCEPTION_BLOCK) {
+                    blockNodes.add(((ExceptionBlock) b).getNode());
+                }
+            }
+            index++;
+        }
+
+        nodes = blockNodes.toArray(new Node[blockNodes.size()]);
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i].setId(i);
+        }
+        depthFirstBlocks = blocks;
+    }
+
     /**
      * Get a list of all successor Blocks for cur
      * @return a Deque of successor Blocks
@@ -222,6 +361,14 @@ public class ControlFlowGraph {
         return new IdentityHashMap<>(treeLookup);
     }
 
+    /**
+     * @return The tree-lookup map, as an unmodifiable view rather than a
+     *         copy.
+     */
+    public Map<Tree, Node> getTreeLookupView() {
+        return Collections.unmodifiableMap(treeLookup);
+    }
+
     /**
      * Get the {@link MethodTree} of the CFG if the argument {@link Tree} maps
      * to a {@link Node} in the CFG or null otherwise.
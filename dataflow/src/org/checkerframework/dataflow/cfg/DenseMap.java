@@ -0,0 +1,206 @@
+package org.checkerframework.dataflow.cfg;
+
+/*>>>
+import org.checkerframework.checker.nullness.qual.Nullable;
+*/
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A map from the blocks or nodes of a control flow graph to values, that
+ * is backed by an array indexed by their dense ids.  Looking up a key is
+ * an array access, instead of probing a hash table.
+ *
+ * Keys are compared by identity.  Keys without a dense id in the graph,
+ * such as nodes created outside of it, are kept in an
+ * {@link IdentityHashMap}.
+ *
+ * @see ControlFlowGraph#createBlockMap()
+ * @see ControlFlowGraph#createNodeMap()
+ */
+public abstract class DenseMap<K, V> extends AbstractMap<K, V> {
+
+    /** Marks a null value in {@link #values}. */
+    private static final Object NULL = new Object();
+
+    /** The keys with a dense id, indexed by their id; shared with the graph. */
+    private final Object[] keys;
+
+    /** The values, indexed by the dense id of their key; null if absent. */
+    private final Object[] values;
+
+    /** The entries whose keys have no dense id, or null if there are none. */
+    private /*@Nullable*/ IdentityHashMap<K, V> others;
+
+    /** The number of non-null entries of {@link #values}. */
+    private int denseSize = 0;
+
+    /**
+     * @param keys the keys with a dense id, indexed by their id
+     */
+    protected DenseMap(Object[] keys) {
+        this.keys = keys;
+        this.values = new Object[keys.length];
+    }
+
+    /**
+     * Returns the dense id of key, or -1 if it has none.  The id is only
+     * used if key is the key with that id in the graph.
+     */
+    protected abstract int denseId(Object key);
+
+    /** Returns the index of key in {@link #values}, or -1. */
+    private int indexOf(Object key) {
+        int id = denseId(key);
+        if (id >= 0 && id < keys.length && keys[id] == key) {
+            return id;
+        }
+        return -1;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V get(Object key) {
+        int index = indexOf(key);
+        if (index >= 0) {
+            Object value = values[index];
+            return value == NULL ? null : (V) value;
+        }
+        return others == null ? null : others.get(key);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        int index = indexOf(key);
+        if (index >= 0) {
+            return values[index] != null;
+        }
+        return others != null && others.containsKey(key);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V put(K key, V value) {
+        int index = indexOf(key);
+        if (index >= 0) {
+            Object old = values[index];
+            values[index] = value == null ? NULL : value;
+            if (old == null) {
+                denseSize++;
+            }
+            return old == NULL ? null : (V) old;
+        }
+        if (others == null) {
+            others = new IdentityHashMap<>();
+        }
+        return others.put(key, value);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V remove(Object key) {
+        int index = indexOf(key);
+        if (index >= 0) {
+            Object old = values[index];
+            if (old != null) {
+                values[index] = null;
+                denseSize--;
+            }
+            return old == NULL ? null : (V) old;
+        }
+        return others == null ? null : others.remove(key);
+    }
+
+    @Override
+    public int size() {
+        return denseSize + (others == null ? 0 : others.size());
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(values, null);
+        denseSize = 0;
+        others = null;
+    }
+
+    @Override
+    public Set<Map.Entry<K, V>> entrySet() {
+        return new AbstractSet<Map.Entry<K, V>>() {
+            @Override
+            public int size() {
+                return DenseMap.this.size();
+            }
+
+            @Override
+            public Iterator<Map.Entry<K, V>> iterator() {
+                return new EntryIterator();
+            }
+        };
+    }
+
+    /** Iterates over the dense entries in id order, then over the others. */
+    private class EntryIterator implements Iterator<Map.Entry<K, V>> {
+        /** The next dense index to look at. */
+        private int index = 0;
+
+        /** The iterator over {@link #others}, once the dense entries are done. */
+        private /*@Nullable*/ Iterator<Map.Entry<K, V>> othersIterator;
+
+        /** The index of the last returned dense entry, or -1. */
+        private int lastIndex = -1;
+
+        @Override
+        public boolean hasNext() {
+            if (othersIterator == null) {
+                while (index < values.length && values[index] == null) {
+                    index++;
+                }
+                if (index < values.length) {
+                    return true;
+                }
+                othersIterator = (others == null)
+                        ? Collections.<Map.Entry<K, V>>emptyIterator()
+                        : others.entrySet().iterator();
+            }
+            return othersIterator.hasNext();
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Map.Entry<K, V> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            if (othersIterator == null) {
+                lastIndex = index;
+                Object value = values[index];
+                K key = (K) keys[index];
+                index++;
+                return new SimpleEntry<K, V>(key, value == NULL ? null : (V) value);
+            }
+            lastIndex = -1;
+            return othersIterator.next();
+        }
+
+        @Override
+        public void remove() {
+            if (lastIndex >= 0) {
+                values[lastIndex] = null;
+                denseSize--;
+                lastIndex = -1;
+            } else if (othersIterator != null) {
+                othersIterator.remove();
+            } else {
+                throw new IllegalStateException();
+            }
+        }
+    }
+}
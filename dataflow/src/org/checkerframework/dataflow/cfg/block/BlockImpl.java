@@ -18,6 +18,12 @@ public abstract class BlockImpl implements Block {
     /** The last ID that has already been used. */
     protected static long lastId = 0;
 
+    /**
+     * The depth-first id of this block in its control flow graph, or -1;
+     * see {@link org.checkerframework.dataflow.cfg.ControlFlowGraph#getDepthFirstId}.
+     */
+    protected int depthFirstId = -1;
+
     /** The type of this basic block. */
     protected BlockType type;
 
@@ -40,6 +46,18 @@ public abstract class BlockImpl implements Block {
         return id;
     }
 
+    /**
+     * @return The depth-first id of this block, or -1 if it has not been
+     *         numbered
+     */
+    public int getDepthFirstId() {
+        return depthFirstId;
+    }
+
+    public void setDepthFirstId(int depthFirstId) {
+        this.depthFirstId = depthFirstId;
+    }
+
     @Override
     public BlockType getType() {
         return type;
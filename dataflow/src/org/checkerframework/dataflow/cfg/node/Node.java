@@ -45,6 +45,12 @@ public abstract class Node {
      */
     protected /*@Nullable*/ Block block;
 
+    /**
+     * The dense id of this node in its control flow graph, or -1; see
+     * {@link org.checkerframework.dataflow.cfg.ControlFlowGraph#getNodeId}.
+     */
+    protected int id = -1;
+
     /**
      * Is this node an l-value?
      */
@@ -86,6 +92,17 @@ public abstract class Node {
         block = b;
     }
 
+    /**
+     * @return The dense id of this node, or -1 if it has not been numbered
+     */
+    public int getId() {
+        return id;
+    }
+
+    public void setId(int id) {
+        this.id = id;
+    }
+
     /**
      * Returns the {@link Tree} in the abstract syntax tree, or
      * <code>null</code> if no corresponding tree exists. For instance, this is
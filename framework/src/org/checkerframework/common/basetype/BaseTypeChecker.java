@@ -421,6 +421,9 @@ public abstract class BaseTypeChecker extends SourceChecker implements BaseTypeC
     // AbstractTypeProcessor delegation
     @Override
     public void typeProcess(TypeElement element, TreePath tree) {
+        if (typeProcessWithResultCache(element, tree)) {
+            return;
+        }
 
         // If Java has issued errors, don't run any checkers on this compilation unit.
         // If a sub checker issued errors, run the next checker on this compilation unit.
@@ -266,11 +266,21 @@ public class BaseTypeVisitor<Factory extends GenericAnnotatedTypeFactory<?, ?, ?
         super.setRoot(root);
     }
 
+    @Override
+    public void visit(TreePath path) {
+        super.visit(path);
+        atypeFactory.releaseFlowResults(path.getLeaf());
+    }
+
     @Override
     public Void scan(Tree tree, Void p) {
         if (tree != null && getCurrentPath() != null)
             this.visitorState.setPath(new TreePath(getCurrentPath(), tree));
-        return super.scan(tree, p);
+        Void result = super.scan(tree, p);
+        if (tree != null && tree.getKind() == Tree.Kind.METHOD) {
+            atypeFactory.releaseFlowResults(tree);
+        }
+        return result;
     }
 
     @Override
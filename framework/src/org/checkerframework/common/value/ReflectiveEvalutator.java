@@ -2,6 +2,7 @@ package org.checkerframework.common.value;
 
 
 import org.checkerframework.javacutil.ElementUtils;
+import org.checkerframework.javacutil.ErrorReporter;
 import org.checkerframework.javacutil.TreeUtils;
 import org.checkerframework.javacutil.TypesUtils;
 
@@ -12,7 +13,9 @@ import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import javax.lang.model.element.Element;
 import javax.lang.model.element.ExecutableElement;
@@ -23,20 +26,74 @@ import javax.lang.model.type.TypeMirror;
 
 import org.checkerframework.common.basetype.BaseTypeChecker;
 import org.checkerframework.framework.source.Result;
+import org.checkerframework.framework.util.BoundedCache;
 
 import com.sun.source.tree.MemberSelectTree;
 import com.sun.source.tree.MethodInvocationTree;
 import com.sun.source.tree.NewClassTree;
-import com.sun.source.tree.Tree;
 
 public class ReflectiveEvalutator {
     private BaseTypeChecker checker;
     private boolean reportWarnings;
 
+    /**
+     * The default maximal number of calls to evaluate a single method or
+     * constructor invocation; see the "maxStaticEvaluations" option.
+     */
+    public static final int DEFAULT_MAX_EVALUATIONS = 1000;
+
+    /** The default number of method results to memoize. */
+    private static final int DEFAULT_EVALUATION_CACHE_SIZE = 1000;
+
+    /**
+     * The maximal number of combinations of receiver and argument values
+     * for which an invocation is evaluated.  Invocations with more
+     * combinations are not evaluated, and their result is unknown.
+     */
+    private final int maxEvaluations;
+
+    /**
+     * The methods found for the elements of statically executable methods.
+     * Looking a method up by name and parameter types is much more
+     * expensive than calling it.
+     */
+    private final Map<ExecutableElement, Method> methods = new HashMap<>();
+
+    /**
+     * The warnings about the elements of statically executable methods
+     * that could not be found, reported again for each invocation.
+     */
+    private final Map<ExecutableElement, Result> methodLookupFailures = new HashMap<>();
+
+    /**
+     * The results of method calls, keyed by the method followed by the
+     * receiver and the arguments.  Statically executable methods are pure,
+     * so a call can be replaced by its earlier result.
+     */
+    private final BoundedCache<List<Object>, Object> evaluationCache;
+
     public ReflectiveEvalutator(BaseTypeChecker checker,
             ValueAnnotatedTypeFactory factory, boolean reportWarnings) {
         this.checker = checker;
         this.reportWarnings = reportWarnings;
+        this.maxEvaluations = parseMaxEvaluations(checker.getOption("maxStaticEvaluations"));
+        this.evaluationCache = factory.createCache("evaluationCache", DEFAULT_EVALUATION_CACHE_SIZE);
+    }
+
+    private static int parseMaxEvaluations(String option) {
+        if (option == null) {
+            return DEFAULT_MAX_EVALUATIONS;
+        }
+        int parsed = -1;
+        try {
+            parsed = Integer.parseInt(option.trim());
+        } catch (NumberFormatException e) {
+            // reported below
+        }
+        if (parsed < 0) {
+            ErrorReporter.errorAbort("Invalid number in -AmaxStaticEvaluations: " + option);
+        }
+        return parsed;
     }
 
     /**
@@ -50,7 +107,8 @@ public class ReflectiveEvalutator {
      *            method has no receiver
      * @param tree
      *            location to report any errors
-     * @return all possible values that the method may return.
+     * @return all possible values that the method may return, or an empty
+     *         list if there are too many combinations of values to evaluate
      */
     public List<?> evaluteMethodCall(List<List<?>> allArgValues,
             List<?> receiverValues, MethodInvocationTree tree) {
@@ -65,6 +123,10 @@ public class ReflectiveEvalutator {
             receiverValues = Collections.singletonList(null);
         }
 
+        if (exceedsMaxEvaluations(allArgValues, receiverValues.size())) {
+            return new ArrayList<>();
+        }
+
         List<Object[]> listOfArguments;
         if (allArgValues == null) {
             // Method does not have arguments
@@ -72,16 +134,23 @@ public class ReflectiveEvalutator {
             listOfArguments.add(null);
         } else {
             // Find all possible argument sets
-            listOfArguments = cartesianProduct(allArgValues,
-                    allArgValues.size() - 1);
+            listOfArguments = cartesianProduct(allArgValues);
         }
 
 
         List<Object> results = new ArrayList<>();
         for (Object[] arguments : listOfArguments) {
             for (Object receiver : receiverValues) {
+                List<Object> key = evaluationKey(method, receiver, arguments);
+                Object result = evaluationCache.get(key);
+                if (result != null || evaluationCache.containsKey(key)) {
+                    results.add(result);
+                    continue;
+                }
                 try {
-                    results.add(method.invoke(receiver, arguments));
+                    result = method.invoke(receiver, arguments);
+                    evaluationCache.put(key, result);
+                    results.add(result);
                 } catch (InvocationTargetException e) {
                     if (reportWarnings)
                         checker.report(Result.warning(
@@ -103,6 +172,40 @@ public class ReflectiveEvalutator {
 
     }
 
+    private static List<Object> evaluationKey(Method method, Object receiver,
+            Object[] arguments) {
+        int argCount = arguments == null ? 0 : arguments.length;
+        List<Object> key = new ArrayList<>(argCount + 2);
+        key.add(method);
+        key.add(receiver);
+        if (arguments != null) {
+            key.addAll(Arrays.asList(arguments));
+        }
+        return key;
+    }
+
+    /**
+     * Returns true if evaluating an invocation would take more than
+     * {@link #maxEvaluations} calls, that is, if the number of
+     * combinations of argument values times {@code receiverCount} is too
+     * large.
+     *
+     * @param allArgValues the possible values of each argument, or null
+     */
+    private boolean exceedsMaxEvaluations(List<List<?>> allArgValues,
+            int receiverCount) {
+        long count = receiverCount;
+        if (allArgValues != null) {
+            for (List<?> argValues : allArgValues) {
+                count *= argValues.size();
+                if (count > maxEvaluations) {
+                    return true;
+                }
+            }
+        }
+        return count > maxEvaluations;
+    }
+
     /**
      * Method for reflectively obtaining a method object so it can (potentially)
      * be statically executed by the checker for constant propagation
@@ -111,11 +214,34 @@ public class ReflectiveEvalutator {
      *         tree
      */
     private Method getMethodObject(MethodInvocationTree tree) {
+        ExecutableElement ele = TreeUtils.elementFromUse(tree);
+        Method method = methods.get(ele);
+        if (method != null) {
+            return method;
+        }
+        Result failure = methodLookupFailures.get(ele);
+        if (failure == null) {
+            method = findMethod(ele);
+            if (method != null) {
+                methods.put(ele, method);
+                return method;
+            }
+            failure = methodLookupFailures.get(ele);
+        }
+        if (reportWarnings)
+            checker.report(failure, tree);
+        return null;
+    }
+
+    /**
+     * Finds the Method object for a method element, or records the reason
+     * in {@link #methodLookupFailures} and returns null.
+     */
+    private Method findMethod(ExecutableElement ele) {
         try {
-            ExecutableElement ele = TreeUtils.elementFromUse(tree);
             Name clazz = TypesUtils.getQualifiedName((DeclaredType) ele
                     .getEnclosingElement().asType());
-            List<Class<?>> paramClzz = getParameterClasses(tree, ele);
+            List<Class<?>> paramClzz = getParameterClasses(ele);
             Class<?> clzz = Class.forName(clazz.toString());
             Method method = clzz.getMethod(ele.getSimpleName().toString(),
                     paramClzz.toArray(new Class<?>[0]));
@@ -124,33 +250,26 @@ public class ReflectiveEvalutator {
             }
             return method;
         } catch (ClassNotFoundException | UnsupportedClassVersionError e) {
-            if (reportWarnings)
-                checker.report(
-                        Result.warning("class.find.failed", (TreeUtils
-                                .elementFromUse(tree)).getEnclosingElement()),
-                        tree);
+            methodLookupFailures.put(ele,
+                    Result.warning("class.find.failed", ele.getEnclosingElement()));
             return null;
 
         } catch (NoSuchMethodException e) {
             // The class we attempted to getMethod from inside the
             // call to getMethodObject.
-            Element classElem = TreeUtils.elementFromUse(tree)
-                    .getEnclosingElement();
+            Element classElem = ele.getEnclosingElement();
 
             if (classElem == null) {
-                if (reportWarnings)
-                    checker.report(Result.warning("method.find.failed"), tree);
+                methodLookupFailures.put(ele, Result.warning("method.find.failed"));
             } else {
-                if (reportWarnings)
-                    checker.report(Result.warning(
-                            "method.find.failed.in.class", classElem), tree);
+                methodLookupFailures.put(ele,
+                        Result.warning("method.find.failed.in.class", classElem));
             }
             return null;
         }
     }
 
-    private List<Class<?>> getParameterClasses(Tree tree,
-            ExecutableElement ele) throws ClassNotFoundException {
+    private List<Class<?>> getParameterClasses(ExecutableElement ele) throws ClassNotFoundException {
         List<? extends VariableElement> paramEles = ele.getParameters();
         List<Class<?>> paramClzz = new ArrayList<>();
         for (Element e : paramEles) {
@@ -160,38 +279,28 @@ public class ReflectiveEvalutator {
         return paramClzz;
     }
 
-    private List<Object[]> cartesianProduct(List<List<?>> allArgValues,
-            int whichArg) {
-        List<?> argValues = allArgValues.get(whichArg);
+    /**
+     * Returns all combinations of argument values: each array has one
+     * value from each list of {@code allArgValues}.
+     */
+    private List<Object[]> cartesianProduct(List<List<?>> allArgValues) {
         List<Object[]> tuples = new ArrayList<>();
-
-        for (Object value : argValues) {
-            if (whichArg == 0) {
-                Object[] objects = new Object[allArgValues.size()];
-                objects[0] = value;
-                tuples.add(objects);
-            } else {
-                List<Object[]> lastTuples = cartesianProduct(allArgValues,
-                        whichArg - 1);
-                List<Object[]> copies = copy(lastTuples);
-                for (Object[] copy : copies) {
+        tuples.add(new Object[allArgValues.size()]);
+        for (int whichArg = 0; whichArg < allArgValues.size(); whichArg++) {
+            List<?> argValues = allArgValues.get(whichArg);
+            List<Object[]> extended = new ArrayList<>(tuples.size() * argValues.size());
+            for (Object value : argValues) {
+                for (Object[] tuple : tuples) {
+                    Object[] copy = Arrays.copyOf(tuple, tuple.length);
                     copy[whichArg] = value;
+                    extended.add(copy);
                 }
-                tuples.addAll(copies);
             }
+            tuples = extended;
         }
         return tuples;
     }
 
-    private List<Object[]> copy(List<Object[]> lastTuples) {
-        List<Object[]> returnListOfLists = new ArrayList<>();
-        for (Object[] list : lastTuples) {
-            Object[] copy = Arrays.copyOf(list, list.length);
-            returnListOfLists.add(copy);
-        }
-        return returnListOfLists;
-    }
-
     public Object evaluateStaticFieldAccess(String classname, String fieldName,
             MemberSelectTree tree) {
         try {
@@ -222,6 +331,10 @@ public class ReflectiveEvalutator {
                 return new ArrayList<>();
             }
 
+            if (exceedsMaxEvaluations(argValues, 1)) {
+                return new ArrayList<>();
+            }
+
             List<Object[]> listOfArguments;
             if (argValues == null) {
                 // Method does not have arguments
@@ -229,8 +342,7 @@ public class ReflectiveEvalutator {
                 listOfArguments.add(null);
             } else {
                 // Find all possible argument sets
-                listOfArguments = cartesianProduct(argValues,
-                        argValues.size() - 1);
+                listOfArguments = cartesianProduct(argValues);
             }
 
             List<Object> results = new ArrayList<>();
@@ -258,7 +370,7 @@ public class ReflectiveEvalutator {
     private Constructor<?> getConstrutorObject(NewClassTree tree, TypeMirror typeToCreate)
             throws ClassNotFoundException, NoSuchMethodException {
         ExecutableElement ele = TreeUtils.elementFromUse(tree);
-        List<Class<?>> paramClasses = getParameterClasses(tree, ele);
+        List<Class<?>> paramClasses = getParameterClasses(ele);
         Class<?> recClass = boxPrimatives(ValueCheckerUtils.getClassFromType(typeToCreate));
         Constructor<?> constructor = recClass.getConstructor(paramClasses
                 .toArray(new Class<?>[0]));
@@ -6,12 +6,14 @@ import org.checkerframework.common.value.qual.ArrayLen;
 import org.checkerframework.common.value.qual.BoolVal;
 import org.checkerframework.common.value.qual.BottomVal;
 import org.checkerframework.common.value.qual.DoubleVal;
+import org.checkerframework.common.value.qual.IntRange;
 import org.checkerframework.common.value.qual.IntVal;
 import org.checkerframework.common.value.qual.StaticallyExecutable;
 import org.checkerframework.common.value.qual.StringVal;
 import org.checkerframework.common.value.qual.UnknownVal;
 import org.checkerframework.common.value.util.NumberMath;
 import org.checkerframework.common.value.util.NumberUtils;
+import org.checkerframework.common.value.util.Range;
 import org.checkerframework.framework.flow.CFAbstractAnalysis;
 import org.checkerframework.framework.flow.CFStore;
 import org.checkerframework.framework.flow.CFTransfer;
@@ -71,7 +73,7 @@ import com.sun.source.tree.UnaryTree;
  *
  */
 @TypeQualifiers({ ArrayLen.class, BoolVal.class, DoubleVal.class, IntVal.class,
-        StringVal.class, BottomVal.class, UnknownVal.class })
+        IntRange.class, StringVal.class, BottomVal.class, UnknownVal.class })
 public class ValueAnnotatedTypeFactory extends BaseAnnotatedTypeFactory {
 
     protected final AnnotationMirror  UNKNOWNVAL,BOTTOMVAL;
@@ -151,11 +153,24 @@ public class ValueAnnotatedTypeFactory extends BaseAnnotatedTypeFactory {
         } else if (anno.hasAnnotation(IntVal.class)) {
             return postFixInt(anno,
                     tree.getKind() == Tree.Kind.POSTFIX_INCREMENT);
+        } else if (anno.hasAnnotation(IntRange.class)) {
+            return postFixRange(anno,
+                    tree.getKind() == Tree.Kind.POSTFIX_INCREMENT);
         }
         return anno;
 
     }
 
+    private AnnotatedTypeMirror postFixRange(AnnotatedTypeMirror anno,
+            boolean increment) {
+        Range range = getIntRange(anno.getAnnotation(IntRange.class));
+        Range one = new Range(1, 1);
+        Range result = increment ? range.minus(one) : range.plus(one);
+        TypeKind kind = NumberUtils.unBoxPrimative(anno.getUnderlyingType());
+        anno.replaceAnnotation(createIntRangeAnnotation(result, kind));
+        return anno;
+    }
+
     private AnnotatedTypeMirror postFixInt(AnnotatedTypeMirror anno,
             boolean increment) {
         List<Long> values = getIntValues(
@@ -265,7 +280,8 @@ public class ValueAnnotatedTypeFactory extends BaseAnnotatedTypeFactory {
                 AnnotatedTypeMirror atm) {
             AnnotationMirror anno = atm.getAnnotationInHierarchy(UNKNOWNVAL);
 
-            if (anno != null && anno.getElementValues().size() > 0) {
+            if (anno != null && anno.getElementValues().size() > 0
+                    && !AnnotationUtils.areSameByClass(anno, IntRange.class)) {
                 List<Object> values = AnnotationUtils.getElementValueArray(
                         anno, "value", Object.class, false);
                 if (values != null && values.size() > MAX_VALUES) {
@@ -298,12 +314,40 @@ public class ValueAnnotatedTypeFactory extends BaseAnnotatedTypeFactory {
                 return a1;
             } else if (isSubtype(a2, a1)) {
                 return a2;
+            } else if (isIntRangeOrIntVal(a1) && isIntRangeOrIntVal(a2)
+                    && (AnnotationUtils.areSameByClass(a1, IntRange.class)
+                            || AnnotationUtils.areSameByClass(a2, IntRange.class))) {
+                return intRangeGlb(a1, a2);
             } else {
                 // If the two are unrelated, then bottom is the GLB.
                 return BOTTOMVAL;
             }
         }
 
+        /**
+         * The glb of two annotations that are IntRange or IntVal, at least
+         * one of them an IntRange: the intersection of the ranges, or the
+         * values of the IntVal that are in the range.
+         */
+        private AnnotationMirror intRangeGlb(AnnotationMirror a1,
+                AnnotationMirror a2) {
+            if (AnnotationUtils.areSameByClass(a1, IntVal.class)
+                    || AnnotationUtils.areSameByClass(a2, IntVal.class)) {
+                AnnotationMirror intAnno = AnnotationUtils.areSameByClass(a1, IntVal.class) ? a1 : a2;
+                AnnotationMirror rangeAnno = (intAnno == a1) ? a2 : a1;
+                Range range = getIntRange(rangeAnno);
+                List<Long> values = new ArrayList<>();
+                for (Long value : getIntValues(intAnno)) {
+                    if (range.contains(value)) {
+                        values.add(value);
+                    }
+                }
+                return values.isEmpty() ? BOTTOMVAL : createIntValAnnotation(values);
+            }
+            Range intersection = getIntRange(a1).intersect(getIntRange(a2));
+            return intersection == null ? BOTTOMVAL : createIntRangeAnnotation(intersection);
+        }
+
         /**
          * Determines the least upper bound of a1 and a2. If a1 and a2 are both
          * the same type of Value annotation, then the LUB is the result of
@@ -313,6 +357,11 @@ public class ValueAnnotatedTypeFactory extends BaseAnnotatedTypeFactory {
          * and a2 are both in {DoubleVal, IntVal} then they will be converted
          * upwards: IntVal &rarr; DoubleVal to arrive at a common annotation type.
          *
+         * If a1 and a2 are IntVal or IntRange, and either is an IntRange or
+         * the union has more than MAX_VALUES values, then the LUB is the
+         * smallest IntRange that contains both.  Ranges are only widened at
+         * loop back edges, see {@link #widenedUpperBound}.
+         *
          * @return the least upper bound of a1 and a2
          */
         @Override
@@ -321,10 +370,24 @@ public class ValueAnnotatedTypeFactory extends BaseAnnotatedTypeFactory {
             if (!AnnotationUtils.areSameIgnoringValues(getTopAnnotation(a1),
                     getTopAnnotation(a2))) {
                 return null;
+            } else if (AnnotationUtils.areSame(a1, a2)) {
+                return a1;
+            } else if (isIntRangeOrIntVal(a1) && isIntRangeOrIntVal(a2)
+                    && (AnnotationUtils.areSameByClass(a1, IntRange.class)
+                            || AnnotationUtils.areSameByClass(a2, IntRange.class))) {
+                return createIntRangeAnnotation(getIntRange(a1).union(getIntRange(a2)));
             } else if (isSubtype(a1, a2)) {
                 return a2;
             } else if (isSubtype(a2, a1)) {
                 return a1;
+            } else if (AnnotationUtils.areSameByClass(a1, IntVal.class)
+                    && AnnotationUtils.areSameByClass(a2, IntVal.class)) {
+                List<Long> values = new ArrayList<>(getIntValues(a1));
+                values.addAll(getIntValues(a2));
+                return createIntValAnnotation(values);
+            } else if (AnnotationUtils.areSameByClass(a1, IntRange.class)
+                    || AnnotationUtils.areSameByClass(a2, IntRange.class)) {
+                return UNKNOWNVAL;
             }
             // If both are the same type, determine the type and merge:
             else if (AnnotationUtils.areSameIgnoringValues(a1, a2)) {
@@ -376,6 +439,22 @@ public class ValueAnnotatedTypeFactory extends BaseAnnotatedTypeFactory {
             }
         }
 
+        /**
+         * Widens an IntRange that grew in an iteration of a loop, see
+         * {@link Range#widenedUnion}: otherwise the range of a loop counter
+         * could grow by one value per iteration of the dataflow analysis.
+         */
+        @Override
+        public AnnotationMirror widenedUpperBound(AnnotationMirror newQualifier,
+                AnnotationMirror previousQualifier) {
+            if (AnnotationUtils.areSameByClass(newQualifier, IntRange.class)
+                    && isIntRangeOrIntVal(previousQualifier)) {
+                return createIntRangeAnnotation(getIntRange(previousQualifier)
+                        .widenedUnion(getIntRange(newQualifier)));
+            }
+            return newQualifier;
+        }
+
         /**
          * Computes subtyping as per the subtyping in the qualifier hierarchy
          * structure unless both annotations are Value. In this case, rhs is a
@@ -392,6 +471,27 @@ public class ValueAnnotatedTypeFactory extends BaseAnnotatedTypeFactory {
             } else if (AnnotationUtils.areSameByClass(rhs, UnknownVal.class)
                     || AnnotationUtils.areSameByClass(lhs, BottomVal.class)) {
                 return false;
+            } else if (AnnotationUtils.areSameByClass(lhs, IntRange.class)) {
+                // IntVal or IntRange, within the range
+                return isIntRangeOrIntVal(rhs)
+                        && getIntRange(lhs).contains(getIntRange(rhs));
+            } else if (AnnotationUtils.areSameByClass(rhs, IntRange.class)) {
+                // A small range may be a subtype of an IntVal
+                Range rhsRange = getIntRange(rhs);
+                if (!AnnotationUtils.areSameByClass(lhs, IntVal.class)
+                        || rhsRange.isWiderThan(MAX_VALUES)) {
+                    return false;
+                }
+                List<Long> lhsValues = getIntValues(lhs);
+                for (long value = rhsRange.from; value <= rhsRange.to; value++) {
+                    if (!lhsValues.contains(value)) {
+                        return false;
+                    }
+                    if (value == Long.MAX_VALUE) {
+                        break;
+                    }
+                }
+                return true;
             } else if (AnnotationUtils.areSameIgnoringValues(lhs, rhs)) {
                 // Same type, so might be subtype
                 List<Object> lhsValues = AnnotationUtils.getElementValueArray(
@@ -423,6 +523,10 @@ public class ValueAnnotatedTypeFactory extends BaseAnnotatedTypeFactory {
             return false;
         }
 
+        private boolean isIntRangeOrIntVal(AnnotationMirror anno) {
+            return AnnotationUtils.areSameByClass(anno, IntRange.class)
+                    || AnnotationUtils.areSameByClass(anno, IntVal.class);
+        }
     }
 
     @Override
@@ -499,7 +603,8 @@ public class ValueAnnotatedTypeFactory extends BaseAnnotatedTypeFactory {
 
             AnnotationMirror dimType = getAnnotatedType(dimensions.get(0))
                     .getAnnotationInHierarchy(UNKNOWNVAL);
-            if (!AnnotationUtils.areSameIgnoringValues(dimType, UNKNOWNVAL)) {
+            if (!AnnotationUtils.areSameIgnoringValues(dimType, UNKNOWNVAL)
+                    && !AnnotationUtils.areSameByClass(dimType, IntRange.class)) {
                 List<Long> longLengths = getIntValues(dimType);
 
                 HashSet<Integer> lengths = new HashSet<Integer>(
@@ -606,6 +711,12 @@ public class ValueAnnotatedTypeFactory extends BaseAnnotatedTypeFactory {
         public Void visitTypeCast(TypeCastTree tree, AnnotatedTypeMirror type) {
             if (isUnderlyingTypeAValue(type)) {
                 AnnotatedTypeMirror castedAnnotation = getAnnotatedType(tree.getExpression());
+                AnnotationMirror rangeAnno = castedAnnotation.getAnnotation(IntRange.class);
+                if (rangeAnno != null && NumberUtils.isIntegral(type.getUnderlyingType())) {
+                    TypeKind castTo = NumberUtils.unBoxPrimative(type.getUnderlyingType());
+                    type.replaceAnnotation(createIntRangeAnnotation(getIntRange(rangeAnno), castTo));
+                    return null;
+                }
                 List<?> values = getValues(castedAnnotation, type.getUnderlyingType());
                 type.replaceAnnotation(resultAnnotationHandler(type.getUnderlyingType(), values, tree));
             } else if (type.getKind() == TypeKind.ARRAY) {
@@ -918,10 +1029,18 @@ public class ValueAnnotatedTypeFactory extends BaseAnnotatedTypeFactory {
         }
     }
 
+    /**
+     * Returns an IntVal annotation with the given values, or an IntRange
+     * annotation from the smallest to the largest value if there are more
+     * than MAX_VALUES values.
+     */
     public AnnotationMirror createIntValAnnotation(List<Long> intValues) {
         intValues = ValueCheckerUtils.removeDuplicates(intValues);
-        if (intValues.isEmpty() || intValues.size() > MAX_VALUES) {
+        if (intValues.isEmpty()) {
             return UNKNOWNVAL;
+        } else if (intValues.size() > MAX_VALUES) {
+            return createIntRangeAnnotation(new Range(intValues.get(0),
+                    intValues.get(intValues.size() - 1)));
         }
         AnnotationBuilder builder = new AnnotationBuilder(processingEnv,
                 IntVal.class);
@@ -929,6 +1048,42 @@ public class ValueAnnotatedTypeFactory extends BaseAnnotatedTypeFactory {
         return builder.build();
     }
 
+    /**
+     * Returns an IntRange annotation for the given range.  A range of at
+     * most MAX_VALUES values is represented by an IntVal annotation
+     * instead, and the range of all longs by UnknownVal.
+     */
+    public AnnotationMirror createIntRangeAnnotation(Range range) {
+        if (range.isEverything()) {
+            return UNKNOWNVAL;
+        } else if (!range.isWiderThan(MAX_VALUES)) {
+            List<Long> values = new ArrayList<>();
+            for (long value = range.from; value < range.to; value++) {
+                values.add(value);
+            }
+            values.add(range.to);
+            return createIntValAnnotation(values);
+        }
+        AnnotationBuilder builder = new AnnotationBuilder(processingEnv,
+                IntRange.class);
+        builder.setValue("from", range.from);
+        builder.setValue("to", range.to);
+        return builder.build();
+    }
+
+    /**
+     * Returns the annotation for the values of the range when they are cast
+     * to an integral type, see {@link Range#castTo}: UnknownVal if they
+     * include every value of the type.
+     */
+    public AnnotationMirror createIntRangeAnnotation(Range range, TypeKind kind) {
+        Range castRange = range.castTo(kind);
+        if (castRange.equals(Range.forType(kind))) {
+            return UNKNOWNVAL;
+        }
+        return createIntRangeAnnotation(castRange);
+    }
+
     public AnnotationMirror createDoubleValAnnotation(List<Double> doubleValues) {
         doubleValues = ValueCheckerUtils.removeDuplicates(doubleValues);
         if (doubleValues.isEmpty() || doubleValues.size() > MAX_VALUES) {
@@ -1015,6 +1170,20 @@ public class ValueAnnotatedTypeFactory extends BaseAnnotatedTypeFactory {
                 intAnno, "value", Long.class, true);
     }
 
+    /**
+     * Returns the range of an IntRange annotation, or the range from the
+     * smallest to the largest value of an IntVal annotation.
+     */
+    public static Range getIntRange(AnnotationMirror rangeAnno) {
+        if (AnnotationUtils.areSameByClass(rangeAnno, IntVal.class)) {
+            List<Long> values = ValueCheckerUtils.removeDuplicates(getIntValues(rangeAnno));
+            return new Range(values.get(0), values.get(values.size() - 1));
+        }
+        Long from = AnnotationUtils.getElementValue(rangeAnno, "from", Long.class, true);
+        Long to = AnnotationUtils.getElementValue(rangeAnno, "to", Long.class, true);
+        return new Range(from, to);
+    }
+
     public static List<Double> getDoubleValues(AnnotationMirror doubleAnno) {
         return AnnotationUtils.getElementValueArray(
                 doubleAnno, "value", Double.class, true);
@@ -5,6 +5,7 @@ import java.util.LinkedHashSet;
 import org.checkerframework.common.basetype.BaseTypeChecker;
 import org.checkerframework.common.basetype.BaseTypeVisitor;
 import org.checkerframework.framework.qual.StubFiles;
+import org.checkerframework.framework.source.SupportedOptions;
 
 /**
  * @author plvines
@@ -12,6 +13,7 @@ import org.checkerframework.framework.qual.StubFiles;
  * @checker_framework.manual #constant-value-checker Constant Value Checker
  */
 @StubFiles("statically-executable.astub")
+@SupportedOptions({ "maxStaticEvaluations" })
 public class ValueChecker extends BaseTypeChecker {
 
     @Override
@@ -4,10 +4,12 @@ import org.checkerframework.common.value.qual.ArrayLen;
 import org.checkerframework.common.value.qual.BoolVal;
 import org.checkerframework.common.value.qual.BottomVal;
 import org.checkerframework.common.value.qual.DoubleVal;
+import org.checkerframework.common.value.qual.IntRange;
 import org.checkerframework.common.value.qual.IntVal;
 import org.checkerframework.common.value.qual.StringVal;
 import org.checkerframework.common.value.qual.UnknownVal;
 import org.checkerframework.common.value.util.NumberUtils;
+import org.checkerframework.common.value.util.Range;
 import org.checkerframework.javacutil.AnnotationUtils;
 import org.checkerframework.javacutil.TypesUtils;
 
@@ -94,6 +96,8 @@ public class ValueCheckerUtils {
             values = convertDoubleVal(anno, castType, castTo);
         } else if (AnnotationUtils.areSameByClass(anno, IntVal.class)) {
             values = convertIntVal(anno, castType, castTo);
+        } else if (AnnotationUtils.areSameByClass(anno, IntRange.class)) {
+            values = convertIntRange(anno, castType, castTo);
         } else if (AnnotationUtils.areSameByClass(anno, StringVal.class)) {
             values = convertStringVal(anno, castType);
         } else if (AnnotationUtils.areSameByClass(anno, BoolVal.class)) {
@@ -161,7 +165,27 @@ public class ValueCheckerUtils {
 
     private static List<?> convertIntVal(AnnotationMirror anno, Class<?> newClass, TypeMirror newType) {
         List<Long> longs = ValueAnnotatedTypeFactory.getIntValues(anno);
+        return convertLongs(longs, newClass, newType);
+    }
+
+    /**
+     * Returns the values of a range of at most MAX_VALUES values, or an
+     * empty list, meaning unknown values, for a wider range.
+     */
+    private static List<?> convertIntRange(AnnotationMirror anno, Class<?> newClass, TypeMirror newType) {
+        Range range = ValueAnnotatedTypeFactory.getIntRange(anno);
+        if (range.isWiderThan(ValueAnnotatedTypeFactory.MAX_VALUES)) {
+            return new ArrayList<>();
+        }
+        List<Long> longs = new ArrayList<>();
+        for (long value = range.from; value < range.to; value++) {
+            longs.add(value);
+        }
+        longs.add(range.to);
+        return convertLongs(longs, newClass, newType);
+    }
 
+    private static List<?> convertLongs(List<Long> longs, Class<?> newClass, TypeMirror newType) {
         if (newClass == String.class) {
             return convertToStringVal(longs);
         } else if (newClass == Character.class || newClass == char.class) {
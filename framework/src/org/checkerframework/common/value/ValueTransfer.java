@@ -3,11 +3,13 @@ package org.checkerframework.common.value;
 import org.checkerframework.common.value.qual.BoolVal;
 import org.checkerframework.common.value.qual.BottomVal;
 import org.checkerframework.common.value.qual.DoubleVal;
+import org.checkerframework.common.value.qual.IntRange;
 import org.checkerframework.common.value.qual.IntVal;
 import org.checkerframework.common.value.qual.StringVal;
 import org.checkerframework.common.value.qual.UnknownVal;
 import org.checkerframework.common.value.util.NumberMath;
 import org.checkerframework.common.value.util.NumberUtils;
+import org.checkerframework.common.value.util.Range;
 import org.checkerframework.dataflow.analysis.RegularTransferResult;
 import org.checkerframework.dataflow.analysis.TransferInput;
 import org.checkerframework.dataflow.analysis.TransferResult;
@@ -21,6 +23,7 @@ import org.checkerframework.javacutil.AnnotationUtils;
 import org.checkerframework.javacutil.TypesUtils;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
@@ -164,6 +167,50 @@ public class ValueTransfer extends CFTransfer {
                 result.getRegularStore());
     }
 
+    /**
+     * Returns the range of the values of an integral node: the range of its
+     * IntRange annotation, or the range of the values of its IntVal
+     * annotation.  Returns null if its values are unknown.
+     */
+    private Range getIntRange(Node subNode, TransferInput<CFValue, CFStore> p) {
+        CFValue value = p.getValueOfSubNode(subNode);
+        AnnotationMirror rangeAnno = value.getType().getAnnotation(IntRange.class);
+        if (rangeAnno == null) {
+            rangeAnno = value.getType().getAnnotation(IntVal.class);
+        }
+        if (rangeAnno == null || !NumberUtils.isIntegral(subNode.getType())) {
+            return null;
+        }
+        return ValueAnnotatedTypeFactory.getIntRange(rangeAnno).castTo(
+                NumberUtils.unBoxPrimative(subNode.getType()));
+    }
+
+    private boolean hasIntRange(Node subNode, TransferInput<CFValue, CFStore> p) {
+        return p.getValueOfSubNode(subNode).getType().hasAnnotation(IntRange.class);
+    }
+
+    /**
+     * Creates the result of an integral operation whose values are in
+     * {@code range}, or unknown if it is null.
+     */
+    private TransferResult<CFValue, CFStore> createNewResult(
+            TransferResult<CFValue, CFStore> result, Range range) {
+        AnnotationMirror rangeAnno;
+        if (range == null) {
+            rangeAnno = ((ValueAnnotatedTypeFactory) atypefactory).UNKNOWNVAL;
+        } else {
+            TypeKind kind = NumberUtils.unBoxPrimative(result.getResultValue()
+                    .getType().getUnderlyingType());
+            rangeAnno = ((ValueAnnotatedTypeFactory) atypefactory)
+                    .createIntRangeAnnotation(range, kind);
+        }
+        CFValue newResultValue = analysis.createSingleAnnotationValue(
+                rangeAnno, result.getResultValue().getType()
+                        .getUnderlyingType());
+        return new RegularTransferResult<>(newResultValue,
+                result.getRegularStore());
+    }
+
     private TransferResult<CFValue, CFStore> createNewResultBoolean(
             TransferResult<CFValue, CFStore> result, List<Boolean> resultValues) {
         AnnotationMirror stringVal = createBooleanAnnotationMirror(resultValues);
@@ -199,6 +246,49 @@ public class ValueTransfer extends CFTransfer {
         ADDTION, SUBTRACTION, DIVISION, REMAINDER, MULPLICATION, SHIFT_LEFT, SIGNED_SHIFT_RIGHT, UNSIGNED_SHIFT_RIGHT, BITWISE_AND, BITWISE_OR, BITWISE_XOR;
     }
 
+    /**
+     * Creates the result of a binary operation.  If an operand is an
+     * IntRange and the result is integral, computes the range of the
+     * result instead of its values.
+     */
+    private TransferResult<CFValue, CFStore> createNewResult(
+            TransferResult<CFValue, CFStore> result, Node leftNode,
+            Node rightNode, NumbericalBinaryOps op,
+            TransferInput<CFValue, CFStore> p) {
+        if (NumberUtils.isIntegral(result.getResultValue().getType().getUnderlyingType())
+                && (hasIntRange(leftNode, p) || hasIntRange(rightNode, p))) {
+            Range left = getIntRange(leftNode, p);
+            Range right = getIntRange(rightNode, p);
+            if (left == null || right == null) {
+                return createNewResult(result, (Range) null);
+            }
+            return createNewResult(result, calculateRangeBinaryOp(left, right, op));
+        }
+        return createNewResult(result,
+                calcutateNumericalBinaryOp(leftNode, rightNode, op, p));
+    }
+
+    /** Returns the range of the results of op, or null if it is unknown. */
+    private Range calculateRangeBinaryOp(Range left, Range right,
+            NumbericalBinaryOps op) {
+        switch (op) {
+        case ADDTION:
+            return left.plus(right);
+        case SUBTRACTION:
+            return left.minus(right);
+        case MULPLICATION:
+            return left.times(right);
+        case DIVISION:
+            return left.divide(right);
+        case REMAINDER:
+            return left.remainder(right);
+        case BITWISE_AND:
+            return left.bitwiseAnd(right);
+        default:
+            return null;
+        }
+    }
+
     private List<Number> calcutateNumericalBinaryOp(Node leftNode,
             Node rightNode, NumbericalBinaryOps op,
             TransferInput<CFValue, CFStore> p) {
@@ -255,10 +345,8 @@ public class ValueTransfer extends CFTransfer {
             NumericalAdditionNode n, TransferInput<CFValue, CFStore> p) {
         TransferResult<CFValue, CFStore> transferResult = super
                 .visitNumericalAddition(n, p);
-        List<Number> resultValues = calcutateNumericalBinaryOp(
-                n.getLeftOperand(), n.getRightOperand(),
-                NumbericalBinaryOps.ADDTION, p);
-        return createNewResult(transferResult, resultValues);
+        return createNewResult(transferResult, n.getLeftOperand(),
+                n.getRightOperand(), NumbericalBinaryOps.ADDTION, p);
     }
 
     @Override
@@ -266,10 +354,8 @@ public class ValueTransfer extends CFTransfer {
             NumericalSubtractionNode n, TransferInput<CFValue, CFStore> p) {
         TransferResult<CFValue, CFStore> transferResult = super
                 .visitNumericalSubtraction(n, p);
-        List<Number> resultValues = calcutateNumericalBinaryOp(
-                n.getLeftOperand(), n.getRightOperand(),
-                NumbericalBinaryOps.SUBTRACTION, p);
-        return createNewResult(transferResult, resultValues);
+        return createNewResult(transferResult, n.getLeftOperand(),
+                n.getRightOperand(), NumbericalBinaryOps.SUBTRACTION, p);
     }
 
     @Override
@@ -277,10 +363,8 @@ public class ValueTransfer extends CFTransfer {
             NumericalMultiplicationNode n, TransferInput<CFValue, CFStore> p) {
         TransferResult<CFValue, CFStore> transferResult = super
                 .visitNumericalMultiplication(n, p);
-        List<Number> resultValues = calcutateNumericalBinaryOp(
-                n.getLeftOperand(), n.getRightOperand(),
-                NumbericalBinaryOps.MULPLICATION, p);
-        return createNewResult(transferResult, resultValues);
+        return createNewResult(transferResult, n.getLeftOperand(),
+                n.getRightOperand(), NumbericalBinaryOps.MULPLICATION, p);
     }
 
     @Override
@@ -288,10 +372,8 @@ public class ValueTransfer extends CFTransfer {
             IntegerDivisionNode n, TransferInput<CFValue, CFStore> p) {
         TransferResult<CFValue, CFStore> transferResult = super
                 .visitIntegerDivision(n, p);
-        List<Number> resultValues = calcutateNumericalBinaryOp(
-                n.getLeftOperand(), n.getRightOperand(),
-                NumbericalBinaryOps.DIVISION, p);
-        return createNewResult(transferResult, resultValues);
+        return createNewResult(transferResult, n.getLeftOperand(),
+                n.getRightOperand(), NumbericalBinaryOps.DIVISION, p);
     }
 
     @Override
@@ -299,10 +381,8 @@ public class ValueTransfer extends CFTransfer {
             FloatingDivisionNode n, TransferInput<CFValue, CFStore> p) {
         TransferResult<CFValue, CFStore> transferResult = super
                 .visitFloatingDivision(n, p);
-        List<Number> resultValues = calcutateNumericalBinaryOp(
-                n.getLeftOperand(), n.getRightOperand(),
-                NumbericalBinaryOps.DIVISION, p);
-        return createNewResult(transferResult, resultValues);
+        return createNewResult(transferResult, n.getLeftOperand(),
+                n.getRightOperand(), NumbericalBinaryOps.DIVISION, p);
     }
 
     @Override
@@ -310,10 +390,8 @@ public class ValueTransfer extends CFTransfer {
             IntegerRemainderNode n, TransferInput<CFValue, CFStore> p) {
         TransferResult<CFValue, CFStore> transferResult = super
                 .visitIntegerRemainder(n, p);
-        List<Number> resultValues = calcutateNumericalBinaryOp(
-                n.getLeftOperand(), n.getRightOperand(),
-                NumbericalBinaryOps.REMAINDER, p);
-        return createNewResult(transferResult, resultValues);
+        return createNewResult(transferResult, n.getLeftOperand(),
+                n.getRightOperand(), NumbericalBinaryOps.REMAINDER, p);
     }
 
     @Override
@@ -321,10 +399,8 @@ public class ValueTransfer extends CFTransfer {
             FloatingRemainderNode n, TransferInput<CFValue, CFStore> p) {
         TransferResult<CFValue, CFStore> transferResult = super
                 .visitFloatingRemainder(n, p);
-        List<Number> resultValues = calcutateNumericalBinaryOp(
-                n.getLeftOperand(), n.getRightOperand(),
-                NumbericalBinaryOps.REMAINDER, p);
-        return createNewResult(transferResult, resultValues);
+        return createNewResult(transferResult, n.getLeftOperand(),
+                n.getRightOperand(), NumbericalBinaryOps.REMAINDER, p);
     }
 
     @Override
@@ -332,10 +408,8 @@ public class ValueTransfer extends CFTransfer {
             TransferInput<CFValue, CFStore> p) {
         TransferResult<CFValue, CFStore> transferResult = super.visitLeftShift(
                 n, p);
-        List<Number> resultValues = calcutateNumericalBinaryOp(
-                n.getLeftOperand(), n.getRightOperand(),
-                NumbericalBinaryOps.SHIFT_LEFT, p);
-        return createNewResult(transferResult, resultValues);
+        return createNewResult(transferResult, n.getLeftOperand(),
+                n.getRightOperand(), NumbericalBinaryOps.SHIFT_LEFT, p);
     }
 
     @Override
@@ -343,10 +417,8 @@ public class ValueTransfer extends CFTransfer {
             SignedRightShiftNode n, TransferInput<CFValue, CFStore> p) {
         TransferResult<CFValue, CFStore> transferResult = super
                 .visitSignedRightShift(n, p);
-        List<Number> resultValues = calcutateNumericalBinaryOp(
-                n.getLeftOperand(), n.getRightOperand(),
-                NumbericalBinaryOps.SIGNED_SHIFT_RIGHT, p);
-        return createNewResult(transferResult, resultValues);
+        return createNewResult(transferResult, n.getLeftOperand(),
+                n.getRightOperand(), NumbericalBinaryOps.SIGNED_SHIFT_RIGHT, p);
     }
 
     @Override
@@ -354,10 +426,8 @@ public class ValueTransfer extends CFTransfer {
             UnsignedRightShiftNode n, TransferInput<CFValue, CFStore> p) {
         TransferResult<CFValue, CFStore> transferResult = super
                 .visitUnsignedRightShift(n, p);
-        List<Number> resultValues = calcutateNumericalBinaryOp(
-                n.getLeftOperand(), n.getRightOperand(),
-                NumbericalBinaryOps.UNSIGNED_SHIFT_RIGHT, p);
-        return createNewResult(transferResult, resultValues);
+        return createNewResult(transferResult, n.getLeftOperand(),
+                n.getRightOperand(), NumbericalBinaryOps.UNSIGNED_SHIFT_RIGHT, p);
     }
 
     @Override
@@ -365,10 +435,8 @@ public class ValueTransfer extends CFTransfer {
             TransferInput<CFValue, CFStore> p) {
         TransferResult<CFValue, CFStore> transferResult = super
                 .visitBitwiseAnd(n, p);
-        List<Number> resultValues = calcutateNumericalBinaryOp(
-                n.getLeftOperand(), n.getRightOperand(),
-                NumbericalBinaryOps.BITWISE_AND, p);
-        return createNewResult(transferResult, resultValues);
+        return createNewResult(transferResult, n.getLeftOperand(),
+                n.getRightOperand(), NumbericalBinaryOps.BITWISE_AND, p);
     }
 
     @Override
@@ -376,10 +444,8 @@ public class ValueTransfer extends CFTransfer {
             TransferInput<CFValue, CFStore> p) {
         TransferResult<CFValue, CFStore> transferResult = super.visitBitwiseOr(
                 n, p);
-        List<Number> resultValues = calcutateNumericalBinaryOp(
-                n.getLeftOperand(), n.getRightOperand(),
-                NumbericalBinaryOps.BITWISE_OR, p);
-        return createNewResult(transferResult, resultValues);
+        return createNewResult(transferResult, n.getLeftOperand(),
+                n.getRightOperand(), NumbericalBinaryOps.BITWISE_OR, p);
     }
 
     @Override
@@ -387,16 +453,41 @@ public class ValueTransfer extends CFTransfer {
             TransferInput<CFValue, CFStore> p) {
         TransferResult<CFValue, CFStore> transferResult = super
                 .visitBitwiseXor(n, p);
-        List<Number> resultValues = calcutateNumericalBinaryOp(
-                n.getLeftOperand(), n.getRightOperand(),
-                NumbericalBinaryOps.BITWISE_XOR, p);
-        return createNewResult(transferResult, resultValues);
+        return createNewResult(transferResult, n.getLeftOperand(),
+                n.getRightOperand(), NumbericalBinaryOps.BITWISE_XOR, p);
     }
 
     enum NumbericalUnaryOps {
         PLUS, MINUS, BITWISE_COMPLEMENT;
     }
 
+    /**
+     * Creates the result of a unary operation, over ranges if the operand
+     * is an IntRange.
+     */
+    private TransferResult<CFValue, CFStore> createNewResult(
+            TransferResult<CFValue, CFStore> result, Node operand,
+            NumbericalUnaryOps op, TransferInput<CFValue, CFStore> p) {
+        if (hasIntRange(operand, p)
+                && NumberUtils.isIntegral(result.getResultValue().getType().getUnderlyingType())) {
+            Range range = getIntRange(operand, p);
+            if (range == null) {
+                return createNewResult(result, (Range) null);
+            }
+            switch (op) {
+            case PLUS:
+                return createNewResult(result, range);
+            case MINUS:
+                return createNewResult(result, range.unaryMinus());
+            case BITWISE_COMPLEMENT:
+                return createNewResult(result, range.bitwiseComplement());
+            default:
+                throw new UnsupportedOperationException();
+            }
+        }
+        return createNewResult(result, calcutateNumericalUnaryOp(operand, op, p));
+    }
+
     private List<Number> calcutateNumericalUnaryOp(Node operand,
             NumbericalUnaryOps op, TransferInput<CFValue, CFStore> p) {
         List<? extends Number> lefts = getNumericalValues(operand, p);
@@ -426,9 +517,8 @@ public class ValueTransfer extends CFTransfer {
             NumericalMinusNode n, TransferInput<CFValue, CFStore> p) {
         TransferResult<CFValue, CFStore> transferResult = super
                 .visitNumericalMinus(n, p);
-        List<Number> resultValues = calcutateNumericalUnaryOp(n.getOperand(),
+        return createNewResult(transferResult, n.getOperand(),
                 NumbericalUnaryOps.MINUS, p);
-        return createNewResult(transferResult, resultValues);
     }
 
     @Override
@@ -436,9 +526,8 @@ public class ValueTransfer extends CFTransfer {
             NumericalPlusNode n, TransferInput<CFValue, CFStore> p) {
         TransferResult<CFValue, CFStore> transferResult = super
                 .visitNumericalPlus(n, p);
-        List<Number> resultValues = calcutateNumericalUnaryOp(n.getOperand(),
+        return createNewResult(transferResult, n.getOperand(),
                 NumbericalUnaryOps.PLUS, p);
-        return createNewResult(transferResult, resultValues);
     }
 
     @Override
@@ -446,9 +535,8 @@ public class ValueTransfer extends CFTransfer {
             BitwiseComplementNode n, TransferInput<CFValue, CFStore> p) {
         TransferResult<CFValue, CFStore> transferResult = super
                 .visitBitwiseComplement(n, p);
-        List<Number> resultValues = calcutateNumericalUnaryOp(n.getOperand(),
+        return createNewResult(transferResult, n.getOperand(),
                 NumbericalUnaryOps.BITWISE_COMPLEMENT, p);
-        return createNewResult(transferResult, resultValues);
     }
 
     enum ComparisonOperators {
@@ -458,6 +546,14 @@ public class ValueTransfer extends CFTransfer {
     private List<Boolean> calcutateBinaryComparison(Node leftNode,
             Node rightNode, ComparisonOperators op,
             TransferInput<CFValue, CFStore> p) {
+        if (hasIntRange(leftNode, p) || hasIntRange(rightNode, p)) {
+            Range left = getIntRange(leftNode, p);
+            Range right = getIntRange(rightNode, p);
+            if (left == null || right == null) {
+                return new ArrayList<>();
+            }
+            return calculateRangeComparison(left, right, op);
+        }
         List<? extends Number> lefts = getNumericalValues(leftNode, p);
         List<? extends Number> rights = getNumericalValues(rightNode, p);
         List<Boolean> resultValues = new ArrayList<>();
@@ -491,6 +587,49 @@ public class ValueTransfer extends CFTransfer {
         return resultValues;
     }
 
+    /**
+     * Compares two ranges: the result is known if the comparison has the
+     * same result for all values of the ranges.
+     */
+    private List<Boolean> calculateRangeComparison(Range left, Range right,
+            ComparisonOperators op) {
+        boolean alwaysTrue;
+        boolean alwaysFalse;
+        switch (op) {
+        case LESS_THAN:
+            alwaysTrue = left.to < right.from;
+            alwaysFalse = left.from >= right.to;
+            break;
+        case LESS_THAN_EQ:
+            alwaysTrue = left.to <= right.from;
+            alwaysFalse = left.from > right.to;
+            break;
+        case GREATER_THAN:
+            alwaysTrue = left.from > right.to;
+            alwaysFalse = left.to <= right.from;
+            break;
+        case GREATER_THAN_EQ:
+            alwaysTrue = left.from >= right.to;
+            alwaysFalse = left.to < right.from;
+            break;
+        case EQUAL:
+        case NOT_EQUAL:
+            boolean same = left.from == left.to && left.equals(right);
+            boolean disjoint = left.intersect(right) == null;
+            alwaysTrue = (op == ComparisonOperators.EQUAL) ? same : disjoint;
+            alwaysFalse = (op == ComparisonOperators.EQUAL) ? disjoint : same;
+            break;
+        default:
+            throw new UnsupportedOperationException();
+        }
+        if (alwaysTrue) {
+            return Collections.singletonList(true);
+        } else if (alwaysFalse) {
+            return Collections.singletonList(false);
+        }
+        return Arrays.asList(true, false);
+    }
+
     @Override
     public TransferResult<CFValue, CFStore> visitLessThan(LessThanNode n,
             TransferInput<CFValue, CFStore> p) {
@@ -0,0 +1,32 @@
+package org.checkerframework.common.value.qual;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+import org.checkerframework.framework.qual.SubtypeOf;
+import org.checkerframework.framework.qual.TypeQualifier;
+
+/**
+ * An annotation indicating the range of values for a byte, short, char,
+ * int, or long type.
+ * If an expression's type has this annotation, then at run time, the
+ * expression evaluates to a value between {@code from} and {@code to},
+ * inclusive.
+ *
+ * The Constant Value Checker uses this annotation instead of
+ * {@link IntVal} for sets of values that are too large to enumerate.
+ *
+ * @checker_framework.manual #constant-value-checker Constant Value Checker
+ */
+@TypeQualifier
+@SubtypeOf({ UnknownVal.class })
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ ElementType.TYPE_PARAMETER, ElementType.TYPE_USE })
+public @interface IntRange {
+    /** The smallest value in the range, inclusive. */
+    long from() default Long.MIN_VALUE;
+    /** The largest value in the range, inclusive. */
+    long to() default Long.MAX_VALUE;
+}
@@ -57,7 +57,24 @@ public class NumberUtils {
         }
     }
 
-    private static TypeKind unBoxPrimative(TypeMirror type) {
+    /**
+     * Returns true if type is a byte, short, char, int or long type, or
+     * the boxed version of one of them.
+     */
+    public static boolean isIntegral(TypeMirror type) {
+        switch (unBoxPrimative(type)) {
+        case BYTE:
+        case SHORT:
+        case CHAR:
+        case INT:
+        case LONG:
+            return true;
+        default:
+            return false;
+        }
+    }
+
+    public static TypeKind unBoxPrimative(TypeMirror type) {
         if (type.getKind() == TypeKind.DECLARED) {
             String stringType = TypesUtils
                     .getQualifiedName((DeclaredType) type).toString();
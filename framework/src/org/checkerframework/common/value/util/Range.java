@@ -0,0 +1,248 @@
+package org.checkerframework.common.value.util;
+
+import java.math.BigInteger;
+
+import javax.lang.model.type.TypeKind;
+
+/**
+ * An interval of long values, from {@link #from} to {@link #to},
+ * inclusive.  Ranges are the values of
+ * {@link org.checkerframework.common.value.qual.IntRange} annotations.
+ *
+ * The arithmetic operations compute the range of all results of applying
+ * the operation to values of the operand ranges, in constant time.  They
+ * do not wrap around: a result that does not fit into a long is
+ * {@link #EVERYTHING}.  Use {@link #castTo} to get the range of the
+ * results in a narrower type.
+ */
+public class Range {
+
+    /** The smallest value in the range, inclusive. */
+    public final long from;
+
+    /** The largest value in the range, inclusive. */
+    public final long to;
+
+    /** The range of all long values. */
+    public static final Range EVERYTHING = new Range(Long.MIN_VALUE, Long.MAX_VALUE);
+
+    /** The bounds that {@link #widenedUnion} rounds to, in ascending order. */
+    private static final long[] WIDENING_BOUNDS = {
+        Long.MIN_VALUE, Integer.MIN_VALUE, Short.MIN_VALUE, Byte.MIN_VALUE, -1,
+        0, Byte.MAX_VALUE, 255, Short.MAX_VALUE, Character.MAX_VALUE,
+        Integer.MAX_VALUE, Long.MAX_VALUE
+    };
+
+    private static final BigInteger LONG_MIN = BigInteger.valueOf(Long.MIN_VALUE);
+    private static final BigInteger LONG_MAX = BigInteger.valueOf(Long.MAX_VALUE);
+
+    public Range(long from, long to) {
+        if (from > to) {
+            throw new IllegalArgumentException("Empty range: " + from + ".." + to);
+        }
+        this.from = from;
+        this.to = to;
+    }
+
+    /**
+     * Returns the range of the values of an integral primitive type, or
+     * {@link #EVERYTHING} for other types.
+     */
+    public static Range forType(TypeKind kind) {
+        switch (kind) {
+        case BYTE:
+            return new Range(Byte.MIN_VALUE, Byte.MAX_VALUE);
+        case SHORT:
+            return new Range(Short.MIN_VALUE, Short.MAX_VALUE);
+        case CHAR:
+            return new Range(Character.MIN_VALUE, Character.MAX_VALUE);
+        case INT:
+            return new Range(Integer.MIN_VALUE, Integer.MAX_VALUE);
+        default:
+            return EVERYTHING;
+        }
+    }
+
+    /**
+     * Returns the range from the smallest to the largest value, or
+     * {@link #EVERYTHING} if one of them does not fit into a long.
+     */
+    private static Range fromBigIntegers(BigInteger... values) {
+        BigInteger min = values[0];
+        BigInteger max = values[0];
+        for (BigInteger value : values) {
+            min = min.min(value);
+            max = max.max(value);
+        }
+        if (min.compareTo(LONG_MIN) < 0 || max.compareTo(LONG_MAX) > 0) {
+            return EVERYTHING;
+        }
+        return new Range(min.longValue(), max.longValue());
+    }
+
+    public boolean isEverything() {
+        return from == Long.MIN_VALUE && to == Long.MAX_VALUE;
+    }
+
+    public boolean contains(long value) {
+        return from <= value && value <= to;
+    }
+
+    public boolean contains(Range other) {
+        return from <= other.from && other.to <= to;
+    }
+
+    /** Returns true if the range has more than {@code count} values. */
+    public boolean isWiderThan(long count) {
+        BigInteger width = BigInteger.valueOf(to).subtract(BigInteger.valueOf(from));
+        return width.compareTo(BigInteger.valueOf(count)) >= 0;
+    }
+
+    /** Returns the smallest range that contains this range and {@code other}. */
+    public Range union(Range other) {
+        return new Range(Math.min(from, other.from), Math.max(to, other.to));
+    }
+
+    /**
+     * Returns a range that contains this range and {@code other}: each
+     * bound in which they differ is rounded outward to a bound of an
+     * integral type, or to -1, 0 or 255.
+     *
+     * Merging a growing range, such as the range of a loop counter, with
+     * widened unions only changes each bound a few times, where the union
+     * could change it on every iteration.
+     */
+    public Range widenedUnion(Range other) {
+        long newFrom = (from == other.from) ? from : roundDown(Math.min(from, other.from));
+        long newTo = (to == other.to) ? to : roundUp(Math.max(to, other.to));
+        return new Range(newFrom, newTo);
+    }
+
+    private static long roundDown(long value) {
+        long result = WIDENING_BOUNDS[0];
+        for (long bound : WIDENING_BOUNDS) {
+            if (bound <= value) {
+                result = bound;
+            }
+        }
+        return result;
+    }
+
+    private static long roundUp(long value) {
+        for (long bound : WIDENING_BOUNDS) {
+            if (bound >= value) {
+                return bound;
+            }
+        }
+        return Long.MAX_VALUE;
+    }
+
+    /**
+     * Returns the intersection of this range and {@code other}, or null if
+     * they are disjoint.
+     */
+    public Range intersect(Range other) {
+        long newFrom = Math.max(from, other.from);
+        long newTo = Math.min(to, other.to);
+        return newFrom <= newTo ? new Range(newFrom, newTo) : null;
+    }
+
+    /**
+     * Returns the range of the values of this range when they are cast to
+     * an integral type: this range if it fits into the type, and the range
+     * of the type otherwise, as the values wrap around.
+     */
+    public Range castTo(TypeKind kind) {
+        Range typeRange = forType(kind);
+        return typeRange.contains(this) ? this : typeRange;
+    }
+
+    public Range plus(Range right) {
+        return fromBigIntegers(big(from).add(big(right.from)), big(to).add(big(right.to)));
+    }
+
+    public Range minus(Range right) {
+        return fromBigIntegers(big(from).subtract(big(right.to)), big(to).subtract(big(right.from)));
+    }
+
+    public Range times(Range right) {
+        return fromBigIntegers(big(from).multiply(big(right.from)),
+                big(from).multiply(big(right.to)),
+                big(to).multiply(big(right.from)),
+                big(to).multiply(big(right.to)));
+    }
+
+    /**
+     * Integer division; {@link #EVERYTHING} if the divisor range contains 0.
+     * Truncating division is monotonic in both operands as long as the sign
+     * of the divisor does not change, so the bounds are among the quotients
+     * of the bounds.
+     */
+    public Range divide(Range right) {
+        if (right.contains(0)) {
+            return EVERYTHING;
+        }
+        return fromBigIntegers(big(from).divide(big(right.from)),
+                big(from).divide(big(right.to)),
+                big(to).divide(big(right.from)),
+                big(to).divide(big(right.to)));
+    }
+
+    /**
+     * Integer remainder: its absolute value is smaller than the largest
+     * absolute value of the divisor, and its sign is the sign of the
+     * dividend.
+     */
+    public Range remainder(Range right) {
+        BigInteger limit = big(right.from).abs().max(big(right.to).abs()).subtract(BigInteger.ONE);
+        BigInteger lower = big(from).max(limit.negate()).min(BigInteger.ZERO);
+        BigInteger upper = big(to).min(limit).max(BigInteger.ZERO);
+        return fromBigIntegers(lower, upper);
+    }
+
+    public Range unaryMinus() {
+        return fromBigIntegers(big(to).negate(), big(from).negate());
+    }
+
+    public Range bitwiseComplement() {
+        return new Range(~to, ~from);
+    }
+
+    /**
+     * Bitwise and: a non-negative operand bounds the result, which is then
+     * non-negative as well.
+     */
+    public Range bitwiseAnd(Range right) {
+        if (from >= 0 && right.from >= 0) {
+            return new Range(0, Math.min(to, right.to));
+        } else if (from >= 0) {
+            return new Range(0, to);
+        } else if (right.from >= 0) {
+            return new Range(0, right.to);
+        }
+        return EVERYTHING;
+    }
+
+    private static BigInteger big(long value) {
+        return BigInteger.valueOf(value);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof Range)) {
+            return false;
+        }
+        Range other = (Range) o;
+        return from == other.from && to == other.to;
+    }
+
+    @Override
+    public int hashCode() {
+        return (int) (from ^ (from >>> 32)) * 31 + (int) (to ^ (to >>> 32));
+    }
+
+    @Override
+    public String toString() {
+        return "[" + from + ".." + to + "]";
+    }
+}
@@ -10,7 +10,7 @@ import org.checkerframework.dataflow.analysis.FlowExpressions.FieldAccess;
 import org.checkerframework.dataflow.analysis.FlowExpressions.LocalVariable;
 import org.checkerframework.dataflow.analysis.FlowExpressions.PureMethodCall;
 import org.checkerframework.dataflow.analysis.FlowExpressions.Receiver;
-import org.checkerframework.dataflow.analysis.Store;
+import org.checkerframework.dataflow.analysis.WideningStore;
 import org.checkerframework.dataflow.cfg.node.ArrayAccessNode;
 import org.checkerframework.dataflow.cfg.node.FieldAccessNode;
 import org.checkerframework.dataflow.cfg.node.LocalVariableNode;
@@ -22,6 +22,7 @@ import org.checkerframework.dataflow.qual.SideEffectFree;
 import org.checkerframework.dataflow.util.PurityUtils;
 import org.checkerframework.framework.qual.MonotonicQualifier;
 import org.checkerframework.framework.type.AnnotatedTypeFactory;
+import org.checkerframework.framework.util.CopyOnWriteMap;
 import org.checkerframework.javacutil.AnnotationUtils;
 import org.checkerframework.javacutil.Pair;
 
@@ -29,6 +30,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
 
 import javax.lang.model.element.AnnotationMirror;
 import javax.lang.model.element.Element;
@@ -41,13 +43,17 @@ import javax.lang.model.util.Types;
  * A store for the checker framework analysis tracks the annotations of memory
  * locations such as local variables and fields.
  *
+ * The maps of a store are {@link CopyOnWriteMap}s, so that copying a store
+ * takes constant time, and maps that a store shares with another store are
+ * neither merged nor compared entry by entry.
+ *
  * @author Charlie Garrett
  * @author Stefan Heule
  */
 // TODO: this class should be split into parts that are reusable generally, and
 // parts specific to the checker framework
 public abstract class CFAbstractStore<V extends CFAbstractValue<V>, S extends CFAbstractStore<V, S>>
-        implements Store<S> {
+        implements WideningStore<S> {
 
     /**
      * The analysis class this store belongs to.
@@ -58,7 +64,7 @@ public abstract class CFAbstractStore<V extends CFAbstractValue<V>, S extends CF
      * Information collected about local variables, which are identified by the
      * corresponding element.
      */
-    protected final Map<Element, V> localVariableValues;
+    protected Map<Element, V> localVariableValues;
 
     /**
      * Information collected about the current object.
@@ -98,24 +104,24 @@ public abstract class CFAbstractStore<V extends CFAbstractValue<V>, S extends CF
     public CFAbstractStore(CFAbstractAnalysis<V, S, ?> analysis,
             boolean sequentialSemantics) {
         this.analysis = analysis;
-        localVariableValues = new HashMap<>();
+        localVariableValues = new CopyOnWriteMap<>();
         thisValue = null;
-        fieldValues = new HashMap<>();
-        methodValues = new HashMap<>();
-        arrayValues = new HashMap<>();
-        classValues = new HashMap<>();
+        fieldValues = new CopyOnWriteMap<>();
+        methodValues = new CopyOnWriteMap<>();
+        arrayValues = new CopyOnWriteMap<>();
+        classValues = new CopyOnWriteMap<>();
         this.sequentialSemantics = sequentialSemantics;
     }
 
     /** Copy constructor. */
     protected CFAbstractStore(CFAbstractStore<V, S> other) {
         this.analysis = other.analysis;
-        localVariableValues = new HashMap<>(other.localVariableValues);
+        localVariableValues = CopyOnWriteMap.copyOf(other.localVariableValues);
         thisValue = other.thisValue;
-        fieldValues = new HashMap<>(other.fieldValues);
-        methodValues = new HashMap<>(other.methodValues);
-        arrayValues = new HashMap<>(other.arrayValues);
-        classValues = new HashMap<>(other.classValues);
+        fieldValues = CopyOnWriteMap.copyOf(other.fieldValues);
+        methodValues = CopyOnWriteMap.copyOf(other.methodValues);
+        arrayValues = CopyOnWriteMap.copyOf(other.arrayValues);
+        classValues = CopyOnWriteMap.copyOf(other.classValues);
         sequentialSemantics = other.sequentialSemantics;
     }
 
@@ -188,7 +194,7 @@ public abstract class CFAbstractStore<V extends CFAbstractValue<V>, S extends CF
         if (!(analysis.checker.hasOption("assumeSideEffectFree")
               || isSideEffectFree(atypeFactory, method))) {
             // update field values
-            Map<FlowExpressions.FieldAccess, V> newFieldValues = new HashMap<>();
+            Map<FlowExpressions.FieldAccess, V> fieldChanges = new HashMap<>();
             for (Entry<FlowExpressions.FieldAccess, V> e : fieldValues.entrySet()) {
                 FlowExpressions.FieldAccess fieldAccess = e.getKey();
                 V otherVal = e.getValue();
@@ -217,19 +223,19 @@ public abstract class CFAbstractStore<V extends CFAbstractValue<V>, S extends CF
                 if (newOtherVal != null) {
                     // keep information for all hierarchies where we had a
                     // monotone annotation.
-                    newFieldValues.put(fieldAccess, newOtherVal);
+                    fieldChanges.put(fieldAccess, newOtherVal);
                     continue;
                 }
 
                 // case 2:
                 if (!fieldAccess.isUnmodifiableByOtherCode()) {
+                    fieldChanges.put(fieldAccess, null);
                     continue; // remove information completely
                 }
 
                 // keep information
-                newFieldValues.put(fieldAccess, otherVal);
             }
-            fieldValues = newFieldValues;
+            applyChanges(fieldValues, fieldChanges);
 
             // update method values
             methodValues.clear();
@@ -634,13 +640,14 @@ public abstract class CFAbstractStore<V extends CFAbstractValue<V>, S extends CF
      */
     protected void removeConflicting(FlowExpressions.FieldAccess fieldAccess,
             /*@Nullable*/ V val) {
-        Map<FlowExpressions.FieldAccess, V> newFieldValues = new HashMap<>();
+        Map<FlowExpressions.FieldAccess, V> fieldChanges = new HashMap<>();
         for (Entry<FlowExpressions.FieldAccess, V> e : fieldValues.entrySet()) {
             FlowExpressions.FieldAccess otherFieldAccess = e.getKey();
             V otherVal = e.getValue();
             // case 2:
             if (otherFieldAccess.getReceiver().containsModifiableAliasOf(this,
                     fieldAccess)) {
+                fieldChanges.put(otherFieldAccess, null);
                 continue; // remove information completely
             }
             // case 1:
@@ -650,33 +657,31 @@ public abstract class CFAbstractStore<V extends CFAbstractValue<V>, S extends CF
                     if (!otherFieldAccess.isFinal()) {
                         if (val != null) {
                             V newVal = val.leastUpperBound(otherVal);
-                            newFieldValues.put(otherFieldAccess, newVal);
+                            fieldChanges.put(otherFieldAccess, newVal);
                         } else {
                             // remove information completely
+                            fieldChanges.put(otherFieldAccess, null);
                         }
                         continue;
                     }
                 }
             }
             // information is save to be carried over
-            newFieldValues.put(otherFieldAccess, otherVal);
         }
-        fieldValues = newFieldValues;
+        applyChanges(fieldValues, fieldChanges);
 
-        Map<FlowExpressions.ArrayAccess, V> newArrayValues = new HashMap<>();
+        Map<FlowExpressions.ArrayAccess, V> arrayChanges = new HashMap<>();
         for (Entry<ArrayAccess, V> e : arrayValues.entrySet()) {
             FlowExpressions.ArrayAccess otherArrayAccess = e.getKey();
-            V otherVal = e.getValue();
             if (otherArrayAccess.containsModifiableAliasOf(this, fieldAccess)) {
                 // remove information completely
-                continue;
+                arrayChanges.put(otherArrayAccess, null);
             }
-            newArrayValues.put(otherArrayAccess, otherVal);
         }
-        arrayValues = newArrayValues;
+        applyChanges(arrayValues, arrayChanges);
 
         // case 3:
-        methodValues = new HashMap<>();
+        methodValues.clear();
     }
 
     /**
@@ -702,12 +707,12 @@ public abstract class CFAbstractStore<V extends CFAbstractValue<V>, S extends CF
      */
     protected void removeConflicting(FlowExpressions.ArrayAccess arrayAccess,
             /*@Nullable*/ V val) {
-        Map<FlowExpressions.ArrayAccess, V> newArrayValues = new HashMap<>();
+        Map<FlowExpressions.ArrayAccess, V> arrayChanges = new HashMap<>();
         for (Entry<FlowExpressions.ArrayAccess, V> e : arrayValues.entrySet()) {
             FlowExpressions.ArrayAccess otherArrayAccess = e.getKey();
-            V otherVal = e.getValue();
             // case 1:
             if (otherArrayAccess.containsModifiableAliasOf(this, arrayAccess)) {
+                arrayChanges.put(otherArrayAccess, null);
                 continue; // remove information completely
             }
             if (canAlias(arrayAccess.getReceiver(),
@@ -715,29 +720,27 @@ public abstract class CFAbstractStore<V extends CFAbstractValue<V>, S extends CF
                 // TODO: one could be less strict here, and only raise the
                 // abstract value
                 // for all array expressions with potentially aliasing receivers
+                arrayChanges.put(otherArrayAccess, null);
                 continue; // remove information completely
             }
             // information is save to be carried over
-            newArrayValues.put(otherArrayAccess, otherVal);
         }
-        arrayValues = newArrayValues;
+        applyChanges(arrayValues, arrayChanges);
 
         // case 2:
-        Map<FlowExpressions.FieldAccess, V> newFieldValues = new HashMap<>();
+        Map<FlowExpressions.FieldAccess, V> fieldChanges = new HashMap<>();
         for (Entry<FieldAccess, V> e : fieldValues.entrySet()) {
             FlowExpressions.FieldAccess otherFieldAccess = e.getKey();
-            V otherVal = e.getValue();
             Receiver receiver = otherFieldAccess.getReceiver();
             if (receiver.containsModifiableAliasOf(this, arrayAccess) && receiver.containsOfClass(ArrayAccess.class)) {
                 // remove information completely
-                continue;
+                fieldChanges.put(otherFieldAccess, null);
             }
-            newFieldValues.put(otherFieldAccess, otherVal);
         }
-        fieldValues = newFieldValues;
+        applyChanges(fieldValues, fieldChanges);
 
         // case 3:
-        methodValues = new HashMap<>();
+        methodValues.clear();
     }
 
     /**
@@ -756,40 +759,49 @@ public abstract class CFAbstractStore<V extends CFAbstractValue<V>, S extends CF
      * </ol>
      */
     protected void removeConflicting(LocalVariable var) {
-        Map<FlowExpressions.FieldAccess, V> newFieldValues = new HashMap<>();
-        for (Entry<FlowExpressions.FieldAccess, V> e : fieldValues.entrySet()) {
-            FlowExpressions.FieldAccess otherFieldAccess = e.getKey();
+        Map<FlowExpressions.FieldAccess, V> fieldChanges = new HashMap<>();
+        for (FlowExpressions.FieldAccess otherFieldAccess : fieldValues.keySet()) {
             // case 1:
             if (otherFieldAccess.containsSyntacticEqualReceiver(var)) {
-                continue;
+                fieldChanges.put(otherFieldAccess, null);
             }
-            newFieldValues.put(otherFieldAccess, e.getValue());
         }
-        fieldValues = newFieldValues;
+        applyChanges(fieldValues, fieldChanges);
 
-        Map<FlowExpressions.ArrayAccess, V> newArrayValues = new HashMap<>();
-        for (Entry<FlowExpressions.ArrayAccess, V> e : arrayValues.entrySet()) {
-            FlowExpressions.ArrayAccess otherArrayAccess = e.getKey();
+        Map<FlowExpressions.ArrayAccess, V> arrayChanges = new HashMap<>();
+        for (FlowExpressions.ArrayAccess otherArrayAccess : arrayValues.keySet()) {
             // case 2:
             if (otherArrayAccess.containsSyntacticEqualReceiver(var)) {
-                continue;
+                arrayChanges.put(otherArrayAccess, null);
             }
-            newArrayValues.put(otherArrayAccess, e.getValue());
         }
-        arrayValues = newArrayValues;
+        applyChanges(arrayValues, arrayChanges);
 
-        Map<FlowExpressions.PureMethodCall, V> newMethodValues = new HashMap<>();
-        for (Entry<FlowExpressions.PureMethodCall, V> e : methodValues
-                .entrySet()) {
-            FlowExpressions.PureMethodCall otherMethodAccess = e.getKey();
+        Map<FlowExpressions.PureMethodCall, V> methodChanges = new HashMap<>();
+        for (FlowExpressions.PureMethodCall otherMethodAccess : methodValues.keySet()) {
             // case 3:
             if (otherMethodAccess.containsSyntacticEqualReceiver(var)
                     || otherMethodAccess.containsSyntacticEqualParameter(var)) {
-                continue;
+                methodChanges.put(otherMethodAccess, null);
+            }
+        }
+        applyChanges(methodValues, methodChanges);
+    }
+
+    /**
+     * Applies the changes collected while iterating over {@code map}: each
+     * key in {@code changes} is removed from {@code map} if it is mapped to
+     * null, and updated otherwise.  Maps without changes are not modified,
+     * so that they remain shared with other stores.
+     */
+    private static <K, V> void applyChanges(Map<K, V> map, Map<K, V> changes) {
+        for (Entry<K, V> change : changes.entrySet()) {
+            if (change.getValue() == null) {
+                map.remove(change.getKey());
+            } else {
+                map.put(change.getKey(), change.getValue());
             }
-            newMethodValues.put(otherMethodAccess, e.getValue());
         }
-        methodValues = newMethodValues;
     }
 
     /**
@@ -845,20 +857,11 @@ public abstract class CFAbstractStore<V extends CFAbstractValue<V>, S extends CF
     public S leastUpperBound(S other) {
         S newStore = analysis.createEmptyStore(sequentialSemantics);
 
-        for (Entry<Element, V> e : other.localVariableValues.entrySet()) {
-            // local variables that are only part of one store, but not the
-            // other are discarded, as one of store implicitly contains 'top'
-            // for that variable.
-            Element el = e.getKey();
-            if (localVariableValues.containsKey(el)) {
-                V otherVal = e.getValue();
-                V thisVal = localVariableValues.get(el);
-                V mergedVal = thisVal.leastUpperBound(otherVal);
-                if (mergedVal != null) {
-                    newStore.localVariableValues.put(el, mergedVal);
-                }
-            }
-        }
+        // local variables that are only part of one store, but not the
+        // other are discarded, as one of store implicitly contains 'top'
+        // for that variable.
+        newStore.localVariableValues = leastUpperBound(localVariableValues,
+                other.localVariableValues);
 
         // information about the current object
         {
@@ -870,63 +873,100 @@ public abstract class CFAbstractStore<V extends CFAbstractValue<V>, S extends CF
             }
         }
 
-        for (Entry<FlowExpressions.FieldAccess, V> e : other.fieldValues
-                .entrySet()) {
-            // information about fields that are only part of one store, but not
-            // the other are discarded, as one store implicitly contains 'top'
-            // for that field.
-            FlowExpressions.FieldAccess el = e.getKey();
-            if (fieldValues.containsKey(el)) {
-                V otherVal = e.getValue();
-                V thisVal = fieldValues.get(el);
-                V mergedVal = thisVal.leastUpperBound(otherVal);
-                if (mergedVal != null) {
-                    newStore.fieldValues.put(el, mergedVal);
-                }
-            }
+        // information about fields, arrays, methods and classes that are only
+        // part of one store, but not the other are discarded, as one store
+        // implicitly contains 'top' for them.
+        newStore.fieldValues = leastUpperBound(fieldValues, other.fieldValues);
+        newStore.arrayValues = leastUpperBound(arrayValues, other.arrayValues);
+        newStore.methodValues = leastUpperBound(methodValues, other.methodValues);
+        newStore.classValues = leastUpperBound(classValues, other.classValues);
+        return newStore;
+    }
+
+    /**
+     * Returns the least upper bound of this store and {@code other}, in
+     * which each value is widened with respect to the value in this store,
+     * see {@link CFAbstractValue#widenedUpperBound}.
+     */
+    @Override
+    public S widenedUpperBound(S other) {
+        S newStore = leastUpperBound(other);
+        if (newStore.thisValue != null && thisValue != null) {
+            newStore.thisValue = newStore.thisValue.widenedUpperBound(thisValue);
         }
-        for (Entry<FlowExpressions.ArrayAccess, V> e : other.arrayValues
-                .entrySet()) {
-            // information about arrays that are only part of one store, but not
-            // the other are discarded, as one store implicitly contains 'top'
-            // for that array access.
-            FlowExpressions.ArrayAccess el = e.getKey();
-            if (arrayValues.containsKey(el)) {
-                V otherVal = e.getValue();
-                V thisVal = arrayValues.get(el);
-                V mergedVal = thisVal.leastUpperBound(otherVal);
-                if (mergedVal != null) {
-                    newStore.arrayValues.put(el, mergedVal);
+        widenValues(newStore.localVariableValues, localVariableValues);
+        widenValues(newStore.fieldValues, fieldValues);
+        widenValues(newStore.arrayValues, arrayValues);
+        widenValues(newStore.methodValues, methodValues);
+        widenValues(newStore.classValues, classValues);
+        return newStore;
+    }
+
+    /**
+     * Replaces the values in {@code map}, which are upper bounds of the
+     * values in {@code previousMap}, by their widened upper bounds.
+     */
+    private static <K, V extends CFAbstractValue<V>> void widenValues(
+            Map<K, V> map, Map<K, V> previousMap) {
+        Map<K, V> widenedValues = null;
+        for (Entry<K, V> e : map.entrySet()) {
+            V previousVal = previousMap.get(e.getKey());
+            if (previousVal != null && previousVal != e.getValue()) {
+                V widenedVal = e.getValue().widenedUpperBound(previousVal);
+                if (widenedVal != e.getValue()) {
+                    if (widenedValues == null) {
+                        widenedValues = new HashMap<>();
+                    }
+                    widenedValues.put(e.getKey(), widenedVal);
                 }
             }
         }
-        for (Entry<PureMethodCall, V> e : other.methodValues.entrySet()) {
-            // information about methods that are only part of one store, but
-            // not the other are discarded, as one store implicitly contains
-            // 'top' for that field.
-            FlowExpressions.PureMethodCall el = e.getKey();
-            if (methodValues.containsKey(el)) {
-                V otherVal = e.getValue();
-                V thisVal = methodValues.get(el);
-                V mergedVal = thisVal.leastUpperBound(otherVal);
+        if (widenedValues != null) {
+            map.putAll(widenedValues);
+        }
+    }
+
+    /**
+     * Returns the least upper bound of the values in two maps: the keys
+     * of the result are the keys that are present in both maps.  If the
+     * maps are still shared, the result shares them as well.  If the maps
+     * derive from the same map, only the keys that either of them changed
+     * are merged, see {@link CopyOnWriteMap#differingKeys}.
+     */
+    private static <K, V extends CFAbstractValue<V>> Map<K, V> leastUpperBound(
+            Map<K, V> thisMap, Map<K, V> otherMap) {
+        if (CopyOnWriteMap.isSharedWith(thisMap, otherMap)) {
+            return CopyOnWriteMap.copyOf(thisMap);
+        }
+        Set<K> changedKeys = CopyOnWriteMap.differingKeys(thisMap, otherMap);
+        if (changedKeys != null) {
+            Map<K, V> result = CopyOnWriteMap.copyOf(thisMap);
+            for (K el : changedKeys) {
+                V thisVal = thisMap.get(el);
+                V otherVal = otherMap.get(el);
+                V mergedVal = (thisVal == null || otherVal == null)
+                        ? null : thisVal.leastUpperBound(otherVal);
                 if (mergedVal != null) {
-                    newStore.methodValues.put(el, mergedVal);
+                    result.put(el, mergedVal);
+                } else {
+                    result.remove(el);
                 }
             }
+            return result;
         }
-        for (Entry<FlowExpressions.ClassName, V> e : other.classValues
-                .entrySet()) {
-            FlowExpressions.ClassName el = e.getKey();
-            if (classValues.containsKey(el)) {
+        Map<K, V> result = new CopyOnWriteMap<>();
+        for (Entry<K, V> e : otherMap.entrySet()) {
+            K el = e.getKey();
+            V thisVal = thisMap.get(el);
+            if (thisVal != null) {
                 V otherVal = e.getValue();
-                V thisVal = classValues.get(el);
                 V mergedVal = thisVal.leastUpperBound(otherVal);
                 if (mergedVal != null) {
-                    newStore.classValues.put(el, mergedVal);
+                    result.put(el, mergedVal);
                 }
             }
         }
-        return newStore;
+        return result;
     }
 
     /**
@@ -937,41 +977,38 @@ public abstract class CFAbstractStore<V extends CFAbstractValue<V>, S extends CF
      * predicate.
      */
     protected boolean supersetOf(CFAbstractStore<V, S> other) {
-        for (Entry<Element, V> e : other.localVariableValues.entrySet()) {
-            Element key = e.getKey();
-            if (!localVariableValues.containsKey(key)
-                    || !localVariableValues.get(key).equals(e.getValue())) {
-                return false;
-            }
-        }
-        for (Entry<FlowExpressions.FieldAccess, V> e : other.fieldValues
-                .entrySet()) {
-            FlowExpressions.FieldAccess key = e.getKey();
-            if (!fieldValues.containsKey(key)
-                    || !fieldValues.get(key).equals(e.getValue())) {
-                return false;
-            }
-        }
-        for (Entry<FlowExpressions.ArrayAccess, V> e : other.arrayValues
-                .entrySet()) {
-            FlowExpressions.ArrayAccess key = e.getKey();
-            if (!arrayValues.containsKey(key)
-                    || !arrayValues.get(key).equals(e.getValue())) {
-                return false;
-            }
+        return supersetOf(localVariableValues, other.localVariableValues)
+                && supersetOf(fieldValues, other.fieldValues)
+                && supersetOf(arrayValues, other.arrayValues)
+                && supersetOf(methodValues, other.methodValues)
+                && supersetOf(classValues, other.classValues);
+    }
+
+    /**
+     * Returns true iff {@code thisMap} contains all entries of
+     * {@code otherMap}, which holds in particular for shared maps.  If the
+     * maps derive from the same map, only the entries that either of them
+     * changed are compared.
+     */
+    private static <K, V> boolean supersetOf(Map<K, V> thisMap, Map<K, V> otherMap) {
+        if (CopyOnWriteMap.isSharedWith(thisMap, otherMap)) {
+            return true;
         }
-        for (Entry<PureMethodCall, V> e : other.methodValues.entrySet()) {
-            FlowExpressions.PureMethodCall key = e.getKey();
-            if (!methodValues.containsKey(key)
-                    || !methodValues.get(key).equals(e.getValue())) {
-                return false;
+        Set<K> changedKeys = CopyOnWriteMap.differingKeys(thisMap, otherMap);
+        if (changedKeys != null) {
+            for (K key : changedKeys) {
+                V otherVal = otherMap.get(key);
+                if (otherVal != null
+                        && (!thisMap.containsKey(key) || !thisMap.get(key).equals(otherVal))) {
+                    return false;
+                }
             }
+            return true;
         }
-        for (Entry<FlowExpressions.ClassName, V> e : other.classValues
-                .entrySet()) {
-            FlowExpressions.ClassName key = e.getKey();
-            if (!classValues.containsKey(key)
-                    || !classValues.get(key).equals(e.getValue())) {
+        for (Entry<K, V> e : otherMap.entrySet()) {
+            K key = e.getKey();
+            if (!thisMap.containsKey(key)
+                    || !thisMap.get(key).equals(e.getValue())) {
                 return false;
             }
         }
@@ -87,6 +87,36 @@ public abstract class CFAbstractValue<V extends CFAbstractValue<V>> implements
         return analysis.createAbstractValue(lubAnnotatedType);
     }
 
+    /**
+     * Returns this value, which is an upper bound of {@code previous}, with
+     * its primary annotations widened by
+     * {@link QualifierHierarchy#widenedUpperBound}.  Used at loop back
+     * edges, where {@code previous} is the value of the previous iteration.
+     */
+    public V widenedUpperBound(V previous) {
+        QualifierHierarchy qualifierHierarchy = analysis.qualifierHierarchy;
+        AnnotatedTypeMirror widenedType = null;
+        for (AnnotationMirror anno : type.getAnnotations()) {
+            AnnotationMirror previousAnno = previous.getType().getAnnotationInHierarchy(anno);
+            if (previousAnno == null) {
+                continue;
+            }
+            AnnotationMirror widenedAnno = qualifierHierarchy.widenedUpperBound(anno, previousAnno);
+            if (widenedAnno != anno && !AnnotationUtils.areSame(widenedAnno, anno)) {
+                if (widenedType == null) {
+                    widenedType = type.deepCopy();
+                }
+                widenedType.replaceAnnotation(widenedAnno);
+            }
+        }
+        if (widenedType == null) {
+            @SuppressWarnings("unchecked")
+            V v = (V) this;
+            return v;
+        }
+        return analysis.createAbstractValue(widenedType);
+    }
+
     private static void copyArrayComponentAnnotations(AnnotatedArrayType source,
             AnnotatedArrayType dest) {
         AnnotatedTypeMirror destComp = dest.getComponentType();
@@ -7,12 +7,16 @@ import org.checkerframework.dataflow.cfg.UnderlyingAST;
 import org.checkerframework.framework.source.SourceChecker;
 import org.checkerframework.framework.type.AnnotatedTypeFactory;
 import org.checkerframework.framework.type.AnnotatedTypeMirror;
+import org.checkerframework.javacutil.AnnotationProvider;
 import org.checkerframework.javacutil.ErrorReporter;
 import org.checkerframework.javacutil.TreeUtils;
 
+import java.lang.annotation.Annotation;
 import java.util.Collection;
+import java.util.Map;
 
 import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.AnnotationMirror;
 import javax.lang.model.element.Element;
 import javax.lang.model.element.VariableElement;
 
@@ -31,6 +35,10 @@ import com.sun.source.tree.VariableTree;
  * about the Checker Framework annotations and their representation as
  * {@link AnnotatedTypeMirror}s.
  *
+ * The graphs are shared with the other checkers that process the same
+ * compilation unit, see {@link SharedCFGCache}, unless the -AnoSharedCFGs
+ * option is given.
+ *
  * @author Stefan Heule
  */
 public class CFCFGBuilder extends CFGBuilder {
@@ -51,8 +59,12 @@ public class CFCFGBuilder extends CFGBuilder {
         this.factory = factory;
     }
 
+    /** The shared graph that is being built, recording the checker-specific queries. */
+    protected SharedCFGCache.Entry current;
+
     /**
-     * Build the control flow graph of some code.
+     * Build the control flow graph of some code, or reuse the graph that
+     * another checker built for it.
      */
     @Override
     public ControlFlowGraph run(
@@ -61,14 +73,89 @@ public class CFCFGBuilder extends CFGBuilder {
         declaredClasses.clear();
         declaredLambdas.clear();
 
-        CFTreeBuilder builder = new CFTreeBuilder(env);
-        PhaseOneResult phase1result = new CFCFGTranslationPhaseOne().process(
-                root, env, underlyingAST, exceptionalExitLabel, builder, factory);
-        ControlFlowGraph phase2result = new CFGTranslationPhaseTwo()
-                .process(phase1result);
-        ControlFlowGraph phase3result = CFGTranslationPhaseThree
-                .process(phase2result);
-        return phase3result;
+        Tree code = underlyingAST.getCode();
+        SharedCFGCache cache = checker.hasOption("noSharedCFGs") ? null : SharedCFGCache.instance(env);
+        SharedCFGCache.Entry shared = (cache == null) ? null : cache.get(root, code);
+        if (shared != null && canReuse(shared)) {
+            for (Map.Entry<Tree, Element> artificial : shared.artificialTrees.entrySet()) {
+                factory.setPathHack(artificial.getKey(), artificial.getValue());
+            }
+            declaredClasses.addAll(shared.declaredClasses);
+            declaredLambdas.addAll(shared.declaredLambdas);
+            return shared.cfg;
+        }
+
+        current = new SharedCFGCache.Entry(getClass(), assumeAssertionsEnabled,
+                assumeAssertionsDisabled);
+        try {
+            CFTreeBuilder builder = new CFTreeBuilder(env);
+            PhaseOneResult phase1result = new CFCFGTranslationPhaseOne().process(
+                    root, env, underlyingAST, exceptionalExitLabel, builder,
+                    new RecordingAnnotationProvider());
+            ControlFlowGraph phase2result = new CFGTranslationPhaseTwo()
+                    .process(phase1result);
+            ControlFlowGraph phase3result = CFGTranslationPhaseThree
+                    .process(phase2result);
+
+            if (cache != null && current.shareable) {
+                current.cfg = phase3result;
+                current.declaredClasses.addAll(declaredClasses);
+                current.declaredLambdas.addAll(declaredLambdas);
+                cache.put(root, code, current);
+            }
+            return phase3result;
+        } finally {
+            current = null;
+        }
+    }
+
+    /**
+     * Returns true if the checker and type factory of this builder give the
+     * same answers to the queries that were made while building the shared
+     * graph.
+     */
+    protected boolean canReuse(SharedCFGCache.Entry shared) {
+        if (shared.builderClass != getClass()
+                || shared.assumeAssertionsEnabled != assumeAssertionsEnabled
+                || shared.assumeAssertionsDisabled != assumeAssertionsDisabled) {
+            return false;
+        }
+        for (Map.Entry<AssertTree, Boolean> assertion : shared.assertions.entrySet()) {
+            if (assumeAssertionsActivatedForAssertTree(checker, assertion.getKey())
+                    != assertion.getValue()) {
+                return false;
+            }
+        }
+        for (SharedCFGCache.DeclAnnotationQuery query : shared.declAnnotationQueries) {
+            boolean present = factory.getDeclAnnotation(query.element, query.annotation) != null;
+            if (present != query.present) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * An {@link AnnotationProvider} that answers queries with the type
+     * factory and records them in the graph that is being built.
+     */
+    protected class RecordingAnnotationProvider implements AnnotationProvider {
+        @Override
+        public AnnotationMirror getDeclAnnotation(Element elt,
+                Class<? extends Annotation> anno) {
+            AnnotationMirror result = factory.getDeclAnnotation(elt, anno);
+            current.declAnnotationQueries.add(
+                    new SharedCFGCache.DeclAnnotationQuery(elt, anno, result != null));
+            return result;
+        }
+
+        @Override
+        public AnnotationMirror getAnnotationMirror(Tree tree,
+                Class<? extends Annotation> target) {
+            // The result depends on the type hierarchy of the checker.
+            current.shareable = false;
+            return factory.getAnnotationMirror(tree, target);
+        }
     }
 
     /*
@@ -95,7 +182,9 @@ public class CFCFGBuilder extends CFGBuilder {
 
         @Override
         protected boolean assumeAssertionsEnabledFor(AssertTree tree) {
-            if (assumeAssertionsActivatedForAssertTree(checker, tree)) {
+            boolean activated = assumeAssertionsActivatedForAssertTree(checker, tree);
+            current.assertions.put(tree, activated);
+            if (activated) {
                 return true;
             }
             return super.assumeAssertionsEnabledFor(tree);
@@ -108,17 +197,22 @@ public class CFCFGBuilder extends CFGBuilder {
             if (enclosingMethod != null) {
                 Element methodElement = TreeUtils.elementFromDeclaration(enclosingMethod);
                 factory.setPathHack(tree, methodElement);
+                current.artificialTrees.put(tree, methodElement);
             } else {
                 ClassTree enclosingClass = TreeUtils.enclosingClass(getCurrentPath());
                 if (enclosingClass != null) {
                     Element classElement = TreeUtils.elementFromDeclaration(enclosingClass);
                     factory.setPathHack(tree, classElement);
+                    current.artificialTrees.put(tree, classElement);
                 }
             }
         }
 
         @Override
         protected VariableTree createEnhancedForLoopIteratorVariable(MethodInvocationTree iteratorCall, VariableElement variableElement) {
+            // The variable is annotated with the types of this checker.
+            current.shareable = false;
+
             // We do not want to cache flow-insensitive types
             // retrieved during CFG building.
             boolean oldShouldCache = factory.shouldCache;
@@ -143,6 +237,9 @@ public class CFCFGBuilder extends CFGBuilder {
 
         @Override
         protected VariableTree createEnhancedForLoopArrayVariable(ExpressionTree expression, VariableElement variableElement) {
+            // The variable is annotated with the types of this checker.
+            current.shareable = false;
+
             // We do not want to cache flow-insensitive types
             // retrieved during CFG building.
             boolean oldShouldCache = factory.shouldCache;
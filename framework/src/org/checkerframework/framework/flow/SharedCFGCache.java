@@ -0,0 +1,157 @@
+package org.checkerframework.framework.flow;
+
+/*>>>
+import org.checkerframework.checker.nullness.qual.Nullable;
+*/
+
+import org.checkerframework.dataflow.cfg.ControlFlowGraph;
+
+import java.lang.annotation.Annotation;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.Element;
+
+import com.sun.source.tree.AssertTree;
+import com.sun.source.tree.ClassTree;
+import com.sun.source.tree.CompilationUnitTree;
+import com.sun.source.tree.LambdaExpressionTree;
+import com.sun.source.tree.Tree;
+import com.sun.tools.javac.processing.JavacProcessingEnvironment;
+import com.sun.tools.javac.util.Context;
+
+/**
+ * Control-flow graphs shared by all checkers that process the same
+ * compilation unit.
+ *
+ * The subcheckers of a checker and the checkers of an
+ * {@link org.checkerframework.framework.source.AggregateChecker} all
+ * analyze the same methods, one checker after the other.  The control-flow
+ * graph of a method is almost independent of the checker: a
+ * {@link CFCFGBuilder} only consults its checker and type factory to
+ * <ul>
+ *   <li>decide whether assertions with an {@code @AssumeAssertion} message
+ *       are assumed to be enabled,</li>
+ *   <li>look up declaration annotations such as
+ *       {@link org.checkerframework.dataflow.qual.TerminatesExecution},</li>
+ *   <li>annotate the variables introduced for enhanced for loops, and</li>
+ *   <li>register the artificial trees it creates with the type factory.</li>
+ * </ul>
+ * An {@link Entry} records the outcome of each of these queries while the
+ * graph is built.  Another checker reuses the graph only if it gives the
+ * same answers; it then replays the registration of the artificial trees
+ * with its own type factory.  Otherwise, it builds a private graph.
+ * Graphs that contain checker-specific annotated types are never shared.
+ *
+ * Each compilation has its own cache, which only keeps the graphs of the
+ * compilation unit that is being checked: they are dropped as soon as a
+ * checker analyzes another compilation unit, and together with the
+ * compilation.
+ */
+class SharedCFGCache {
+
+    /** The compilation unit whose graphs are shared, or null if there is none yet. */
+    private /*@Nullable*/ CompilationUnitTree root;
+
+    /** The shared graphs of {@link #root}, keyed by the analyzed code. */
+    private final Map<Tree, Entry> entries = new IdentityHashMap<Tree, Entry>();
+
+    private SharedCFGCache() {}
+
+    /**
+     * Returns the cache of the compilation that {@code env} belongs to.
+     */
+    static SharedCFGCache instance(ProcessingEnvironment env) {
+        Context context = ((JavacProcessingEnvironment) env).getContext();
+        synchronized (context) {
+            SharedCFGCache cache = context.get(SharedCFGCache.class);
+            if (cache == null) {
+                cache = new SharedCFGCache();
+                context.put(SharedCFGCache.class, cache);
+            }
+            return cache;
+        }
+    }
+
+    /**
+     * Returns the shared graph for {@code code}, or null if no checker has
+     * shared one yet.
+     */
+    synchronized /*@Nullable*/ Entry get(CompilationUnitTree root, Tree code) {
+        setRoot(root);
+        return entries.get(code);
+    }
+
+    /**
+     * Shares the graph for {@code code}, unless one was shared already.
+     */
+    synchronized void put(CompilationUnitTree root, Tree code, Entry entry) {
+        setRoot(root);
+        if (!entries.containsKey(code)) {
+            entries.put(code, entry);
+        }
+    }
+
+    /** Drops the graphs of the previous compilation unit, if {@code root} is a new one. */
+    private void setRoot(CompilationUnitTree root) {
+        if (root != this.root) {
+            entries.clear();
+            this.root = root;
+        }
+    }
+
+    /**
+     * A control-flow graph together with the checker-specific inputs that
+     * were used to build it.
+     */
+    static class Entry {
+        /** The class of the builder that built the graph. */
+        final Class<?> builderClass;
+
+        final boolean assumeAssertionsEnabled;
+        final boolean assumeAssertionsDisabled;
+
+        /** The graph; set once it has been built. */
+        ControlFlowGraph cfg;
+
+        /** Whether the graph may be used by other checkers. */
+        boolean shareable = true;
+
+        /** The artificial trees, with the element that encloses them. */
+        final Map<Tree, Element> artificialTrees = new LinkedHashMap<>();
+
+        /** For each assertion that was queried, whether it is assumed to be enabled. */
+        final Map<AssertTree, Boolean> assertions = new IdentityHashMap<>();
+
+        /** The declaration annotation queries, and whether the annotation was present. */
+        final List<DeclAnnotationQuery> declAnnotationQueries = new ArrayList<>();
+
+        final List<ClassTree> declaredClasses = new ArrayList<>();
+        final List<LambdaExpressionTree> declaredLambdas = new ArrayList<>();
+
+        Entry(Class<?> builderClass, boolean assumeAssertionsEnabled,
+                boolean assumeAssertionsDisabled) {
+            this.builderClass = builderClass;
+            this.assumeAssertionsEnabled = assumeAssertionsEnabled;
+            this.assumeAssertionsDisabled = assumeAssertionsDisabled;
+        }
+    }
+
+    /** A declaration annotation query made while building a graph. */
+    static class DeclAnnotationQuery {
+        final Element element;
+        final Class<? extends Annotation> annotation;
+        final boolean present;
+
+        DeclAnnotationQuery(Element element, Class<? extends Annotation> annotation,
+                boolean present) {
+            this.element = element;
+            this.annotation = annotation;
+            this.present = present;
+        }
+    }
+}
@@ -108,6 +108,9 @@ public abstract class AggregateChecker extends SourceChecker {
     // AbstractTypeProcessor delegation
     @Override
     public final void typeProcess(TypeElement element, TreePath tree) {
+        if (typeProcessWithResultCache(element, tree)) {
+            return;
+        }
         Context context = ((JavacProcessingEnvironment)processingEnv).getContext();
         Log log = Log.instance(context);
         if (log.nerrors > this.errsOnLastExit) {
@@ -0,0 +1,480 @@
+package org.checkerframework.framework.source;
+
+/*>>>
+import org.checkerframework.checker.nullness.qual.Nullable;
+*/
+
+import org.checkerframework.framework.util.BoundedCache;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Records the resources that checkers spend in the phases of type-checking,
+ * for the {@code -AresourceStats} option: wall-clock time, CPU time, and
+ * allocated bytes, per checker, per top-level class, and per {@link Phase}.
+ *
+ * Phases nest; for example, subtype checks happen during dataflow analysis,
+ * which happens while the visitor scans a class.  Each phase is charged only
+ * for the resources that it uses itself, not for those of the phases nested
+ * in it, so the numbers of all phases can be added up.  Work that happens
+ * outside of any top-level class, like parsing stub files while a checker
+ * is initialized, only shows up in the totals of a checker.
+ *
+ * Each phase is measured with the following idiom, which does nothing
+ * unless profiling is enabled:
+ *
+ * <pre>
+ * CheckerProfiler.start(checker, CheckerProfiler.Phase.CFG_CONSTRUCTION);
+ * try {
+ *     ...
+ * } finally {
+ *     CheckerProfiler.stop();
+ * }
+ * </pre>
+ *
+ * Measuring takes time itself, which is noticeable for the short but
+ * frequent subtype checks.  The numbers are therefore better suited for
+ * comparing phases and classes than as absolute numbers.
+ *
+ * The caches of the annotated type factories register themselves with
+ * {@link #registerCache}; their hits, misses and evictions are output per
+ * checker, summed over all factories of the checker.  Only the statistics
+ * of a cache are kept, not the cache, so that registering does not keep
+ * the entries of discarded factories alive.
+ *
+ * @see SourceChecker#printStats()
+ */
+public final class CheckerProfiler {
+
+    /** The phases of type-checking that are measured separately. */
+    public enum Phase {
+        /** Parsing stub files, eagerly or with {@code -AlazyStubs}. */
+        STUB_PARSING("stubParsing"),
+        /** Building control flow graphs. */
+        CFG_CONSTRUCTION("cfgConstruction"),
+        /** Computing the dataflow fix-point of a control flow graph. */
+        DATAFLOW("dataflow"),
+        /** Scanning a class with the visitor of a checker. */
+        VISITOR("visitor"),
+        /** Inferring the type arguments of method invocations. */
+        TYPE_ARGUMENT_INFERENCE("typeArgumentInference"),
+        /** Checking subtype relationships between annotated types. */
+        SUBTYPE_CHECKS("subtypeChecks");
+
+        /** The name of the phase in the JSON output. */
+        public final String jsonName;
+
+        Phase(String jsonName) {
+            this.jsonName = jsonName;
+        }
+    }
+
+    // Indices into the per-phase measurements.
+    private static final int WALL = 0;
+    private static final int CPU = 1;
+    private static final int ALLOCATED = 2;
+    private static final int COUNT = 3;
+    private static final int MEASUREMENTS = 4;
+
+    private static final int PHASES = Phase.values().length;
+
+    /** Whether profiling is enabled. */
+    private static volatile boolean enabled = false;
+
+    /** Whether the statistics have been output already. */
+    private static boolean written = false;
+
+    /** The states of all threads that have been profiled. */
+    private static final List<ThreadState> threadStates = new ArrayList<>();
+
+    private static final ThreadLocal<ThreadState> threadState = new ThreadLocal<ThreadState>() {
+        @Override
+        protected ThreadState initialValue() {
+            ThreadState state = new ThreadState();
+            synchronized (threadStates) {
+                threadStates.add(state);
+            }
+            return state;
+        }
+    };
+
+    /** The statistics of the caches of all checkers, by checker class name. */
+    private static final Map<String, List<BoundedCache.Statistics>> caches = new HashMap<>();
+
+    private static ThreadMXBean threadBean;
+    private static boolean cpuTimeSupported;
+    private static boolean allocatedBytesSupported;
+
+    private CheckerProfiler() {
+        throw new AssertionError("Class CheckerProfiler cannot be instantiated.");
+    }
+
+    /**
+     * Enables profiling.  Has no effect if profiling has already been
+     * enabled.
+     */
+    public static synchronized void enable() {
+        if (enabled) {
+            return;
+        }
+        threadBean = ManagementFactory.getThreadMXBean();
+        cpuTimeSupported = threadBean.isCurrentThreadCpuTimeSupported();
+        if (cpuTimeSupported && !threadBean.isThreadCpuTimeEnabled()) {
+            threadBean.setThreadCpuTimeEnabled(true);
+        }
+        if (threadBean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) threadBean;
+            allocatedBytesSupported = sunBean.isThreadAllocatedMemorySupported();
+            if (allocatedBytesSupported && !sunBean.isThreadAllocatedMemoryEnabled()) {
+                sunBean.setThreadAllocatedMemoryEnabled(true);
+            }
+        }
+        enabled = true;
+    }
+
+    /** Returns true if profiling is enabled. */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Sets the top-level class that the current thread type-checks; null
+     * if it does not type-check a class.
+     *
+     * @return the previous top-level class, to be restored afterwards
+     */
+    public static /*@Nullable*/ String setCurrentClass(/*@Nullable*/ String className) {
+        if (!enabled) {
+            return null;
+        }
+        ThreadState state = threadState.get();
+        String previous = state.currentClass;
+        state.currentClass = className;
+        return previous;
+    }
+
+    /**
+     * Starts a phase of the given checker, which must be ended by a call
+     * to {@link #stop}.  Does nothing unless profiling is enabled.
+     */
+    public static void start(/*@Nullable*/ SourceChecker checker, Phase phase) {
+        if (!enabled) {
+            return;
+        }
+        ThreadState state = threadState.get();
+        String checkerName = checker == null ? "unknown" : checker.getClass().getName();
+        long[] measurements = state.measurementsFor(checkerName, phase);
+        state.charge();
+        state.push(measurements);
+        measurements[COUNT]++;
+    }
+
+    /** Ends the phase started by the last call to {@link #start}. */
+    public static void stop() {
+        if (!enabled) {
+            return;
+        }
+        ThreadState state = threadState.get();
+        if (state.depth == 0) {
+            // Profiling was enabled while the phase was running.
+            return;
+        }
+        state.charge();
+        state.depth--;
+        state.stack[state.depth] = null;
+    }
+
+    /**
+     * Registers a cache of the given checker, whose statistics are output
+     * with the other statistics.  Does nothing unless profiling is enabled.
+     */
+    public static void registerCache(/*@Nullable*/ SourceChecker checker, BoundedCache<?, ?> cache) {
+        if (!enabled) {
+            return;
+        }
+        String checkerName = checker == null ? "unknown" : checker.getClass().getName();
+        synchronized (caches) {
+            List<BoundedCache.Statistics> checkerCaches = caches.get(checkerName);
+            if (checkerCaches == null) {
+                checkerCaches = new ArrayList<>();
+                caches.put(checkerName, checkerCaches);
+            }
+            checkerCaches.add(cache.getStatistics());
+        }
+    }
+
+    /**
+     * Writes the statistics as JSON to the given file, or to standard
+     * output if the file is null.  Only the first call writes the
+     * statistics; they are collected across all checkers.
+     */
+    public static synchronized void writeStatistics(/*@Nullable*/ String fileName) throws IOException {
+        if (!enabled || written) {
+            return;
+        }
+        written = true;
+        if (fileName == null) {
+            @SuppressWarnings("resource") // don't close System.out
+            Writer out = new OutputStreamWriter(System.out, "UTF-8");
+            writeJson(out);
+            out.flush();
+        } else {
+            try (Writer out = new OutputStreamWriter(
+                    new FileOutputStream(new File(fileName)), "UTF-8")) {
+                writeJson(out);
+            }
+        }
+    }
+
+    /** Writes the statistics of all threads, merged, as JSON. */
+    private static void writeJson(Writer out) throws IOException {
+        // checker -> class -> phase -> measurements; the null class is
+        // used for work outside of any top-level class.
+        Map<String, Map<String, long[][]>> merged = new TreeMap<>();
+        synchronized (threadStates) {
+            for (ThreadState state : threadStates) {
+                for (Map.Entry<String, Map<String, long[][]>> checkerEntry : state.checkers.entrySet()) {
+                    Map<String, long[][]> classes = merged.get(checkerEntry.getKey());
+                    if (classes == null) {
+                        classes = new HashMap<>();
+                        merged.put(checkerEntry.getKey(), classes);
+                    }
+                    for (Map.Entry<String, long[][]> classEntry : checkerEntry.getValue().entrySet()) {
+                        long[][] sum = classes.get(classEntry.getKey());
+                        if (sum == null) {
+                            sum = new long[PHASES][MEASUREMENTS];
+                            classes.put(classEntry.getKey(), sum);
+                        }
+                        add(sum, classEntry.getValue());
+                    }
+                }
+            }
+        }
+        synchronized (caches) {
+            for (String checkerName : caches.keySet()) {
+                if (!merged.containsKey(checkerName)) {
+                    merged.put(checkerName, new HashMap<String, long[][]>());
+                }
+            }
+        }
+
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\n");
+        sb.append("  \"cpuTimeSupported\": ").append(cpuTimeSupported).append(",\n");
+        sb.append("  \"allocatedBytesSupported\": ").append(allocatedBytesSupported).append(",\n");
+        sb.append("  \"checkers\": [");
+        boolean firstChecker = true;
+        for (Map.Entry<String, Map<String, long[][]>> checkerEntry : merged.entrySet()) {
+            Map<String, long[][]> classes = checkerEntry.getValue();
+            long[][] total = new long[PHASES][MEASUREMENTS];
+            TreeMap<String, long[][]> sortedClasses = new TreeMap<>();
+            for (Map.Entry<String, long[][]> classEntry : classes.entrySet()) {
+                add(total, classEntry.getValue());
+                if (classEntry.getKey() != null) {
+                    sortedClasses.put(classEntry.getKey(), classEntry.getValue());
+                }
+            }
+
+            sb.append(firstChecker ? "\n" : ",\n");
+            firstChecker = false;
+            sb.append("    {\n");
+            sb.append("      \"checker\": ").append(jsonString(checkerEntry.getKey())).append(",\n");
+            sb.append("      \"total\": ");
+            appendPhases(sb, total, "      ");
+            sb.append(",\n");
+            sb.append("      \"classes\": [");
+            boolean firstClass = true;
+            for (Map.Entry<String, long[][]> classEntry : sortedClasses.entrySet()) {
+                sb.append(firstClass ? "\n" : ",\n");
+                firstClass = false;
+                sb.append("        {\n");
+                sb.append("          \"class\": ").append(jsonString(classEntry.getKey())).append(",\n");
+                sb.append("          \"phases\": ");
+                appendPhases(sb, classEntry.getValue(), "          ");
+                sb.append("\n        }");
+            }
+            sb.append(firstClass ? "],\n" : "\n      ],\n");
+            sb.append("      \"caches\": ");
+            appendCaches(sb, checkerEntry.getKey());
+            sb.append("\n    }");
+        }
+        sb.append(firstChecker ? "]\n" : "\n  ]\n");
+        sb.append("}\n");
+        out.write(sb.toString());
+    }
+
+    private static void add(long[][] sum, long[][] measurements) {
+        for (int phase = 0; phase < PHASES; phase++) {
+            for (int i = 0; i < MEASUREMENTS; i++) {
+                sum[phase][i] += measurements[phase][i];
+            }
+        }
+    }
+
+    private static void appendPhases(StringBuilder sb, long[][] measurements, String indent) {
+        sb.append("{");
+        boolean first = true;
+        for (Phase phase : Phase.values()) {
+            long[] m = measurements[phase.ordinal()];
+            sb.append(first ? "\n" : ",\n");
+            first = false;
+            sb.append(indent).append("  ").append(jsonString(phase.jsonName)).append(": {");
+            sb.append("\"count\": ").append(m[COUNT]);
+            sb.append(", \"wallNanos\": ").append(m[WALL]);
+            sb.append(", \"cpuNanos\": ").append(cpuTimeSupported ? String.valueOf(m[CPU]) : "null");
+            sb.append(", \"allocatedBytes\": ").append(allocatedBytesSupported ? String.valueOf(m[ALLOCATED]) : "null");
+            sb.append("}");
+        }
+        sb.append("\n").append(indent).append("}");
+    }
+
+    /**
+     * Appends the statistics of the caches of the given checker, merged by
+     * cache name.
+     */
+    private static void appendCaches(StringBuilder sb, String checkerName) {
+        // cache name -> {maximal size, hits, misses, evictions}
+        Map<String, long[]> merged = new TreeMap<>();
+        synchronized (caches) {
+            List<BoundedCache.Statistics> checkerCaches = caches.get(checkerName);
+            if (checkerCaches != null) {
+                for (BoundedCache.Statistics cache : checkerCaches) {
+                    long[] sum = merged.get(cache.getName());
+                    if (sum == null) {
+                        sum = new long[4];
+                        merged.put(cache.getName(), sum);
+                    }
+                    sum[0] = Math.max(sum[0], cache.getMaxSize());
+                    sum[1] += cache.getHits();
+                    sum[2] += cache.getMisses();
+                    sum[3] += cache.getEvictions();
+                }
+            }
+        }
+        sb.append("{");
+        boolean first = true;
+        for (Map.Entry<String, long[]> entry : merged.entrySet()) {
+            long[] m = entry.getValue();
+            sb.append(first ? "\n" : ",\n");
+            first = false;
+            sb.append("        ").append(jsonString(entry.getKey())).append(": {");
+            sb.append("\"maxSize\": ").append(m[0]);
+            sb.append(", \"hits\": ").append(m[1]);
+            sb.append(", \"misses\": ").append(m[2]);
+            sb.append(", \"evictions\": ").append(m[3]);
+            sb.append("}");
+        }
+        sb.append(first ? "}" : "\n      }");
+    }
+
+    private static String jsonString(String s) {
+        StringBuilder sb = new StringBuilder("\"");
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"':
+                    sb.append("\\\"");
+                    break;
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+            }
+        }
+        return sb.append('"').toString();
+    }
+
+    /** The measurements and the stack of running phases of one thread. */
+    private static class ThreadState {
+        /** checker -> class -> phase -> measurements. */
+        final Map<String, Map<String, long[][]>> checkers = new HashMap<>();
+
+        /** The top-level class that is being type-checked, or null. */
+        /*@Nullable*/ String currentClass;
+
+        /** The measurements of the running phases, innermost last. */
+        long[][] stack = new long[8][];
+        int depth = 0;
+
+        // The resource counters when the last phase started or stopped.
+        long lastWall;
+        long lastCpu;
+        long lastAllocated;
+
+        // Cache for measurementsFor.
+        /*@Nullable*/ String lastChecker;
+        /*@Nullable*/ String lastClass;
+        long /*@Nullable*/ [][] lastMeasurements;
+
+        final long threadId = Thread.currentThread().getId();
+
+        long[] measurementsFor(String checker, Phase phase) {
+            if (lastMeasurements == null || !checker.equals(lastChecker)
+                    || !equal(currentClass, lastClass)) {
+                Map<String, long[][]> classes = checkers.get(checker);
+                if (classes == null) {
+                    classes = new HashMap<>();
+                    checkers.put(checker, classes);
+                }
+                long[][] measurements = classes.get(currentClass);
+                if (measurements == null) {
+                    measurements = new long[PHASES][MEASUREMENTS];
+                    classes.put(currentClass, measurements);
+                }
+                lastChecker = checker;
+                lastClass = currentClass;
+                lastMeasurements = measurements;
+            }
+            return lastMeasurements[phase.ordinal()];
+        }
+
+        void push(long[] measurements) {
+            if (depth == stack.length) {
+                stack = Arrays.copyOf(stack, depth * 2);
+            }
+            stack[depth++] = measurements;
+        }
+
+        /**
+         * Charges the resources used since the last start or stop to the
+         * innermost running phase.
+         */
+        void charge() {
+            long wall = System.nanoTime();
+            long cpu = cpuTimeSupported ? threadBean.getCurrentThreadCpuTime() : 0;
+            long allocated = allocatedBytesSupported
+                    ? ((com.sun.management.ThreadMXBean) threadBean).getThreadAllocatedBytes(threadId)
+                    : 0;
+            if (depth > 0) {
+                long[] current = stack[depth - 1];
+                current[WALL] += wall - lastWall;
+                current[CPU] += cpu - lastCpu;
+                current[ALLOCATED] += allocated - lastAllocated;
+            }
+            lastWall = wall;
+            lastCpu = cpu;
+            lastAllocated = allocated;
+        }
+
+        private static boolean equal(/*@Nullable*/ String s1, /*@Nullable*/ String s2) {
+            return s1 == null ? s2 == null : s1.equals(s2);
+        }
+    }
+}
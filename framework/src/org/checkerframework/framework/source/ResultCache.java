@@ -0,0 +1,665 @@
+package org.checkerframework.framework.source;
+
+/*>>>
+import org.checkerframework.checker.nullness.qual.Nullable;
+*/
+
+import org.checkerframework.javacutil.ErrorReporter;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.URISyntaxException;
+import java.nio.charset.Charset;
+import java.security.CodeSource;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.TypeParameterElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+
+import com.sun.source.tree.CompilationUnitTree;
+import com.sun.source.util.TreePath;
+import com.sun.tools.javac.code.Symbol;
+import com.sun.tools.javac.code.Symbol.ClassSymbol;
+import com.sun.tools.javac.code.Symbol.CompletionFailure;
+import com.sun.tools.javac.processing.JavacProcessingEnvironment;
+import com.sun.tools.javac.tree.EndPosTable;
+import com.sun.tools.javac.tree.JCTree;
+import com.sun.tools.javac.tree.JCTree.JCFieldAccess;
+import com.sun.tools.javac.tree.JCTree.JCIdent;
+import com.sun.tools.javac.tree.JCTree.JCMemberReference;
+import com.sun.tools.javac.tree.JCTree.JCNewClass;
+import com.sun.tools.javac.tree.TreeScanner;
+import com.sun.tools.javac.util.JCDiagnostic;
+import com.sun.tools.javac.util.JCDiagnostic.DiagnosticPosition;
+import com.sun.tools.javac.util.Log;
+
+/**
+ * Stores the diagnostics of a checker for each top-level class in a
+ * directory, for the {@code -AresultCache} option, and replays them in
+ * later compilations instead of checking the class again.
+ *
+ * The diagnostics of a class are replayed only if its fingerprint is
+ * unchanged.  The fingerprint covers:
+ * <ul>
+ *   <li>the source of the compilation unit of the class,</li>
+ *   <li>the checker, the class files it was loaded from, the source
+ *       version, and all {@code -A} options,</li>
+ *   <li>the stub files given by the "stubs" option, and</li>
+ *   <li>the signatures of all classes that the compilation unit refers to,
+ *       and of their supertypes: their members, declared types, and
+ *       declaration and type annotations, but not the bodies of their
+ *       methods.</li>
+ * </ul>
+ *
+ * Classes with Java errors, and classes for which a checker reports
+ * a diagnostic without a position in the compilation unit (for example
+ * because it crashed), are not cached.
+ *
+ * A class whose diagnostics are replayed is not visited, so the
+ * annotations that checkers compute are not stored in its class file.
+ *
+ * A single instance is created by the checker that is run by javac; it
+ * records the diagnostics of all its subcheckers, too.
+ *
+ * @see SourceChecker#typeProcessWithResultCache
+ */
+class ResultCache {
+
+    /** The first line of each cache file; change it when the format changes. */
+    private static final String FORMAT = "checker-framework-result-cache 1";
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /** The checker run by javac. */
+    private final SourceChecker checker;
+
+    /** The directory of the cache files. */
+    private final File directory;
+
+    /** The fingerprint of the checker, its options, and its stub files. */
+    private final String checkerFingerprint;
+
+    /** The signature digests of the classes outside of the compilation units, see {@link #classSignature}. */
+    private final Map<ClassSymbol, String> classSignatures = new HashMap<ClassSymbol, String>();
+
+    /** Whether a class is being checked while the diagnostics are recorded. */
+    private boolean recording = false;
+
+    ResultCache(SourceChecker checker, String directory) {
+        this.checker = checker;
+        this.directory = new File(directory);
+        if (!this.directory.isDirectory() && !this.directory.mkdirs()) {
+            ErrorReporter.errorAbort("Cannot create the result cache directory " + directory);
+        }
+        this.checkerFingerprint = computeCheckerFingerprint();
+    }
+
+    /** Returns true while a class is checked and its diagnostics are recorded. */
+    boolean isRecording() {
+        return recording;
+    }
+
+    /**
+     * Replays the cached diagnostics of the class, or checks the class with
+     * {@link SourceChecker#typeProcess} and stores the diagnostics that
+     * the checker reports.
+     */
+    void process(TypeElement element, TreePath path) {
+        CompilationUnitTree root = path.getCompilationUnit();
+        Log log = Log.instance(((JavacProcessingEnvironment) checker.getProcessingEnvironment()).getContext());
+
+        File file = cacheFile(element);
+        String fingerprint = fingerprint(root);
+        if (fingerprint != null && replay(file, fingerprint, root.getSourceFile(), log)) {
+            return;
+        }
+
+        // Checkers add the annotations that they compute to the elements of
+        // the class, see TypesIntoElements.  Compute the signature of the
+        // class before that, so that the classes that refer to it have the
+        // same fingerprint as in a compilation that replays it.
+        classSignature((ClassSymbol) element);
+
+        Recorder recorder = new Recorder(log, root.getSourceFile());
+        recording = true;
+        try {
+            checker.typeProcess(element, path);
+        } finally {
+            recording = false;
+            log.popDiagnosticHandler(recorder);
+        }
+        if (fingerprint != null && recorder.cacheable) {
+            store(file, fingerprint, recorder.diagnostics);
+        }
+    }
+
+    /** Returns the cache file of the class. */
+    private File cacheFile(TypeElement element) {
+        String key = checker.getClass().getName() + " " + element.getQualifiedName();
+        return new File(directory, digest(key) + ".txt");
+    }
+
+    // **********************************************************************
+    // Replaying and storing diagnostics
+    // **********************************************************************
+
+    /** A diagnostic reported through the javac messager. */
+    private static class CachedDiagnostic implements DiagnosticPosition {
+        final Diagnostic.Kind kind;
+        final int start;
+        final int preferred;
+        final int end;
+        final String message;
+
+        CachedDiagnostic(Diagnostic.Kind kind, int start, int preferred, int end, String message) {
+            this.kind = kind;
+            this.start = start;
+            this.preferred = preferred;
+            this.end = end;
+            this.message = message;
+        }
+
+        @Override
+        public /*@Nullable*/ JCTree getTree() {
+            return null;
+        }
+
+        @Override
+        public int getStartPosition() {
+            return start;
+        }
+
+        @Override
+        public int getPreferredPosition() {
+            return preferred;
+        }
+
+        @Override
+        public int getEndPosition(EndPosTable endPosTable) {
+            return end;
+        }
+    }
+
+    /**
+     * Records the diagnostics that the messager reports while a class is
+     * checked, and passes them on.
+     */
+    private static class Recorder extends Log.DiagnosticHandler {
+        final JavaFileObject source;
+        final List<CachedDiagnostic> diagnostics = new ArrayList<CachedDiagnostic>();
+        boolean cacheable = true;
+
+        Recorder(Log log, JavaFileObject source) {
+            this.source = source;
+            install(log);
+        }
+
+        @Override
+        public void report(JCDiagnostic diag) {
+            prev.report(diag);
+
+            Object[] args = diag.getArgs();
+            if (!diag.getCode().endsWith(".proc.messager")
+                    || args.length != 1
+                    || diag.getSource() != source
+                    || diag.getPosition() == Diagnostic.NOPOS) {
+                cacheable = false;
+                return;
+            }
+            DiagnosticPosition pos = diag.getDiagnosticPosition();
+            diagnostics.add(new CachedDiagnostic(diag.getKind(), pos.getStartPosition(),
+                    pos.getPreferredPosition(), (int) diag.getEndPosition(), String.valueOf(args[0])));
+        }
+    }
+
+    /**
+     * Reports the diagnostics in the cache file, if it exists and has the
+     * given fingerprint.
+     *
+     * @return true if the diagnostics were reported
+     */
+    private boolean replay(File file, String fingerprint, JavaFileObject source, Log log) {
+        if (!file.isFile()) {
+            return false;
+        }
+        List<CachedDiagnostic> diagnostics = new ArrayList<CachedDiagnostic>();
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(file), UTF8))) {
+            if (!FORMAT.equals(in.readLine()) || !fingerprint.equals(in.readLine())) {
+                return false;
+            }
+            String line;
+            while ((line = in.readLine()) != null) {
+                String[] parts = line.split("\t", 5);
+                if (parts.length != 5) {
+                    return false;
+                }
+                diagnostics.add(new CachedDiagnostic(Diagnostic.Kind.valueOf(parts[0]),
+                        Integer.parseInt(parts[1]), Integer.parseInt(parts[2]),
+                        Integer.parseInt(parts[3]), unescape(parts[4])));
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            // A damaged cache file is ignored and overwritten.
+            return false;
+        }
+
+        JavaFileObject previousSource = log.useSource(source);
+        try {
+            for (CachedDiagnostic diag : diagnostics) {
+                switch (diag.kind) {
+                    case ERROR:
+                        log.error(diag, "proc.messager", diag.message);
+                        break;
+                    case MANDATORY_WARNING:
+                        log.mandatoryWarning(diag, "proc.messager", diag.message);
+                        break;
+                    case WARNING:
+                        log.warning(diag, "proc.messager", diag.message);
+                        break;
+                    default:
+                        log.note(diag, "proc.messager", diag.message);
+                        break;
+                }
+            }
+        } finally {
+            log.useSource(previousSource);
+        }
+        return true;
+    }
+
+    /**
+     * Writes the diagnostics to the cache file.  The file is written under
+     * a temporary name first, so that concurrent builds never read a
+     * partial file.
+     */
+    private void store(File file, String fingerprint, List<CachedDiagnostic> diagnostics) {
+        File temp = new File(directory, file.getName() + "." + System.nanoTime() + ".tmp");
+        try {
+            try (Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(temp), UTF8))) {
+                out.write(FORMAT + "\n");
+                out.write(fingerprint + "\n");
+                for (CachedDiagnostic diag : diagnostics) {
+                    out.write(diag.kind + "\t" + diag.start + "\t" + diag.preferred + "\t"
+                            + diag.end + "\t" + escape(diag.message) + "\n");
+                }
+            }
+            if (!temp.renameTo(file)) {
+                file.delete();
+                if (!temp.renameTo(file)) {
+                    temp.delete();
+                }
+            }
+        } catch (IOException e) {
+            // The cache is an optimization only.
+            temp.delete();
+        }
+    }
+
+    private static String escape(String s) {
+        return s.replace("\\", "\\\\").replace("\t", "\\t").replace("\r", "\\r").replace("\n", "\\n");
+    }
+
+    private static String unescape(String s) {
+        StringBuilder sb = new StringBuilder(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '\\' && i + 1 < s.length()) {
+                char next = s.charAt(++i);
+                switch (next) {
+                    case 't': sb.append('\t'); break;
+                    case 'r': sb.append('\r'); break;
+                    case 'n': sb.append('\n'); break;
+                    default: sb.append(next); break;
+                }
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    // **********************************************************************
+    // Fingerprints
+    // **********************************************************************
+
+    /**
+     * Returns the fingerprint of the compilation unit, or null if it cannot
+     * be computed.
+     */
+    private /*@Nullable*/ String fingerprint(CompilationUnitTree root) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(checkerFingerprint).append('\n');
+        try {
+            sb.append(digest(root.getSourceFile().getCharContent(true).toString())).append('\n');
+        } catch (IOException e) {
+            return null;
+        }
+
+        // Sort the referenced classes by name, so that the fingerprint does
+        // not depend on the order in which they are found.
+        Map<String, String> signatures = new TreeMap<String, String>();
+        for (ClassSymbol referenced : referencedClasses(root)) {
+            signatures.put(referenced.flatName().toString(), classSignature(referenced));
+        }
+        for (Map.Entry<String, String> signature : signatures.entrySet()) {
+            sb.append(signature.getKey()).append(' ').append(signature.getValue()).append('\n');
+        }
+        return digest(sb.toString());
+    }
+
+    /**
+     * Returns the fingerprint of the checker: its class, the class files it
+     * was loaded from, the source version, all {@code -A} options, and the
+     * stub files given by the "stubs" option.
+     */
+    private String computeCheckerFingerprint() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(checker.getClass().getName()).append('\n');
+        sb.append(fileStamp(checker.getClass())).append('\n');
+        sb.append(fileStamp(SourceChecker.class)).append('\n');
+        sb.append(checker.getProcessingEnvironment().getSourceVersion()).append('\n');
+
+        Map<String, String> options = new TreeMap<String, String>(checker.getProcessingEnvironment().getOptions());
+        for (Map.Entry<String, String> option : options.entrySet()) {
+            if (!option.getKey().endsWith("resultCache")) {
+                sb.append(option.getKey()).append('=').append(option.getValue()).append('\n');
+            }
+        }
+
+        String stubs = checker.getOption("stubs");
+        if (stubs != null) {
+            for (String stub : stubs.split(File.pathSeparator)) {
+                appendStubFiles(new File(stub), sb);
+            }
+        }
+        return digest(sb.toString());
+    }
+
+    /** Appends the names and digests of the stub files in file to sb. */
+    private static void appendStubFiles(File file, StringBuilder sb) {
+        if (file.isDirectory()) {
+            File[] files = file.listFiles();
+            if (files != null) {
+                Arrays.sort(files);
+                for (File f : files) {
+                    appendStubFiles(f, sb);
+                }
+            }
+        } else if (file.isFile()) {
+            sb.append(file.getPath()).append(' ');
+            try {
+                sb.append(digest(new String(java.nio.file.Files.readAllBytes(file.toPath()), UTF8)));
+            } catch (IOException e) {
+                sb.append("unreadable ").append(file.lastModified());
+            }
+            sb.append('\n');
+        } else {
+            // Stub files in the class path of the checker are covered by
+            // the stamp of the checker's class files.
+            sb.append(file.getPath()).append('\n');
+        }
+    }
+
+    /**
+     * Returns the location, size, and modification time of the jar file or
+     * directory that the class was loaded from.
+     */
+    private static String fileStamp(Class<?> cls) {
+        CodeSource source = cls.getProtectionDomain().getCodeSource();
+        if (source == null || source.getLocation() == null) {
+            return "unknown";
+        }
+        try {
+            File file = new File(source.getLocation().toURI());
+            return file.getPath() + " " + file.length() + " " + file.lastModified();
+        } catch (URISyntaxException | IllegalArgumentException e) {
+            return source.getLocation().toString();
+        }
+    }
+
+    /**
+     * Returns the outermost classes outside of the compilation unit that it
+     * refers to, and their supertypes.
+     */
+    private static Set<ClassSymbol> referencedClasses(CompilationUnitTree root) {
+        final Set<ClassSymbol> classes = new HashSet<ClassSymbol>();
+        final Set<TypeMirror> visitedTypes = Collections.newSetFromMap(new java.util.IdentityHashMap<TypeMirror, Boolean>());
+
+        new TreeScanner() {
+            @Override
+            public void scan(JCTree tree) {
+                if (tree != null) {
+                    addType(tree.type);
+                    super.scan(tree);
+                }
+            }
+
+            @Override
+            public void visitIdent(JCIdent tree) {
+                addSymbol(tree.sym);
+                super.visitIdent(tree);
+            }
+
+            @Override
+            public void visitSelect(JCFieldAccess tree) {
+                addSymbol(tree.sym);
+                super.visitSelect(tree);
+            }
+
+            @Override
+            public void visitNewClass(JCNewClass tree) {
+                addSymbol(tree.constructor);
+                super.visitNewClass(tree);
+            }
+
+            @Override
+            public void visitReference(JCMemberReference tree) {
+                addSymbol(tree.sym);
+                super.visitReference(tree);
+            }
+
+            private void addSymbol(/*@Nullable*/ Symbol sym) {
+                ClassSymbol outermost = outermostClass(sym);
+                if (outermost != null) {
+                    classes.add(outermost);
+                }
+            }
+
+            private void addType(/*@Nullable*/ TypeMirror type) {
+                if (type == null || !visitedTypes.add(type)) {
+                    return;
+                }
+                if (type.getKind() == TypeKind.DECLARED) {
+                    addSymbol((Symbol) ((DeclaredType) type).asElement());
+                    for (TypeMirror typeArg : ((DeclaredType) type).getTypeArguments()) {
+                        addType(typeArg);
+                    }
+                } else if (type.getKind() == TypeKind.ARRAY) {
+                    addType(((ArrayType) type).getComponentType());
+                }
+            }
+        }.scan((JCTree) root);
+
+        // Add the supertypes, whose members are inherited.
+        List<ClassSymbol> worklist = new ArrayList<ClassSymbol>(classes);
+        while (!worklist.isEmpty()) {
+            ClassSymbol cls = worklist.remove(worklist.size() - 1);
+            List<TypeMirror> supertypes = new ArrayList<TypeMirror>();
+            try {
+                supertypes.add(cls.getSuperclass());
+                supertypes.addAll(cls.getInterfaces());
+            } catch (CompletionFailure e) {
+                continue;
+            }
+            for (TypeMirror supertype : supertypes) {
+                if (supertype.getKind() == TypeKind.DECLARED) {
+                    ClassSymbol outermost = outermostClass((Symbol) ((DeclaredType) supertype).asElement());
+                    if (outermost != null && classes.add(outermost)) {
+                        worklist.add(outermost);
+                    }
+                }
+            }
+        }
+
+        // The classes of the compilation unit itself are covered by its source.
+        JavaFileObject source = root.getSourceFile();
+        for (java.util.Iterator<ClassSymbol> iter = classes.iterator(); iter.hasNext(); ) {
+            if (iter.next().sourcefile == source) {
+                iter.remove();
+            }
+        }
+        return classes;
+    }
+
+    /**
+     * Returns the outermost class that contains sym, or null if there is
+     * none in a package.  Unlike {@link Symbol#outermostClass}, this does
+     * not fail for symbols whose owners do not lead to a package, such as
+     * the length field of arrays, which is owned by a synthetic array
+     * class.  The classes that javac uses for primitive types, as in
+     * {@code int.class}, have no members and are skipped as well.
+     */
+    private static /*@Nullable*/ ClassSymbol outermostClass(/*@Nullable*/ Symbol sym) {
+        Symbol prev = null;
+        while (sym != null && sym.kind != com.sun.tools.javac.code.Kinds.PCK) {
+            prev = sym;
+            sym = sym.owner;
+        }
+        if (sym == null || !(prev instanceof ClassSymbol)
+                || prev.type.getKind() != TypeKind.DECLARED) {
+            return null;
+        }
+        return (ClassSymbol) prev;
+    }
+
+    /**
+     * Returns the digest of the signature of the outermost class: its
+     * declaration, the declarations of its members and member classes, and
+     * their annotations.  The signatures of the classes are computed once
+     * per compilation.
+     */
+    private String classSignature(ClassSymbol cls) {
+        String signature = classSignatures.get(cls);
+        if (signature == null) {
+            StringBuilder sb = new StringBuilder();
+            try {
+                Symbol pkg = cls.packge();
+                sb.append("package ").append(pkg).append(' ').append(pkg.getAnnotationMirrors()).append('\n');
+                appendSignature(cls, sb);
+            } catch (CompletionFailure e) {
+                sb.append("missing ").append(e.getMessage());
+            }
+            signature = digest(sb.toString());
+            classSignatures.put(cls, signature);
+        }
+        return signature;
+    }
+
+    /** Appends the signature of the element and its members to sb. */
+    private static void appendSignature(Element element, StringBuilder sb) {
+        sb.append(element.getKind()).append(' ').append(element.getSimpleName()).append(' ');
+        sb.append(element.getModifiers()).append(' ');
+        sb.append(element.asType()).append(' ');
+        appendAnnotations(element, sb);
+
+        switch (element.getKind()) {
+            case CLASS:
+            case INTERFACE:
+            case ENUM:
+            case ANNOTATION_TYPE: {
+                TypeElement type = (TypeElement) element;
+                sb.append(" extends ").append(type.getSuperclass());
+                sb.append(" implements ").append(type.getInterfaces());
+                for (TypeParameterElement typeParameter : type.getTypeParameters()) {
+                    sb.append(' ').append(typeParameter.getBounds());
+                    appendAnnotations(typeParameter, sb);
+                }
+                sb.append(" {\n");
+                for (Element member : type.getEnclosedElements()) {
+                    appendSignature(member, sb);
+                }
+                sb.append("}");
+                break;
+            }
+            case METHOD:
+            case CONSTRUCTOR: {
+                ExecutableElement method = (ExecutableElement) element;
+                for (TypeParameterElement typeParameter : method.getTypeParameters()) {
+                    sb.append(' ').append(typeParameter.getBounds());
+                    appendAnnotations(typeParameter, sb);
+                }
+                for (VariableElement parameter : method.getParameters()) {
+                    sb.append(' ');
+                    appendAnnotations(parameter, sb);
+                }
+                sb.append(" throws ").append(method.getThrownTypes());
+                sb.append(" default ").append(method.getDefaultValue());
+                break;
+            }
+            case FIELD:
+            case ENUM_CONSTANT:
+                sb.append(" = ").append(((VariableElement) element).getConstantValue());
+                break;
+            default:
+                break;
+        }
+        sb.append('\n');
+    }
+
+    /** Appends the declaration and type annotations of the element to sb. */
+    private static void appendAnnotations(Element element, StringBuilder sb) {
+        List<? extends AnnotationMirror> annotations = element.getAnnotationMirrors();
+        sb.append(annotations);
+        if (element instanceof Symbol) {
+            // Type annotations from class files; for each annotation, the
+            // position tells which part of the type it belongs to.
+            for (com.sun.tools.javac.code.Attribute.TypeCompound typeAnno
+                    : ((Symbol) element).getRawTypeAttributes()) {
+                sb.append(' ').append(typeAnno).append('@').append(typeAnno.position);
+            }
+        }
+    }
+
+    /** Returns the SHA-256 digest of s as a hexadecimal string. */
+    private static String digest(String s) {
+        MessageDigest md;
+        try {
+            md = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            ErrorReporter.errorAbort("SHA-256 is not available", e);
+            return null; // dead code
+        }
+        byte[] hash = md.digest(s.getBytes(UTF8));
+        StringBuilder sb = new StringBuilder(2 * hash.length);
+        for (byte b : hash) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+}
@@ -193,6 +193,36 @@ import com.sun.tools.javac.util.Log;
     // to be output.
     "resolveReflection",
 
+    // Whether to cache the dataflow stores within basic blocks, and optionally
+    // the maximal number of cached stores
+    // org.checkerframework.framework.type.GenericAnnotatedTypeFactory.performFlowAnalysis
+    "flowStoreCache",
+
+    // The sizes of the caches of the annotated type factory, either one size
+    // for all caches or a list of name:size pairs
+    // org.checkerframework.framework.type.AnnotatedTypeFactory.createCache
+    "cacheSizes",
+
+    // Whether to disable the cache of subtype check results
+    // org.checkerframework.framework.type.DefaultTypeHierarchy.subtypeCache
+    "noSubtypeCache",
+
+    // Whether to disable sharing control-flow graphs between the checkers
+    // of a compilation unit
+    // org.checkerframework.framework.flow.CFCFGBuilder.run
+    "noSharedCFGs",
+
+    // The directory in which to cache the diagnostics of each class, to
+    // replay them in later compilations if the class and its dependencies
+    // did not change
+    // org.checkerframework.framework.source.ResultCache
+    "resultCache",
+
+    // Whether to release the dataflow results of each method and top-level
+    // class as soon as it has been checked
+    // org.checkerframework.framework.type.GenericAnnotatedTypeFactory.releaseFlowResults
+    "streamFlowResults",
+
 
     ///
     /// Stub libraries
@@ -205,6 +235,12 @@ import com.sun.tools.javac.util.Log;
     // that were not found on the class path
     // org.checkerframework.framework.stub.StubParser.warnIfNotFound
     "stubWarnIfNotFound",
+    // Directory in which to cache parsed stub files across javac invocations
+    // org.checkerframework.framework.stub.StubIndexCache
+    "stubCache",
+    // Parse the declarations in stub files only when they are first needed
+    // org.checkerframework.framework.type.AnnotatedTypeFactory.parseStubDeclarations
+    "lazyStubs",
 
     ///
     /// Debugging
@@ -272,8 +308,10 @@ import com.sun.tools.javac.util.Log;
     // Enable additional output in the flow .dot files.
     "verbosecfg",
 
-    // Whether to output resource statistics at JVM shutdown
+    // Whether to output resource statistics at JVM shutdown, and
+    // optionally the file for the per-phase statistics
     // org.checkerframework.framework.source.SourceChecker.shutdownHook()
+    // org.checkerframework.framework.source.CheckerProfiler
     "resourceStats",
 
 })
@@ -306,6 +344,12 @@ public abstract class SourceChecker
     // all future calls of typeProcess with that same CompilationUnitTree.
     private CompilationUnitTree previousErrorCompilationUnit;
 
+    /**
+     * The cache of diagnostics across compilations, for the "resultCache"
+     * option.  Only the checker run by javac has one.
+     */
+    private /*@Nullable*/ ResultCache resultCache;
+
     /** The visitor to use. */
     protected SourceVisitor<?, ?> visitor;
 
@@ -750,7 +794,17 @@ public abstract class SourceChecker
     public void typeProcessingStart() {
         try {
             super.typeProcessingStart();
+            if (hasOption("resourceStats")) {
+                // Enable profiling before initChecker, which parses the stub files.
+                CheckerProfiler.enable();
+            }
+            // Discard the annotation ids of previous compilations before
+            // the qualifier hierarchies of this one store any ids.
+            AnnotationUtils.resetAnnotationIds(processingEnv);
             initChecker();
+            if (hasOption("resultCache")) {
+                resultCache = new ResultCache(this, getOption("resultCache"));
+            }
             if (this.messager == null) {
                 messager = processingEnv.getMessager();
                 messager.printMessage(
@@ -818,7 +872,11 @@ public abstract class SourceChecker
         }
     }
 
-    /** Print resource usage statistics */
+    /**
+     * Print resource usage statistics: the peak usage of the memory pools,
+     * and the statistics of {@link CheckerProfiler} as JSON, to the file
+     * given as the value of the "resourceStats" option or to standard output.
+     */
     protected void printStats() {
         List<MemoryPoolMXBean> memoryPools = ManagementFactory.getMemoryPoolMXBeans();
         for (MemoryPoolMXBean memoryPool : memoryPools) {
@@ -826,6 +884,11 @@ public abstract class SourceChecker
             System.out.println("  Pool type: " + memoryPool.getType());
             System.out.println("  Peak usage: " + memoryPool.getPeakUsage());
         }
+        try {
+            CheckerProfiler.writeStatistics(getOption("resourceStats"));
+        } catch (IOException e) {
+            System.err.println("Could not write resource statistics: " + e.getMessage());
+        }
     }
 
     // Output the warning about source level at most once.
@@ -855,6 +918,9 @@ public abstract class SourceChecker
                     "Refusing to process empty TreePath in TypeElement: " + e);
             return;
         }
+        if (typeProcessWithResultCache(e, p)) {
+            return;
+        }
 
         Context context = ((JavacProcessingEnvironment)processingEnv).getContext();
         com.sun.tools.javac.code.Source source = com.sun.tools.javac.code.Source.instance(context);
@@ -885,6 +951,8 @@ public abstract class SourceChecker
         }
 
         // Visit the attributed tree.
+        String previousClass = CheckerProfiler.setCurrentClass(e.getQualifiedName().toString());
+        CheckerProfiler.start(this, CheckerProfiler.Phase.VISITOR);
         try {
             visitor.visit(p);
         } catch (CheckerError ce) {
@@ -892,12 +960,45 @@ public abstract class SourceChecker
         } catch (Throwable t) {
             logCheckerError(wrapThrowableAsCheckerError("SourceChecker.typeProcess", t, p));
         } finally {
+            CheckerProfiler.stop();
+            CheckerProfiler.setCurrentClass(previousClass);
             // Also add possibly deferred diagnostics, which will get published back in
             // AbstractTypeProcessor.
             this.errsOnLastExit = log.nerrors;
         }
     }
 
+    /**
+     * Replays the cached diagnostics of the class, or checks it and caches
+     * its diagnostics, if the "resultCache" option is given.  Implementations
+     * of {@link #typeProcess} call this first, so that the cache covers the
+     * subcheckers of a checker.
+     *
+     * @return true if the class was processed, false if the caller should
+     *         process it
+     */
+    protected final boolean typeProcessWithResultCache(TypeElement e, TreePath p) {
+        if (resultCache == null || resultCache.isRecording()) {
+            return false;
+        }
+        Context context = ((JavacProcessingEnvironment)processingEnv).getContext();
+        Log log = Log.instance(context);
+        if (log.nerrors > this.errsOnLastExit
+                || p.getCompilationUnit() == previousErrorCompilationUnit) {
+            // Classes with Java errors are skipped, not cached.
+            return false;
+        }
+        try {
+            resultCache.process(e, p);
+        } catch (CheckerError ce) {
+            logCheckerError(ce);
+        } catch (Throwable t) {
+            logCheckerError(wrapThrowableAsCheckerError("SourceChecker.typeProcessWithResultCache", t, p));
+        }
+        this.errsOnLastExit = log.nerrors;
+        return true;
+    }
+
     private CheckerError wrapThrowableAsCheckerError(String where, Throwable t, /*@Nullable*/ TreePath p) {
         return new CheckerError(
            where + ": unexpected Throwable (" +
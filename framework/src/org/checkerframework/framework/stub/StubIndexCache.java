@@ -0,0 +1,253 @@
+package org.checkerframework.framework.stub;
+
+/*>>>
+import org.checkerframework.checker.nullness.qual.Nullable;
+*/
+
+import org.checkerframework.javacutil.CollectionUtils;
+import org.checkerframework.stubparser.JavaParser;
+import org.checkerframework.stubparser.ParseException;
+import org.checkerframework.stubparser.ast.IndexUnit;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+
+/**
+ * A cache of parsed stub files.
+ *
+ * Parsing a stub file with the {@link JavaParser} does not depend on the
+ * checker or on the compilation, only on the contents of the stub file.
+ * Parsed stub files are therefore kept in memory, keyed by a hash of their
+ * contents, so that the type factories of all checkers that run in the
+ * same JVM parse each stub file only once.
+ *
+ * If a cache directory is given with the {@code -AstubCache} option, the
+ * parsed stub file is additionally stored in a binary file in that
+ * directory, named after the content hash.  Later javac invocations
+ * memory-map and decode that file with {@link StubIndexCodec} instead of
+ * parsing the stub file.
+ * A missing, stale, or unreadable cache file is ignored: the stub file is
+ * parsed and the cache file is (re-)written.
+ *
+ * Resolving the parsed declarations to elements and annotated types is
+ * still done by {@link StubParser} in every compilation, as elements
+ * cannot outlive a javac invocation.
+ */
+public class StubIndexCache {
+
+    // Class cannot be instantiated.
+    private StubIndexCache() { throw new AssertionError("Class StubIndexCache cannot be instantiated."); }
+
+    /** Magic number at the start of a cache file. */
+    private static final int MAGIC = 0x53545542;
+
+    /**
+     * Version of the cache file format.  Increment whenever the encoding in
+     * {@link StubIndexCodec} changes, to invalidate existing cache files.
+     */
+    private static final int FORMAT_VERSION = 1;
+
+    /** Suffix of cache files. */
+    private static final String CACHE_FILE_SUFFIX = ".stubidx";
+
+    private static final int INDEX_CACHE_SIZE = 64;
+
+    /** Parsed stub files, keyed by the hash of their contents. */
+    private static final Map<String, IndexUnit> parsedStubs
+        = CollectionUtils.createLRUCache(INDEX_CACHE_SIZE);
+
+    /**
+     * Returns the parsed contents of a stub file, using the in-memory and
+     * on-disk caches.
+     *
+     * @param inputStream the contents of the stub file; the stream is
+     *        consumed but not closed
+     * @param cacheDir the directory for cache files, or null to only use
+     *        the in-memory cache
+     * @return the parsed stub file
+     */
+    public static IndexUnit getIndex(InputStream inputStream, /*@Nullable*/ String cacheDir)
+            throws IOException, ParseException {
+        byte[] contents = readFully(inputStream);
+        String hash = hash(contents);
+
+        IndexUnit index = parsedStubs.get(hash);
+        if (index != null) {
+            return index;
+        }
+
+        File cacheFile = null;
+        if (cacheDir != null) {
+            cacheFile = new File(cacheDir, hash + CACHE_FILE_SUFFIX);
+            index = readCacheFile(cacheFile, hash);
+        }
+        if (index == null) {
+            index = JavaParser.parse(new ByteArrayInputStream(contents));
+            if (cacheFile != null) {
+                writeCacheFile(cacheFile, hash, index);
+            }
+        }
+
+        parsedStubs.put(hash, index);
+        return index;
+    }
+
+    /**
+     * Reads a cache file.
+     *
+     * @return the index stored in the file, or null if the file does not
+     *         exist or is stale or unreadable
+     */
+    private static /*@Nullable*/ IndexUnit readCacheFile(File cacheFile, String hash) {
+        if (!cacheFile.isFile()) {
+            return null;
+        }
+        FileInputStream fin = null;
+        try {
+            fin = new FileInputStream(cacheFile);
+            FileChannel channel = fin.getChannel();
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            DataInputStream in = new DataInputStream(new ByteBufferInputStream(buffer));
+            if (in.readInt() != MAGIC
+                    || in.readInt() != FORMAT_VERSION
+                    || !in.readUTF().equals(hash)) {
+                return null;
+            }
+            return StubIndexCodec.read(in);
+        } catch (IOException e) {
+            return null;
+        } catch (RuntimeException e) {
+            // A corrupt file can yield an unexpected node class or
+            // enum ordinal.
+            return null;
+        } finally {
+            closeQuietly(fin);
+        }
+    }
+
+    /**
+     * Writes a cache file.  The file is written to a temporary file first
+     * and then renamed, so that concurrent compilations never see a
+     * partially written cache file.  Failures, including stub files that
+     * {@link StubIndexCodec} cannot encode, are ignored.
+     */
+    private static void writeCacheFile(File cacheFile, String hash, IndexUnit index) {
+        File dir = cacheFile.getParentFile();
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            return;
+        }
+        File tmpFile = null;
+        FileOutputStream fout = null;
+        try {
+            tmpFile = File.createTempFile(cacheFile.getName(), ".tmp", dir);
+            fout = new FileOutputStream(tmpFile);
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fout));
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeUTF(hash);
+            StubIndexCodec.write(index, out);
+            out.flush();
+            fout.close();
+            fout = null;
+            if (!tmpFile.renameTo(cacheFile)) {
+                tmpFile.delete();
+            }
+        } catch (IOException e) {
+            closeQuietly(fout);
+            if (tmpFile != null) {
+                tmpFile.delete();
+            }
+        }
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+
+    private static String hash(byte[] contents) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new AssertionError("SHA-1 is not available: " + e);
+        }
+        StringBuilder sb = new StringBuilder();
+        for (byte b : digest.digest(contents)) {
+            sb.append(String.format("%02x", b));
+        }
+        return sb.toString();
+    }
+
+    private static void closeQuietly(/*@Nullable*/ InputStream in) {
+        if (in != null) {
+            try {
+                in.close();
+            } catch (IOException e) {
+                // ignore
+            }
+        }
+    }
+
+    private static void closeQuietly(/*@Nullable*/ OutputStream out) {
+        if (out != null) {
+            try {
+                out.close();
+            } catch (IOException e) {
+                // ignore
+            }
+        }
+    }
+
+    /** An {@link InputStream} that reads from a (memory-mapped) {@link ByteBuffer}. */
+    private static class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? (buffer.get() & 0xff) : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int n = Math.min(len, buffer.remaining());
+            buffer.get(b, off, n);
+            return n;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
@@ -0,0 +1,984 @@
+package org.checkerframework.framework.stub;
+
+/*>>>
+import org.checkerframework.checker.nullness.qual.Nullable;
+*/
+
+import org.checkerframework.stubparser.ast.CompilationUnit;
+import org.checkerframework.stubparser.ast.ImportDeclaration;
+import org.checkerframework.stubparser.ast.IndexUnit;
+import org.checkerframework.stubparser.ast.Node;
+import org.checkerframework.stubparser.ast.PackageDeclaration;
+import org.checkerframework.stubparser.ast.TypeParameter;
+import org.checkerframework.stubparser.ast.body.AnnotationDeclaration;
+import org.checkerframework.stubparser.ast.body.BodyDeclaration;
+import org.checkerframework.stubparser.ast.body.ClassOrInterfaceDeclaration;
+import org.checkerframework.stubparser.ast.body.ConstructorDeclaration;
+import org.checkerframework.stubparser.ast.body.EmptyMemberDeclaration;
+import org.checkerframework.stubparser.ast.body.EmptyTypeDeclaration;
+import org.checkerframework.stubparser.ast.body.FieldDeclaration;
+import org.checkerframework.stubparser.ast.body.MethodDeclaration;
+import org.checkerframework.stubparser.ast.body.Parameter;
+import org.checkerframework.stubparser.ast.body.TypeDeclaration;
+import org.checkerframework.stubparser.ast.body.VariableDeclarator;
+import org.checkerframework.stubparser.ast.body.VariableDeclaratorId;
+import org.checkerframework.stubparser.ast.expr.AnnotationExpr;
+import org.checkerframework.stubparser.ast.expr.ArrayInitializerExpr;
+import org.checkerframework.stubparser.ast.expr.BinaryExpr;
+import org.checkerframework.stubparser.ast.expr.BooleanLiteralExpr;
+import org.checkerframework.stubparser.ast.expr.CastExpr;
+import org.checkerframework.stubparser.ast.expr.CharLiteralExpr;
+import org.checkerframework.stubparser.ast.expr.ClassExpr;
+import org.checkerframework.stubparser.ast.expr.DoubleLiteralExpr;
+import org.checkerframework.stubparser.ast.expr.EnclosedExpr;
+import org.checkerframework.stubparser.ast.expr.Expression;
+import org.checkerframework.stubparser.ast.expr.FieldAccessExpr;
+import org.checkerframework.stubparser.ast.expr.IntegerLiteralExpr;
+import org.checkerframework.stubparser.ast.expr.IntegerLiteralMinValueExpr;
+import org.checkerframework.stubparser.ast.expr.LongLiteralExpr;
+import org.checkerframework.stubparser.ast.expr.LongLiteralMinValueExpr;
+import org.checkerframework.stubparser.ast.expr.MarkerAnnotationExpr;
+import org.checkerframework.stubparser.ast.expr.MemberValuePair;
+import org.checkerframework.stubparser.ast.expr.NameExpr;
+import org.checkerframework.stubparser.ast.expr.NormalAnnotationExpr;
+import org.checkerframework.stubparser.ast.expr.NullLiteralExpr;
+import org.checkerframework.stubparser.ast.expr.QualifiedNameExpr;
+import org.checkerframework.stubparser.ast.expr.SingleMemberAnnotationExpr;
+import org.checkerframework.stubparser.ast.expr.StringLiteralExpr;
+import org.checkerframework.stubparser.ast.expr.UnaryExpr;
+import org.checkerframework.stubparser.ast.stmt.BlockStmt;
+import org.checkerframework.stubparser.ast.stmt.Statement;
+import org.checkerframework.stubparser.ast.type.ClassOrInterfaceType;
+import org.checkerframework.stubparser.ast.type.PrimitiveType;
+import org.checkerframework.stubparser.ast.type.ReferenceType;
+import org.checkerframework.stubparser.ast.type.Type;
+import org.checkerframework.stubparser.ast.type.VoidType;
+import org.checkerframework.stubparser.ast.type.WildcardType;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Binary encoding of parsed stub files, used by {@link StubIndexCache}.
+ *
+ * The encoding covers the declarations that can be written in a stub
+ * file and that {@link StubParser} reads: packages, imports, type
+ * declarations, fields, methods and constructors without bodies, types,
+ * and constant expressions in annotations and field initializers.
+ * Comments and Javadoc are not stored.  A stub file that uses any other construct, such as a method
+ * body or a field initializer that is not a constant, cannot be encoded;
+ * {@link #write} then throws an {@link UnsupportedNodeException} and the
+ * stub file is simply parsed every time.
+ *
+ * Strings are stored once and referred to by index afterwards; lists
+ * distinguish null from empty, as the parser produces both.
+ */
+class StubIndexCodec {
+
+    // Class cannot be instantiated.
+    private StubIndexCodec() { throw new AssertionError("Class StubIndexCodec cannot be instantiated."); }
+
+    /** Thrown when a stub file contains a construct that cannot be encoded. */
+    static class UnsupportedNodeException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        UnsupportedNodeException(Node node) {
+            super("Cannot encode " + node.getClass().getSimpleName()
+                    + " at line " + node.getBeginLine());
+        }
+    }
+
+    // Tags of the subclasses of TypeDeclaration and BodyDeclaration.
+    private static final int CLASS_OR_INTERFACE_DECL = 1;
+    private static final int ANNOTATION_DECL = 2;
+    private static final int EMPTY_TYPE_DECL = 3;
+    private static final int FIELD_DECL = 4;
+    private static final int METHOD_DECL = 5;
+    private static final int CONSTRUCTOR_DECL = 6;
+    private static final int EMPTY_MEMBER_DECL = 7;
+
+    // Tags of the subclasses of Type.
+    private static final int CLASS_OR_INTERFACE_TYPE = 1;
+    private static final int PRIMITIVE_TYPE = 2;
+    private static final int REFERENCE_TYPE = 3;
+    private static final int VOID_TYPE = 4;
+    private static final int WILDCARD_TYPE = 5;
+
+    // Tags of the subclasses of Expression.
+    private static final int NAME_EXPR = 1;
+    private static final int QUALIFIED_NAME_EXPR = 2;
+    private static final int FIELD_ACCESS_EXPR = 3;
+    private static final int STRING_LITERAL_EXPR = 4;
+    private static final int INTEGER_LITERAL_EXPR = 5;
+    private static final int INTEGER_LITERAL_MIN_VALUE_EXPR = 6;
+    private static final int LONG_LITERAL_EXPR = 7;
+    private static final int LONG_LITERAL_MIN_VALUE_EXPR = 8;
+    private static final int CHAR_LITERAL_EXPR = 9;
+    private static final int DOUBLE_LITERAL_EXPR = 10;
+    private static final int BOOLEAN_LITERAL_EXPR = 11;
+    private static final int NULL_LITERAL_EXPR = 12;
+    private static final int ARRAY_INITIALIZER_EXPR = 13;
+    private static final int CLASS_EXPR = 14;
+    private static final int MARKER_ANNOTATION_EXPR = 15;
+    private static final int SINGLE_MEMBER_ANNOTATION_EXPR = 16;
+    private static final int NORMAL_ANNOTATION_EXPR = 17;
+    private static final int UNARY_EXPR = 18;
+    private static final int BINARY_EXPR = 19;
+    private static final int ENCLOSED_EXPR = 20;
+    private static final int CAST_EXPR = 21;
+
+    // Encodings of a constructor body.
+    private static final int NO_BODY = 0;
+    private static final int EMPTY_BODY = 1;
+    private static final int EMPTY_BODY_NULL_STMTS = 2;
+
+    /**
+     * Writes the encoding of {@code index} to {@code out}.
+     *
+     * @throws UnsupportedNodeException if the index contains a construct
+     *         that cannot be encoded
+     */
+    static void write(IndexUnit index, DataOutput out) throws IOException {
+        new Writer(out).writeIndexUnit(index);
+    }
+
+    /**
+     * Reads an index that was written by {@link #write}.
+     */
+    static IndexUnit read(DataInput in) throws IOException {
+        return new Reader(in).readIndexUnit();
+    }
+
+    private static class Writer {
+        private final DataOutput out;
+        private final Map<String, Integer> strings = new HashMap<String, Integer>();
+
+        Writer(DataOutput out) {
+            this.out = out;
+        }
+
+        void writeIndexUnit(IndexUnit index) throws IOException {
+            writePosition(index);
+            List<CompilationUnit> units = index.getCompilationUnits();
+            writeSize(units);
+            if (units != null) {
+                for (CompilationUnit unit : units) {
+                    writeCompilationUnit(unit);
+                }
+            }
+        }
+
+        private void writeCompilationUnit(CompilationUnit unit) throws IOException {
+            writePosition(unit);
+            PackageDeclaration pakage = unit.getPackage();
+            out.writeBoolean(pakage != null);
+            if (pakage != null) {
+                writePosition(pakage);
+                writeAnnotations(pakage.getAnnotations());
+                writeName(pakage.getName());
+            }
+            List<ImportDeclaration> imports = unit.getImports();
+            writeSize(imports);
+            if (imports != null) {
+                for (ImportDeclaration imp : imports) {
+                    writePosition(imp);
+                    writeName(imp.getName());
+                    out.writeBoolean(imp.isStatic());
+                    out.writeBoolean(imp.isAsterisk());
+                }
+            }
+            List<TypeDeclaration> types = unit.getTypes();
+            writeSize(types);
+            if (types != null) {
+                for (TypeDeclaration type : types) {
+                    writeBodyDeclaration(type);
+                }
+            }
+        }
+
+        private void writeBodyDeclaration(BodyDeclaration decl) throws IOException {
+            if (decl instanceof ClassOrInterfaceDeclaration) {
+                ClassOrInterfaceDeclaration classDecl = (ClassOrInterfaceDeclaration) decl;
+                writeTag(CLASS_OR_INTERFACE_DECL, decl);
+                writeTypeDeclaration(classDecl);
+                out.writeBoolean(classDecl.isInterface());
+                writeTypeParameters(classDecl.getTypeParameters());
+                writeClassOrInterfaceTypes(classDecl.getExtends());
+                writeClassOrInterfaceTypes(classDecl.getImplements());
+            } else if (decl instanceof AnnotationDeclaration) {
+                writeTag(ANNOTATION_DECL, decl);
+                writeTypeDeclaration((TypeDeclaration) decl);
+            } else if (decl instanceof EmptyTypeDeclaration) {
+                writeTag(EMPTY_TYPE_DECL, decl);
+            } else if (decl instanceof FieldDeclaration) {
+                FieldDeclaration fieldDecl = (FieldDeclaration) decl;
+                writeTag(FIELD_DECL, decl);
+                writeAnnotations(fieldDecl.getAnnotations());
+                writeInt(fieldDecl.getModifiers());
+                writeType(fieldDecl.getType());
+                List<VariableDeclarator> variables = fieldDecl.getVariables();
+                writeSize(variables);
+                if (variables != null) {
+                    for (VariableDeclarator variable : variables) {
+                        writePosition(variable);
+                        writeVariableDeclaratorId(variable.getId());
+                        writeExpression(variable.getInit());
+                    }
+                }
+            } else if (decl instanceof MethodDeclaration) {
+                MethodDeclaration methodDecl = (MethodDeclaration) decl;
+                if (methodDecl.getBody() != null) {
+                    throw new UnsupportedNodeException(methodDecl.getBody());
+                }
+                writeTag(METHOD_DECL, decl);
+                writeAnnotations(methodDecl.getAnnotations());
+                writeInt(methodDecl.getModifiers());
+                writeTypeParameters(methodDecl.getTypeParameters());
+                writeType(methodDecl.getType());
+                writeString(methodDecl.getName());
+                writeParameters(methodDecl.getParameters());
+                writeInt(methodDecl.getArrayCount());
+                writeAnnotations(methodDecl.getReceiverAnnotations());
+                writeNames(methodDecl.getThrows());
+            } else if (decl instanceof ConstructorDeclaration) {
+                ConstructorDeclaration ctorDecl = (ConstructorDeclaration) decl;
+                writeTag(CONSTRUCTOR_DECL, decl);
+                writeAnnotations(ctorDecl.getAnnotations());
+                writeInt(ctorDecl.getModifiers());
+                writeTypeParameters(ctorDecl.getTypeParameters());
+                writeString(ctorDecl.getName());
+                writeParameters(ctorDecl.getParameters());
+                writeAnnotations(ctorDecl.getReceiverAnnotations());
+                writeNames(ctorDecl.getThrows());
+                BlockStmt block = ctorDecl.getBlock();
+                if (block == null) {
+                    writeInt(NO_BODY);
+                } else if (block.getStmts() == null) {
+                    writeInt(EMPTY_BODY_NULL_STMTS);
+                    writePosition(block);
+                } else if (block.getStmts().isEmpty()) {
+                    writeInt(EMPTY_BODY);
+                    writePosition(block);
+                } else {
+                    throw new UnsupportedNodeException(block);
+                }
+            } else if (decl instanceof EmptyMemberDeclaration) {
+                writeTag(EMPTY_MEMBER_DECL, decl);
+            } else {
+                throw new UnsupportedNodeException(decl);
+            }
+        }
+
+        private void writeTypeDeclaration(TypeDeclaration decl) throws IOException {
+            writeAnnotations(decl.getAnnotations());
+            writeInt(decl.getModifiers());
+            writeString(decl.getName());
+            List<BodyDeclaration> members = decl.getMembers();
+            writeSize(members);
+            if (members != null) {
+                for (BodyDeclaration member : members) {
+                    writeBodyDeclaration(member);
+                }
+            }
+        }
+
+        private void writeTypeParameters(/*@Nullable*/ List<TypeParameter> typeParameters) throws IOException {
+            writeSize(typeParameters);
+            if (typeParameters != null) {
+                for (TypeParameter typeParameter : typeParameters) {
+                    writePosition(typeParameter);
+                    writeString(typeParameter.getName());
+                    writeAnnotations(typeParameter.getAnnotations());
+                    writeClassOrInterfaceTypes(typeParameter.getTypeBound());
+                }
+            }
+        }
+
+        private void writeParameters(/*@Nullable*/ List<Parameter> parameters) throws IOException {
+            writeSize(parameters);
+            if (parameters != null) {
+                for (Parameter parameter : parameters) {
+                    writePosition(parameter);
+                    writeInt(parameter.getModifiers());
+                    writeAnnotations(parameter.getAnnotations());
+                    writeType(parameter.getType());
+                    out.writeBoolean(parameter.isVarArgs());
+                    writeVariableDeclaratorId(parameter.getId());
+                }
+            }
+        }
+
+        private void writeVariableDeclaratorId(VariableDeclaratorId id) throws IOException {
+            writePosition(id);
+            writeString(id.getName());
+            writeInt(id.getArrayCount());
+        }
+
+        private void writeClassOrInterfaceTypes(/*@Nullable*/ List<ClassOrInterfaceType> types) throws IOException {
+            writeSize(types);
+            if (types != null) {
+                for (ClassOrInterfaceType type : types) {
+                    writeType(type);
+                }
+            }
+        }
+
+        private void writeTypes(/*@Nullable*/ List<Type> types) throws IOException {
+            writeSize(types);
+            if (types != null) {
+                for (Type type : types) {
+                    writeType(type);
+                }
+            }
+        }
+
+        private void writeType(/*@Nullable*/ Type type) throws IOException {
+            if (type == null) {
+                writeInt(0);
+                return;
+            }
+            if (type instanceof ClassOrInterfaceType) {
+                ClassOrInterfaceType classType = (ClassOrInterfaceType) type;
+                writeTag(CLASS_OR_INTERFACE_TYPE, type);
+                writeType(classType.getScope());
+                writeString(classType.getName());
+                writeTypes(classType.getTypeArgs());
+            } else if (type instanceof PrimitiveType) {
+                writeTag(PRIMITIVE_TYPE, type);
+                writeInt(((PrimitiveType) type).getType().ordinal());
+            } else if (type instanceof ReferenceType) {
+                ReferenceType refType = (ReferenceType) type;
+                writeTag(REFERENCE_TYPE, type);
+                writeType(refType.getType());
+                writeInt(refType.getArrayCount());
+                List<List<AnnotationExpr>> arrayAnnotations = refType.getArrayAnnotations();
+                writeSize(arrayAnnotations);
+                if (arrayAnnotations != null) {
+                    for (List<AnnotationExpr> annotations : arrayAnnotations) {
+                        writeAnnotations(annotations);
+                    }
+                }
+            } else if (type instanceof VoidType) {
+                writeTag(VOID_TYPE, type);
+            } else if (type instanceof WildcardType) {
+                WildcardType wildcard = (WildcardType) type;
+                writeTag(WILDCARD_TYPE, type);
+                writeType(wildcard.getExtends());
+                writeType(wildcard.getSuper());
+            } else {
+                throw new UnsupportedNodeException(type);
+            }
+            writeAnnotations(type.getAnnotations());
+        }
+
+        private void writeAnnotations(/*@Nullable*/ List<AnnotationExpr> annotations) throws IOException {
+            writeSize(annotations);
+            if (annotations != null) {
+                for (AnnotationExpr annotation : annotations) {
+                    writeExpression(annotation);
+                }
+            }
+        }
+
+        private void writeNames(/*@Nullable*/ List<NameExpr> names) throws IOException {
+            writeSize(names);
+            if (names != null) {
+                for (NameExpr name : names) {
+                    writeExpression(name);
+                }
+            }
+        }
+
+        private void writeName(/*@Nullable*/ NameExpr name) throws IOException {
+            writeExpression(name);
+        }
+
+        private void writeExpression(/*@Nullable*/ Expression expr) throws IOException {
+            if (expr == null) {
+                writeInt(0);
+                return;
+            }
+            // Subclasses must be tested before their superclasses.
+            if (expr instanceof QualifiedNameExpr) {
+                writeTag(QUALIFIED_NAME_EXPR, expr);
+                writeExpression(((QualifiedNameExpr) expr).getQualifier());
+                writeString(((QualifiedNameExpr) expr).getName());
+            } else if (expr instanceof NameExpr) {
+                writeTag(NAME_EXPR, expr);
+                writeString(((NameExpr) expr).getName());
+            } else if (expr instanceof FieldAccessExpr) {
+                FieldAccessExpr fieldAccess = (FieldAccessExpr) expr;
+                writeTag(FIELD_ACCESS_EXPR, expr);
+                writeExpression(fieldAccess.getScope());
+                writeTypes(fieldAccess.getTypeArgs());
+                writeString(fieldAccess.getField());
+            } else if (expr instanceof IntegerLiteralMinValueExpr) {
+                writeTag(INTEGER_LITERAL_MIN_VALUE_EXPR, expr);
+            } else if (expr instanceof IntegerLiteralExpr) {
+                writeTag(INTEGER_LITERAL_EXPR, expr);
+                writeString(((IntegerLiteralExpr) expr).getValue());
+            } else if (expr instanceof LongLiteralMinValueExpr) {
+                writeTag(LONG_LITERAL_MIN_VALUE_EXPR, expr);
+            } else if (expr instanceof LongLiteralExpr) {
+                writeTag(LONG_LITERAL_EXPR, expr);
+                writeString(((LongLiteralExpr) expr).getValue());
+            } else if (expr instanceof CharLiteralExpr) {
+                writeTag(CHAR_LITERAL_EXPR, expr);
+                writeString(((CharLiteralExpr) expr).getValue());
+            } else if (expr instanceof DoubleLiteralExpr) {
+                writeTag(DOUBLE_LITERAL_EXPR, expr);
+                writeString(((DoubleLiteralExpr) expr).getValue());
+            } else if (expr instanceof StringLiteralExpr) {
+                if (expr.getClass() != StringLiteralExpr.class) {
+                    throw new UnsupportedNodeException(expr);
+                }
+                writeTag(STRING_LITERAL_EXPR, expr);
+                writeString(((StringLiteralExpr) expr).getValue());
+            } else if (expr instanceof BooleanLiteralExpr) {
+                writeTag(BOOLEAN_LITERAL_EXPR, expr);
+                out.writeBoolean(((BooleanLiteralExpr) expr).getValue());
+            } else if (expr instanceof NullLiteralExpr) {
+                writeTag(NULL_LITERAL_EXPR, expr);
+            } else if (expr instanceof ArrayInitializerExpr) {
+                List<Expression> values = ((ArrayInitializerExpr) expr).getValues();
+                writeTag(ARRAY_INITIALIZER_EXPR, expr);
+                writeSize(values);
+                if (values != null) {
+                    for (Expression value : values) {
+                        writeExpression(value);
+                    }
+                }
+            } else if (expr instanceof ClassExpr) {
+                writeTag(CLASS_EXPR, expr);
+                writeType(((ClassExpr) expr).getType());
+            } else if (expr instanceof MarkerAnnotationExpr) {
+                writeTag(MARKER_ANNOTATION_EXPR, expr);
+                writeName(((MarkerAnnotationExpr) expr).getName());
+            } else if (expr instanceof SingleMemberAnnotationExpr) {
+                SingleMemberAnnotationExpr annotation = (SingleMemberAnnotationExpr) expr;
+                writeTag(SINGLE_MEMBER_ANNOTATION_EXPR, expr);
+                writeName(annotation.getName());
+                writeExpression(annotation.getMemberValue());
+            } else if (expr instanceof NormalAnnotationExpr) {
+                NormalAnnotationExpr annotation = (NormalAnnotationExpr) expr;
+                writeTag(NORMAL_ANNOTATION_EXPR, expr);
+                writeName(annotation.getName());
+                List<MemberValuePair> pairs = annotation.getPairs();
+                writeSize(pairs);
+                if (pairs != null) {
+                    for (MemberValuePair pair : pairs) {
+                        writePosition(pair);
+                        writeString(pair.getName());
+                        writeExpression(pair.getValue());
+                    }
+                }
+            } else if (expr instanceof UnaryExpr) {
+                UnaryExpr unary = (UnaryExpr) expr;
+                writeTag(UNARY_EXPR, expr);
+                writeInt(unary.getOperator().ordinal());
+                writeExpression(unary.getExpr());
+            } else if (expr instanceof BinaryExpr) {
+                BinaryExpr binary = (BinaryExpr) expr;
+                writeTag(BINARY_EXPR, expr);
+                writeInt(binary.getOperator().ordinal());
+                writeExpression(binary.getLeft());
+                writeExpression(binary.getRight());
+            } else if (expr instanceof EnclosedExpr) {
+                writeTag(ENCLOSED_EXPR, expr);
+                writeExpression(((EnclosedExpr) expr).getInner());
+            } else if (expr instanceof CastExpr) {
+                CastExpr cast = (CastExpr) expr;
+                writeTag(CAST_EXPR, expr);
+                writeType(cast.getType());
+                writeExpression(cast.getExpr());
+            } else {
+                throw new UnsupportedNodeException(expr);
+            }
+        }
+
+        private void writeTag(int tag, Node node) throws IOException {
+            writeInt(tag);
+            writePosition(node);
+        }
+
+        private void writePosition(Node node) throws IOException {
+            writeInt(node.getBeginLine());
+            writeInt(node.getBeginColumn());
+            writeInt(node.getEndLine());
+            writeInt(node.getEndColumn());
+        }
+
+        private void writeSize(/*@Nullable*/ List<?> list) throws IOException {
+            writeInt(list == null ? 0 : list.size() + 1);
+        }
+
+        private void writeString(/*@Nullable*/ String s) throws IOException {
+            if (s == null) {
+                writeInt(0);
+                return;
+            }
+            Integer index = strings.get(s);
+            if (index != null) {
+                writeInt(index + 2);
+            } else {
+                strings.put(s, strings.size());
+                writeInt(1);
+                out.writeUTF(s);
+            }
+        }
+
+        /** Writes a non-negative int in a variable-length encoding. */
+        private void writeInt(int i) throws IOException {
+            while ((i & ~0x7f) != 0) {
+                out.writeByte((i & 0x7f) | 0x80);
+                i >>>= 7;
+            }
+            out.writeByte(i);
+        }
+    }
+
+    private static class Reader {
+        private final DataInput in;
+        private final List<String> strings = new ArrayList<String>();
+
+        Reader(DataInput in) {
+            this.in = in;
+        }
+
+        IndexUnit readIndexUnit() throws IOException {
+            int[] pos = readPosition();
+            int size = readSize();
+            List<CompilationUnit> units = null;
+            if (size >= 0) {
+                units = new ArrayList<CompilationUnit>(size);
+                for (int i = 0; i < size; i++) {
+                    units.add(readCompilationUnit());
+                }
+            }
+            IndexUnit index = new IndexUnit(units);
+            setPosition(index, pos);
+            return index;
+        }
+
+        private CompilationUnit readCompilationUnit() throws IOException {
+            int[] pos = readPosition();
+            PackageDeclaration pakage = null;
+            if (in.readBoolean()) {
+                int[] packagePos = readPosition();
+                List<AnnotationExpr> annotations = readAnnotations();
+                NameExpr name = readName();
+                pakage = new PackageDeclaration(packagePos[0], packagePos[1], packagePos[2], packagePos[3],
+                        annotations, name);
+            }
+            int size = readSize();
+            List<ImportDeclaration> imports = null;
+            if (size >= 0) {
+                imports = new ArrayList<ImportDeclaration>(size);
+                for (int i = 0; i < size; i++) {
+                    int[] importPos = readPosition();
+                    NameExpr name = readName();
+                    boolean isStatic = in.readBoolean();
+                    boolean isAsterisk = in.readBoolean();
+                    imports.add(new ImportDeclaration(importPos[0], importPos[1], importPos[2], importPos[3],
+                            name, isStatic, isAsterisk));
+                }
+            }
+            size = readSize();
+            List<TypeDeclaration> types = null;
+            if (size >= 0) {
+                types = new ArrayList<TypeDeclaration>(size);
+                for (int i = 0; i < size; i++) {
+                    BodyDeclaration type = readBodyDeclaration();
+                    if (!(type instanceof TypeDeclaration)) {
+                        throw new IOException("Expected a type declaration: " + type);
+                    }
+                    types.add((TypeDeclaration) type);
+                }
+            }
+            return new CompilationUnit(pos[0], pos[1], pos[2], pos[3], pakage, imports, types, null);
+        }
+
+        private BodyDeclaration readBodyDeclaration() throws IOException {
+            int tag = readInt();
+            int[] pos = readPosition();
+            switch (tag) {
+            case CLASS_OR_INTERFACE_DECL: {
+                List<AnnotationExpr> annotations = readAnnotations();
+                int modifiers = readInt();
+                String name = readString();
+                List<BodyDeclaration> members = readMembers();
+                boolean isInterface = in.readBoolean();
+                List<TypeParameter> typeParameters = readTypeParameters();
+                List<ClassOrInterfaceType> extendsList = readClassOrInterfaceTypes();
+                List<ClassOrInterfaceType> implementsList = readClassOrInterfaceTypes();
+                return new ClassOrInterfaceDeclaration(pos[0], pos[1], pos[2], pos[3], null, modifiers,
+                        annotations, isInterface, name, typeParameters, extendsList, implementsList, members);
+            }
+            case ANNOTATION_DECL: {
+                List<AnnotationExpr> annotations = readAnnotations();
+                int modifiers = readInt();
+                String name = readString();
+                List<BodyDeclaration> members = readMembers();
+                return new AnnotationDeclaration(pos[0], pos[1], pos[2], pos[3], null, modifiers,
+                        annotations, name, members);
+            }
+            case EMPTY_TYPE_DECL:
+                return new EmptyTypeDeclaration(pos[0], pos[1], pos[2], pos[3], null);
+            case FIELD_DECL: {
+                List<AnnotationExpr> annotations = readAnnotations();
+                int modifiers = readInt();
+                Type type = readType();
+                int size = readSize();
+                List<VariableDeclarator> variables = null;
+                if (size >= 0) {
+                    variables = new ArrayList<VariableDeclarator>(size);
+                    for (int i = 0; i < size; i++) {
+                        int[] varPos = readPosition();
+                        VariableDeclaratorId id = readVariableDeclaratorId();
+                        Expression init = readExpression();
+                        variables.add(new VariableDeclarator(varPos[0], varPos[1], varPos[2], varPos[3],
+                                id, init));
+                    }
+                }
+                return new FieldDeclaration(pos[0], pos[1], pos[2], pos[3], null, modifiers,
+                        annotations, type, variables);
+            }
+            case METHOD_DECL: {
+                List<AnnotationExpr> annotations = readAnnotations();
+                int modifiers = readInt();
+                List<TypeParameter> typeParameters = readTypeParameters();
+                Type type = readType();
+                String name = readString();
+                List<Parameter> parameters = readParameters();
+                int arrayCount = readInt();
+                List<AnnotationExpr> receiverAnnotations = readAnnotations();
+                List<NameExpr> throws_ = readNames();
+                return new MethodDeclaration(pos[0], pos[1], pos[2], pos[3], null, modifiers,
+                        annotations, typeParameters, type, name, parameters, arrayCount,
+                        receiverAnnotations, throws_, null);
+            }
+            case CONSTRUCTOR_DECL: {
+                List<AnnotationExpr> annotations = readAnnotations();
+                int modifiers = readInt();
+                List<TypeParameter> typeParameters = readTypeParameters();
+                String name = readString();
+                List<Parameter> parameters = readParameters();
+                List<AnnotationExpr> receiverAnnotations = readAnnotations();
+                List<NameExpr> throws_ = readNames();
+                BlockStmt block = null;
+                int body = readInt();
+                if (body != NO_BODY) {
+                    int[] blockPos = readPosition();
+                    block = new BlockStmt(blockPos[0], blockPos[1], blockPos[2], blockPos[3],
+                            body == EMPTY_BODY ? new ArrayList<Statement>() : null);
+                }
+                return new ConstructorDeclaration(pos[0], pos[1], pos[2], pos[3], null, modifiers,
+                        annotations, typeParameters, name, parameters, receiverAnnotations, throws_, block);
+            }
+            case EMPTY_MEMBER_DECL:
+                return new EmptyMemberDeclaration(pos[0], pos[1], pos[2], pos[3], null);
+            default:
+                throw new IOException("Unknown declaration tag: " + tag);
+            }
+        }
+
+        private /*@Nullable*/ List<BodyDeclaration> readMembers() throws IOException {
+            int size = readSize();
+            if (size < 0) {
+                return null;
+            }
+            List<BodyDeclaration> members = new ArrayList<BodyDeclaration>(size);
+            for (int i = 0; i < size; i++) {
+                members.add(readBodyDeclaration());
+            }
+            return members;
+        }
+
+        private /*@Nullable*/ List<TypeParameter> readTypeParameters() throws IOException {
+            int size = readSize();
+            if (size < 0) {
+                return null;
+            }
+            List<TypeParameter> typeParameters = new ArrayList<TypeParameter>(size);
+            for (int i = 0; i < size; i++) {
+                int[] pos = readPosition();
+                String name = readString();
+                List<AnnotationExpr> annotations = readAnnotations();
+                List<ClassOrInterfaceType> typeBound = readClassOrInterfaceTypes();
+                typeParameters.add(new TypeParameter(pos[0], pos[1], pos[2], pos[3],
+                        name, annotations, typeBound));
+            }
+            return typeParameters;
+        }
+
+        private /*@Nullable*/ List<Parameter> readParameters() throws IOException {
+            int size = readSize();
+            if (size < 0) {
+                return null;
+            }
+            List<Parameter> parameters = new ArrayList<Parameter>(size);
+            for (int i = 0; i < size; i++) {
+                int[] pos = readPosition();
+                int modifiers = readInt();
+                List<AnnotationExpr> annotations = readAnnotations();
+                Type type = readType();
+                boolean isVarArgs = in.readBoolean();
+                VariableDeclaratorId id = readVariableDeclaratorId();
+                parameters.add(new Parameter(pos[0], pos[1], pos[2], pos[3],
+                        modifiers, annotations, type, isVarArgs, id));
+            }
+            return parameters;
+        }
+
+        private VariableDeclaratorId readVariableDeclaratorId() throws IOException {
+            int[] pos = readPosition();
+            String name = readString();
+            int arrayCount = readInt();
+            return new VariableDeclaratorId(pos[0], pos[1], pos[2], pos[3], name, arrayCount);
+        }
+
+        private /*@Nullable*/ List<ClassOrInterfaceType> readClassOrInterfaceTypes() throws IOException {
+            int size = readSize();
+            if (size < 0) {
+                return null;
+            }
+            List<ClassOrInterfaceType> types = new ArrayList<ClassOrInterfaceType>(size);
+            for (int i = 0; i < size; i++) {
+                types.add((ClassOrInterfaceType) readType());
+            }
+            return types;
+        }
+
+        private /*@Nullable*/ List<Type> readTypes() throws IOException {
+            int size = readSize();
+            if (size < 0) {
+                return null;
+            }
+            List<Type> types = new ArrayList<Type>(size);
+            for (int i = 0; i < size; i++) {
+                types.add(readType());
+            }
+            return types;
+        }
+
+        private /*@Nullable*/ Type readType() throws IOException {
+            int tag = readInt();
+            if (tag == 0) {
+                return null;
+            }
+            int[] pos = readPosition();
+            Type type;
+            switch (tag) {
+            case CLASS_OR_INTERFACE_TYPE: {
+                ClassOrInterfaceType scope = (ClassOrInterfaceType) readType();
+                String name = readString();
+                List<Type> typeArgs = readTypes();
+                type = new ClassOrInterfaceType(pos[0], pos[1], pos[2], pos[3], scope, name, typeArgs);
+                break;
+            }
+            case PRIMITIVE_TYPE: {
+                PrimitiveType.Primitive primitive = PrimitiveType.Primitive.values()[readInt()];
+                type = new PrimitiveType(pos[0], pos[1], pos[2], pos[3], primitive);
+                break;
+            }
+            case REFERENCE_TYPE: {
+                Type componentType = readType();
+                int arrayCount = readInt();
+                int size = readSize();
+                List<List<AnnotationExpr>> arrayAnnotations = null;
+                if (size >= 0) {
+                    arrayAnnotations = new ArrayList<List<AnnotationExpr>>(size);
+                    for (int i = 0; i < size; i++) {
+                        arrayAnnotations.add(readAnnotations());
+                    }
+                }
+                type = new ReferenceType(pos[0], pos[1], pos[2], pos[3], componentType, arrayCount, arrayAnnotations);
+                break;
+            }
+            case VOID_TYPE:
+                type = new VoidType(pos[0], pos[1], pos[2], pos[3]);
+                break;
+            case WILDCARD_TYPE: {
+                ReferenceType ext = (ReferenceType) readType();
+                ReferenceType sup = (ReferenceType) readType();
+                type = new WildcardType(pos[0], pos[1], pos[2], pos[3], ext, sup);
+                break;
+            }
+            default:
+                throw new IOException("Unknown type tag: " + tag);
+            }
+            type.setAnnotations(readAnnotations());
+            return type;
+        }
+
+        private /*@Nullable*/ List<AnnotationExpr> readAnnotations() throws IOException {
+            int size = readSize();
+            if (size < 0) {
+                return null;
+            }
+            List<AnnotationExpr> annotations = new ArrayList<AnnotationExpr>(size);
+            for (int i = 0; i < size; i++) {
+                annotations.add((AnnotationExpr) readExpression());
+            }
+            return annotations;
+        }
+
+        private /*@Nullable*/ List<NameExpr> readNames() throws IOException {
+            int size = readSize();
+            if (size < 0) {
+                return null;
+            }
+            List<NameExpr> names = new ArrayList<NameExpr>(size);
+            for (int i = 0; i < size; i++) {
+                names.add(readName());
+            }
+            return names;
+        }
+
+        private /*@Nullable*/ NameExpr readName() throws IOException {
+            return (NameExpr) readExpression();
+        }
+
+        private /*@Nullable*/ Expression readExpression() throws IOException {
+            int tag = readInt();
+            if (tag == 0) {
+                return null;
+            }
+            int[] pos = readPosition();
+            switch (tag) {
+            case NAME_EXPR:
+                return new NameExpr(pos[0], pos[1], pos[2], pos[3], readString());
+            case QUALIFIED_NAME_EXPR: {
+                NameExpr qualifier = readName();
+                return new QualifiedNameExpr(pos[0], pos[1], pos[2], pos[3], qualifier, readString());
+            }
+            case FIELD_ACCESS_EXPR: {
+                Expression scope = readExpression();
+                List<Type> typeArgs = readTypes();
+                return new FieldAccessExpr(pos[0], pos[1], pos[2], pos[3], scope, typeArgs, readString());
+            }
+            case STRING_LITERAL_EXPR:
+                return new StringLiteralExpr(pos[0], pos[1], pos[2], pos[3], readString());
+            case INTEGER_LITERAL_EXPR:
+                return new IntegerLiteralExpr(pos[0], pos[1], pos[2], pos[3], readString());
+            case INTEGER_LITERAL_MIN_VALUE_EXPR:
+                return new IntegerLiteralMinValueExpr(pos[0], pos[1], pos[2], pos[3]);
+            case LONG_LITERAL_EXPR:
+                return new LongLiteralExpr(pos[0], pos[1], pos[2], pos[3], readString());
+            case LONG_LITERAL_MIN_VALUE_EXPR:
+                return new LongLiteralMinValueExpr(pos[0], pos[1], pos[2], pos[3]);
+            case CHAR_LITERAL_EXPR:
+                return new CharLiteralExpr(pos[0], pos[1], pos[2], pos[3], readString());
+            case DOUBLE_LITERAL_EXPR:
+                return new DoubleLiteralExpr(pos[0], pos[1], pos[2], pos[3], readString());
+            case BOOLEAN_LITERAL_EXPR:
+                return new BooleanLiteralExpr(pos[0], pos[1], pos[2], pos[3], in.readBoolean());
+            case NULL_LITERAL_EXPR:
+                return new NullLiteralExpr(pos[0], pos[1], pos[2], pos[3]);
+            case ARRAY_INITIALIZER_EXPR: {
+                int size = readSize();
+                List<Expression> values = null;
+                if (size >= 0) {
+                    values = new ArrayList<Expression>(size);
+                    for (int i = 0; i < size; i++) {
+                        values.add(readExpression());
+                    }
+                }
+                return new ArrayInitializerExpr(pos[0], pos[1], pos[2], pos[3], values);
+            }
+            case CLASS_EXPR:
+                return new ClassExpr(pos[0], pos[1], pos[2], pos[3], readType());
+            case MARKER_ANNOTATION_EXPR:
+                return new MarkerAnnotationExpr(pos[0], pos[1], pos[2], pos[3], readName());
+            case SINGLE_MEMBER_ANNOTATION_EXPR: {
+                NameExpr name = readName();
+                return new SingleMemberAnnotationExpr(pos[0], pos[1], pos[2], pos[3], name, readExpression());
+            }
+            case NORMAL_ANNOTATION_EXPR: {
+                NameExpr name = readName();
+                int size = readSize();
+                List<MemberValuePair> pairs = null;
+                if (size >= 0) {
+                    pairs = new ArrayList<MemberValuePair>(size);
+                    for (int i = 0; i < size; i++) {
+                        int[] pairPos = readPosition();
+                        String pairName = readString();
+                        pairs.add(new MemberValuePair(pairPos[0], pairPos[1], pairPos[2], pairPos[3],
+                                pairName, readExpression()));
+                    }
+                }
+                return new NormalAnnotationExpr(pos[0], pos[1], pos[2], pos[3], name, pairs);
+            }
+            case UNARY_EXPR: {
+                UnaryExpr.Operator op = UnaryExpr.Operator.values()[readInt()];
+                return new UnaryExpr(pos[0], pos[1], pos[2], pos[3], readExpression(), op);
+            }
+            case BINARY_EXPR: {
+                BinaryExpr.Operator op = BinaryExpr.Operator.values()[readInt()];
+                Expression left = readExpression();
+                return new BinaryExpr(pos[0], pos[1], pos[2], pos[3], left, readExpression(), op);
+            }
+            case ENCLOSED_EXPR:
+                return new EnclosedExpr(pos[0], pos[1], pos[2], pos[3], readExpression());
+            case CAST_EXPR: {
+                Type type = readType();
+                return new CastExpr(pos[0], pos[1], pos[2], pos[3], type, readExpression());
+            }
+            default:
+                throw new IOException("Unknown expression tag: " + tag);
+            }
+        }
+
+        private int[] readPosition() throws IOException {
+            return new int[] { readInt(), readInt(), readInt(), readInt() };
+        }
+
+        private void setPosition(Node node, int[] pos) {
+            node.setBeginLine(pos[0]);
+            node.setBeginColumn(pos[1]);
+            node.setEndLine(pos[2]);
+            node.setEndColumn(pos[3]);
+        }
+
+        /** Returns the size of a list, or -1 for a null list. */
+        private int readSize() throws IOException {
+            return readInt() - 1;
+        }
+
+        private /*@Nullable*/ String readString() throws IOException {
+            int i = readInt();
+            if (i == 0) {
+                return null;
+            }
+            if (i == 1) {
+                String s = in.readUTF();
+                strings.add(s);
+                return s;
+            }
+            if (i - 2 >= strings.size()) {
+                throw new IOException("Invalid string index: " + (i - 2));
+            }
+            return strings.get(i - 2);
+        }
+
+        private int readInt() throws IOException {
+            int result = 0;
+            int shift = 0;
+            int b;
+            do {
+                if (shift > 28) {
+                    throw new IOException("Malformed int");
+                }
+                b = in.readUnsignedByte();
+                result |= (b & 0x7f) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            return result;
+        }
+    }
+}
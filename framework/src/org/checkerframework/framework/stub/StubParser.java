@@ -18,7 +18,6 @@ import org.checkerframework.javacutil.AnnotationUtils;
 import org.checkerframework.javacutil.ElementUtils;
 import org.checkerframework.javacutil.ErrorReporter;
 import org.checkerframework.javacutil.Pair;
-import org.checkerframework.stubparser.JavaParser;
 import org.checkerframework.stubparser.ast.CompilationUnit;
 import org.checkerframework.stubparser.ast.ImportDeclaration;
 import org.checkerframework.stubparser.ast.IndexUnit;
@@ -138,7 +137,7 @@ public class StubParser {
         this.filename = filename;
         IndexUnit parsedindex;
         try {
-            parsedindex = JavaParser.parse(inputStream);
+            parsedindex = StubIndexCache.getIndex(inputStream, env.getOptions().get("stubCache"));
         } catch (Exception e) {
             ErrorReporter.errorAbort("StubParser: exception from JavaParser.parse for file " + filename, e);
             parsedindex = null; // dead code, but needed for def. assignment checks
@@ -294,6 +293,193 @@ public class StubParser {
         parse(this.index, atypes, declAnnos);
     }
 
+    /**
+     * A type declaration in the stub file, whose annotations are parsed
+     * on demand by {@link #parseTypeDeclarations}.
+     */
+    private static class StubType {
+        final CompilationUnit cu;
+        final List<AnnotationExpr> packageAnnos;
+        final TypeDeclaration decl;
+        final String typeName;
+
+        /** Whether {@link #element} has been looked up. */
+        boolean lookedUp;
+        /** The element for the declared type; null if not found. */
+        TypeElement element;
+        /** The supertypes of the element, computed on demand. */
+        List<TypeElement> superTypes;
+        /** Whether the annotations on the type declaration have been parsed. */
+        boolean parsed;
+
+        StubType(CompilationUnit cu, String packageName,
+                List<AnnotationExpr> packageAnnos, TypeDeclaration decl) {
+            this.cu = cu;
+            this.packageAnnos = packageAnnos;
+            this.decl = decl;
+            this.typeName = fullyQualifiedName(decl, packageName);
+        }
+    }
+
+    /**
+     * A member declaration in the stub file, which is parsed on demand by
+     * {@link #parseMemberDeclarations}.
+     */
+    private static class StubMember {
+        final StubType type;
+        final BodyDeclaration decl;
+        /** For a field declaration, the variable; otherwise null. */
+        final VariableDeclarator variable;
+        boolean parsed;
+
+        StubMember(StubType type, BodyDeclaration decl, VariableDeclarator variable) {
+            this.type = type;
+            this.decl = decl;
+            this.variable = variable;
+        }
+    }
+
+    /** The type declarations, by fully-qualified name.  Set by {@link #index}. */
+    private Map<String, List<StubType>> stubTypes;
+
+    /**
+     * The member declarations, by simple name ("&lt;init&gt;" for
+     * constructors).  Set by {@link #index}.
+     */
+    private Map<String, List<StubMember>> stubMembers;
+
+    /**
+     * Alternative entry point to {@link #parse(Map, Map)}, for resolving
+     * the stub file on demand.  Parses package annotations, and indexes the
+     * type and member declarations without looking up their elements.
+     * The declarations are parsed later by {@link #parseTypeDeclarations}
+     * and {@link #parseMemberDeclarations}.  Side-effects the argument.
+     */
+    public void index(Map<String, Set<AnnotationMirror>> declAnnos) {
+        stubTypes = new HashMap<String, List<StubType>>();
+        stubMembers = new HashMap<String, List<StubMember>>();
+        Map<Element, AnnotatedTypeMirror> unusedAtypes = new HashMap<Element, AnnotatedTypeMirror>();
+
+        for (CompilationUnit cu : index.getCompilationUnits()) {
+            theCompilationUnit = cu;
+            String packageName = null;
+            List<AnnotationExpr> packageAnnos = null;
+            if (cu.getPackage() != null) {
+                packageName = cu.getPackage().getName().toString();
+                packageAnnos = cu.getPackage().getAnnotations();
+                parsePackage(cu.getPackage(), unusedAtypes, declAnnos);
+            }
+            if (cu.getTypes() == null) {
+                continue;
+            }
+            for (TypeDeclaration typeDecl : cu.getTypes()) {
+                StubType type = new StubType(cu, packageName, packageAnnos, typeDecl);
+                addToListMap(stubTypes, type.typeName, type);
+                for (BodyDeclaration member : typeDecl.getMembers()) {
+                    if (member instanceof MethodDeclaration) {
+                        addToListMap(stubMembers, ((MethodDeclaration) member).getName(),
+                                new StubMember(type, member, null));
+                    } else if (member instanceof ConstructorDeclaration) {
+                        addToListMap(stubMembers, "<init>",
+                                new StubMember(type, member, null));
+                    } else if (member instanceof FieldDeclaration) {
+                        for (VariableDeclarator var : ((FieldDeclaration) member).getVariables()) {
+                            addToListMap(stubMembers, var.getId().getName(),
+                                    new StubMember(type, member, var));
+                        }
+                    } else if (member instanceof ClassOrInterfaceDeclaration) {
+                        warnNestedClass(typeDecl, (ClassOrInterfaceDeclaration) member);
+                    } else {
+                        stubWarning(String.format("StubParser: Ignoring element of type %s in getMembers", member.getClass()));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Parses the annotations on the declarations of typeElt in the stub
+     * file, but not those on its members.  Requires that {@link #index}
+     * has been called.  Side-effects the arguments.
+     */
+    public void parseTypeDeclarations(TypeElement typeElt,
+            Map<Element, AnnotatedTypeMirror> atypes, Map<String, Set<AnnotationMirror>> declAnnos) {
+        List<StubType> types = stubTypes.get(typeElt.getQualifiedName().toString());
+        if (types == null) {
+            return;
+        }
+        for (StubType type : types) {
+            if (!type.parsed) {
+                type.parsed = true;
+                if (lookupType(type) != null) {
+                    theCompilationUnit = type.cu;
+                    parseTypeDeclaration(type.decl, type.element, type.typeName, atypes, declAnnos);
+                }
+            }
+        }
+    }
+
+    /**
+     * Parses the declarations in the stub file of all members named
+     * memberName that may resolve to a member of typeElt.  As a member
+     * declared in the stub file for a type may be inherited from a
+     * supertype, these are the declarations in typeElt and in all of its
+     * subtypes.  Requires that {@link #index} has been called.
+     * Side-effects the arguments.
+     */
+    public void parseMemberDeclarations(TypeElement typeElt, String memberName,
+            Map<Element, AnnotatedTypeMirror> atypes, Map<String, Set<AnnotationMirror>> declAnnos) {
+        List<StubMember> members = stubMembers.get(memberName);
+        if (members == null) {
+            return;
+        }
+        for (StubMember member : members) {
+            if (member.parsed) {
+                continue;
+            }
+            TypeElement memberTypeElt = lookupType(member.type);
+            if (memberTypeElt == null) {
+                member.parsed = true;
+                continue;
+            }
+            if (!memberTypeElt.equals(typeElt)) {
+                // Constructors are not inherited.
+                if (member.decl instanceof ConstructorDeclaration) {
+                    continue;
+                }
+                if (member.type.superTypes == null) {
+                    member.type.superTypes = ElementUtils.getSuperTypes(memberTypeElt);
+                }
+                if (!member.type.superTypes.contains(typeElt)) {
+                    continue;
+                }
+            }
+            member.parsed = true;
+
+            Element elt;
+            if (member.decl instanceof MethodDeclaration) {
+                elt = findElement(memberTypeElt, (MethodDeclaration) member.decl);
+            } else if (member.decl instanceof ConstructorDeclaration) {
+                elt = findElement(memberTypeElt, (ConstructorDeclaration) member.decl);
+            } else {
+                elt = findElement(memberTypeElt, member.variable);
+            }
+            if (elt != null) {
+                theCompilationUnit = member.type.cu;
+                parseMember(member.decl, elt, atypes, declAnnos);
+            }
+        }
+    }
+
+    /** Looks up the element of a type declaration, only once. */
+    private TypeElement lookupType(StubType type) {
+        if (!type.lookedUp) {
+            type.lookedUp = true;
+            type.element = lookupType(type.decl, type.typeName, type.packageAnnos);
+        }
+        return type.element;
+    }
+
     private void parse(IndexUnit index, Map<Element, AnnotatedTypeMirror> atypes, Map<String, Set<AnnotationMirror>> declAnnos) {
         for (CompilationUnit cu : index.getCompilationUnits())
             parse(cu, atypes, declAnnos);
@@ -338,9 +524,33 @@ public class StubParser {
             Map<Element, AnnotatedTypeMirror> atypes,
             Map<String, Set<AnnotationMirror>> declAnnos) {
         // Fully-qualified name of the type being parsed
-        String typeName = (packageName == null ? "" : packageName + ".") + typeDecl.getName().replace('$', '.');
-        TypeElement typeElt = elements.getTypeElement(typeName);
+        String typeName = fullyQualifiedName(typeDecl, packageName);
+        TypeElement typeElt = lookupType(typeDecl, typeName, packageAnnos);
         // couldn't find type.  not in class path
+        if (typeElt == null) {
+            return;
+        }
+
+        parseTypeDeclaration(typeDecl, typeElt, typeName, atypes, declAnnos);
+
+        Map<Element, BodyDeclaration> elementsToDecl = getMembers(typeElt, typeDecl);
+        for (Map.Entry<Element, BodyDeclaration> entry : elementsToDecl.entrySet()) {
+            parseMember(entry.getValue(), entry.getKey(), atypes, declAnnos);
+        }
+    }
+
+    private static String fullyQualifiedName(TypeDeclaration typeDecl, String packageName) {
+        return (packageName == null ? "" : packageName + ".") + typeDecl.getName().replace('$', '.');
+    }
+
+    /**
+     * Returns the element for a type declared in the stub file, or null
+     * (after issuing a warning, unless suppressed by @NoStubParserWarning)
+     * if the type is not on the classpath.
+     */
+    private TypeElement lookupType(TypeDeclaration typeDecl, String typeName,
+            List<AnnotationExpr> packageAnnos) {
+        TypeElement typeElt = elements.getTypeElement(typeName);
         if (typeElt == null) {
             boolean warn = true;
             if (typeDecl.getAnnotations() != null) {
@@ -361,9 +571,14 @@ public class StubParser {
             if (warn) {
                 stubWarning("Type not found: " + typeName);
             }
-            return;
         }
+        return typeElt;
+    }
 
+    /** Parses the annotations of a type declaration, but not its members. */
+    private void parseTypeDeclaration(TypeDeclaration typeDecl, TypeElement typeElt, String typeName,
+            Map<Element, AnnotatedTypeMirror> atypes,
+            Map<String, Set<AnnotationMirror>> declAnnos) {
         if (typeElt.getKind() == ElementKind.ENUM) {
             stubWarning("Skipping enum type: " + typeName);
         } else if (typeElt.getKind() == ElementKind.ANNOTATION_TYPE) {
@@ -371,20 +586,20 @@ public class StubParser {
         } else if (typeDecl instanceof ClassOrInterfaceDeclaration) {
             parseType((ClassOrInterfaceDeclaration)typeDecl, typeElt, atypes, declAnnos);
         } // else it's an EmptyTypeDeclaration.  TODO:  An EmptyTypeDeclaration can have annotations, right?
+    }
 
-        Map<Element, BodyDeclaration> elementsToDecl = getMembers(typeElt, typeDecl);
-        for (Map.Entry<Element, BodyDeclaration> entry : elementsToDecl.entrySet()) {
-            final Element elt = entry.getKey();
-            final BodyDeclaration decl = entry.getValue();
-            if (elt.getKind().isField())
-                parseField((FieldDeclaration)decl, (VariableElement)elt, atypes, declAnnos);
-            else if (elt.getKind() == ElementKind.CONSTRUCTOR)
-                parseConstructor((ConstructorDeclaration)decl, (ExecutableElement)elt, atypes, declAnnos);
-            else if (elt.getKind() == ElementKind.METHOD)
-                parseMethod((MethodDeclaration)decl, (ExecutableElement)elt, atypes, declAnnos);
-            else { /* do nothing */
-                stubWarning("StubParser ignoring: " + elt);
-            }
+    /** Parses the declaration of a field, constructor, or method, whose element is elt. */
+    private void parseMember(BodyDeclaration decl, Element elt,
+            Map<Element, AnnotatedTypeMirror> atypes,
+            Map<String, Set<AnnotationMirror>> declAnnos) {
+        if (elt.getKind().isField())
+            parseField((FieldDeclaration)decl, (VariableElement)elt, atypes, declAnnos);
+        else if (elt.getKind() == ElementKind.CONSTRUCTOR)
+            parseConstructor((ConstructorDeclaration)decl, (ExecutableElement)elt, atypes, declAnnos);
+        else if (elt.getKind() == ElementKind.METHOD)
+            parseMethod((MethodDeclaration)decl, (ExecutableElement)elt, atypes, declAnnos);
+        else { /* do nothing */
+            stubWarning("StubParser ignoring: " + elt);
         }
     }
 
@@ -709,20 +924,7 @@ public class StubParser {
                     putNew(result, findElement(typeElt, var), fieldDecl);
                 }
             } else if (member instanceof ClassOrInterfaceDeclaration) {
-                // TODO: handle nested classes
-                ClassOrInterfaceDeclaration ciDecl = (ClassOrInterfaceDeclaration) member;
-                String nestedClass = typeDecl.getName() + "." + ciDecl.getName();
-                if (nestedClassWarnings.add(nestedClass)) { // avoid duplicate warnings
-                    stubAlwaysWarn(
-                            String.format("Warning: ignoring nested class in %s at line %d:%n    class %s { class %s { ... } }%n",
-                                    filename, ciDecl.getBeginLine(),
-                                    typeDecl.getName(), ciDecl.getName())
-                            + "\n"
-                            + String.format(
-                                    "  Instead, write the nested class as a top-level class:%n    class %s { ... }%n    class %s$%s { ... }%n",
-                                    typeDecl.getName(), typeDecl.getName(),
-                                    ciDecl.getName()));
-                }
+                warnNestedClass(typeDecl, (ClassOrInterfaceDeclaration) member);
             } else {
                 stubWarning(String.format("StubParser: Ignoring element of type %s in getMembers", member.getClass()));
             }
@@ -732,6 +934,22 @@ public class StubParser {
         return result;
     }
 
+    private void warnNestedClass(TypeDeclaration typeDecl, ClassOrInterfaceDeclaration ciDecl) {
+        // TODO: handle nested classes
+        String nestedClass = typeDecl.getName() + "." + ciDecl.getName();
+        if (nestedClassWarnings.add(nestedClass)) { // avoid duplicate warnings
+            stubAlwaysWarn(
+                    String.format("Warning: ignoring nested class in %s at line %d:%n    class %s { class %s { ... } }%n",
+                            filename, ciDecl.getBeginLine(),
+                            typeDecl.getName(), ciDecl.getName())
+                    + "\n"
+                    + String.format(
+                            "  Instead, write the nested class as a top-level class:%n    class %s { ... }%n    class %s$%s { ... }%n",
+                            typeDecl.getName(), typeDecl.getName(),
+                            ciDecl.getName()));
+        }
+    }
+
     private AnnotatedDeclaredType findType(ClassOrInterfaceType type, List<AnnotatedDeclaredType> types) {
         String typeString = type.getName();
         for (AnnotatedDeclaredType superType : types) {
@@ -841,6 +1059,15 @@ public class StubParser {
         m.put(key, value);
     }
 
+    private static <V> void addToListMap(Map<String, List<V>> m, String key, V value) {
+        List<V> list = m.get(key);
+        if (list == null) {
+            list = new ArrayList<V>(1);
+            m.put(key, list);
+        }
+        list.add(value);
+    }
+
     /**
      * If the key is already in the map, then add the annos to the list.
      * Otherwise put the key and the annos in the map
@@ -94,6 +94,8 @@ public class AnnotatedTypeCopier implements AnnotatedTypeVisitor<AnnotatedTypeMi
         if (originalToCopy.containsKey(original)) {
             return originalToCopy.get(original);
         }
+        // Make sure that the fields of a lazy copy are initialized.
+        original.copyComponents();
 
         final AnnotatedDeclaredType copy =  (AnnotatedDeclaredType) AnnotatedTypeMirror.createType(
                 original.getUnderlyingType(), original.atypeFactory, original.isDeclaration());
@@ -133,6 +135,8 @@ public class AnnotatedTypeCopier implements AnnotatedTypeVisitor<AnnotatedTypeMi
         if (originalToCopy.containsKey(original)) {
             return originalToCopy.get(original);
         }
+        // Make sure that the fields of a lazy copy are initialized.
+        original.copyComponents();
 
         final AnnotatedIntersectionType copy =  (AnnotatedIntersectionType) AnnotatedTypeMirror.createType(
                 original.getUnderlyingType(), original.atypeFactory, original.isDeclaration());
@@ -156,6 +160,8 @@ public class AnnotatedTypeCopier implements AnnotatedTypeVisitor<AnnotatedTypeMi
         if (originalToCopy.containsKey(original)) {
             return originalToCopy.get(original);
         }
+        // Make sure that the fields of a lazy copy are initialized.
+        original.copyComponents();
 
         final AnnotatedUnionType copy =  (AnnotatedUnionType) AnnotatedTypeMirror.createType(
                 original.getUnderlyingType(), original.atypeFactory, original.isDeclaration());
@@ -179,6 +185,8 @@ public class AnnotatedTypeCopier implements AnnotatedTypeVisitor<AnnotatedTypeMi
         if (originalToCopy.containsKey(original)) {
             return originalToCopy.get(original);
         }
+        // Make sure that the fields of a lazy copy are initialized.
+        original.copyComponents();
 
         final AnnotatedExecutableType copy =  (AnnotatedExecutableType) AnnotatedTypeMirror.createType(
                 original.getUnderlyingType(), original.atypeFactory, original.isDeclaration());
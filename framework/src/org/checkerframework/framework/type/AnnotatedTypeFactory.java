@@ -19,6 +19,7 @@ import org.checkerframework.framework.qual.PolymorphicQualifier;
 import org.checkerframework.framework.qual.StubFiles;
 import org.checkerframework.framework.qual.SubtypeOf;
 import org.checkerframework.framework.qual.TypeQualifiers;
+import org.checkerframework.framework.source.CheckerProfiler;
 import org.checkerframework.framework.source.SourceChecker;
 import org.checkerframework.framework.stub.StubParser;
 import org.checkerframework.framework.stub.StubResource;
@@ -32,6 +33,7 @@ import org.checkerframework.framework.type.AnnotatedTypeMirror.AnnotatedWildcard
 import org.checkerframework.framework.type.visitor.AnnotatedTypeScanner;
 import org.checkerframework.framework.util.AnnotatedTypes;
 import org.checkerframework.framework.util.AnnotationFormatter;
+import org.checkerframework.framework.util.BoundedCache;
 import org.checkerframework.framework.util.CFContext;
 import org.checkerframework.framework.util.DefaultAnnotationFormatter;
 import org.checkerframework.framework.util.GraphQualifierHierarchy;
@@ -42,7 +44,6 @@ import org.checkerframework.framework.util.typeinference.DefaultTypeArgumentInfe
 import org.checkerframework.framework.util.typeinference.TypeArgumentInference;
 import org.checkerframework.javacutil.AnnotationProvider;
 import org.checkerframework.javacutil.AnnotationUtils;
-import org.checkerframework.javacutil.CollectionUtils;
 import org.checkerframework.javacutil.ElementUtils;
 import org.checkerframework.javacutil.ErrorReporter;
 import org.checkerframework.javacutil.InternalUtils;
@@ -213,6 +214,23 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
     // Not final, because it is assigned in postInit().
     private Map<String, Set<AnnotationMirror>> indexDeclAnnos;
 
+    /**
+     * With the -AlazyStubs option, the stub files whose declarations are
+     * parsed on demand into indexTypes and indexDeclAnnos, in the order in
+     * which they were read.  Otherwise null.
+     */
+    private List<StubParser> lazyStubParsers;
+
+    /** The types and members whose stub declarations have been parsed; used with -AlazyStubs. */
+    private Set<String> parsedStubKeys;
+
+    /**
+     * True while stub declarations are parsed on demand.  The stub files
+     * are then resolved as if indexTypes and indexDeclAnnos were null, just
+     * as when they are parsed eagerly.
+     */
+    private boolean parsingStubDeclarations;
+
     /**
      * A cache used to store elements whose declaration annotations
      * have already been stored by calling the method getDeclAnnotations.
@@ -299,6 +317,11 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
 
         this.cacheDeclAnnos = new HashMap<Element, Set<AnnotationMirror>>();
 
+        this.treeCache = createCache("treeCache", DEFAULT_CACHE_SIZE);
+        this.fromTreeCache = createCache("fromTreeCache", DEFAULT_CACHE_SIZE);
+        this.elementCache = createCache("elementCache", DEFAULT_CACHE_SIZE);
+        this.elementToTreeCache = createCache("elementToTreeCache", DEFAULT_CACHE_SIZE);
+
         this.typeFormatter = createAnnotatedTypeFormatter();
         this.annotationFormatter = createAnnotationFormatter();
     }
@@ -363,7 +386,7 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
         pathHack.clear();
 
         // There is no need to clear the following caches, they
-        // are all limited by CACHE_SIZE.
+        // are all bounded.
         /*
         treeCache.clear();
         fromTreeCache.clear();
@@ -621,26 +644,106 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
     protected static boolean SHOULD_READ_CACHE = true;
     public boolean shouldReadCache = SHOULD_READ_CACHE;
 
-    /** Size of LRU cache. */
-    private final static int CACHE_SIZE = 300;
+    /**
+     * Default size of the LRU caches, unless the "cacheSizes" option gives
+     * a different size.
+     */
+    public final static int DEFAULT_CACHE_SIZE = 300;
+
+    // The types in the following caches are copies that are never changed.
+    // Clients receive lazy copies of them, see
+    // AnnotatedTypeMirror.lazyDeepCopy.
 
     /** Mapping from a Tree to its annotated type; implicits have been applied. */
-    private final Map<Tree, AnnotatedTypeMirror> treeCache = CollectionUtils.createLRUCache(CACHE_SIZE);
+    private final BoundedCache<Tree, AnnotatedTypeMirror> treeCache;
 
     /** Mapping from a Tree to its annotated type; before implicits are applied,
      * just what the programmer wrote. */
-    protected final Map<Tree, AnnotatedTypeMirror> fromTreeCache = CollectionUtils.createLRUCache(CACHE_SIZE);
+    protected final Map<Tree, AnnotatedTypeMirror> fromTreeCache;
 
     /** Mapping from an Element to its annotated type; before implicits are applied,
      * just what the programmer wrote. */
-    private final Map<Element, AnnotatedTypeMirror> elementCache = CollectionUtils.createLRUCache(CACHE_SIZE);
+    private final BoundedCache<Element, AnnotatedTypeMirror> elementCache;
 
     /** Mapping from an Element to the source Tree of the declaration. */
-    private final Map<Element, Tree> elementToTreeCache  = CollectionUtils.createLRUCache(CACHE_SIZE);
+    private final BoundedCache<Element, Tree> elementToTreeCache;
 
     /** Mapping from a Tree to its TreePath **/
     private final TreePathCacher treePathCache = new TreePathCacher();
 
+    /**
+     * The names of the caches whose sizes the "cacheSizes" option can set:
+     * the caches that the framework creates with {@link #createCache}.
+     */
+    private static final List<String> CACHE_NAMES = Arrays.asList(
+            "treeCache", "fromTreeCache", "elementCache", "elementToTreeCache",
+            "subtypeCache", "evaluationCache");
+
+    /**
+     * Creates an LRU cache for this factory.  Its size is taken from the
+     * "cacheSizes" option, which is either a size for all caches, or a
+     * comma-separated list of {@code name:size} pairs, in which an entry
+     * without a name gives the size of the caches that are not listed.
+     * With -AresourceStats, the hits, misses and evictions of the cache
+     * are reported at the end.
+     *
+     * @param name the name of the cache, in the option and in statistics
+     * @param defaultSize the size if the option does not give one
+     * @return a new, empty cache
+     */
+    public <K, V> BoundedCache<K, V> createCache(String name, int defaultSize) {
+        return createCache(checker, name, defaultSize);
+    }
+
+    /**
+     * Creates an LRU cache for the given checker, for classes that have no
+     * factory at hand.
+     *
+     * @see #createCache(String, int)
+     */
+    public static <K, V> BoundedCache<K, V> createCache(SourceChecker checker, String name, int defaultSize) {
+        // The option is parsed anew for each of the few caches.
+        Map<String, Integer> cacheSizes = parseCacheSizes(checker.getOption("cacheSizes"));
+        Integer size = cacheSizes.get(name);
+        if (size == null) {
+            size = cacheSizes.get(null);
+        }
+        BoundedCache<K, V> cache = new BoundedCache<>(name, size == null ? defaultSize : size);
+        CheckerProfiler.registerCache(checker, cache);
+        return cache;
+    }
+
+    private static Map<String, Integer> parseCacheSizes(/*@Nullable*/ String option) {
+        Map<String, Integer> sizes = new HashMap<>();
+        if (option == null) {
+            return sizes;
+        }
+        for (String entry : option.split(",")) {
+            entry = entry.trim();
+            if (entry.isEmpty()) {
+                continue;
+            }
+            int colon = entry.indexOf(':');
+            String name = colon < 0 ? null : entry.substring(0, colon).trim();
+            if (name != null && !CACHE_NAMES.contains(name)) {
+                ErrorReporter.errorAbort("Unknown cache in -AcacheSizes: " + entry
+                        + "; the caches are " + CACHE_NAMES);
+            }
+            String size = colon < 0 ? entry : entry.substring(colon + 1).trim();
+            int parsed = -1;
+            try {
+                parsed = Integer.parseInt(size);
+            } catch (NumberFormatException e) {
+                // reported below
+            }
+            if (parsed < 0) {
+                ErrorReporter.errorAbort("Invalid cache size in -AcacheSizes: " + entry);
+            }
+            sizes.put(name, parsed);
+        }
+        return sizes;
+    }
+
     /**
      * Determines the annotated type of an element using
      * {@link #fromElement(Element)}.
@@ -701,8 +804,11 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
             ErrorReporter.errorAbort("AnnotatedTypeFactory.getAnnotatedType: null tree");
             return null; // dead code
         }
-        if (treeCache.containsKey(tree) && shouldReadCache) {
-            return treeCache.get(tree).deepCopy();
+        if (shouldReadCache) {
+            AnnotatedTypeMirror cached = treeCache.get(tree);
+            if (cached != null) {
+                return cached.lazyDeepCopy();
+            }
         }
 
         AnnotatedTypeMirror type;
@@ -786,14 +892,25 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
      * @return the annotated type of the element
      */
     public AnnotatedTypeMirror fromElement(Element elt) {
-        if (elementCache.containsKey(elt) && shouldReadCache) {
-            return elementCache.get(elt).deepCopy();
+        if (shouldReadCache) {
+            AnnotatedTypeMirror cached = elementCache.get(elt);
+            if (cached != null) {
+                return cached.lazyDeepCopy();
+            }
         }
         if (elt.getKind() == ElementKind.PACKAGE)
             return toAnnotatedType(elt.asType(), false);
         AnnotatedTypeMirror type;
         Tree decl = declarationFromElement(elt);
 
+        Map<Element, AnnotatedTypeMirror> indexTypes = null;
+        if (!parsingStubDeclarations) {
+            if (decl == null) {
+                parseStubDeclarations(elt);
+            }
+            indexTypes = this.indexTypes;
+        }
+
         if (decl == null && indexTypes != null && indexTypes.containsKey(elt)) {
             type = indexTypes.get(elt).deepCopy();
         } else if (decl == null && (indexTypes == null || !indexTypes.containsKey(elt))) {
@@ -831,7 +948,7 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
      * that are not already annotated with @FromStubFile
      */
     private void addFromByteCode(Element elt) {
-        if (indexDeclAnnos == null) { // || trees.getTree(elt) != null) {
+        if (indexDeclAnnos == null || parsingStubDeclarations) { // || trees.getTree(elt) != null) {
             // Parsing stub files, don't add @FromByteCode
             return;
         }
@@ -877,8 +994,11 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
             ErrorReporter.errorAbort("AnnotatedTypeFactory.fromMember: not a method or variable declaration: " + tree);
             return null; // dead code
         }
-        if (fromTreeCache.containsKey(tree) && shouldReadCache) {
-            return fromTreeCache.get(tree).deepCopy();
+        if (shouldReadCache) {
+            AnnotatedTypeMirror cached = fromTreeCache.get(tree);
+            if (cached != null) {
+                return cached.lazyDeepCopy();
+            }
         }
         AnnotatedTypeMirror result = TypeFromTree.fromMember(this, tree);
         annotateInheritedFromClass(result);
@@ -894,8 +1014,12 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
      * @return the annotated type of the expression
      */
     public AnnotatedTypeMirror fromExpression(ExpressionTree tree) {
-        if (fromTreeCache.containsKey(tree) && shouldReadCache)
-            return fromTreeCache.get(tree).deepCopy();
+        if (shouldReadCache) {
+            AnnotatedTypeMirror cached = fromTreeCache.get(tree);
+            if (cached != null) {
+                return cached.lazyDeepCopy();
+            }
+        }
 
         AnnotatedTypeMirror result = TypeFromTree.fromExpression(this, tree);
 
@@ -914,8 +1038,11 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
      * @return the annotated type of the type in the AST
      */
     public AnnotatedTypeMirror fromTypeTree(Tree tree) {
-        if (fromTreeCache.containsKey(tree) && shouldReadCache) {
-            return fromTreeCache.get(tree).deepCopy();
+        if (shouldReadCache) {
+            AnnotatedTypeMirror cached = fromTreeCache.get(tree);
+            if (cached != null) {
+                return cached.lazyDeepCopy();
+            }
         }
 
         AnnotatedTypeMirror result = TypeFromTree.fromTypeTree(this, tree);
@@ -1989,8 +2116,12 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
         // if root is null, we cannot find any declaration
         if (root == null)
             return null;
-        if (elementToTreeCache.containsKey(elt) && shouldReadCache) {
-            return elementToTreeCache.get(elt);
+        if (shouldReadCache) {
+            // The cache also records elements without a declaration.
+            Tree cached = elementToTreeCache.get(elt);
+            if (cached != null || elementToTreeCache.containsKey(elt)) {
+                return cached;
+            }
         }
 
         // Check for new declarations, outside of the AST.
@@ -2253,13 +2384,18 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
         Map<String, Set<AnnotationMirror>> indexDeclAnnos
             = new HashMap<String, Set<AnnotationMirror>>();
 
+        if (checker.hasOption("lazyStubs")) {
+            lazyStubParsers = new ArrayList<StubParser>();
+            parsedStubKeys = new HashSet<String>();
+        }
+
         if (!checker.hasOption("ignorejdkastub")) {
             InputStream in = null;
             if (checker != null)
                 in = checker.getClass().getResourceAsStream("jdk.astub");
             if (in != null) {
                 StubParser stubParser = new StubParser("jdk.astub", in, this, processingEnv);
-                stubParser.parse(indexTypes, indexDeclAnnos);
+                parseStubFile(stubParser, indexTypes, indexDeclAnnos);
             }
         }
 
@@ -2267,7 +2403,7 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
         InputStream input = BaseTypeChecker.class.getResourceAsStream("flow.astub");
         if (input != null) {
             StubParser stubParser = new StubParser("flow.astub", input, this, processingEnv);
-            stubParser.parse(indexTypes, indexDeclAnnos);
+            parseStubFile(stubParser, indexTypes, indexDeclAnnos);
         }
 
         String allstubFiles = "";
@@ -2318,7 +2454,7 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
                     in = checker.getClass().getResourceAsStream(stubPath);
                 if (in != null) {
                     StubParser stubParser = new StubParser(stubPath, in, this, processingEnv);
-                    stubParser.parse(indexTypes, indexDeclAnnos);
+                    parseStubFile(stubParser, indexTypes, indexDeclAnnos);
                     // We could handle the stubPath -> continue.
                     continue;
                 }
@@ -2336,7 +2472,7 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
                     continue;
                 }
                 StubParser stubParser = new StubParser(resource.getDescription(), stubStream, this, processingEnv);
-                stubParser.parse(indexTypes, indexDeclAnnos);
+                parseStubFile(stubParser, indexTypes, indexDeclAnnos);
             }
         }
 
@@ -2345,6 +2481,88 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
         return;
     }
 
+    /**
+     * Parses a stub file into the given maps, or, with -AlazyStubs, only
+     * indexes it so that {@link #parseStubDeclarations} can parse its
+     * declarations when they are first needed.
+     */
+    private void parseStubFile(StubParser stubParser,
+            Map<Element, AnnotatedTypeMirror> indexTypes,
+            Map<String, Set<AnnotationMirror>> indexDeclAnnos) {
+        CheckerProfiler.start(checker, CheckerProfiler.Phase.STUB_PARSING);
+        try {
+            if (lazyStubParsers != null) {
+                stubParser.index(indexDeclAnnos);
+                lazyStubParsers.add(stubParser);
+            } else {
+                stubParser.parse(indexTypes, indexDeclAnnos);
+            }
+        } finally {
+            CheckerProfiler.stop();
+        }
+    }
+
+    /**
+     * With -AlazyStubs, parses the declarations in the stub files that may
+     * apply to the given element, unless that has already been done:
+     * the declarations of a type, or of all members with the same name as
+     * a member, or of the method of a parameter.
+     */
+    private void parseStubDeclarations(Element elt) {
+        if (lazyStubParsers == null || indexTypes == null) {
+            return;
+        }
+
+        TypeElement typeElt;
+        String memberName;
+        switch (elt.getKind()) {
+            case ANNOTATION_TYPE:
+            case CLASS:
+            case ENUM:
+            case INTERFACE:
+                typeElt = (TypeElement) elt;
+                memberName = null;
+                break;
+            case CONSTRUCTOR:
+            case ENUM_CONSTANT:
+            case FIELD:
+            case METHOD:
+                typeElt = ElementUtils.enclosingClass(elt);
+                memberName = elt.getSimpleName().toString();
+                break;
+            case PARAMETER:
+                // Parameters are annotated together with their method.
+                parseStubDeclarations(elt.getEnclosingElement());
+                return;
+            default:
+                return;
+        }
+
+        String typeName = typeElt.getQualifiedName().toString();
+        boolean parseType = parsedStubKeys.add(typeName);
+        boolean parseMembers = memberName != null
+                && parsedStubKeys.add(typeName + "#" + memberName);
+        if (!parseType && !parseMembers) {
+            return;
+        }
+
+        parsingStubDeclarations = true;
+        CheckerProfiler.start(checker, CheckerProfiler.Phase.STUB_PARSING);
+        try {
+            for (StubParser stubParser : lazyStubParsers) {
+                if (parseType) {
+                    stubParser.parseTypeDeclarations(typeElt, indexTypes, indexDeclAnnos);
+                }
+                if (parseMembers) {
+                    stubParser.parseMemberDeclarations(typeElt, memberName, indexTypes, indexDeclAnnos);
+                }
+            }
+        } finally {
+            CheckerProfiler.stop();
+            parsingStubDeclarations = false;
+        }
+    }
+
     /**
      * Returns the actual annotation mirror used to annotate this element,
      * whose name equals the passed annotation class, if one exists, or null otherwise.
@@ -2440,7 +2658,9 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
         // Retrieving the annotations from the element.
         results.addAll(elt.getAnnotationMirrors());
         // If indexDeclAnnos == null, return the annotations in the element.
-        if (indexDeclAnnos != null) {
+        if (indexDeclAnnos != null && !parsingStubDeclarations) {
+            parseStubDeclarations(elt);
+
             // Adding @FromByteCode annotation to indexDeclAnnos entry with key
             // elt, if elt is from bytecode.
             addFromByteCode(elt);
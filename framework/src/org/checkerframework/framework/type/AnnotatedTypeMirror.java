@@ -18,6 +18,7 @@ import org.checkerframework.javacutil.ErrorReporter;
 import java.lang.annotation.Annotation;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Set;
 
@@ -143,6 +144,20 @@ public abstract class AnnotatedTypeMirror {
     // any Annotation type. JSR308 is pushing to have this change.
     private final Set<AnnotationMirror> annotations = AnnotationUtils.createAnnotationSet();
 
+    /**
+     * If this type is a lazy copy whose component types have not been
+     * copied yet, the type that it is a copy of; null otherwise.
+     * See {@link #lazyDeepCopy()}.
+     */
+    private AnnotatedTypeMirror copySource;
+
+    /**
+     * The copies made so far by the lazy copy that this type is part of,
+     * shared by all its parts so that the copy preserves the structure of
+     * the original; null if {@link #copySource} is null.
+     */
+    private IdentityHashMap<AnnotatedTypeMirror, AnnotatedTypeMirror> copies;
+
     /** The explicitly written annotations on this type. */
     // TODO: use this to cache the result once computed? For generic types?
     // protected final Set<AnnotationMirror> explicitannotations = AnnotationUtils.createAnnotationSet();
@@ -783,6 +798,186 @@ public abstract class AnnotatedTypeMirror {
      */
     public abstract AnnotatedTypeMirror shallowCopy();
 
+    /**
+     * Returns a deep copy of this type, like {@link #deepCopy()}, that
+     * copies the component types of this type only when they are first
+     * accessed.  This makes copying a large type cheap if only a part of
+     * the copy is ever used.
+     *
+     * This type and its component types must not change afterwards, as
+     * long as the copy is used.  It is meant for types that are private to
+     * a cache, such as those of {@link AnnotatedTypeFactory}.
+     *
+     * @return a deep copy of this type
+     */
+    /*package-private*/ AnnotatedTypeMirror lazyDeepCopy() {
+        return lazyCopy(this, new IdentityHashMap<AnnotatedTypeMirror, AnnotatedTypeMirror>());
+    }
+
+    /**
+     * Copies {@code original} and its primary annotations, but not its
+     * component types, which are copied by {@link #copyComponents()}.
+     */
+    private static AnnotatedTypeMirror lazyCopy(AnnotatedTypeMirror original,
+            IdentityHashMap<AnnotatedTypeMirror, AnnotatedTypeMirror> copies) {
+        AnnotatedTypeMirror copy = copies.get(original);
+        if (copy != null) {
+            return copy;
+        }
+        TypeKind kind = original.getKind();
+        if (kind.isPrimitive() || kind == TypeKind.VOID
+                || kind == TypeKind.PACKAGE || kind == TypeKind.NONE) {
+            // Like AnnotatedTypeCopier, copy types without components anew
+            // every time.
+            copy = createType(original.getUnderlyingType(), original.atypeFactory, original.isDeclaration());
+            copy.addAnnotations(original.annotations);
+            return copy;
+        }
+        // Make sure that the original has all of its components.
+        original.copyComponents();
+
+        copy = createType(original.getUnderlyingType(), original.atypeFactory, original.isDeclaration());
+        switch (kind) {
+        case DECLARED:
+            if (((AnnotatedDeclaredType) original).wasRaw()) {
+                ((AnnotatedDeclaredType) copy).setWasRaw();
+            }
+            break;
+        case EXECUTABLE:
+            ((AnnotatedExecutableType) copy).setElement(((AnnotatedExecutableType) original).getElement());
+            break;
+        case WILDCARD:
+            if (((AnnotatedWildcardType) original).isTypeArgHack()) {
+                ((AnnotatedWildcardType) copy).setTypeArgHack();
+            }
+            break;
+        default:
+            break;
+        }
+        copy.addAnnotations(original.annotations);
+        copies.put(original, copy);
+
+        if (kind != TypeKind.NULL) {
+            copy.copySource = original;
+            copy.copies = copies;
+        }
+        return copy;
+    }
+
+    /**
+     * If this type is a lazy copy, copies the component types of the
+     * original type, in the same way as {@link AnnotatedTypeCopier}.  The
+     * components are lazy copies in turn.
+     *
+     * Every method that reads or writes a component field of a type must
+     * call this method first.
+     *
+     * @see #lazyDeepCopy()
+     */
+    protected final void copyComponents() {
+        if (copySource == null) {
+            return;
+        }
+        final AnnotatedTypeMirror original = copySource;
+        final IdentityHashMap<AnnotatedTypeMirror, AnnotatedTypeMirror> copies = this.copies;
+        copySource = null;
+        this.copies = null;
+
+        switch (original.getKind()) {
+        case DECLARED: {
+            AnnotatedDeclaredType origDeclared = (AnnotatedDeclaredType) original;
+            AnnotatedDeclaredType copy = (AnnotatedDeclaredType) this;
+            if (copy.enclosingType != null) {
+                copy.enclosingType = (AnnotatedDeclaredType) lazyCopy(origDeclared.enclosingType, copies);
+            }
+            if (origDeclared.typeArgs != null) {
+                List<AnnotatedTypeMirror> typeArgs = new ArrayList<>(origDeclared.typeArgs.size());
+                for (AnnotatedTypeMirror typeArg : origDeclared.typeArgs) {
+                    typeArgs.add(lazyCopy(typeArg, copies));
+                }
+                copy.typeArgs = Collections.unmodifiableList(typeArgs);
+            }
+            if (origDeclared.supertypes != null) {
+                copy.supertypes = Collections.unmodifiableList(lazyCopies(origDeclared.supertypes, copies));
+            }
+            break;
+        }
+        case EXECUTABLE: {
+            AnnotatedExecutableType origExecutable = (AnnotatedExecutableType) original;
+            AnnotatedExecutableType copy = (AnnotatedExecutableType) this;
+            if (origExecutable.receiverType != null) {
+                copy.receiverType = (AnnotatedDeclaredType) lazyCopy(origExecutable.receiverType, copies);
+            }
+            for (AnnotatedTypeMirror param : origExecutable.paramTypes) {
+                copy.paramTypes.add(lazyCopy(param, copies));
+            }
+            for (AnnotatedTypeMirror thrown : origExecutable.throwsTypes) {
+                copy.throwsTypes.add(lazyCopy(thrown, copies));
+            }
+            if (origExecutable.returnType != null) {
+                copy.returnType = lazyCopy(origExecutable.returnType, copies);
+            }
+            copy.typeVarTypes.addAll(lazyCopies(origExecutable.typeVarTypes, copies));
+            break;
+        }
+        case ARRAY:
+            ((AnnotatedArrayType) this).setComponentType(
+                    lazyCopy(((AnnotatedArrayType) original).getComponentType(), copies));
+            break;
+        case TYPEVAR: {
+            AnnotatedTypeVariable origTypeVar = (AnnotatedTypeVariable) original;
+            AnnotatedTypeVariable copy = (AnnotatedTypeVariable) this;
+            if (origTypeVar.upperBound != null) {
+                copy.setUpperBoundField(lazyCopy(origTypeVar.upperBound, copies));
+            }
+            if (origTypeVar.lowerBound != null) {
+                copy.setLowerBoundField(lazyCopy(origTypeVar.lowerBound, copies));
+            }
+            break;
+        }
+        case WILDCARD: {
+            AnnotatedWildcardType origWildcard = (AnnotatedWildcardType) original;
+            AnnotatedWildcardType copy = (AnnotatedWildcardType) this;
+            if (origWildcard.extendsBound != null) {
+                copy.setExtendsBound(lazyCopy(origWildcard.extendsBound, copies));
+            }
+            if (origWildcard.superBound != null) {
+                copy.setSuperBound(lazyCopy(origWildcard.superBound, copies));
+            }
+            break;
+        }
+        case INTERSECTION: {
+            AnnotatedIntersectionType origIntersection = (AnnotatedIntersectionType) original;
+            if (origIntersection.supertypes != null) {
+                ((AnnotatedIntersectionType) this).supertypes =
+                        Collections.unmodifiableList(lazyCopies(origIntersection.supertypes, copies));
+            }
+            break;
+        }
+        case UNION: {
+            AnnotatedUnionType origUnion = (AnnotatedUnionType) original;
+            if (origUnion.alternatives != null) {
+                ((AnnotatedUnionType) this).alternatives =
+                        Collections.unmodifiableList(lazyCopies(origUnion.alternatives, copies));
+            }
+            break;
+        }
+        default:
+            // Other types have no components.
+            break;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T extends AnnotatedTypeMirror> List<T> lazyCopies(List<T> originals,
+            IdentityHashMap<AnnotatedTypeMirror, AnnotatedTypeMirror> copies) {
+        List<T> result = new ArrayList<>(originals.size());
+        for (T original : originals) {
+            result.add((T) lazyCopy(original, copies));
+        }
+        return result;
+    }
+
     protected static AnnotatedDeclaredType createTypeOfObject(AnnotatedTypeFactory atypeFactory) {
         AnnotatedDeclaredType objectType =
         atypeFactory.fromElement(
@@ -899,6 +1094,7 @@ public abstract class AnnotatedTypeMirror {
          */
         // WMD
         public void setTypeArguments(List<? extends AnnotatedTypeMirror> ts) {
+            copyComponents();
             if (ts == null || ts.isEmpty()) {
                 typeArgs = Collections.emptyList();
             } else {
@@ -919,6 +1115,7 @@ public abstract class AnnotatedTypeMirror {
          * @return the type argument for this type
          */
         public List<AnnotatedTypeMirror> getTypeArguments() {
+            copyComponents();
             if (typeArgs == null) {
                 typeArgs = new ArrayList<AnnotatedTypeMirror>();
                 if (!((DeclaredType)actualType).getTypeArguments().isEmpty()) { // lazy init
@@ -957,6 +1154,7 @@ public abstract class AnnotatedTypeMirror {
 
         @Override
         public List<AnnotatedDeclaredType> directSuperTypes() {
+            copyComponents();
             if (supertypes == null) {
                 supertypes = Collections.unmodifiableList(SupertypeFinder.directSuperTypes(this));
             }
@@ -970,6 +1168,7 @@ public abstract class AnnotatedTypeMirror {
          * for comment.
          */
         public List<AnnotatedDeclaredType> directSuperTypesField() {
+            copyComponents();
             return supertypes;
         }
 
@@ -1052,6 +1251,7 @@ public abstract class AnnotatedTypeMirror {
          * Sets the enclosing type
          */
         /*default-visibility*/ void setEnclosingType(AnnotatedDeclaredType enclosingType) {
+            copyComponents();
             this.enclosingType = enclosingType;
         }
 
@@ -1062,6 +1262,7 @@ public abstract class AnnotatedTypeMirror {
          * @return enclosingType the enclosing type
          */
         public AnnotatedDeclaredType getEnclosingType() {
+            copyComponents();
             return enclosingType;
         }
     }
@@ -1145,6 +1346,7 @@ public abstract class AnnotatedTypeMirror {
          */
         void setParameterTypes(
                 List<? extends AnnotatedTypeMirror> params) {
+            copyComponents();
             paramTypes.clear();
             paramTypes.addAll(params);
         }
@@ -1153,6 +1355,7 @@ public abstract class AnnotatedTypeMirror {
          * @return the parameter types of this executable type
          */
         public List<AnnotatedTypeMirror> getParameterTypes() {
+            copyComponents();
             if (paramTypes.isEmpty()
                     && !((ExecutableType) actualType).getParameterTypes().isEmpty()) { // lazy init
                 for (TypeMirror t : ((ExecutableType) actualType).getParameterTypes())
@@ -1166,6 +1369,7 @@ public abstract class AnnotatedTypeMirror {
          * @param returnType    the return type
          */
         void setReturnType(AnnotatedTypeMirror returnType) {
+            copyComponents();
             this.returnType = returnType;
         }
 
@@ -1177,6 +1381,7 @@ public abstract class AnnotatedTypeMirror {
          * @return the return type of this executable type
          */
         public AnnotatedTypeMirror getReturnType() {
+            copyComponents();
             if (returnType == null
                     && element != null
                     && ((ExecutableType) actualType).getReturnType() != null) {// lazy init
@@ -1196,6 +1401,7 @@ public abstract class AnnotatedTypeMirror {
          * @param receiverType the receiver type
          */
         void setReceiverType(AnnotatedDeclaredType receiverType) {
+            copyComponents();
             this.receiverType = receiverType;
         }
 
@@ -1204,6 +1410,7 @@ public abstract class AnnotatedTypeMirror {
          *   null for static methods and constructors of top-level classes
          */
         public /*@Nullable*/ AnnotatedDeclaredType getReceiverType() {
+            copyComponents();
             if (receiverType == null
                     // Static methods don't have a receiver
                     &&  !ElementUtils.isStatic(getElement())
@@ -1234,6 +1441,7 @@ public abstract class AnnotatedTypeMirror {
          */
         void setThrownTypes(
                 List<? extends AnnotatedTypeMirror> thrownTypes) {
+            copyComponents();
             this.throwsTypes.clear();
             this.throwsTypes.addAll(thrownTypes);
         }
@@ -1242,6 +1450,7 @@ public abstract class AnnotatedTypeMirror {
          * @return the thrown types of this executable type
          */
         public List<AnnotatedTypeMirror> getThrownTypes() {
+            copyComponents();
             if (throwsTypes.isEmpty()
                     && !((ExecutableType) actualType).getThrownTypes().isEmpty()) { // lazy init
                 for (TypeMirror t : ((ExecutableType) actualType).getThrownTypes())
@@ -1256,6 +1465,7 @@ public abstract class AnnotatedTypeMirror {
          * @param types the type variables of this executable type
          */
         void setTypeVariables(List<AnnotatedTypeVariable> types) {
+            copyComponents();
             typeVarTypes.clear();
             typeVarTypes.addAll(types);
         }
@@ -1264,6 +1474,7 @@ public abstract class AnnotatedTypeMirror {
          * @return the type variables of this executable type, if any
          */
         public List<AnnotatedTypeVariable> getTypeVariables() {
+            copyComponents();
             if (typeVarTypes.isEmpty()
                     && !((ExecutableType) actualType).getTypeVariables().isEmpty()) { // lazy init
                 for (TypeMirror t : ((ExecutableType) actualType).getTypeVariables()) {
@@ -1371,6 +1582,7 @@ public abstract class AnnotatedTypeMirror {
         // WMD
         public
         void setComponentType(AnnotatedTypeMirror type) {
+            copyComponents();
             this.componentType = type;
         }
 
@@ -1378,6 +1590,7 @@ public abstract class AnnotatedTypeMirror {
          * @return the component type of this array
          */
         public AnnotatedTypeMirror getComponentType() {
+            copyComponents();
             if (componentType == null) // lazy init
                 setComponentType(createType(
                         ((ArrayType) actualType).getComponentType(), atypeFactory, false));
@@ -1453,6 +1666,7 @@ public abstract class AnnotatedTypeMirror {
 
         @Override
         public void addAnnotation(AnnotationMirror a) {
+            copyComponents();
             super.addAnnotation(a);
             fixupBoundAnnotations();
         }
@@ -1501,6 +1715,7 @@ public abstract class AnnotatedTypeMirror {
          * @param type the lower bound type
          */
         void setLowerBound(AnnotatedTypeMirror type) {
+            copyComponents();
             if (type != null)
                 type = type.asUse();
             this.lowerBound = type;
@@ -1510,6 +1725,7 @@ public abstract class AnnotatedTypeMirror {
          * Sets the lower bound of this type variable without calling asUse (and therefore making a copy)
          */
         void setLowerBoundField(AnnotatedTypeMirror type) {
+            copyComponents();
             this.lowerBound = type;
             if (lowerBound != null) {
                 fixupBoundAnnotations();
@@ -1524,6 +1740,7 @@ public abstract class AnnotatedTypeMirror {
          * @return the lower bound field.
          */
         public AnnotatedTypeMirror getLowerBoundField() {
+            copyComponents();
             return lowerBound;
         }
 
@@ -1531,6 +1748,7 @@ public abstract class AnnotatedTypeMirror {
          * @return the lower bound type of this type variable
          */
         public AnnotatedTypeMirror getLowerBound() {
+            copyComponents();
             if (lowerBound == null) { // lazy init
                 BoundsInitializer.initializeBounds(this);
                 fixupBoundAnnotations();
@@ -1599,6 +1817,7 @@ public abstract class AnnotatedTypeMirror {
          * @param type the upper bound type
          */
         void setUpperBound(AnnotatedTypeMirror type) {
+            copyComponents();
             if (type.isDeclaration()) {
                 ErrorReporter.errorAbort("Upper bounds should never contain declarations.\n"
                                        + "type=" + type);
@@ -1611,6 +1830,7 @@ public abstract class AnnotatedTypeMirror {
          * @param type the upper bound type
          */
         void setUpperBoundField(final AnnotatedTypeMirror type) {
+            copyComponents();
             this.upperBound = type;
             if (upperBound != null) {
                 fixupBoundAnnotations();
@@ -1625,6 +1845,7 @@ public abstract class AnnotatedTypeMirror {
          * @return the upper bound field.
          */
         public AnnotatedTypeMirror getUpperBoundField() {
+            copyComponents();
             return upperBound;
         }
 
@@ -1637,6 +1858,7 @@ public abstract class AnnotatedTypeMirror {
          * @return the upper bound type of this type variable
          */
         public AnnotatedTypeMirror getUpperBound() {
+            copyComponents();
             if (upperBound == null) { // lazy init
                 BoundsInitializer.initializeBounds(this);
                 fixupBoundAnnotations();
@@ -1882,6 +2104,7 @@ public abstract class AnnotatedTypeMirror {
 
         @Override
         public void addAnnotation(AnnotationMirror a) {
+            copyComponents();
             super.addAnnotation(a);
             fixupBoundAnnotations();
         }
@@ -1892,6 +2115,7 @@ public abstract class AnnotatedTypeMirror {
          * @param type  the type of the lower bound
          */
         void setSuperBound(AnnotatedTypeMirror type) {
+            copyComponents();
             if (type != null) {
                 type = type.asUse();
             }
@@ -1902,6 +2126,7 @@ public abstract class AnnotatedTypeMirror {
         }
 
         public AnnotatedTypeMirror getSuperBoundField() {
+            copyComponents();
             return superBound;
         }
 
@@ -1910,6 +2135,7 @@ public abstract class AnnotatedTypeMirror {
          * explicitly declared, {@code null} is returned.
          */
         public AnnotatedTypeMirror getSuperBound() {
+            copyComponents();
             if (superBound == null) {
                 BoundsInitializer.initializeSuperBound(this);
                 fixupBoundAnnotations();
@@ -1923,6 +2149,7 @@ public abstract class AnnotatedTypeMirror {
          * @param type  the type of the upper bound
          */
         void setExtendsBound(AnnotatedTypeMirror type) {
+            copyComponents();
             if (type != null) {
                 type = type.asUse();
             }
@@ -1933,6 +2160,7 @@ public abstract class AnnotatedTypeMirror {
         }
 
         public AnnotatedTypeMirror getExtendsBoundField() {
+            copyComponents();
             return extendsBound;
         }
 
@@ -1942,6 +2170,7 @@ public abstract class AnnotatedTypeMirror {
          * the wildcard is bound is used.
          */
         public AnnotatedTypeMirror getExtendsBound() {
+            copyComponents();
             if (extendsBound == null) {
                 BoundsInitializer.initializeExtendsBound(this);
                 fixupBoundAnnotations();
@@ -2060,6 +2289,7 @@ public abstract class AnnotatedTypeMirror {
                     new AnnotatedIntersectionType((IntersectionType) actualType, atypeFactory);
             if (copyAnnotations)
                 type.addAnnotations(this.getAnnotationsField());
+            copyComponents();
             type.supertypes = this.supertypes;
             return type;
         }
@@ -2073,6 +2303,7 @@ public abstract class AnnotatedTypeMirror {
 
         @Override
         public List<AnnotatedDeclaredType> directSuperTypes() {
+            copyComponents();
             if (supertypes == null) {
                 List<? extends TypeMirror> ubounds = ((IntersectionType)actualType).getBounds();
                 List<AnnotatedDeclaredType> res = new ArrayList<AnnotatedDeclaredType>(ubounds.size());
@@ -2085,10 +2316,12 @@ public abstract class AnnotatedTypeMirror {
         }
 
         public List<AnnotatedDeclaredType> directSuperTypesField() {
+            copyComponents();
             return supertypes;
         }
 
         void setDirectSuperTypes(List<AnnotatedDeclaredType> supertypes) {
+            copyComponents();
             this.supertypes = new ArrayList<AnnotatedDeclaredType>(supertypes);
         }
     }
@@ -2130,6 +2363,7 @@ public abstract class AnnotatedTypeMirror {
                     new AnnotatedUnionType((UnionType) actualType, atypeFactory);
             if (copyAnnotations)
                 type.addAnnotations(this.getAnnotationsField());
+            copyComponents();
             type.alternatives = this.alternatives;
             return type;
         }
@@ -2142,6 +2376,7 @@ public abstract class AnnotatedTypeMirror {
         protected List<AnnotatedDeclaredType> alternatives;
 
         public List<AnnotatedDeclaredType> getAlternatives() {
+            copyComponents();
             if (alternatives == null) {
                 List<? extends TypeMirror> ualts = ((UnionType)actualType).getAlternatives();
                 List<AnnotatedDeclaredType> res = new ArrayList<AnnotatedDeclaredType>(ualts.size());
@@ -365,6 +365,7 @@ public class BoundsInitializer {
         }
 
         private void initializeTypeArgs(final AnnotatedDeclaredType declaredType) {
+            declaredType.copyComponents();
             if (declaredType.typeArgs == null) {
                 final DeclaredType actualType = (DeclaredType) declaredType.actualType;
                 final List<AnnotatedTypeMirror> typeArgs = new ArrayList<>();
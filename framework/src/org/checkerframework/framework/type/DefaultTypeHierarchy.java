@@ -1,6 +1,11 @@
 package org.checkerframework.framework.type;
 
+/*>>>
+import org.checkerframework.checker.nullness.qual.Nullable;
+*/
+
 import org.checkerframework.common.basetype.BaseTypeChecker;
+import org.checkerframework.framework.source.CheckerProfiler;
 import org.checkerframework.framework.type.AnnotatedTypeMirror.AnnotatedArrayType;
 import org.checkerframework.framework.type.AnnotatedTypeMirror.AnnotatedDeclaredType;
 import org.checkerframework.framework.type.AnnotatedTypeMirror.AnnotatedIntersectionType;
@@ -13,8 +18,10 @@ import org.checkerframework.framework.type.visitor.AbstractAtmComboVisitor;
 import org.checkerframework.framework.type.visitor.VisitHistory;
 import org.checkerframework.framework.util.AnnotatedTypes;
 import org.checkerframework.framework.util.AtmCombo;
+import org.checkerframework.framework.util.BoundedCache;
 import org.checkerframework.framework.util.PluginUtil;
 import org.checkerframework.framework.util.TypeArgumentMapper;
+import org.checkerframework.javacutil.AnnotationUtils;
 import org.checkerframework.javacutil.ErrorReporter;
 import org.checkerframework.javacutil.Pair;
 import org.checkerframework.javacutil.TypesUtils;
@@ -23,6 +30,7 @@ import static org.checkerframework.framework.util.AnnotatedTypes.isDeclarationOf
 import static org.checkerframework.framework.util.AnnotatedTypes.isEnum;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Iterator;
@@ -32,6 +40,7 @@ import java.util.Set;
 import javax.lang.model.element.AnnotationMirror;
 import javax.lang.model.element.TypeElement;
 import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.WildcardType;
 import javax.lang.model.util.Elements;
 import javax.lang.model.util.Types;
 
@@ -114,6 +123,26 @@ public class DefaultTypeHierarchy extends AbstractAtmComboVisitor<Boolean, Visit
     // passing annotations to qualifierHierarchy.
     protected AnnotationMirror currentTop;
 
+    /**
+     * The number of entries of the subtype cache if the "cacheSizes" option
+     * does not give one.
+     */
+    public final static int DEFAULT_SUBTYPE_CACHE_SIZE = 1000;
+
+    /**
+     * The largest number of type nodes, in both types together, of a subtype
+     * check whose result is cached.  Larger checks are rare, and their keys
+     * are expensive to compare.
+     */
+    protected final static int MAX_SUBTYPE_CACHE_KEY_NODES = 32;
+
+    /**
+     * The results of earlier subtype checks, keyed by a structural fingerprint
+     * of the hierarchy and both types; see {@link #subtypeCacheKey}.
+     * Null if the "noSubtypeCache" option is given.
+     */
+    protected final /*@Nullable*/ BoundedCache<List<Object>, Boolean> subtypeCache;
+
     public DefaultTypeHierarchy(final BaseTypeChecker checker, final QualifierHierarchy qualifierHierarchy,
                          boolean ignoreRawTypes, boolean invariantArrayComponents) {
         this(checker, qualifierHierarchy, ignoreRawTypes, invariantArrayComponents, false);
@@ -137,6 +166,12 @@ public class DefaultTypeHierarchy extends AbstractAtmComboVisitor<Boolean, Visit
         this.ignoreRawTypes = ignoreRawTypes;
         this.invariantArrayComponents = invariantArrayComponents;
         this.covariantTypeArgs = covariantTypeArgs;
+
+        if (checker.hasOption("noSubtypeCache")) {
+            this.subtypeCache = null;
+        } else {
+            this.subtypeCache = AnnotatedTypeFactory.createCache(checker, "subtypeCache", DEFAULT_SUBTYPE_CACHE_SIZE);
+        }
     }
 
     /**
@@ -166,8 +201,132 @@ public class DefaultTypeHierarchy extends AbstractAtmComboVisitor<Boolean, Visit
     @Override
     public boolean isSubtype(final AnnotatedTypeMirror subtype, final AnnotatedTypeMirror supertype,
                              final AnnotationMirror top) {
-        currentTop = top;
-        return isSubtype(subtype, supertype, new VisitHistory());
+        CheckerProfiler.start(checker, CheckerProfiler.Phase.SUBTYPE_CHECKS);
+        try {
+            currentTop = top;
+            // Each check starts with an empty visit history, so a cached
+            // result never depends on a check that was still in progress.
+            final List<Object> key = subtypeCache == null ? null : subtypeCacheKey(subtype, supertype, top);
+            if (key != null) {
+                final Boolean cached = subtypeCache.get(key);
+                if (cached != null) {
+                    return cached;
+                }
+            }
+
+            final boolean result = isSubtype(subtype, supertype, new VisitHistory());
+            if (key != null) {
+                subtypeCache.put(key, result);
+            }
+            return result;
+        } finally {
+            CheckerProfiler.stop();
+        }
+    }
+
+    /**
+     * Returns the key of the subtype check of subtype and supertype in the
+     * hierarchy of top in {@link #subtypeCache}, or null if the result of the
+     * check should not be cached.
+     *
+     * The key lists the kind, the annotations (by their ids, see
+     * {@link AnnotationUtils#annotationId}), and the structure of each
+     * type, so two checks have the same key exactly if their types are
+     * equal.  Checks that involve type variables, intersection, union, or
+     * executable types are not cached: their results depend on bounds and
+     * declarations that are not part of such a key.
+     */
+    protected /*@Nullable*/ List<Object> subtypeCacheKey(final AnnotatedTypeMirror subtype,
+                                                      final AnnotatedTypeMirror supertype,
+                                                      final AnnotationMirror top) {
+        final List<Object> key = new ArrayList<>();
+        key.add(AnnotationUtils.annotationId(top));
+        if (!addSubtypeCacheKey(subtype, key) || !addSubtypeCacheKey(supertype, key)) {
+            return null;
+        }
+        return key;
+    }
+
+    /**
+     * Adds the fingerprint of type to key.
+     *
+     * @return false if the type cannot be cached or the key grew too large
+     */
+    private static boolean addSubtypeCacheKey(final AnnotatedTypeMirror type, final List<Object> key) {
+        if (key.size() > 4 * MAX_SUBTYPE_CACHE_KEY_NODES) {
+            return false;
+        }
+
+        final TypeKind kind = type.getKind();
+        key.add(kind);
+
+        final Set<AnnotationMirror> annos = type.getAnnotations();
+        final int[] ids = new int[annos.size()];
+        int i = 0;
+        for (final AnnotationMirror anno : annos) {
+            ids[i++] = AnnotationUtils.annotationId(anno);
+        }
+        Arrays.sort(ids);
+        key.add(ids.length);
+        for (final int id : ids) {
+            key.add(id);
+        }
+
+        switch (kind) {
+            case DECLARED: {
+                final AnnotatedDeclaredType declared = (AnnotatedDeclaredType) type;
+                key.add(declared.getUnderlyingType().asElement());
+                key.add(declared.wasRaw());
+                key.add(declared.isDeclaration());
+
+                final AnnotatedDeclaredType enclosing = declared.getEnclosingType();
+                if (enclosing == null) {
+                    key.add(null);
+                } else if (!addSubtypeCacheKey(enclosing, key)) {
+                    return false;
+                }
+
+                final List<AnnotatedTypeMirror> typeArgs = declared.getTypeArguments();
+                key.add(typeArgs.size());
+                for (final AnnotatedTypeMirror typeArg : typeArgs) {
+                    if (!addSubtypeCacheKey(typeArg, key)) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+
+            case ARRAY:
+                return addSubtypeCacheKey(((AnnotatedArrayType) type).getComponentType(), key);
+
+            case WILDCARD: {
+                final AnnotatedWildcardType wildcard = (AnnotatedWildcardType) type;
+                if (wildcard.isTypeArgHack()) {
+                    return false;
+                }
+                final WildcardType underlying = wildcard.getUnderlyingType();
+                key.add(underlying.getExtendsBound() != null);
+                key.add(underlying.getSuperBound() != null);
+                return addSubtypeCacheKey(wildcard.getExtendsBound(), key)
+                    && addSubtypeCacheKey(wildcard.getSuperBound(), key);
+            }
+
+            case BOOLEAN:
+            case BYTE:
+            case SHORT:
+            case INT:
+            case LONG:
+            case CHAR:
+            case FLOAT:
+            case DOUBLE:
+            case NULL:
+            case VOID:
+            case NONE:
+                return true;
+
+            default:
+                return false;
+        }
     }
 
     /**
@@ -34,6 +34,7 @@ import org.checkerframework.framework.qual.DefaultQualifierInHierarchy;
 import org.checkerframework.framework.qual.ImplicitFor;
 import org.checkerframework.framework.qual.MonotonicQualifier;
 import org.checkerframework.framework.qual.Unqualified;
+import org.checkerframework.framework.source.CheckerProfiler;
 import org.checkerframework.framework.type.AnnotatedTypeMirror.AnnotatedDeclaredType;
 import org.checkerframework.framework.type.AnnotatedTypeMirror.AnnotatedExecutableType;
 import org.checkerframework.framework.type.treeannotator.ImplicitsTreeAnnotator;
@@ -145,6 +146,8 @@ public abstract class GenericAnnotatedTypeFactory<
         this.regularExitStores = null;
         this.methodInvocationStores = null;
         this.returnStatementStores = null;
+        this.methodFlowResults = null;
+        this.lambdaMethods = null;
 
         this.initializationStore = null;
         this.initializationStaticStore = null;
@@ -190,6 +193,8 @@ public abstract class GenericAnnotatedTypeFactory<
         this.regularExitStores = null;
         this.methodInvocationStores = null;
         this.returnStatementStores = null;
+        this.methodFlowResults = null;
+        this.lambdaMethods = null;
         this.initializationStore = null;
         this.initializationStaticStore = null;
     }
@@ -489,6 +494,12 @@ public abstract class GenericAnnotatedTypeFactory<
      */
     protected AnalysisResult<Value, Store> flowResult;
 
+    /**
+     * The number of stores that {@link #flowResult} caches with
+     * -AflowStoreCache, unless the option gives a different number.
+     */
+    protected static final int DEFAULT_FLOW_STORE_CACHE_SIZE = 10000;
+
     /**
      * A mapping from methods (or other code blocks) to their regular exit store (used to check
      * postconditions).
@@ -507,6 +518,21 @@ public abstract class GenericAnnotatedTypeFactory<
      */
     protected IdentityHashMap<MethodInvocationTree, Store> methodInvocationStores;
 
+    /**
+     * With -AstreamFlowResults, a mapping from methods to the analysis
+     * results of the method and of the lambdas within it, each paired with
+     * the tree of its regular exit store.  Null otherwise.
+     *
+     * @see #releaseFlowResults(Tree)
+     */
+    protected IdentityHashMap<MethodTree, List<Pair<Tree, AnalysisResult<Value, Store>>>> methodFlowResults;
+
+    /**
+     * With -AstreamFlowResults, a mapping from lambdas that are yet to be
+     * analyzed to their enclosing method.  Null otherwise.
+     */
+    protected IdentityHashMap<LambdaExpressionTree, MethodTree> lambdaMethods;
+
     /**
      * Returns the regular exit store for a method or another code block (such as static initializers).
      *
@@ -577,9 +603,7 @@ public abstract class GenericAnnotatedTypeFactory<
      */
     protected void performFlowAnalysis(ClassTree classTree) {
         if (flowResult == null) {
-            regularExitStores = new IdentityHashMap<>();
-            returnStatementStores = new IdentityHashMap<>();
-            flowResult = new AnalysisResult<>();
+            createFlowResults();
         }
 
         // no need to scan annotations
@@ -707,6 +731,76 @@ public abstract class GenericAnnotatedTypeFactory<
         }
     }
 
+    /**
+     * Creates empty maps for the results of the flow analysis.
+     */
+    protected void createFlowResults() {
+        regularExitStores = new IdentityHashMap<>();
+        returnStatementStores = new IdentityHashMap<>();
+        flowResult = new AnalysisResult<>();
+        if (checker.hasOption("flowStoreCache")) {
+            flowResult.enableStoreCache(parseFlowStoreCacheSize(checker.getOption("flowStoreCache")));
+        }
+        if (checker.hasOption("streamFlowResults")) {
+            methodFlowResults = new IdentityHashMap<>();
+            lambdaMethods = new IdentityHashMap<>();
+        }
+    }
+
+    /**
+     * Returns the number of stores to cache given by the value of the
+     * -AflowStoreCache option, or the default number if there is no value.
+     */
+    private int parseFlowStoreCacheSize(/*@Nullable*/ String size) {
+        if (size == null || size.trim().isEmpty()) {
+            return DEFAULT_FLOW_STORE_CACHE_SIZE;
+        }
+        int parsed = -1;
+        try {
+            parsed = Integer.parseInt(size.trim());
+        } catch (NumberFormatException e) {
+            // reported below
+        }
+        if (parsed < 0) {
+            checker.userErrorAbort("Invalid number of stores in -AflowStoreCache: " + size);
+        }
+        return parsed;
+    }
+
+    /**
+     * Releases the results of the flow analysis for a method or a
+     * top-level class, once the visitor has checked it and no longer needs
+     * them.  For a method, this releases the values and stores of the
+     * method and of the lambdas within it; for a top-level class, all
+     * results that are left.  The class is not analyzed again.
+     *
+     * Does nothing unless the -AstreamFlowResults option is given.  The
+     * option bounds the results retained while checking a compilation unit
+     * by those of its largest top-level class, and lets the garbage
+     * collector reclaim the stores of each method as soon as it has been
+     * checked.
+     *
+     * @param tree a {@link MethodTree} or a top-level {@link ClassTree}
+     */
+    public void releaseFlowResults(Tree tree) {
+        if (methodFlowResults == null) {
+            return;
+        }
+        if (tree.getKind() == Kind.METHOD) {
+            MethodTree method = (MethodTree) tree;
+            List<Pair<Tree, AnalysisResult<Value, Store>>> results = methodFlowResults.remove(method);
+            if (results != null) {
+                for (Pair<Tree, AnalysisResult<Value, Store>> result : results) {
+                    flowResult.remove(result.second);
+                    regularExitStores.remove(result.first);
+                }
+            }
+            returnStatementStores.remove(method);
+        } else if (TreeUtils.isClassTree(tree)) {
+            createFlowResults();
+        }
+    }
+
     // Maintain a deque of analyses to accommodate nested classes.
     protected final Deque<FlowAnalysis> analyses;
     // Maintain for every class the store that is used when we analyze initialization code
@@ -737,7 +831,13 @@ public abstract class GenericAnnotatedTypeFactory<
             boolean isInitializationCode, boolean isStatic,
             Store lambdaStore) {
         CFGBuilder builder = new CFCFGBuilder(checker, this);
-        ControlFlowGraph cfg = builder.run(root, processingEnv, ast);
+        ControlFlowGraph cfg;
+        CheckerProfiler.start(checker, CheckerProfiler.Phase.CFG_CONSTRUCTION);
+        try {
+            cfg = builder.run(root, processingEnv, ast);
+        } finally {
+            CheckerProfiler.stop();
+        }
         FlowAnalysis newAnalysis = createFlowAnalysis(fieldValues);
         if (emptyStore == null) {
             emptyStore = newAnalysis.createEmptyStore(!checker.hasOption("concurrentSemantics"));
@@ -758,11 +858,29 @@ public abstract class GenericAnnotatedTypeFactory<
                 }
             }
         }
-        analyses.getFirst().performAnalysis(cfg);
+        CheckerProfiler.start(checker, CheckerProfiler.Phase.DATAFLOW);
+        try {
+            analyses.getFirst().performAnalysis(cfg);
+        } finally {
+            CheckerProfiler.stop();
+        }
         AnalysisResult<Value, Store> result = analyses.getFirst().getResult();
 
         // store result
         flowResult.combine(result);
+        MethodTree enclosingMethod = null;
+        if (methodFlowResults != null) {
+            if (ast.getKind() == UnderlyingAST.Kind.METHOD) {
+                enclosingMethod = ((CFGMethod) ast).getMethod();
+                methodFlowResults.put(enclosingMethod,
+                        new ArrayList<Pair<Tree, AnalysisResult<Value, Store>>>());
+            } else if (ast.getKind() == UnderlyingAST.Kind.LAMBDA) {
+                enclosingMethod = lambdaMethods.remove(((CFGLambda) ast).getLambdaTree());
+            }
+            if (enclosingMethod != null) {
+                methodFlowResults.get(enclosingMethod).add(Pair.of(ast.getCode(), result));
+            }
+        }
         if (ast.getKind() == UnderlyingAST.Kind.METHOD) {
             // store exit store (for checking postconditions)
             CFGMethod mast = (CFGMethod) ast;
@@ -820,6 +938,9 @@ public abstract class GenericAnnotatedTypeFactory<
         queue.addAll(builder.getDeclaredClasses());
         for (LambdaExpressionTree lambda : builder.getDeclaredLambdas()) {
             lambdaQueue.add(Pair.of(lambda, getStoreBefore(lambda)));
+            if (enclosingMethod != null) {
+                lambdaMethods.put(lambda, enclosingMethod);
+            }
         }
     }
 
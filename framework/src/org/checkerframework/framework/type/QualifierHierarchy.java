@@ -133,6 +133,24 @@ public abstract class QualifierHierarchy {
      */
     public abstract AnnotationMirror greatestLowerBound(AnnotationMirror a1, AnnotationMirror a2);
 
+    /**
+     * Returns an upper bound of the qualifiers of a value at a loop back
+     * edge: newQualifier is the merged qualifier, which is an upper bound
+     * of previousQualifier, the qualifier from the previous iteration.
+     *
+     * Hierarchies with long ascending chains can return a qualifier above
+     * newQualifier, so that the dataflow analysis of a loop reaches a fixed
+     * point after few iterations.  By default, newQualifier is returned.
+     *
+     * @param newQualifier the least upper bound of the qualifiers of the
+     *        previous and the current iteration
+     * @param previousQualifier the qualifier of the previous iteration
+     * @return an upper bound of newQualifier
+     */
+    public AnnotationMirror widenedUpperBound(AnnotationMirror newQualifier, AnnotationMirror previousQualifier) {
+        return newQualifier;
+    }
+
     /**
      * Returns the type qualifiers that are the least upper bound of
      * the qualifiers in annos1 and annos2.
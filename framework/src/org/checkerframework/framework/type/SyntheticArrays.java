@@ -35,7 +35,7 @@ public class SyntheticArrays {
                                                             final AnnotatedArrayType newReturnType) {
         final AnnotatedExecutableType method =
             (AnnotatedExecutableType) newReturnType.atypeFactory.getAnnotatedType(methodElem);
-        method.returnType = newReturnType;
+        method.setReturnType(newReturnType);
         return method;
     }
 }
@@ -33,20 +33,79 @@ import java.util.Set;
  * already explored.  This class defines a "Visit" inner class which consists of a pair of AnnotatedTypeMirrors.
  * Its equalityCompare method compares AnnotatedTypeMirrors in a way that identifies wildcards that
  * have already been compared.
+ *
+ * A history is created for every subtype check, and most checks add at most a few pairs.  Hashing a pair
+ * hashes both types completely, so the first pairs are kept in small arrays instead of a HashSet, which is
+ * only created once there are more than SMALL_SIZE pairs.  The arrays are allocated on the first call of add;
+ * contains on an empty history costs nothing.  Pairs in the arrays are found by reference first; otherwise
+ * they are compared like the Visits in the set, including their hash codes, so the history contains exactly
+ * the same pairs either way.
  */
 public class VisitHistory {
 
-    private final Set<Visit> visited;
+    /** The number of pairs that are kept in the arrays before they are moved to a HashSet. */
+    private static final int SMALL_SIZE = 8;
+
+    /** The first components of the pairs while there are at most SMALL_SIZE; null until the first add. */
+    private AnnotatedTypeMirror[] types1;
+
+    /** The second components of the pairs, parallel to types1. */
+    private AnnotatedTypeMirror[] types2;
+
+    /** The hash codes of the pairs, parallel to types1; computed on demand. */
+    private int[] hashCodes;
+
+    /** Whether the corresponding entry of hashCodes has been computed. */
+    private boolean[] hashed;
+
+    /** The number of pairs in the arrays. */
+    private int size = 0;
+
+    /** The pairs once there are more than SMALL_SIZE; null before. */
+    private Set<Visit> visited;
 
     public VisitHistory() {
-        this.visited = new HashSet<>();
     }
 
     /**
      * Add a visit for type1 and type2.
      */
     public void add(final AnnotatedTypeMirror type1, final AnnotatedTypeMirror type2) {
-        this.visited.add(new Visit(type1, type2));
+        if (visited != null) {
+            this.visited.add(new Visit(type1, type2));
+            return;
+        }
+        if (types1 == null) {
+            types1 = new AnnotatedTypeMirror[SMALL_SIZE];
+            types2 = new AnnotatedTypeMirror[SMALL_SIZE];
+            hashCodes = new int[SMALL_SIZE];
+            hashed = new boolean[SMALL_SIZE];
+        }
+        for (int i = 0; i < size; i++) {
+            if (types1[i] == type1 && types2[i] == type2) {
+                return;
+            }
+        }
+        // Clients call contains before add, so an equal pair is rarely added
+        // again; if it is, the duplicate only takes up space.
+        if (size < SMALL_SIZE) {
+            types1[size] = type1;
+            types2[size] = type2;
+            hashed[size] = false;
+            size++;
+            return;
+        }
+
+        visited = new HashSet<>();
+        for (int i = 0; i < size; i++) {
+            visited.add(new Visit(types1[i], types2[i]));
+        }
+        visited.add(new Visit(type1, type2));
+        types1 = null;
+        types2 = null;
+        hashCodes = null;
+        hashed = null;
+        size = 0;
     }
 
     /**
@@ -55,19 +114,62 @@ public class VisitHistory {
      * @return true if an equivalent pair has already been added to the history
      */
     public boolean contains(final AnnotatedTypeMirror type1, final AnnotatedTypeMirror type2) {
-        return this.visited.contains(new Visit(type1, type2));
+        if (visited != null) {
+            return this.visited.contains(new Visit(type1, type2));
+        }
+        return size != 0 && containsSmall(type1, type2);
+    }
+
+    /**
+     * Returns true if the arrays contain a pair equal to (type1, type2), in the sense of
+     * Visit.equals and Visit.hashCode.
+     */
+    private boolean containsSmall(final AnnotatedTypeMirror type1, final AnnotatedTypeMirror type2) {
+        for (int i = 0; i < size; i++) {
+            if (types1[i] == type1 && types2[i] == type2) {
+                return true;
+            }
+        }
+        boolean hashComputed = false;
+        int hashCode = 0;
+        for (int i = 0; i < size; i++) {
+            if (Visit.equalityCompare(type1, types1[i]) && Visit.equalityCompare(type2, types2[i])) {
+                if (!hashComputed) {
+                    hashCode = Visit.hashCode(type1, type2);
+                    hashComputed = true;
+                }
+                if (!hashed[i]) {
+                    hashCodes[i] = Visit.hashCode(types1[i], types2[i]);
+                    hashed[i] = true;
+                }
+                if (hashCodes[i] == hashCode) {
+                    return true;
+                }
+            }
+        }
+        return false;
     }
 
     @Override
     public String toString() {
-        return "VisitHistory( " + PluginUtil.join(", ", visited) + " )";
+        if (visited != null) {
+            return "VisitHistory( " + PluginUtil.join(", ", visited) + " )";
+        }
+        final StringBuilder sb = new StringBuilder("VisitHistory( ");
+        for (int i = 0; i < size; i++) {
+            if (i != 0) {
+                sb.append(", ");
+            }
+            sb.append(new Visit(types1[i], types2[i]));
+        }
+        return sb.append(" )").toString();
     }
 
     /**
      * Visit represents a pair of types that have been added to the history.  See class note for
      * VisitHistory (at the top of this file)
      */
-    private class Visit {
+    private static class Visit {
         public final AnnotatedTypeMirror type1;
         public final AnnotatedTypeMirror type2;
 
@@ -78,6 +180,10 @@ public class VisitHistory {
 
         @Override
         public int hashCode() {
+            return hashCode(type1, type2);
+        }
+
+        private static int hashCode(final AnnotatedTypeMirror type1, final AnnotatedTypeMirror type2) {
             return ( type1 != null ? 31 * type1.hashCode() : 0 ) +
                    ( type2 != null ? 31 * type2.hashCode() : 1 );
         }
@@ -94,7 +200,7 @@ public class VisitHistory {
         /**
          * This is a replacement for AnnotatedTypeMirror.equals, read the class comment for VisitHistory
          */
-        private boolean equalityCompare(final AnnotatedTypeMirror thisType, final AnnotatedTypeMirror thatType) {
+        private static boolean equalityCompare(final AnnotatedTypeMirror thisType, final AnnotatedTypeMirror thatType) {
             if (thisType == null) {
                 return thatType == null;
             }
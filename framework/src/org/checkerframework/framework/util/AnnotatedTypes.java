@@ -7,6 +7,7 @@ import org.checkerframework.checker.nullness.qual.*;
 import org.checkerframework.framework.flow.util.LubTypeVariableAnnotator;
 import org.checkerframework.framework.qual.PolyAll;
 import org.checkerframework.framework.qual.TypeQualifier;
+import org.checkerframework.framework.source.CheckerProfiler;
 import org.checkerframework.framework.type.AnnotatedTypeFactory;
 import org.checkerframework.framework.type.AnnotatedTypeMirror;
 import org.checkerframework.framework.type.AnnotatedTypeMirror.AnnotatedArrayType;
@@ -687,7 +688,13 @@ public class AnnotatedTypes {
             }
             return typeArguments;
         } else {
-            return atypeFactory.getTypeArgumentInference().inferTypeArgs(atypeFactory, expr, elt, preType);
+            CheckerProfiler.start(atypeFactory.getContext().getChecker(),
+                    CheckerProfiler.Phase.TYPE_ARGUMENT_INFERENCE);
+            try {
+                return atypeFactory.getTypeArgumentInference().inferTypeArgs(atypeFactory, expr, elt, preType);
+            } finally {
+                CheckerProfiler.stop();
+            }
         }
     }
 
@@ -0,0 +1,166 @@
+package org.checkerframework.framework.util;
+
+/*>>>
+import org.checkerframework.checker.nullness.qual.Nullable;
+*/
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A cache with a least-recently-used eviction policy: when it is full,
+ * adding an entry evicts the entry that was read or written the longest
+ * time ago.  Unlike {@link org.checkerframework.javacutil.CollectionUtils#createLRUCache},
+ * reading an entry with {@link #get} makes it the most recently used one.
+ *
+ * The cache counts its hits, misses and evictions, so that its size can be
+ * tuned; see {@link org.checkerframework.framework.source.CheckerProfiler}.
+ * A cache with a maximal size of 0 stores nothing.
+ *
+ * Null values can be stored; {@link #get} counts them as hits.
+ *
+ * The cache is a {@link Map}, so that it can replace the maps that fields
+ * of type {@code Map} refer to.  Only {@link #get} counts hits and misses;
+ * {@link #containsKey} does not count as an access.  {@link #clear}
+ * keeps the statistics.
+ */
+public class BoundedCache<K, V> extends LinkedHashMap<K, V> {
+
+    /**
+     * The hits, misses and evictions of a cache.  They are kept apart from
+     * the cache, so that they can be reported after the cache, and its
+     * entries, have been garbage-collected.
+     */
+    public static class Statistics {
+        private final String name;
+        private final int maxSize;
+        private long hits = 0;
+        private long misses = 0;
+        private long evictions = 0;
+
+        private Statistics(String name, int maxSize) {
+            this.name = name;
+            this.maxSize = maxSize;
+        }
+
+        /** Returns the name of the cache. */
+        public String getName() {
+            return name;
+        }
+
+        /** Returns the maximal number of entries of the cache. */
+        public int getMaxSize() {
+            return maxSize;
+        }
+
+        /** Returns the number of calls of {@link BoundedCache#get} that found an entry. */
+        public long getHits() {
+            return hits;
+        }
+
+        /** Returns the number of calls of {@link BoundedCache#get} that found no entry. */
+        public long getMisses() {
+            return misses;
+        }
+
+        /** Returns the number of entries evicted because the cache was full. */
+        public long getEvictions() {
+            return evictions;
+        }
+    }
+
+    private static final long serialVersionUID = -3046322317396519428L;
+
+    /** The maximal number of entries. */
+    private final int maxSize;
+
+    private final Statistics statistics;
+
+    /**
+     * Creates an empty cache.
+     *
+     * @param name the name of the cache in statistics
+     * @param maxSize the maximal number of entries, at least 0
+     */
+    public BoundedCache(String name, int maxSize) {
+        // The entries are kept in access order.
+        super(16, 0.75f, true);
+        if (maxSize < 0) {
+            throw new IllegalArgumentException("Negative cache size for " + name + ": " + maxSize);
+        }
+        this.maxSize = maxSize;
+        this.statistics = new Statistics(name, maxSize);
+    }
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<K, V> entry) {
+        if (size() > maxSize) {
+            statistics.evictions++;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns the value for {@code key} and marks it as most recently
+     * used, or returns null if the cache has no entry for {@code key}.
+     * Use {@link #containsKey} to tell a null value from a missing entry.
+     */
+    @Override
+    public /*@Nullable*/ V get(Object key) {
+        V value = super.get(key);
+        if (value != null || super.containsKey(key)) {
+            statistics.hits++;
+        } else {
+            statistics.misses++;
+        }
+        return value;
+    }
+
+    /**
+     * Adds an entry, evicting the least recently used entry if the cache
+     * is full.  A cache with a maximal size of 0 ignores the entry.
+     */
+    @Override
+    public /*@Nullable*/ V put(K key, V value) {
+        if (maxSize == 0) {
+            return null;
+        }
+        return super.put(key, value);
+    }
+
+    public String getName() {
+        return statistics.name;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /** Returns the number of calls of {@link #get} that found an entry. */
+    public long getHits() {
+        return statistics.hits;
+    }
+
+    /** Returns the number of calls of {@link #get} that found no entry. */
+    public long getMisses() {
+        return statistics.misses;
+    }
+
+    /** Returns the number of entries evicted because the cache was full. */
+    public long getEvictions() {
+        return statistics.evictions;
+    }
+
+    /** Returns the statistics of this cache, which do not refer to the cache. */
+    public Statistics getStatistics() {
+        return statistics;
+    }
+
+    @Override
+    public String toString() {
+        return "BoundedCache(" + statistics.name + ", size=" + size() + "/" + maxSize
+                + ", hits=" + statistics.hits + ", misses=" + statistics.misses
+                + ", evictions=" + statistics.evictions + ")";
+    }
+}
@@ -0,0 +1,258 @@
+package org.checkerframework.framework.util;
+
+/*>>>
+import org.checkerframework.checker.nullness.qual.Nullable;
+*/
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A {@link HashMap}-backed map whose copies share their backing map until
+ * one of them is modified.  Copying, with {@link #copyOf}, takes constant
+ * time; the first modification of a shared map copies the backing map.
+ *
+ * Maps that still share their backing map are equal, which lets clients
+ * skip comparing or merging them entry by entry; see
+ * {@link #isSharedWith}.
+ *
+ * A map that was copied and then modified remembers the keys it changed
+ * since it stopped sharing its backing map.  Two maps that derive from the
+ * same backing map can only differ in those keys, so comparing or merging
+ * them only needs to look at the changes; see {@link #differingKeys}.
+ *
+ * The views returned by {@link #keySet}, {@link #values} and
+ * {@link #entrySet} are read-only.
+ */
+public class CopyOnWriteMap<K, V> implements Map<K, V> {
+
+    /** The backing map, possibly shared with other instances. */
+    private HashMap<K, V> map;
+
+    /** Whether {@link #map} may be shared with other instances. */
+    private boolean shared;
+
+    /** A read-only view of {@link #map}, created on demand. */
+    private Map<K, V> readOnlyView;
+
+    /**
+     * The shared backing map that {@link #map} was copied from, or null
+     * if the changes are not tracked.  Shared backing maps are never
+     * modified again.
+     */
+    private /*@Nullable*/ HashMap<K, V> base;
+
+    /**
+     * The keys that were put or removed since {@link #map} was copied
+     * from {@link #base}, or null if the changes are not tracked.
+     */
+    private /*@Nullable*/ Set<K> changedKeys;
+
+    /** Creates an empty map. */
+    public CopyOnWriteMap() {
+        this.map = new HashMap<>();
+        this.shared = false;
+    }
+
+    private CopyOnWriteMap(HashMap<K, V> map, boolean shared) {
+        this.map = map;
+        this.shared = shared;
+    }
+
+    /**
+     * Returns a copy of {@code other}.  If {@code other} is a
+     * {@link CopyOnWriteMap}, the copy shares its backing map.
+     */
+    public static <K, V> CopyOnWriteMap<K, V> copyOf(Map<K, V> other) {
+        if (other instanceof CopyOnWriteMap) {
+            CopyOnWriteMap<K, V> cow = (CopyOnWriteMap<K, V>) other;
+            cow.shared = true;
+            CopyOnWriteMap<K, V> copy = new CopyOnWriteMap<>(cow.map, true);
+            copy.readOnlyView = cow.readOnlyView;
+            return copy;
+        }
+        return new CopyOnWriteMap<>(new HashMap<>(other), false);
+    }
+
+    /**
+     * Returns true if {@code m1} and {@code m2} are {@link CopyOnWriteMap}s
+     * that share their backing map, and are therefore equal.
+     */
+    public static boolean isSharedWith(Map<?, ?> m1, Map<?, ?> m2) {
+        return m1 instanceof CopyOnWriteMap && m2 instanceof CopyOnWriteMap
+                && ((CopyOnWriteMap<?, ?>) m1).map == ((CopyOnWriteMap<?, ?>) m2).map;
+    }
+
+    /**
+     * Returns a set of keys such that {@code m1} and {@code m2} map all
+     * other keys to the same values, or null if there is no such set that
+     * is cheaper to compute than comparing the maps.  The set is empty if
+     * the maps share their backing map.
+     */
+    @SuppressWarnings("unchecked")
+    public static <K> /*@Nullable*/ Set<K> differingKeys(Map<K, ?> m1, Map<K, ?> m2) {
+        if (!(m1 instanceof CopyOnWriteMap && m2 instanceof CopyOnWriteMap)) {
+            return null;
+        }
+        CopyOnWriteMap<K, ?> c1 = (CopyOnWriteMap<K, ?>) m1;
+        CopyOnWriteMap<K, ?> c2 = (CopyOnWriteMap<K, ?>) m2;
+        if (c1.map == c2.map) {
+            return Collections.emptySet();
+        }
+        if (c2.base != null && c2.base == c1.map) {
+            return Collections.unmodifiableSet(c2.changedKeys);
+        }
+        if (c1.base != null && c1.base == c2.map) {
+            return Collections.unmodifiableSet(c1.changedKeys);
+        }
+        if (c1.base != null && c1.base == c2.base) {
+            Set<K> keys = new HashSet<>(c1.changedKeys);
+            keys.addAll(c2.changedKeys);
+            return keys;
+        }
+        return null;
+    }
+
+    /**
+     * Makes sure that the backing map is not shared with other instances.
+     * A shared backing map becomes the base of the tracked changes.
+     */
+    private void ensureWritable() {
+        if (shared) {
+            base = map;
+            changedKeys = new HashSet<>();
+            map = new HashMap<>(map);
+            shared = false;
+            readOnlyView = null;
+        }
+    }
+
+    /**
+     * Records that {@code key} was put or removed.  Stops tracking the
+     * changes once there are more of them than entries in the map, as
+     * comparing the maps is cheaper then.
+     */
+    private void recordChange(K key) {
+        if (changedKeys != null) {
+            changedKeys.add(key);
+            if (changedKeys.size() > map.size()) {
+                base = null;
+                changedKeys = null;
+            }
+        }
+    }
+
+    private Map<K, V> readOnlyView() {
+        if (readOnlyView == null) {
+            readOnlyView = Collections.unmodifiableMap(map);
+        }
+        return readOnlyView;
+    }
+
+    @Override
+    public int size() {
+        return map.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return map.isEmpty();
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return map.containsKey(key);
+    }
+
+    @Override
+    public boolean containsValue(Object value) {
+        return map.containsValue(value);
+    }
+
+    @Override
+    public /*@Nullable*/ V get(Object key) {
+        return map.get(key);
+    }
+
+    @Override
+    public /*@Nullable*/ V put(K key, V value) {
+        ensureWritable();
+        recordChange(key);
+        return map.put(key, value);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public /*@Nullable*/ V remove(Object key) {
+        if (!map.containsKey(key)) {
+            return null;
+        }
+        ensureWritable();
+        // The key is in the map, so it has type K.
+        recordChange((K) key);
+        return map.remove(key);
+    }
+
+    @Override
+    public void putAll(Map<? extends K, ? extends V> m) {
+        if (m.isEmpty()) {
+            return;
+        }
+        ensureWritable();
+        for (K key : m.keySet()) {
+            recordChange(key);
+        }
+        map.putAll(m);
+    }
+
+    @Override
+    public void clear() {
+        if (shared) {
+            // No need to copy entries that are removed anyway.
+            map = new HashMap<>();
+            shared = false;
+            readOnlyView = null;
+        } else {
+            map.clear();
+        }
+        base = null;
+        changedKeys = null;
+    }
+
+    @Override
+    public Set<K> keySet() {
+        return readOnlyView().keySet();
+    }
+
+    @Override
+    public Collection<V> values() {
+        return readOnlyView().values();
+    }
+
+    @Override
+    public Set<Map.Entry<K, V>> entrySet() {
+        return readOnlyView().entrySet();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o instanceof CopyOnWriteMap) {
+            return map.equals(((CopyOnWriteMap<?, ?>) o).map);
+        }
+        return map.equals(o);
+    }
+
+    @Override
+    public int hashCode() {
+        return map.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return map.toString();
+    }
+}
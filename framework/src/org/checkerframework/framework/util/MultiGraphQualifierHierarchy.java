@@ -16,6 +16,8 @@ import org.checkerframework.javacutil.AnnotationUtils;
 import org.checkerframework.javacutil.ErrorReporter;
 
 import java.lang.annotation.Annotation;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -186,6 +188,28 @@ public class MultiGraphQualifierHierarchy extends QualifierHierarchy {
      */
     protected final Map<AnnotationMirror, AnnotationMirror> polyQualifiers;
 
+    /**
+     * All qualifiers of the hierarchy, including the polymorphic ones.
+     * The position of a qualifier in this array is its index in
+     * {@link #supertypesBits}, {@link #lubTable}, and {@link #glbTable}.
+     */
+    private final AnnotationMirror[] qualifiers;
+
+    /**
+     * Maps the canonical id of a qualifier, as given by
+     * {@link AnnotationUtils#annotationId(AnnotationMirror)}, to its index
+     * in {@link #qualifiers}, or -1 if the id does not denote a qualifier
+     * of the hierarchy.
+     */
+    private final int[] qualifierIndexes;
+
+    /**
+     * The subtype relation compiled from {@link #supertypesMap}:
+     * bit j of supertypesBits[i] is set iff qualifiers[i] is a subtype
+     * of qualifiers[j].
+     */
+    private final BitSet[] supertypesBits;
+
     public MultiGraphQualifierHierarchy(MultiGraphFactory f) {
         this(f, (Object[]) null);
     }
@@ -219,9 +243,66 @@ public class MultiGraphQualifierHierarchy extends QualifierHierarchy {
         // TODO: make polyQualifiers immutable also?
 
         this.supertypesMap = Collections.unmodifiableMap(fullMap);
+
+        Set<AnnotationMirror> allQuals = AnnotationUtils.createAnnotationSet();
+        allQuals.addAll(fullMap.keySet());
+        allQuals.addAll(this.polyQualifiers.values());
+        this.qualifiers = allQuals.toArray(new AnnotationMirror[allQuals.size()]);
+        this.qualifierIndexes = buildQualifierIndexes(this.qualifiers);
+        this.supertypesBits = buildSupertypesBits(this.qualifiers, fullMap);
         // System.out.println("MGH: " + this);
     }
 
+    private static int[] buildQualifierIndexes(AnnotationMirror[] qualifiers) {
+        int[] ids = new int[qualifiers.length];
+        int maxId = -1;
+        for (int i = 0; i < qualifiers.length; ++i) {
+            ids[i] = AnnotationUtils.annotationId(qualifiers[i]);
+            maxId = Math.max(maxId, ids[i]);
+        }
+        int[] indexes = new int[maxId + 1];
+        Arrays.fill(indexes, -1);
+        for (int i = 0; i < qualifiers.length; ++i) {
+            indexes[ids[i]] = i;
+        }
+        return indexes;
+    }
+
+    private static BitSet[] buildSupertypesBits(AnnotationMirror[] qualifiers,
+            Map<AnnotationMirror, Set<AnnotationMirror>> fullMap) {
+        BitSet[] bits = new BitSet[qualifiers.length];
+        for (int i = 0; i < qualifiers.length; ++i) {
+            AnnotationMirror rhs = qualifiers[i];
+            Set<AnnotationMirror> supers = fullMap.get(rhs);
+            bits[i] = new BitSet(qualifiers.length);
+            for (int j = 0; j < qualifiers.length; ++j) {
+                AnnotationMirror lhs = qualifiers[j];
+                boolean sub;
+                if (AnnotationUtils.areSameIgnoringValues(rhs, lhs)) {
+                    sub = AnnotationUtils.areSame(rhs, lhs);
+                } else {
+                    sub = supers != null && AnnotationUtils.containsSame(supers, lhs);
+                }
+                if (sub) {
+                    bits[i].set(j);
+                }
+            }
+        }
+        return bits;
+    }
+
+    /**
+     * Returns the index of the given qualifier in {@link #qualifiers}, or
+     * -1 if it is not a qualifier of this hierarchy.
+     */
+    private int indexOf(AnnotationMirror a) {
+        if (a == null) {
+            return -1;
+        }
+        int id = AnnotationUtils.annotationId(a);
+        return id < qualifierIndexes.length ? qualifierIndexes[id] : -1;
+    }
+
     /**
      * Method to finalize the qualifier hierarchy before it becomes unmodifiable.
      * The parameters pass all fields and allow modification.
@@ -372,8 +453,32 @@ public class MultiGraphQualifierHierarchy extends QualifierHierarchy {
     // For caching results of lubs
     private Map<AnnotationPair, AnnotationMirror> lubs = null;
 
+    /**
+     * The lub of qualifiers[i] and qualifiers[j], filled in when the pair
+     * is first queried; see {@link #lubComputed}.
+     */
+    private AnnotationMirror[][] lubTable = null;
+    private boolean[][] lubComputed = null;
+
     @Override
     public AnnotationMirror leastUpperBound(AnnotationMirror a1, AnnotationMirror a2) {
+        int i1 = indexOf(a1);
+        int i2 = indexOf(a2);
+        if (i1 < 0 || i2 < 0) {
+            return computeLub(a1, a2);
+        }
+        if (lubTable == null) {
+            lubTable = new AnnotationMirror[qualifiers.length][qualifiers.length];
+            lubComputed = new boolean[qualifiers.length][qualifiers.length];
+        }
+        if (!lubComputed[i1][i2]) {
+            lubTable[i1][i2] = computeLub(qualifiers[i1], qualifiers[i2]);
+            lubComputed[i1][i2] = true;
+        }
+        return lubTable[i1][i2];
+    }
+
+    private AnnotationMirror computeLub(AnnotationMirror a1, AnnotationMirror a2) {
         if (!AnnotationUtils.areSameIgnoringValues(getTopAnnotation(a1), getTopAnnotation(a2))) {
             return null;
         } else if (isSubtype(a1, a2)) {
@@ -402,8 +507,32 @@ public class MultiGraphQualifierHierarchy extends QualifierHierarchy {
     // For caching results of glbs
     private Map<AnnotationPair, AnnotationMirror> glbs = null;
 
+    /**
+     * The glb of qualifiers[i] and qualifiers[j], filled in when the pair
+     * is first queried; see {@link #glbComputed}.
+     */
+    private AnnotationMirror[][] glbTable = null;
+    private boolean[][] glbComputed = null;
+
     @Override
     public AnnotationMirror greatestLowerBound(AnnotationMirror a1, AnnotationMirror a2) {
+        int i1 = indexOf(a1);
+        int i2 = indexOf(a2);
+        if (i1 < 0 || i2 < 0) {
+            return computeGlb(a1, a2);
+        }
+        if (glbTable == null) {
+            glbTable = new AnnotationMirror[qualifiers.length][qualifiers.length];
+            glbComputed = new boolean[qualifiers.length][qualifiers.length];
+        }
+        if (!glbComputed[i1][i2]) {
+            glbTable[i1][i2] = computeGlb(qualifiers[i1], qualifiers[i2]);
+            glbComputed[i1][i2] = true;
+        }
+        return glbTable[i1][i2];
+    }
+
+    private AnnotationMirror computeGlb(AnnotationMirror a1, AnnotationMirror a2) {
         if (AnnotationUtils.areSameIgnoringValues(a1, a2))
             return AnnotationUtils.areSame(a1, a2) ? a1 : getBottomAnnotation(a1);
         if (glbs == null) {
@@ -441,20 +570,15 @@ public class MultiGraphQualifierHierarchy extends QualifierHierarchy {
      */
     @Override
     public boolean isSubtype(AnnotationMirror rhs, AnnotationMirror lhs) {
-        checkAnnoInGraph(rhs);
-        checkAnnoInGraph(lhs);
-
-        /* TODO: this optimization leads to recursion
-        for (AnnotationMirror top : tops) {
-            System.out.println("Looking at top: " + tops + " and " + anno1);
-            // We cannot use getRootAnnotation, as that would use subtyping and recurse
-            if (isSubtype(anno1, top) && AnnotationUtils.areSame(top, anno2))
-            return true;
-        }*/
-        if (AnnotationUtils.areSameIgnoringValues(rhs, lhs))
-            return AnnotationUtils.areSame(rhs, lhs);
-        Set<AnnotationMirror> supermap1 = this.supertypesMap.get(rhs);
-        return AnnotationUtils.containsSame(supermap1, lhs);
+        int rhsIndex = indexOf(rhs);
+        int lhsIndex = indexOf(lhs);
+        if (rhsIndex < 0) {
+            reportAnnoNotInGraph(rhs);
+        }
+        if (lhsIndex < 0) {
+            reportAnnoNotInGraph(lhs);
+        }
+        return supertypesBits[rhsIndex].get(lhsIndex);
     }
 
     @Override
@@ -470,11 +594,7 @@ public class MultiGraphQualifierHierarchy extends QualifierHierarchy {
         return isSubtype(rhs, lhs);
     }
 
-    private final void checkAnnoInGraph(AnnotationMirror a) {
-        if (AnnotationUtils.containsSame(supertypesMap.keySet(), a) ||
-                AnnotationUtils.containsSame(polyQualifiers.values(), a))
-            return;
-
+    private final void reportAnnoNotInGraph(AnnotationMirror a) {
         if (a == null) {
             ErrorReporter.errorAbort("MultiGraphQualifierHierarchy found an unqualified type.  Please ensure that " +
                     "your implicit rules cover all cases and/or " +
@@ -17,9 +17,9 @@ import org.checkerframework.framework.type.AnnotatedTypeMirror.AnnotatedWildcard
 import org.checkerframework.framework.type.GenericAnnotatedTypeFactory;
 import org.checkerframework.framework.type.QualifierHierarchy;
 import org.checkerframework.framework.type.visitor.AnnotatedTypeScanner;
+import org.checkerframework.framework.util.BoundedCache;
 import org.checkerframework.framework.util.CheckerMain;
 import org.checkerframework.javacutil.AnnotationUtils;
-import org.checkerframework.javacutil.CollectionUtils;
 import org.checkerframework.javacutil.ElementUtils;
 import org.checkerframework.javacutil.ErrorReporter;
 import org.checkerframework.javacutil.InternalUtils;
@@ -86,9 +86,16 @@ public class QualifierDefaults {
     private final DefaultSet absoluteDefaults = new DefaultSet();
     private final DefaultSet unannotatedDefaults = new DefaultSet();
 
-    /** Mapping from an Element to the source Tree of the declaration. */
     private static final int CACHE_SIZE = 300;
-    protected static final Map<Element, BoundType> elementToBoundType  = CollectionUtils.createLRUCache(CACHE_SIZE);
+
+    /**
+     * Mapping from a type parameter Element to the kind of its declared
+     * bound.  The kind does not depend on the checker, so the cache is
+     * shared by all of them, and its size is not set by the "cacheSizes"
+     * option.
+     */
+    protected static final Map<Element, BoundType> elementToBoundType =
+            new BoundedCache<Element, BoundType>("boundTypeCache", CACHE_SIZE);
 
 
     /**
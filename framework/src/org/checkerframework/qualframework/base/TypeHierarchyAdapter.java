@@ -2,6 +2,8 @@ package org.checkerframework.qualframework.base;
 
 import org.checkerframework.framework.type.AnnotatedTypeMirror;
 
+import java.util.List;
+
 import javax.lang.model.element.AnnotationMirror;
 
 /** Adapter class for {@link TypeHierarchy}, extending
@@ -72,6 +74,17 @@ class TypeHierarchyAdapter<Q> extends org.checkerframework.framework.type.Defaul
                 converter.getQualifiedType(supertype));
     }
 
+    /**
+     * Does not cache subtype checks: the annotations of converted types only
+     * refer to qualifiers, which may be inference variables, and checking
+     * them can have side effects.
+     */
+    @Override
+    protected List<Object> subtypeCacheKey(AnnotatedTypeMirror subtype, AnnotatedTypeMirror supertype,
+            AnnotationMirror top) {
+        return null;
+    }
+
     boolean superIsSubtype(QualifiedTypeMirror<Q> subtype, QualifiedTypeMirror<Q> supertype) {
         return super.isSubtype(
                 converter.getAnnotatedType(subtype),
@@ -0,0 +1,21 @@
+import org.checkerframework.common.value.qual.*;
+
+// Diagnostics are stored in the result cache by the first compilation and
+// replayed by the second one.
+class Replay {
+
+    int arrayLength(int[] a) {
+        return a.length;
+    }
+
+    Class<?> primitiveClass() {
+        return int.class;
+    }
+
+    void assignment(java.util.List<String> list) {
+        int x = list.isEmpty() ? 1 : 2;
+        @IntVal({ 1, 2 }) int y = x;
+        //:: error: (assignment.type.incompatible)
+        @IntVal({ 1 }) int z = x;
+    }
+}
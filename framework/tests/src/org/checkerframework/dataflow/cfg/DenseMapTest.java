@@ -0,0 +1,160 @@
+package org.checkerframework.dataflow.cfg;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * Tests {@link DenseMap}, in particular the keys that have no dense id and
+ * are kept in the fallback map: keys without an id, keys whose id is out
+ * of range, and keys whose id belongs to another key.
+ */
+public class DenseMapTest {
+
+    /** A key with an id; equal keys are not identical. */
+    private static class Key {
+        final int id;
+        final String name;
+
+        Key(int id, String name) {
+            this.id = id;
+            this.name = name;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key && ((Key) o).name.equals(name);
+        }
+
+        @Override
+        public int hashCode() {
+            return name.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    private final Key k0 = new Key(0, "k0");
+    private final Key k1 = new Key(1, "k1");
+    private final Key k2 = new Key(2, "k2");
+
+    /** A key without an id. */
+    private final Key noId = new Key(-1, "noId");
+
+    /** A key whose id is beyond the keys of the map. */
+    private final Key outOfRange = new Key(3, "outOfRange");
+
+    /** A key that has the id of k1, but is not k1. */
+    private final Key impostor = new Key(1, "impostor");
+
+    private Map<Key, String> newMap() {
+        return new DenseMap<Key, String>(new Object[] {k0, k1, k2}) {
+            @Override
+            protected int denseId(Object key) {
+                return (key instanceof Key) ? ((Key) key).id : -1;
+            }
+        };
+    }
+
+    @Test
+    public void denseKeys() {
+        Map<Key, String> map = newMap();
+        assertTrue(map.isEmpty());
+        assertNull(map.put(k1, "one"));
+        assertEquals("one", map.put(k1, "uno"));
+        assertEquals("uno", map.get(k1));
+        assertTrue(map.containsKey(k1));
+        assertFalse(map.containsKey(k0));
+        assertEquals(1, map.size());
+        assertEquals("uno", map.remove(k1));
+        assertNull(map.remove(k1));
+        assertTrue(map.isEmpty());
+    }
+
+    @Test
+    public void nullValues() {
+        Map<Key, String> map = newMap();
+        assertNull(map.put(k0, null));
+        assertTrue(map.containsKey(k0));
+        assertNull(map.get(k0));
+        assertEquals(1, map.size());
+        assertNull(map.put(noId, null));
+        assertTrue(map.containsKey(noId));
+        assertEquals(2, map.size());
+    }
+
+    @Test
+    public void fallbackKeys() {
+        Map<Key, String> map = newMap();
+        map.put(k1, "k1");
+        map.put(noId, "noId");
+        map.put(outOfRange, "outOfRange");
+        map.put(impostor, "impostor");
+        assertEquals(4, map.size());
+
+        // The impostor has the id of k1 but does not replace it.
+        assertEquals("k1", map.get(k1));
+        assertEquals("impostor", map.get(impostor));
+        assertEquals("noId", map.get(noId));
+        assertEquals("outOfRange", map.get(outOfRange));
+
+        // Keys are compared by identity, in the fallback map, too.
+        assertFalse(map.containsKey(new Key(-1, "noId")));
+        assertFalse(map.containsKey(new Key(1, "k1")));
+        assertFalse(map.containsKey("not a key"));
+
+        assertEquals("impostor", map.remove(impostor));
+        assertEquals("k1", map.get(k1));
+        assertEquals("noId", map.remove(noId));
+        assertNull(map.get(noId));
+        assertEquals(2, map.size());
+    }
+
+    @Test
+    public void iteration() {
+        Map<Key, String> map = newMap();
+        map.put(noId, "noId");
+        map.put(k2, "k2");
+        map.put(k0, "k0");
+
+        // Dense keys in id order, then the others.
+        List<Key> keys = new ArrayList<>(map.keySet());
+        assertEquals(Arrays.asList(k0, k2, noId), keys);
+
+        Iterator<Map.Entry<Key, String>> it = map.entrySet().iterator();
+        while (it.hasNext()) {
+            Key key = it.next().getKey();
+            if (key == k2 || key == noId) {
+                it.remove();
+            }
+        }
+        assertEquals(1, map.size());
+        assertEquals(Arrays.asList(k0), new ArrayList<>(map.keySet()));
+    }
+
+    @Test
+    public void clear() {
+        Map<Key, String> map = newMap();
+        map.put(k0, "k0");
+        map.put(noId, "noId");
+        map.clear();
+        assertTrue(map.isEmpty());
+        assertFalse(map.containsKey(k0));
+        assertFalse(map.containsKey(noId));
+        map.put(noId, "again");
+        assertEquals("again", map.get(noId));
+        assertEquals(1, map.size());
+    }
+}
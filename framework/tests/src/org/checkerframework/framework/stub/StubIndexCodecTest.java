@@ -0,0 +1,201 @@
+package org.checkerframework.framework.stub;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.checkerframework.framework.stub.StubIndexCodec.UnsupportedNodeException;
+import org.checkerframework.stubparser.JavaParser;
+import org.checkerframework.stubparser.ast.IndexUnit;
+import org.checkerframework.stubparser.ast.Node;
+import org.junit.Test;
+
+/**
+ * Checks that decoding an encoded stub file yields the same tree as
+ * parsing it, except for comments and Javadoc, which are not stored.
+ */
+public class StubIndexCodecTest {
+
+    /** Directories, relative to the framework directory, that contain the bundled stub files. */
+    private static final String[] STUB_DIRS = { "src", "../checker/src" };
+
+    @Test
+    public void roundTripBundledStubFiles() throws Exception {
+        List<File> stubFiles = new ArrayList<File>();
+        for (String dir : STUB_DIRS) {
+            findStubFiles(new File(dir), stubFiles);
+        }
+        assertFalse("No stub files found", stubFiles.isEmpty());
+
+        int encoded = 0;
+        for (File stubFile : stubFiles) {
+            IndexUnit parsed = JavaParser.parse(stubFile);
+            IndexUnit decoded;
+            try {
+                decoded = roundTrip(parsed);
+            } catch (UnsupportedNodeException e) {
+                // Such stub files are parsed every time instead.
+                continue;
+            }
+            assertSameTree(stubFile.getPath(), parsed, decoded);
+            encoded++;
+        }
+        assertTrue("Only " + encoded + " of " + stubFiles.size() + " stub files could be encoded",
+                encoded * 2 > stubFiles.size());
+    }
+
+    @Test
+    public void roundTripDropsJavadoc() throws Exception {
+        String withJavadoc =
+                "package p;\n"
+                + "/** A class. */\n"
+                + "class C {\n"
+                + "    /** A field. */\n"
+                + "    @A(1) int f = -1;\n"
+                + "    /** A method. */\n"
+                + "    <T extends Object> void m(@B T t, String... s) throws Exception;\n"
+                + "    /** A constructor. */\n"
+                + "    C() {}\n"
+                + "}\n";
+        String withoutJavadoc = withJavadoc.replaceAll("/\\*\\*[^*]*\\*/", "");
+
+        IndexUnit decoded = roundTrip(parse(withJavadoc));
+        assertEquals(parse(withoutJavadoc).toString(), decoded.toString());
+        assertSameTree("<javadoc>", parse(withJavadoc), decoded);
+    }
+
+    @Test
+    public void methodBodyIsUnsupported() throws Exception {
+        assertUnsupported("class C { void m() { return; } }");
+    }
+
+    @Test
+    public void constructorBodyIsUnsupported() throws Exception {
+        assertUnsupported("class C { C() { super(); } }");
+    }
+
+    @Test
+    public void nonConstantInitializerIsUnsupported() throws Exception {
+        assertUnsupported("class C { Object o = new Object(); }");
+    }
+
+    @Test
+    public void unsupportedStubFileIsParsedWithoutCacheFile() throws Exception {
+        String source = "class C { void m() { return; } }";
+        File cacheDir = createTempDir();
+        try {
+            IndexUnit index = StubIndexCache.getIndex(
+                    new ByteArrayInputStream(source.getBytes("UTF-8")), cacheDir.getPath());
+            assertSameTree("<unsupported>", parse(source), index);
+            File[] files = cacheDir.listFiles();
+            assertTrue("Unexpected cache file", files == null || files.length == 0);
+        } finally {
+            deleteRecursively(cacheDir);
+        }
+    }
+
+    private static void assertUnsupported(String source) throws Exception {
+        try {
+            StubIndexCodec.write(parse(source), new DataOutputStream(new ByteArrayOutputStream()));
+            fail("Encoded an unsupported construct: " + source);
+        } catch (UnsupportedNodeException e) {
+            // expected
+        }
+    }
+
+    private static IndexUnit parse(String source) throws Exception {
+        return JavaParser.parse(new ByteArrayInputStream(source.getBytes("UTF-8")));
+    }
+
+    private static IndexUnit roundTrip(IndexUnit index) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        StubIndexCodec.write(index, out);
+        out.flush();
+        return StubIndexCodec.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+    }
+
+    /**
+     * Compares two trees field by field, including source positions.
+     * Comments and Javadoc of {@code parsed} are ignored; {@code decoded}
+     * must not have any.
+     */
+    private static void assertSameTree(String path, Object parsed, Object decoded) throws Exception {
+        if (parsed == null || decoded == null) {
+            assertSame(path, parsed, decoded);
+            return;
+        }
+        if (parsed instanceof List) {
+            // The parser and the decoder use different list implementations.
+            List<?> parsedList = (List<?>) parsed;
+            List<?> decodedList = (List<?>) decoded;
+            assertEquals(path + ".size()", parsedList.size(), decodedList.size());
+            for (int i = 0; i < parsedList.size(); i++) {
+                assertSameTree(path + "[" + i + "]", parsedList.get(i), decodedList.get(i));
+            }
+        } else if (parsed instanceof Node) {
+            assertEquals(path, parsed.getClass(), decoded.getClass());
+            for (Class<?> c = parsed.getClass(); c != Object.class; c = c.getSuperclass()) {
+                for (Field field : c.getDeclaredFields()) {
+                    if (Modifier.isStatic(field.getModifiers())) {
+                        continue;
+                    }
+                    field.setAccessible(true);
+                    String fieldPath = path + "." + field.getName();
+                    if (field.getName().equals("javaDoc") || field.getName().equals("comments")) {
+                        assertNull(fieldPath, field.get(decoded));
+                    } else {
+                        assertSameTree(fieldPath, field.get(parsed), field.get(decoded));
+                    }
+                }
+            }
+        } else {
+            assertEquals(path, parsed, decoded);
+        }
+    }
+
+    private static void findStubFiles(File dir, List<File> stubFiles) {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (file.isDirectory()) {
+                findStubFiles(file, stubFiles);
+            } else if (file.getName().endsWith(".astub")) {
+                stubFiles.add(file);
+            }
+        }
+    }
+
+    private static File createTempDir() throws IOException {
+        File dir = File.createTempFile("stubcache", "");
+        assertTrue(dir.delete());
+        assertTrue(dir.mkdir());
+        return dir;
+    }
+
+    private static void deleteRecursively(File file) {
+        File[] files = file.listFiles();
+        if (files != null) {
+            for (File child : files) {
+                deleteRecursively(child);
+            }
+        }
+        file.delete();
+    }
+}
@@ -0,0 +1,153 @@
+package org.checkerframework.framework.type;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.ExecutableElement;
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+
+import org.checkerframework.framework.qual.Bottom;
+import org.checkerframework.framework.type.visitor.SimpleAnnotatedTypeScanner;
+import org.checkerframework.javacutil.AnnotationUtils;
+import org.checkerframework.javacutil.TreeUtils;
+import org.junit.Test;
+
+import tests.util.TestChecker;
+
+import com.sun.source.tree.ClassTree;
+import com.sun.source.tree.CompilationUnitTree;
+import com.sun.source.tree.MethodTree;
+import com.sun.source.tree.Tree;
+import com.sun.source.util.JavacTask;
+import com.sun.tools.javac.api.JavacTool;
+
+/**
+ * Checks that the lazy copies that the caches of
+ * {@link AnnotatedTypeFactory} return are independent of the cached types:
+ * modifying a copy, at any depth, must not change the cached type.
+ */
+public class LazyDeepCopyTest {
+
+    private static final String SOURCE =
+        "import java.util.*;\n"
+        + "import tests.util.*;\n"
+        + "abstract class Sample<K extends @Odd Object> {\n"
+        + "    static class Box<T> {}\n"
+        + "    abstract Map<@Odd String, List<@Even String>> nested();\n"
+        + "    abstract Map.Entry<K, Box<? extends @Even List<K>>> wildcard();\n"
+        + "    abstract @Odd String @Even [] array();\n"
+        + "    abstract <E extends @Odd Comparable<E>> E typeVariable();\n"
+        + "}\n";
+
+    private static final List<String> METHODS = Arrays.asList("nested", "wildcard", "array", "typeVariable");
+
+    private final TestChecker checker = new TestChecker();
+    private final CompilationUnitTree root;
+    private final AnnotatedTypeFactory factory;
+    private final AnnotationMirror bottom;
+
+    public LazyDeepCopyTest() throws IOException {
+        root = compile();
+        factory = checker.getTypeFactory();
+        bottom = AnnotationUtils.fromClass(factory.getElementUtils(), Bottom.class);
+    }
+
+    @Test
+    public void lazyCopyEqualsOriginal() {
+        for (String method : METHODS) {
+            AnnotatedTypeMirror type = factory.getAnnotatedType(method(method));
+            AnnotatedTypeMirror copy = type.lazyDeepCopy();
+            assertNotSame(type, copy);
+            assertEquals(method, type, copy);
+            assertEquals(method, type.toString(true), copy.toString(true));
+        }
+    }
+
+    @Test
+    public void modifyingLazyCopyKeepsOriginal() {
+        for (String method : METHODS) {
+            AnnotatedTypeMirror type = factory.getAnnotatedType(method(method));
+            AnnotatedTypeMirror before = type.deepCopy();
+            AnnotatedTypeMirror copy = type.lazyDeepCopy();
+            replaceAllAnnotations(copy);
+            assertFalse(method, type.equals(copy));
+            assertEquals(method, before, type);
+            assertEquals(method, before.toString(true), type.toString(true));
+        }
+    }
+
+    @Test
+    public void modifyingCachedResultKeepsCache() {
+        for (String method : METHODS) {
+            ExecutableElement element = method(method);
+            AnnotatedTypeMirror first = factory.getAnnotatedType(element);
+            String expected = first.toString(true);
+            replaceAllAnnotations(first);
+            AnnotatedTypeMirror second = factory.getAnnotatedType(element);
+            assertNotSame(first, second);
+            assertEquals(method, expected, second.toString(true));
+        }
+    }
+
+    /** Replaces the annotations of the type and of all of its component types by @Bottom. */
+    private void replaceAllAnnotations(AnnotatedTypeMirror type) {
+        new SimpleAnnotatedTypeScanner<Void, Void>() {
+            @Override
+            protected Void defaultAction(AnnotatedTypeMirror type, Void p) {
+                type.replaceAnnotation(bottom);
+                return null;
+            }
+        }.visit(type);
+        assertTrue(type.toString(true), type.hasAnnotation(bottom));
+    }
+
+    private ExecutableElement method(String name) {
+        ClassTree classTree = (ClassTree) root.getTypeDecls().get(0);
+        for (Tree member : classTree.getMembers()) {
+            if (member instanceof MethodTree && ((MethodTree) member).getName().contentEquals(name)) {
+                return TreeUtils.elementFromDeclaration((MethodTree) member);
+            }
+        }
+        throw new AssertionError("No method " + name);
+    }
+
+    /**
+     * Type-checks {@link #SOURCE} with {@link #checker}.  The compilation
+     * stays alive afterwards, so that the type factory can still be used.
+     */
+    private CompilationUnitTree compile() throws IOException {
+        List<String> options = new ArrayList<String>(Arrays.asList(
+                "-Anocheckjdk", "-AprintErrorStack", "-classpath", System.getProperty("java.class.path")));
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<JavaFileObject>();
+        JavaFileObject source = new SimpleJavaFileObject(URI.create("string:///Sample.java"), JavaFileObject.Kind.SOURCE) {
+            @Override
+            public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                return SOURCE;
+            }
+        };
+        JavacTask task = JavacTool.create().getTask(null, null, diagnostics, options, null,
+                Collections.singleton(source));
+        task.setProcessors(Collections.singleton(checker));
+        CompilationUnitTree root = task.parse().iterator().next();
+        task.analyze();
+        for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+            if (diagnostic.getKind() == Diagnostic.Kind.ERROR) {
+                throw new AssertionError(diagnostic.toString());
+            }
+        }
+        return root;
+    }
+}
@@ -0,0 +1,108 @@
+package org.checkerframework.framework.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * Tests {@link BoundedCache}: the least-recently-used eviction order, the
+ * counts of hits, misses and evictions, and a cache of size 0.
+ */
+public class BoundedCacheTest {
+
+    @Test
+    public void evictsLeastRecentlyUsed() {
+        BoundedCache<String, Integer> cache = new BoundedCache<>("test", 3);
+        cache.put("a", 1);
+        cache.put("b", 2);
+        cache.put("c", 3);
+        // Reading a makes b the least recently used entry.
+        assertEquals(Integer.valueOf(1), cache.get("a"));
+        cache.put("d", 4);
+        assertEquals(Arrays.asList("c", "a", "d"), new ArrayList<>(cache.keySet()));
+
+        // Writing c makes a the least recently used entry.
+        cache.put("c", 30);
+        cache.put("e", 5);
+        assertEquals(Arrays.asList("d", "c", "e"), new ArrayList<>(cache.keySet()));
+        assertEquals(3, cache.size());
+    }
+
+    @Test
+    public void containsKeyIsNotAnAccess() {
+        BoundedCache<String, Integer> cache = new BoundedCache<>("test", 2);
+        cache.put("a", 1);
+        cache.put("b", 2);
+        assertTrue(cache.containsKey("a"));
+        cache.put("c", 3);
+        assertFalse(cache.containsKey("a"));
+        assertEquals(0, cache.getHits() + cache.getMisses());
+    }
+
+    @Test
+    public void countsHitsMissesAndEvictions() {
+        BoundedCache<String, Integer> cache = new BoundedCache<>("test", 2);
+        assertNull(cache.get("a"));
+        cache.put("a", 1);
+        cache.put("b", null);
+        assertEquals(Integer.valueOf(1), cache.get("a"));
+        // A null value is a hit.
+        assertNull(cache.get("b"));
+        cache.put("c", 3);
+        cache.put("d", 4);
+        assertNull(cache.get("a"));
+
+        assertEquals(2, cache.getHits());
+        assertEquals(2, cache.getMisses());
+        assertEquals(2, cache.getEvictions());
+
+        // The statistics survive clearing the cache.
+        BoundedCache.Statistics statistics = cache.getStatistics();
+        cache.clear();
+        assertTrue(cache.isEmpty());
+        assertEquals("test", statistics.getName());
+        assertEquals(2, statistics.getMaxSize());
+        assertEquals(2, statistics.getHits());
+        assertEquals(2, statistics.getMisses());
+        assertEquals(2, statistics.getEvictions());
+    }
+
+    @Test
+    public void sizeZeroStoresNothing() {
+        BoundedCache<String, Integer> cache = new BoundedCache<>("test", 0);
+        assertNull(cache.put("a", 1));
+        assertNull(cache.put("a", 2));
+        assertFalse(cache.containsKey("a"));
+        assertNull(cache.get("a"));
+        assertTrue(cache.isEmpty());
+        assertEquals(0, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        assertEquals(0, cache.getEvictions());
+    }
+
+    @Test
+    public void negativeSizeIsRejected() {
+        try {
+            new BoundedCache<String, Integer>("test", -1);
+            fail("a cache of negative size was created");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void isAMap() {
+        Map<String, Integer> map = new BoundedCache<>("test", 2);
+        map.put("a", 1);
+        assertEquals(Integer.valueOf(1), map.remove("a"));
+        assertTrue(map.isEmpty());
+    }
+}
@@ -0,0 +1,319 @@
+package org.checkerframework.framework.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+/**
+ * Tests {@link CopyOnWriteMap}: copies share their backing map until one
+ * of them is modified, and a modification of one copy is never visible in
+ * another.  {@link CopyOnWriteMap#differingKeys}, which the stores use to
+ * merge and compare only the changed entries, must return every key in
+ * which two maps differ.
+ */
+public class CopyOnWriteMapTest {
+
+    private static Map<String, Integer> map(Object... keysAndValues) {
+        Map<String, Integer> map = new HashMap<>();
+        for (int i = 0; i < keysAndValues.length; i += 2) {
+            map.put((String) keysAndValues[i], (Integer) keysAndValues[i + 1]);
+        }
+        return map;
+    }
+
+    private static CopyOnWriteMap<String, Integer> cow(Object... keysAndValues) {
+        CopyOnWriteMap<String, Integer> cow = new CopyOnWriteMap<>();
+        cow.putAll(map(keysAndValues));
+        return cow;
+    }
+
+    @Test
+    public void copyOfOtherMapIsIndependent() {
+        Map<String, Integer> other = map("a", 1);
+        CopyOnWriteMap<String, Integer> copy = CopyOnWriteMap.copyOf(other);
+        other.put("b", 2);
+        copy.put("c", 3);
+        assertEquals(map("a", 1, "b", 2), other);
+        assertEquals(map("a", 1, "c", 3), copy);
+        assertFalse(CopyOnWriteMap.isSharedWith(other, copy));
+    }
+
+    @Test
+    public void copyModifyCopyAgain() {
+        CopyOnWriteMap<String, Integer> original = cow("a", 1, "b", 2);
+        CopyOnWriteMap<String, Integer> copy = CopyOnWriteMap.copyOf(original);
+        assertTrue(CopyOnWriteMap.isSharedWith(original, copy));
+
+        copy.put("a", 10);
+        assertFalse(CopyOnWriteMap.isSharedWith(original, copy));
+        assertEquals(map("a", 1, "b", 2), original);
+        assertEquals(map("a", 10, "b", 2), copy);
+
+        // The copy of the modified copy shares the modified entries.
+        CopyOnWriteMap<String, Integer> copyOfCopy = CopyOnWriteMap.copyOf(copy);
+        assertTrue(CopyOnWriteMap.isSharedWith(copy, copyOfCopy));
+        copy.remove("b");
+        copyOfCopy.put("c", 3);
+        assertEquals(map("a", 1, "b", 2), original);
+        assertEquals(map("a", 10), copy);
+        assertEquals(map("a", 10, "b", 2, "c", 3), copyOfCopy);
+    }
+
+    @Test
+    public void modifyingTheOriginalDoesNotChangeTheCopy() {
+        CopyOnWriteMap<String, Integer> original = cow("a", 1);
+        CopyOnWriteMap<String, Integer> copy = CopyOnWriteMap.copyOf(original);
+        original.put("a", 2);
+        original.putAll(map("b", 3));
+        assertEquals(map("a", 1), copy);
+        assertEquals(map("a", 2, "b", 3), original);
+    }
+
+    @Test
+    public void copiesDivergeFromACommonBase() {
+        CopyOnWriteMap<String, Integer> base = cow("a", 1, "b", 2);
+        CopyOnWriteMap<String, Integer> left = CopyOnWriteMap.copyOf(base);
+        CopyOnWriteMap<String, Integer> right = CopyOnWriteMap.copyOf(base);
+        assertTrue(CopyOnWriteMap.isSharedWith(left, right));
+
+        left.put("a", 10);
+        right.remove("a");
+        right.put("c", 3);
+        assertEquals(map("a", 1, "b", 2), base);
+        assertEquals(map("a", 10, "b", 2), left);
+        assertEquals(map("b", 2, "c", 3), right);
+        assertFalse(CopyOnWriteMap.isSharedWith(left, right));
+        assertFalse(CopyOnWriteMap.isSharedWith(base, left));
+    }
+
+    @Test
+    public void clearSharedMap() {
+        CopyOnWriteMap<String, Integer> original = cow("a", 1);
+        CopyOnWriteMap<String, Integer> copy = CopyOnWriteMap.copyOf(original);
+        copy.clear();
+        assertTrue(copy.isEmpty());
+        assertEquals(map("a", 1), original);
+
+        // Both maps can be modified after the clear.
+        copy.put("b", 2);
+        original.put("c", 3);
+        assertEquals(map("b", 2), copy);
+        assertEquals(map("a", 1, "c", 3), original);
+    }
+
+    @Test
+    public void unchangedRemoveKeepsSharing() {
+        CopyOnWriteMap<String, Integer> original = cow("a", 1);
+        CopyOnWriteMap<String, Integer> copy = CopyOnWriteMap.copyOf(original);
+        assertNull(copy.remove("b"));
+        copy.putAll(Collections.<String, Integer>emptyMap());
+        assertTrue(CopyOnWriteMap.isSharedWith(original, copy));
+    }
+
+    @Test
+    public void viewsAreReadOnly() {
+        CopyOnWriteMap<String, Integer> original = cow("a", 1);
+        CopyOnWriteMap<String, Integer> copy = CopyOnWriteMap.copyOf(original);
+        try {
+            copy.keySet().remove("a");
+            fail("the key set of a copy was modified");
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+        try {
+            copy.entrySet().iterator().next().setValue(2);
+            fail("an entry of a copy was modified");
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+        assertEquals(map("a", 1), original);
+    }
+
+    @Test
+    public void viewsFollowModifications() {
+        CopyOnWriteMap<String, Integer> original = cow("a", 1);
+        CopyOnWriteMap<String, Integer> copy = CopyOnWriteMap.copyOf(original);
+        assertEquals(Collections.singleton("a"), copy.keySet());
+        copy.put("b", 2);
+        assertEquals(Collections.singleton("a"), original.keySet());
+        assertEquals(2, copy.keySet().size());
+        assertTrue(copy.values().contains(2));
+        assertFalse(original.values().contains(2));
+    }
+
+    @Test
+    public void equalsOtherMaps() {
+        CopyOnWriteMap<String, Integer> cow = cow("a", 1);
+        assertEquals(map("a", 1), cow);
+        assertEquals(cow, map("a", 1));
+        assertEquals(map("a", 1).hashCode(), cow.hashCode());
+        assertEquals(cow, CopyOnWriteMap.copyOf(cow));
+    }
+
+    private static Set<String> set(String... keys) {
+        return new HashSet<>(Arrays.asList(keys));
+    }
+
+    @Test
+    public void differingKeysOfOtherMaps() {
+        CopyOnWriteMap<String, Integer> cow = cow("a", 1);
+        assertNull(CopyOnWriteMap.differingKeys(cow, map("a", 1)));
+        assertNull(CopyOnWriteMap.differingKeys(map("a", 1), cow));
+        // Maps that were not copied from each other.
+        assertNull(CopyOnWriteMap.differingKeys(cow, cow("a", 1)));
+    }
+
+    @Test
+    public void differingKeysOfSharedMaps() {
+        CopyOnWriteMap<String, Integer> original = cow("a", 1);
+        CopyOnWriteMap<String, Integer> copy = CopyOnWriteMap.copyOf(original);
+        assertEquals(set(), CopyOnWriteMap.differingKeys(original, copy));
+    }
+
+    @Test
+    public void differingKeysOfModifiedCopy() {
+        CopyOnWriteMap<String, Integer> original = cow("a", 1, "b", 2, "c", 3, "e", 5);
+        CopyOnWriteMap<String, Integer> copy = CopyOnWriteMap.copyOf(original);
+        copy.put("a", 10);
+        copy.remove("b");
+        copy.put("d", 4);
+        assertEquals(set("a", "b", "d"), CopyOnWriteMap.differingKeys(original, copy));
+        assertEquals(set("a", "b", "d"), CopyOnWriteMap.differingKeys(copy, original));
+        try {
+            CopyOnWriteMap.differingKeys(original, copy).add("e");
+            fail("the changed keys of a map were modified");
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void differingKeysOfDivergedCopies() {
+        CopyOnWriteMap<String, Integer> base = cow("a", 1, "b", 2, "c", 3);
+        CopyOnWriteMap<String, Integer> left = CopyOnWriteMap.copyOf(base);
+        CopyOnWriteMap<String, Integer> right = CopyOnWriteMap.copyOf(base);
+        left.put("a", 10);
+        right.remove("b");
+        // A key that both maps changed in the same way is included, too.
+        left.put("c", 30);
+        right.put("c", 30);
+        assertEquals(set("a", "b", "c"), CopyOnWriteMap.differingKeys(left, right));
+        assertEquals(set("a", "c"), CopyOnWriteMap.differingKeys(base, left));
+        assertEquals(set("b", "c"), CopyOnWriteMap.differingKeys(base, right));
+    }
+
+    @Test
+    public void differingKeysOfCopyOfModifiedCopy() {
+        CopyOnWriteMap<String, Integer> original = cow("a", 1, "b", 2);
+        CopyOnWriteMap<String, Integer> copy = CopyOnWriteMap.copyOf(original);
+        copy.put("a", 10);
+        CopyOnWriteMap<String, Integer> copyOfCopy = CopyOnWriteMap.copyOf(copy);
+        // The copy of the copy does not know the changes of the copy.
+        assertNull(CopyOnWriteMap.differingKeys(original, copyOfCopy));
+        assertEquals(set("a"), CopyOnWriteMap.differingKeys(original, copy));
+
+        copyOfCopy.put("b", 20);
+        assertEquals(set("b"), CopyOnWriteMap.differingKeys(copy, copyOfCopy));
+
+        // Modifying the copy again starts a new set of changes, from the
+        // map that it shared with the copy of the copy.
+        copy.put("c", 3);
+        assertEquals(set("b", "c"), CopyOnWriteMap.differingKeys(copy, copyOfCopy));
+        assertNull(CopyOnWriteMap.differingKeys(original, copy));
+    }
+
+    @Test
+    public void trackingStopsWhenChangesExceedTheSize() {
+        CopyOnWriteMap<String, Integer> original = cow("a", 1, "b", 2, "c", 3);
+        CopyOnWriteMap<String, Integer> copy = CopyOnWriteMap.copyOf(original);
+        copy.put("d", 4);
+        copy.remove("d");
+        copy.remove("a");
+        assertEquals(set("a", "d"), CopyOnWriteMap.differingKeys(original, copy));
+        // Three changed keys in a map of two entries.
+        copy.remove("b");
+        assertEquals(map("c", 3), copy);
+        assertNull(CopyOnWriteMap.differingKeys(original, copy));
+        // Later changes are not tracked either.
+        copy.put("a", 1);
+        assertNull(CopyOnWriteMap.differingKeys(original, copy));
+    }
+
+    @Test
+    public void clearStopsTracking() {
+        CopyOnWriteMap<String, Integer> original = cow("a", 1, "b", 2);
+        CopyOnWriteMap<String, Integer> copy = CopyOnWriteMap.copyOf(original);
+        copy.put("a", 10);
+        copy.clear();
+        assertNull(CopyOnWriteMap.differingKeys(original, copy));
+
+        CopyOnWriteMap<String, Integer> shared = CopyOnWriteMap.copyOf(original);
+        shared.clear();
+        assertNull(CopyOnWriteMap.differingKeys(original, shared));
+    }
+
+    /**
+     * Applies random modifications to copies of a map and checks that the
+     * maps agree on all keys that {@link CopyOnWriteMap#differingKeys}
+     * does not return.
+     */
+    @Test
+    public void differingKeysCoverAllDifferences() {
+        Random random = new Random(17);
+        List<String> keys = Arrays.asList("a", "b", "c", "d", "e", "f", "g", "h");
+        for (int round = 0; round < 500; round++) {
+            CopyOnWriteMap<String, Integer> base = new CopyOnWriteMap<>();
+            for (String key : keys) {
+                if (random.nextBoolean()) {
+                    base.put(key, random.nextInt(3));
+                }
+            }
+            @SuppressWarnings("unchecked")
+            CopyOnWriteMap<String, Integer>[] maps = new CopyOnWriteMap[] {
+                base, CopyOnWriteMap.copyOf(base), CopyOnWriteMap.copyOf(base)
+            };
+            for (int step = 0; step < 6; step++) {
+                int i = random.nextInt(maps.length);
+                String key = keys.get(random.nextInt(keys.size()));
+                switch (random.nextInt(4)) {
+                case 0:
+                    maps[i] = CopyOnWriteMap.copyOf(maps[random.nextInt(maps.length)]);
+                    break;
+                case 1:
+                    maps[i].remove(key);
+                    break;
+                default:
+                    maps[i].put(key, random.nextInt(3));
+                    break;
+                }
+                for (CopyOnWriteMap<String, Integer> m1 : maps) {
+                    for (CopyOnWriteMap<String, Integer> m2 : maps) {
+                        Set<String> differing = CopyOnWriteMap.differingKeys(m1, m2);
+                        if (differing == null) {
+                            continue;
+                        }
+                        for (String k : keys) {
+                            if (!differing.contains(k)) {
+                                assertEquals(k + " in " + m1 + " and " + m2, m1.get(k), m2.get(k));
+                                assertEquals(m1.containsKey(k), m2.containsKey(k));
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+}
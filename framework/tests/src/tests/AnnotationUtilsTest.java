@@ -0,0 +1,96 @@
+package tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.AnnotationMirror;
+
+import org.checkerframework.framework.util.AnnotationBuilder;
+import org.checkerframework.javacutil.AnnotationUtils;
+import org.checkerframework.javacutil.ErrorReporter;
+import org.junit.Test;
+
+import tests.util.TestChecker;
+
+import com.sun.tools.javac.processing.JavacProcessingEnvironment;
+import com.sun.tools.javac.util.Context;
+
+/**
+ * Checks that {@link AnnotationUtils#areSame(AnnotationMirror, AnnotationMirror)}
+ * and the canonical annotation ids compare annotations by their values.
+ */
+public class AnnotationUtilsTest {
+
+    private final ProcessingEnvironment env;
+
+    public AnnotationUtilsTest() {
+        env = JavacProcessingEnvironment.instance(new Context());
+        ErrorReporter.setHandler(new TestChecker());
+        AnnotationUtils.resetAnnotationIds(env);
+    }
+
+    public static @interface Valued { int value() default 0; String[] names() default {}; }
+    public static @interface OtherValued { int value() default 0; }
+
+    private AnnotationMirror valued(int value, String... names) {
+        AnnotationBuilder builder = new AnnotationBuilder(env, Valued.class);
+        builder.setValue("value", value);
+        builder.setValue("names", names);
+        return builder.build();
+    }
+
+    @Test
+    public void sameValues() {
+        AnnotationMirror a1 = valued(1, "a", "b");
+        AnnotationMirror a2 = valued(1, "a", "b");
+        assertTrue(AnnotationUtils.areSame(a1, a2));
+        assertEquals(AnnotationUtils.annotationId(a1), AnnotationUtils.annotationId(a2));
+    }
+
+    @Test
+    public void differentValues() {
+        assertFalse(AnnotationUtils.areSame(valued(1, "a"), valued(2, "a")));
+        assertFalse(AnnotationUtils.areSame(valued(1, "a"), valued(1, "b")));
+        assertFalse(AnnotationUtils.areSame(valued(1, "a", "b"), valued(1, "b", "a")));
+        assertFalse(AnnotationUtils.areSame(valued(1, "a"), valued(1, "a", "a")));
+    }
+
+    @Test
+    public void defaultValues() {
+        AnnotationMirror implicit = new AnnotationBuilder(env, Valued.class).build();
+        AnnotationMirror explicit = valued(0);
+        AnnotationMirror partial = new AnnotationBuilder(env, Valued.class).setValue("value", 0).build();
+        assertTrue(AnnotationUtils.areSame(implicit, explicit));
+        assertTrue(AnnotationUtils.areSame(explicit, partial));
+        assertTrue(AnnotationUtils.areSame(partial, implicit));
+        assertFalse(AnnotationUtils.areSame(implicit, valued(1)));
+    }
+
+    @Test
+    public void differentTypes() {
+        AnnotationMirror other = new AnnotationBuilder(env, OtherValued.class).setValue("value", 1).build();
+        assertFalse(AnnotationUtils.areSame(valued(1), other));
+        assertNotEquals(AnnotationUtils.annotationId(valued(1)), AnnotationUtils.annotationId(other));
+    }
+
+    @Test
+    public void resetForNewEnvironment() {
+        AnnotationMirror a1 = valued(1, "a");
+        int id = AnnotationUtils.annotationId(a1);
+
+        // The same environment keeps the ids.
+        AnnotationUtils.resetAnnotationIds(env);
+        assertEquals(id, AnnotationUtils.annotationId(valued(1, "a")));
+
+        // A new environment starts over, and annotations are still compared by value.
+        AnnotationUtils.resetAnnotationIds(JavacProcessingEnvironment.instance(new Context()));
+        AnnotationMirror a2 = valued(2, "b");
+        assertEquals(0, AnnotationUtils.annotationId(a2));
+        assertTrue(AnnotationUtils.areSame(a2, valued(2, "b")));
+        assertFalse(AnnotationUtils.areSame(a1, a2));
+        assertTrue(AnnotationUtils.areSame(a1, valued(1, "a")));
+    }
+}
@@ -0,0 +1,173 @@
+package tests;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+import javax.tools.ToolProvider;
+
+import org.checkerframework.framework.test.CompilationResult;
+import org.checkerframework.framework.test.TestConfiguration;
+import org.checkerframework.framework.test.TestConfigurationBuilder;
+import org.checkerframework.framework.test.TestUtilities;
+import org.checkerframework.framework.test.TypecheckExecutor;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import tests.util.CountingValueChecker;
+
+/**
+ * Checks that {@code -AresultCache} replays the diagnostics of a class
+ * only while the classes that it refers to keep their signatures: a
+ * change to a method body of a dependency does not invalidate the cache
+ * entry of the class that calls the method, but a change to the annotated
+ * return type of the method does.  The dependency is compiled either
+ * together with the class or as a library, without the checker, so that
+ * it is read from a class file.
+ *
+ * @see ResultCacheTest
+ */
+public class ResultCacheDependencyTest {
+
+    private static final String USE =
+            "import org.checkerframework.common.value.qual.IntVal;\n"
+            + "class Use {\n"
+            + "    @IntVal(1) int x = Dep.one();\n"
+            + "}\n";
+
+    private static final String USE_ERROR = "Use.java:3: (assignment.type.incompatible)";
+
+    private File directory;
+    private File sources;
+    private File cache;
+    private File classes;
+    private File libraries;
+
+    @Before
+    public void createDirectories() throws IOException {
+        directory = Files.createTempDirectory("resultcache").toFile();
+        sources = new File(directory, "src");
+        cache = new File(directory, "cache");
+        classes = new File(directory, "classes");
+        libraries = new File(directory, "libraries");
+        Assert.assertTrue(sources.mkdir() && cache.mkdir() && classes.mkdir() && libraries.mkdir());
+    }
+
+    @After
+    public void deleteDirectories() {
+        delete(directory);
+    }
+
+    @Test
+    public void signatureChangeForcesRecheck() throws IOException {
+        writeDep("@IntVal(1)", "return 1;");
+        writeSource("Use.java", USE);
+        Assert.assertEquals(new ArrayList<String>(), check(2, "Dep.java", "Use.java"));
+        Assert.assertEquals("the unchanged classes were checked again",
+                new ArrayList<String>(), check(0, "Dep.java", "Use.java"));
+
+        // Only Dep is checked again; Use is replayed.
+        writeDep("@IntVal(1)", "int one = 1; return one;");
+        Assert.assertEquals(new ArrayList<String>(), check(1, "Dep.java", "Use.java"));
+
+        // The signature of Dep.one changed, so Use is checked again.
+        writeDep("@IntVal(2)", "return 2;");
+        Assert.assertEquals(Arrays.asList(USE_ERROR), check(2, "Dep.java", "Use.java"));
+
+        // The new diagnostic of Use is replayed, too.
+        Assert.assertEquals(Arrays.asList(USE_ERROR), check(0, "Dep.java", "Use.java"));
+    }
+
+    @Test
+    public void classFileSignatureChangeForcesRecheck() throws IOException {
+        writeDep("@IntVal(1)", "return 1;");
+        writeSource("Use.java", USE);
+        compileLibrary("Dep.java");
+        Assert.assertEquals(new ArrayList<String>(), check(1, "Use.java"));
+        Assert.assertEquals(new ArrayList<String>(), check(0, "Use.java"));
+
+        writeDep("@IntVal(1)", "int one = 1; return one;");
+        compileLibrary("Dep.java");
+        Assert.assertEquals(new ArrayList<String>(), check(0, "Use.java"));
+
+        writeDep("@IntVal(2)", "return 2;");
+        compileLibrary("Dep.java");
+        Assert.assertEquals(Arrays.asList(USE_ERROR), check(1, "Use.java"));
+        Assert.assertEquals(Arrays.asList(USE_ERROR), check(0, "Use.java"));
+    }
+
+    private void writeDep(String returnType, String body) throws IOException {
+        writeSource("Dep.java",
+                "import org.checkerframework.common.value.qual.IntVal;\n"
+                + "class Dep {\n"
+                + "    static " + returnType + " int one() { " + body + " }\n"
+                + "}\n");
+    }
+
+    private void writeSource(String name, String content) throws IOException {
+        try (Writer out = new OutputStreamWriter(Files.newOutputStream(new File(sources, name).toPath()), "UTF-8")) {
+            out.write(content);
+        }
+    }
+
+    /** Compiles the source file into the library directory, without a checker. */
+    private void compileLibrary(String file) {
+        int exitCode = ToolProvider.getSystemJavaCompiler().run(null, null, null,
+                "-d", libraries.getAbsolutePath(),
+                "-classpath", TestConfigurationBuilder.getDefaultClassPath(),
+                new File(sources, file).getAbsolutePath());
+        Assert.assertEquals("compiling " + file, 0, exitCode);
+    }
+
+    /**
+     * Compiles the source files with the result cache, asserts that the
+     * given number of classes were checked instead of replayed, and returns
+     * the checker's diagnostics as "file:line: message".  The library
+     * directory is on the classpath.
+     */
+    private List<String> check(int expectedChecked, String... files) {
+        List<File> sourceFiles = new ArrayList<File>();
+        for (String file : files) {
+            sourceFiles.add(new File(sources, file));
+        }
+        TestConfiguration config = TestConfigurationBuilder.buildDefaultConfiguration(
+                "", classes,
+                libraries.getAbsolutePath() + File.pathSeparator + TestConfigurationBuilder.getDefaultClassPath(),
+                sourceFiles,
+                Arrays.asList(CountingValueChecker.class.getName()),
+                Arrays.asList("-Anomsgtext", "-AresultCache=" + cache.getAbsolutePath()),
+                TestUtilities.getShouldEmitDebugInfo());
+
+        CountingValueChecker.resetCount();
+        CompilationResult result = new TypecheckExecutor().compile(config);
+        Assert.assertEquals("checked classes", expectedChecked, CountingValueChecker.getCount());
+
+        List<String> diagnostics = new ArrayList<String>();
+        for (Diagnostic<? extends JavaFileObject> diag : result.getDiagnostics()) {
+            if (diag.getKind() == Diagnostic.Kind.ERROR || diag.getKind() == Diagnostic.Kind.WARNING) {
+                diagnostics.add(new File(diag.getSource().getName()).getName() + ":"
+                        + diag.getLineNumber() + ": " + diag.getMessage(null));
+            }
+        }
+        return diagnostics;
+    }
+
+    private static void delete(File file) {
+        File[] files = file.listFiles();
+        if (files != null) {
+            for (File child : files) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
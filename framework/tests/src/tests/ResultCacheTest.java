@@ -0,0 +1,86 @@
+package tests;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.checkerframework.framework.test.CheckerFrameworkTest;
+import org.checkerframework.framework.test.CompilationResult;
+import org.checkerframework.framework.test.TestConfiguration;
+import org.checkerframework.framework.test.TestUtilities;
+import org.checkerframework.framework.test.TypecheckExecutor;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runners.Parameterized.Parameters;
+
+import tests.util.CountingValueChecker;
+
+import static org.checkerframework.framework.test.TestConfigurationBuilder.buildDefaultConfiguration;
+
+/**
+ * Compiles each test file twice with the same {@code -AresultCache}
+ * directory: the first compilation checks the classes and stores the
+ * diagnostics, and the second one replays them without checking any class.
+ * Both must report the expected diagnostics.
+ *
+ * @see ResultCacheDependencyTest
+ */
+public class ResultCacheTest extends CheckerFrameworkTest {
+
+    public ResultCacheTest(File testFile) {
+        super(testFile, CountingValueChecker.class,
+                "resultcache", "-Anomsgtext");
+    }
+
+    @Override
+    @Test
+    public void run() {
+        File cacheDir;
+        try {
+            cacheDir = Files.createTempDirectory("resultcache").toFile();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+
+        try {
+            List<String> options = new ArrayList<String>(checkerOptions);
+            options.add("-AresultCache=" + cacheDir.getAbsolutePath());
+            TestConfiguration config = buildDefaultConfiguration(checkerDir, testFile, checkerName, options,
+                                                                 TestUtilities.getShouldEmitDebugInfo());
+            TypecheckExecutor executor = new TypecheckExecutor();
+
+            CountingValueChecker.resetCount();
+            CompilationResult stored = executor.compile(config);
+            TestUtilities.assertResultsAreValid(executor.interpretResults(config, stored));
+            Assert.assertTrue("the first compilation did not check any class",
+                    CountingValueChecker.getCount() > 0);
+            String[] entries = cacheDir.list();
+            Assert.assertTrue("no results were stored in " + cacheDir,
+                    entries != null && entries.length > 0);
+
+            CountingValueChecker.resetCount();
+            CompilationResult replayed = executor.compile(config);
+            TestUtilities.assertResultsAreValid(executor.interpretResults(config, replayed));
+            Assert.assertEquals("the second compilation checked classes instead of replaying them",
+                    0, CountingValueChecker.getCount());
+            Assert.assertEquals(
+                    new ArrayList<String>(TestUtilities.diagnosticsToStrings(stored.getDiagnostics(), true)),
+                    new ArrayList<String>(TestUtilities.diagnosticsToStrings(replayed.getDiagnostics(), true)));
+        } finally {
+            File[] files = cacheDir.listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    file.delete();
+                }
+            }
+            cacheDir.delete();
+        }
+    }
+
+    @Parameters
+    public static String [] getTestDirs() {
+        return new String[]{"resultcache"};
+    }
+}
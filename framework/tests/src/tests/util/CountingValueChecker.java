@@ -0,0 +1,47 @@
+package tests.util;
+
+import org.checkerframework.common.basetype.BaseTypeVisitor;
+import org.checkerframework.common.value.ValueChecker;
+import org.checkerframework.common.value.ValueVisitor;
+import org.checkerframework.framework.qual.StubFiles;
+
+import com.sun.source.util.TreePath;
+
+/**
+ * The Constant Value Checker, counting the top-level classes that its
+ * visitor checks.  Tests of the {@code -AresultCache} option use the count
+ * to tell whether the diagnostics of a class were replayed from the cache
+ * or whether the class was checked again.
+ */
+// The stub file of the Constant Value Checker is a resource of its package.
+@StubFiles("/org/checkerframework/common/value/statically-executable.astub")
+public class CountingValueChecker extends ValueChecker {
+
+    /** The number of top-level classes checked since the last {@link #resetCount}. */
+    private static int checkedClasses = 0;
+
+    /** Returns the number of top-level classes checked since the last {@link #resetCount}. */
+    public static synchronized int getCount() {
+        return checkedClasses;
+    }
+
+    /** Resets the number of checked top-level classes to zero. */
+    public static synchronized void resetCount() {
+        checkedClasses = 0;
+    }
+
+    private static synchronized void count() {
+        checkedClasses++;
+    }
+
+    @Override
+    protected BaseTypeVisitor<?> createSourceVisitor() {
+        return new ValueVisitor(this) {
+            @Override
+            public void visit(TreePath path) {
+                count();
+                super.visit(path);
+            }
+        };
+    }
+}
@@ -0,0 +1,67 @@
+import org.checkerframework.common.value.qual.*;
+
+class IntRanges {
+
+    void arithmetic(@IntRange(from = 0, to = 100) int x) {
+        @IntRange(from = 1, to = 101) int plus = x + 1;
+        @IntRange(from = -100, to = 0) int minus = -x;
+        @IntRange(from = 0, to = 200) int times = x * 2;
+        @IntRange(from = 0, to = 50) int divide = x / 2;
+        @IntRange(from = 0, to = 9) int remainder = x % 10;
+        @IntRange(from = 0, to = 15) int and = x & 15;
+        //:: error: (assignment.type.incompatible)
+        @IntRange(from = 0, to = 99) int narrower = x;
+    }
+
+    void subtyping(@IntVal({1, 2, 3}) int a, @IntRange(from = 1, to = 3) int b) {
+        @IntRange(from = 0, to = 10) int c = a;
+        @IntVal({1, 2, 3}) int d = b;
+        //:: error: (assignment.type.incompatible)
+        @IntVal({1, 2}) int e = b;
+    }
+
+    void comparison(@IntRange(from = 0, to = 10) int x) {
+        @BoolVal(true) boolean less = x < 11;
+        @BoolVal(false) boolean greater = x > 10;
+    }
+
+    void overflow(@IntRange(from = 0, to = Integer.MAX_VALUE) int x) {
+        // x + 1 wraps around for Integer.MAX_VALUE
+        //:: error: (assignment.type.incompatible)
+        @IntRange(from = 1) int y = x + 1;
+        @IntRange(from = 1, to = 2147483648L) long z = x + 1L;
+    }
+
+    void postfix(@IntRange(from = 0, to = 100) int x) {
+        int i = x;
+        @IntRange(from = 0, to = 100) int y = i++;
+        @IntRange(from = 1, to = 101) int z = i;
+    }
+
+    void conditional(boolean b, @IntRange(from = 0, to = 100) int y) {
+        // The least upper bound of the branches is the range containing both.
+        @IntRange(from = 0, to = 100) int t = b ? 5 : y;
+        int u;
+        if (b) {
+            u = 5;
+        } else {
+            u = y;
+        }
+        @IntRange(from = 0, to = 100) int v = u;
+        int w = b ? 200 : y;
+        @IntRange(from = 0, to = 200) int x = w;
+        //:: error: (assignment.type.incompatible)
+        @IntRange(from = 0, to = 199) int z = w;
+    }
+
+    void loop(int n) {
+        int count = 0;
+        for (int i = 0; i < n; i++) {
+            count = (count + 1) % 100;
+        }
+        // The range of count is widened at the loop head.
+        @IntRange(from = 0, to = 127) int c = count;
+        //:: error: (assignment.type.incompatible)
+        @IntRange(from = 0, to = 99) int d = count;
+    }
+}
@@ -0,0 +1,53 @@
+import org.checkerframework.common.value.qual.*;
+
+class RepeatedCalls {
+
+    void sameCallTwice() {
+        String s = "hello";
+        @IntVal({ 5 }) int a = s.length();
+        @IntVal({ 5 }) int b = s.length();
+        //:: error: (assignment.type.incompatible)
+        @IntVal({ 4 }) int c = s.length();
+
+        @StringVal({ "HELLO" }) String u1 = s.toUpperCase();
+        @StringVal({ "HELLO" }) String u2 = s.toUpperCase();
+        //:: error: (assignment.type.incompatible)
+        @StringVal({ "hello" }) String u3 = s.toUpperCase();
+    }
+
+    void sameCallInAnotherMethod() {
+        String s = "hello";
+        @IntVal({ 5 }) int a = s.length();
+        @StringVal({ "HELLO" }) String u = s.toUpperCase();
+        //:: error: (assignment.type.incompatible)
+        @IntVal({ 4 }) int c = s.length();
+    }
+
+    void severalValues(boolean b) {
+        String s = b ? "a" : "bcd";
+        @IntVal({ 1, 3 }) int a = s.length();
+        @IntVal({ 1, 3 }) int c = s.length();
+        //:: error: (assignment.type.incompatible)
+        @IntVal({ 1 }) int d = s.length();
+    }
+
+    void staticCalls() {
+        @IntVal({ 42 }) int a = Integer.parseInt("42");
+        @IntVal({ 42 }) int b = Integer.parseInt("42");
+        //:: error: (assignment.type.incompatible)
+        @IntVal({ 24 }) int c = Integer.parseInt("42");
+
+        @StringVal({ "42" }) String s1 = Integer.toString(42);
+        @StringVal({ "42" }) String s2 = Integer.toString(42);
+        //:: error: (assignment.type.incompatible)
+        @StringVal({ "24" }) String s3 = Integer.toString(42);
+    }
+
+    void exceptionTwice() {
+        String s = "hello";
+        //:: warning: (method.evaluation.exception)
+        char c = s.charAt(5);
+        //:: warning: (method.evaluation.exception)
+        char d = s.charAt(5);
+    }
+}
@@ -202,6 +202,10 @@ public abstract class AbstractTypeProcessor extends AbstractProcessor {
             TypeElement elem = e.getTypeElement();
             TreePath p = Trees.instance(processingEnv).getPath(elem);
 
+            // Classes are processed serially, in the thread that raised
+            // the event: symbol completion, Types, and Log in javac are
+            // not thread-safe, so classes cannot be checked concurrently
+            // within one compilation.
             typeProcess(elem, p);
 
             if (!hasInvokedTypeProcessingOver && elements.isEmpty() && log.nerrors == 0) {
@@ -10,6 +10,7 @@ import org.checkerframework.checker.interning.qual.*;
 
 import java.lang.annotation.Annotation;
 import java.lang.annotation.Inherited;
+import java.lang.ref.WeakReference;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -22,6 +23,7 @@ import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
 
+import javax.annotation.processing.ProcessingEnvironment;
 import javax.lang.model.element.AnnotationMirror;
 import javax.lang.model.element.AnnotationValue;
 import javax.lang.model.element.ElementKind;
@@ -51,6 +53,29 @@ public class AnnotationUtils {
         annotationsFromNames.clear();
         annotationMirrorNames.clear();
         annotationClassNames.clear();
+        // annotationIds is not cleared: ids must remain stable, as
+        // they are stored in tables of long-lived objects.  They are
+        // discarded by resetAnnotationIds instead.
+        annotationMirrorIds.clear();
+    }
+
+    /**
+     * Scopes the canonical ids of {@link #annotationId(AnnotationMirror)}
+     * to a processing environment: if {@code env} is not the environment
+     * of the previous call, the ids of the previous environment are
+     * discarded.  Otherwise the ids of every compilation in a long-running
+     * process, such as a compile server, would be kept forever.
+     *
+     * This must be called before any objects that store ids are created
+     * for {@code env}.  The ids of the previous environment must not be
+     * used anymore.
+     */
+    public static void resetAnnotationIds(ProcessingEnvironment env) {
+        if (annotationIdsEnv.get() != env) {
+            annotationIds.clear();
+            annotationMirrorIds.clear();
+            annotationIdsEnv = new WeakReference<ProcessingEnvironment>(env);
+        }
     }
 
     // **********************************************************************
@@ -79,6 +104,26 @@ public class AnnotationUtils {
     private static final Map<Class<? extends Annotation>, /*@Interned*/ String> annotationClassNames
         = new HashMap<Class<? extends Annotation>, /*@Interned*/ String>();
 
+    /**
+     * Canonical qualifier ids.  Each distinct pair of annotation type and
+     * element values (including defaults) is assigned a small integer
+     * the first time it is seen.  The key is the annotation name followed
+     * by the element values, sorted by element name.
+     */
+    private static final Map<String, Integer> annotationIds
+        = new HashMap<String, Integer>();
+
+    /** The processing environment that the ids in annotationIds belong to. */
+    private static WeakReference<ProcessingEnvironment> annotationIdsEnv
+        = new WeakReference<ProcessingEnvironment>(null);
+
+    /**
+     * Cache ids of AnnotationMirrors for faster access, so that the
+     * element values of an AnnotationMirror are only formatted once.
+     */
+    private static final Map<AnnotationMirror, Integer> annotationMirrorIds
+        = CollectionUtils.createLRUCache(ANNOTATION_CACHE_SIZE);
+
     /**
      * Creates an {@link AnnotationMirror} given by a particular
      * fully-qualified name.  getElementValues on the result returns an
@@ -181,19 +226,59 @@ public class AnnotationUtils {
      * @return true iff a1 and a2 are the same annotation
      */
     public static boolean areSame(/*@Nullable*/ AnnotationMirror a1, /*@Nullable*/ AnnotationMirror a2) {
+        if (a1 == a2) {
+            // also true, iff both are null
+            return true;
+        }
         if (a1 != null && a2 != null) {
             if (annotationName(a1) != annotationName(a2)) {
                 return false;
             }
+            if (a1.getElementValues().isEmpty() && a2.getElementValues().isEmpty()) {
+                // Same annotation type without explicit values:
+                // both use the same defaults.
+                return true;
+            }
+            return annotationId(a1) == annotationId(a2);
+        }
+        return false;
+    }
 
-            Map<? extends ExecutableElement, ? extends AnnotationValue> elval1 = getElementValuesWithDefaults(a1);
-            Map<? extends ExecutableElement, ? extends AnnotationValue> elval2 = getElementValuesWithDefaults(a2);
-
-            return elval1.toString().equals(elval2.toString());
+    /**
+     * Returns the canonical id of an annotation.
+     *
+     * Two annotations have the same id iff they are of the same type and
+     * have the same annotation values, including defaults, i.e. iff
+     * {@link #areSame(AnnotationMirror, AnnotationMirror)} holds.
+     * Ids are small non-negative integers, assigned in increasing order,
+     * and remain stable across calls to {@link #clear()}, but not across
+     * calls to {@link #resetAnnotationIds(ProcessingEnvironment)} with a
+     * new processing environment.
+     *
+     * @return the canonical id of {@code annotation}
+     */
+    public static int annotationId(AnnotationMirror annotation) {
+        Integer id = annotationMirrorIds.get(annotation);
+        if (id != null) {
+            return id;
         }
 
-        // only true, iff both are null
-        return a1 == a2;
+        // The element values are sorted by name, as the order of
+        // getElementValuesWithDefaults depends on how the annotation was
+        // created.
+        Map<String, String> values = new TreeMap<String, String>();
+        for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry :
+                 getElementValuesWithDefaults(annotation).entrySet()) {
+            values.put(entry.getKey().getSimpleName().toString(), entry.getValue().toString());
+        }
+        String key = annotationName(annotation) + values.toString();
+        id = annotationIds.get(key);
+        if (id == null) {
+            id = annotationIds.size();
+            annotationIds.put(key, id);
+        }
+        annotationMirrorIds.put(annotation, id);
+        return id;
     }
 
     /**